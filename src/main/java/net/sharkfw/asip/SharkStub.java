@@ -22,6 +22,12 @@ public interface SharkStub {
     void addListener(ASIPPort newListener);
 
     void withdrawListener(ASIPPort listener);
+
+    /**
+     * Stops worker threads of concurrent ports. Ports are still called
+     * afterwards - by the thread delivering the message.
+     */
+    void stop();
     
     void initSecurity(PrivateKey privateKey, /*SharkPublicKeyStorage publicKeyStorage,*/ SharkPkiStorage sharkPkiStorage,
             SharkEngine.SecurityLevel encryptionLevel, SharkEngine.SecurityLevel signatureLevel, 
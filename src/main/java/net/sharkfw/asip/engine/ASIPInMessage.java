@@ -65,18 +65,8 @@ public class ASIPInMessage extends ASIPMessage implements ASIPConnection {
     }
 
     public void parse() throws IOException, SharkSecurityException {
-        char[] buffer = new char[1024];
-        BufferedReader in = new BufferedReader(new InputStreamReader(this.is, StandardCharsets.UTF_8));
-        StringBuilder response= new StringBuilder();
-        int charsRead = 0;
-
-        if(in.ready()){
-            do{
-                charsRead = in.read(buffer);
-                response.append(buffer, 0, charsRead) ;
-            } while(charsRead == buffer.length);
-
-            this.parsedString = response.toString();
+        if(this.is.available() > 0) {
+            this.parsedString = new String(ASIPInMessage.readMessage(this.is), StandardCharsets.UTF_8);
         }
 
         if(!this.parsedString.isEmpty()){
@@ -85,6 +75,73 @@ public class ASIPInMessage extends ASIPMessage implements ASIPConnection {
         }
     }
 
+    /**
+     * Reads a single message from stream. ASIP messages are JSON objects -
+     * the message ends with the brace closing the first one. Following 
+     * messages stay on stream, even if they were sent in quick succession
+     * over the same connection.
+     * 
+     * Streams not starting with a JSON object are read as long as bytes
+     * are available.
+     * 
+     * @param is
+     * @return message bytes (UTF-8)
+     * @throws IOException if stream ends within a message
+     */
+    static byte[] readMessage(InputStream is) throws IOException {
+        ByteArrayOutputStream msg = new ByteArrayOutputStream(1024);
+
+        int b = is.read();
+        while(b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+            b = is.read();
+        }
+
+        if(b == -1) {
+            return msg.toByteArray();
+        }
+
+        if(b != '{') {
+            // no JSON object - take what is there
+            msg.write(b);
+            while(is.available() > 0 && (b = is.read()) != -1) {
+                msg.write(b);
+            }
+            return msg.toByteArray();
+        }
+
+        /* braces, quotes and backslash are ASCII - they are never part of
+         * a multi byte UTF-8 sequence. Counting bytes is fine.
+         */
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        do {
+            msg.write(b);
+
+            if(inString) {
+                if(escaped) {
+                    escaped = false;
+                } else if(b == '\\') {
+                    escaped = true;
+                } else if(b == '"') {
+                    inString = false;
+                }
+            } else if(b == '"') {
+                inString = true;
+            } else if(b == '{') {
+                depth++;
+            } else if(b == '}') {
+                depth--;
+            }
+
+            if(depth == 0) {
+                return msg.toByteArray();
+            }
+        } while((b = is.read()) != -1);
+
+        throw new IOException("stream ended within ASIP message");
+    }
+
 //    public boolean isEmpty() {
 //        return isEmpty;
 //    }
@@ -228,7 +285,7 @@ public class ASIPInMessage extends ASIPMessage implements ASIPConnection {
     }
 
     @Override
-    public void expose(ASIPInterest interest, String[] receiveraddresses) throws SharkException {
+    public synchronized void expose(ASIPInterest interest, String[] receiveraddresses) throws SharkException {
         if (interest == null)
             L.d("no interest", this);
         if (receiveraddresses.length < 0)
@@ -246,7 +303,7 @@ public class ASIPInMessage extends ASIPMessage implements ASIPConnection {
     }
 
     @Override
-    public void insert(ASIPKnowledge k, String[] receiveraddresses) throws SharkException {
+    public synchronized void insert(ASIPKnowledge k, String[] receiveraddresses) throws SharkException {
         this.response = this.createResponse(receiveraddresses);
         if (this.response != null) {
             L.d("Now go insert!!!", this);
@@ -260,7 +317,7 @@ public class ASIPInMessage extends ASIPMessage implements ASIPConnection {
     }
 
     @Override
-    public void raw(InputStream stream, String[] address) throws SharkException {
+    public synchronized void raw(InputStream stream, String[] address) throws SharkException {
         ASIPOutMessage outMessage = this.createResponse(address);
         if (outMessage != null) {
             outMessage.raw(stream);
@@ -273,19 +330,19 @@ public class ASIPInMessage extends ASIPMessage implements ASIPConnection {
     }
 
     @Override
-    public void raw(byte[] bytes, String[] address) throws SharkException {
+    public synchronized void raw(byte[] bytes, String[] address) throws SharkException {
         ASIPOutMessage outMessage = this.createResponse(address);
         if (outMessage != null) {
             outMessage.raw(bytes);
         }
     }
 
-    public void resetResponse(){
+    public synchronized void resetResponse(){
         this.response = null;
     }
 
     @Override
-    public boolean responseSent() {
+    public synchronized boolean responseSent() {
         if(this.response == null) {
             return false;
         }
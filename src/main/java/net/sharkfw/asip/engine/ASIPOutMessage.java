@@ -15,9 +15,13 @@ import java.nio.charset.StandardCharsets;
  * Objects of this class are produced by the framework in order
  * to be serialized and transmitted to another peer.
  *
+ * A message sent over a pooled connection holds that connection until it
+ * is sent. Messages which might not be sent should be closed, e.g. with
+ * try-with-resources. Closing a sent message does nothing.
+ *
  * @author thsc
  */
-public class ASIPOutMessage extends ASIPMessage {
+public class ASIPOutMessage extends ASIPMessage implements Closeable {
 
     private Writer osw = null;
     private ASIPInterest interest = null;
@@ -27,6 +31,8 @@ public class ASIPOutMessage extends ASIPMessage {
     private boolean responseSent = false;
     private String recipientAddress = "";
     private MessageStub outStub;
+    private SharkEngine engine = null;
+    private StreamConnection connection = null;
 
     public ASIPOutMessage(SharkEngine engine,
                           StreamConnection connection,
@@ -41,6 +47,8 @@ public class ASIPOutMessage extends ASIPMessage {
         super(engine, connection, ttl, sender, receiverPeer, receiverLocation, receiverTime, topic, type);
         this.recipientAddress = connection.getReceiverAddressString();
         this.os = connection.getOutputStream();
+        this.engine = engine;
+        this.connection = connection;
     }
 
     public ASIPOutMessage(SharkEngine engine, StreamConnection connection, ASIPInMessage in) throws SharkKBException {
@@ -81,9 +89,49 @@ public class ASIPOutMessage extends ASIPMessage {
             }
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            this.responseSent = true;
+            this.release();
+        }
+    }
+
+    /**
+     * Gives a pooled connection back to the engine. Called after each
+     * send attempt - successful or not. Messages which are dropped without
+     * being sent must be released by their creator, see close(). Releasing
+     * twice is harmless.
+     */
+    public void release() {
+        StreamConnection con;
+        synchronized (this) {
+            con = this.connection;
+            this.connection = null;
         }
 
-        this.responseSent = true;
+        // connection can be used for next message
+        if (this.engine != null && con != null) {
+            this.engine.releaseConnection(con);
+        }
+    }
+
+    /**
+     * Same as release() - the connection isn't closed, it stays in the pool.
+     */
+    @Override
+    public void close() {
+        this.release();
+    }
+
+    /**
+     * Last resort for messages which were neither sent nor closed.
+     */
+    @Override
+    protected void finalize() throws Throwable {
+        try {
+            this.release();
+        } finally {
+            super.finalize();
+        }
     }
 
     public void expose(ASIPInterest interest) {
@@ -100,8 +148,9 @@ public class ASIPOutMessage extends ASIPMessage {
             e.printStackTrace();
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            this.sent();
         }
-        this.sent();
     }
 
     public void insert(ASIPKnowledge knowledge) {
@@ -122,8 +171,9 @@ public class ASIPOutMessage extends ASIPMessage {
             e.printStackTrace();
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            this.sent();
         }
-        this.sent();
     }
 
     public void raw(byte[] raw) {
@@ -142,8 +192,9 @@ public class ASIPOutMessage extends ASIPMessage {
         } catch (IOException e) {
             L.d("Write failed");
             e.printStackTrace();
+        } finally {
+            this.sent();
         }
-        this.sent();
     }
 
     public void raw(InputStream inputStream) {
@@ -161,8 +212,9 @@ public class ASIPOutMessage extends ASIPMessage {
         } catch (IOException e) {
             L.d("Write failed");
             e.printStackTrace();
+        } finally {
+            this.sent();
         }
-        this.sent();
     }
 
 }
@@ -124,6 +124,11 @@ public class ASIPSerializer {
     public static JSONObject serializeKnowledge(ASIPKnowledge knowledge) throws SharkKBException {
         if (knowledge == null) return null;
 
+        // serialize a consistent state even if other threads change the kb
+        if (knowledge instanceof ConcurrentInMemoSharkKB) {
+            knowledge = ((ConcurrentInMemoSharkKB) knowledge).snapshot();
+        }
+
         JSONObject object = new JSONObject();
         SharkVocabulary vocabulary = knowledge.getVocabulary();
 
@@ -447,7 +452,7 @@ public class ASIPSerializer {
         try {
             object = new JSONObject(parsedStream);
         } catch (Exception e) {
-            L.d(CLASS + e);
+            L.debug(null, "{}{}", CLASS, e);
         }
 
         // uncomment to see json output of serialization
@@ -872,7 +877,7 @@ public class ASIPSerializer {
         // TODO useless???
         JSONObject jsonObject = new JSONObject(stSetString);
         String typeJSON = jsonObject.getString(STSet.TYPE);
-        L.d(CLASS + typeJSON);
+        L.debug(null, "{}{}", CLASS, typeJSON);
         STSet set = stSet;
         switch (typeJSON) {
             case STSet.PEERSTSET:
@@ -1072,7 +1077,7 @@ public class ASIPSerializer {
             if (parsed.has(ASIPSpace.TIMES)) timesString = parsed.get(ASIPSpace.TIMES).toString();
             if (parsed.has(ASIPSpace.DIRECTION)) direction = parsed.getInt(ASIPSpace.DIRECTION);
         } catch (JSONException e) {
-            L.d("" + e);
+            L.debug(null, "{}", e);
         }
 
 
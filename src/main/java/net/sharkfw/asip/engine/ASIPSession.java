@@ -103,7 +103,7 @@ public class ASIPSession extends Thread {
                         handled = true;
                     } else {
                         // maybe remote peer wasn't fast enough - give it some time
-                        L.d("Waiting for remotepeer for max. : " + engine.getConnectionTimeOut(), this);
+                        L.debug(this, "Waiting for remotepeer for max. : {}", engine.getConnectionTimeOut());
                         long duration = engine.getConnectionTimeOut()/looper;
                         while(currentLoop < looper){
                             Thread.sleep(duration);
@@ -129,7 +129,7 @@ public class ASIPSession extends Thread {
                 Streamer.stream(inputStream, System.err, 5);
             }
         } catch (IOException e) {
-            L.l("Closing TCPConnection although there is more data on the stream: " + e.getMessage(), this);
+            L.log(this, "Closing TCPConnection although there is more data on the stream: {}", e.getMessage());
         }
 
         this.connection.close();
@@ -44,7 +44,7 @@ public class SimpleASIPStub extends AbstractSharkStub implements ASIPStub {
     @Override
     public void handleMessage(byte[] msg, MessageStub stub) {
         // TODO implement MessageStub
-        L.d("ASIPStub: message with length of " + msg.length + " bytes received: " + Arrays.toString(msg), this);
+        L.debug(this, "ASIPStub: message with length of {} bytes received: {}", msg.length, L.lazyBytes(msg));
         try {
             ASIPInMessage inMsg = new ASIPInMessage(this.se, msg, stub);
             inMsg.initSecurity(this.privateKey, /*this.publicKeyStorage,*/ this.sharkPkiStorage,
@@ -53,7 +53,7 @@ public class SimpleASIPStub extends AbstractSharkStub implements ASIPStub {
             inMsg.parse();
             this.callListener(inMsg);
         } catch (IOException ioe) {
-            L.e("IOException while reading ASIP message: " + ioe.getMessage(), this);
+            L.error(this, "IOException while reading ASIP message: {}", ioe.getMessage());
             ioe.printStackTrace();
         } catch (SharkSecurityException ioe) {
             // connection closed - bye
@@ -117,32 +117,15 @@ public class SimpleASIPStub extends AbstractSharkStub implements ASIPStub {
      * @return True if at least one listener was able to handle the message. False otherwise.
      */
     @Override
-    final synchronized public boolean callListener(ASIPInMessage msg) {
-        Iterator<ASIPPort> kpIter = this.getListener();
-        /* make a copy of listener - kp can be added or withdrawn during message handling
-         * which can cause strange side effects.
+    final public boolean callListener(ASIPInMessage msg) {
+        /* routing index works on a snapshot of registered ports - ports can be
+         * added or withdrawn during message handling without side effects 
+         * on this iteration. Ports which cannot handle that message are skipped.
+         * Not synchronized: messages of different sessions are dispatched in
+         * parallel, each port is still entered by one thread at a time.
+         * Returns when all ports - concurrent ones too - are done.
          */
-
-        ArrayList<ASIPPort> portList = new ArrayList<>();
-        while (kpIter.hasNext()) {
-            portList.add(kpIter.next());
-        }
-
-        // iterate copied list now
-        boolean handled = false;
-
-        kpIter = portList.iterator();
-        while (kpIter.hasNext()) {
-            ASIPPort l = kpIter.next();
-            handled = l.handleMessage(msg, msg.getConnection());
-        }
-
-        // TODO necessary?
-//        msg.finished();
-
-        //    L.d("Having " + this.listener.size() + " listeners.", this);
-
-        return handled;
+        return this.dispatcher.dispatch(msg, this.getRoutingIndex().candidates(msg));
     }
 
     public final void setNotHandledRequestKP(KnowledgePort kp) {
@@ -2,23 +2,30 @@ package net.sharkfw.kep;
 
 import net.sharkfw.asip.SharkStub;
 import java.security.PrivateKey;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
 import net.sharkfw.knowledgeBase.Interest;
 import net.sharkfw.peer.ASIPPort;
+import net.sharkfw.peer.ASIPPortDispatcher;
+import net.sharkfw.peer.ASIPPortRoutingIndex;
 import net.sharkfw.peer.KnowledgePort;
 import net.sharkfw.peer.SharkEngine;
 import net.sharkfw.protocols.StreamConnection;
 import net.sharkfw.security.pki.storage.SharkPkiStorage;
+import net.sharkfw.system.SnapshotList;
 
 /**
  *
  * @author thsc
  */
 public abstract class AbstractSharkStub implements SharkStub {
-    private final List<ASIPPort> ports = new ArrayList<>();
+    /* copy on write: ports are added or withdrawn rarely but iterated for
+     * each message. Iterators work on a snapshot.
+     */
+    private final SnapshotList<ASIPPort> ports = new SnapshotList<>();
+    protected final ASIPPortDispatcher dispatcher = new ASIPPortDispatcher();
+    // rebuilt on demand after ports changed
+    private volatile ASIPPortRoutingIndex routingIndex = null;
     protected KnowledgePort notHandledRequestsHandler;
     protected SharkEngine se;
     private final HashMap<String, StreamConnection> table = new HashMap<>();
@@ -28,7 +35,7 @@ public abstract class AbstractSharkStub implements SharkStub {
     }
     
     @Override
-    public final void addListener(ASIPPort newListener) {
+    public final synchronized void addListener(ASIPPort newListener) {
         // already in there?
         Iterator<ASIPPort> kpIter = ports.iterator();
         while(kpIter.hasNext()) {
@@ -39,13 +46,49 @@ public abstract class AbstractSharkStub implements SharkStub {
         
         // not found - add
         this.ports.add(newListener);
+        this.routingIndex = null;
     };
 
     @Override
-    public final void withdrawListener(ASIPPort listener) {
+    public final synchronized void withdrawListener(ASIPPort listener) {
         this.ports.remove(listener);
+        this.dispatcher.remove(listener);
+        this.routingIndex = null;
     };
     
+    @Override
+    public void stop() {
+        this.dispatcher.shutdown();
+    }
+    
+    /**
+     * Called by ports when their routing interest changed.
+     */
+    public final synchronized void routingChanged() {
+        this.routingIndex = null;
+    }
+    
+    /**
+     * @return index of currently registered ports
+     */
+    protected ASIPPortRoutingIndex getRoutingIndex() {
+        ASIPPortRoutingIndex index = this.routingIndex;
+        if(index == null) {
+            synchronized(this) {
+                if(this.routingIndex == null) {
+                    this.routingIndex = new ASIPPortRoutingIndex(this.ports.snapshot());
+                }
+                index = this.routingIndex;
+            }
+        }
+        
+        return index;
+    }
+    
+    /**
+     * @return ports as they are registered right now - adding or withdrawing 
+     * ports during iteration has no effect on that iterator.
+     */
     @Override
     public Iterator<ASIPPort> getListener() {
         return this.ports.iterator();
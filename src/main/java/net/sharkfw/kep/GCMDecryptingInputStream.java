@@ -0,0 +1,123 @@
+package net.sharkfw.kep;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Decrypts a message written by GCMEncryptingOutputStream. Chunks are only
+ * handed out after their authentication tag was checked. Reading ends with
+ * the final chunk - nothing behind the message is read from the underlying
+ * stream.
+ *
+ * @see GCMEncryptingOutputStream
+ * @author thsc
+ */
+public class GCMDecryptingInputStream extends InputStream {
+
+    private final DataInputStream is;
+    private final Key key;
+    private final long nonce;
+    private final Cipher cipher;
+
+    private byte[] chunk = new byte[0];
+    private int counter = 0;
+    private int chunkNumber = 0;
+    private boolean finished = false;
+
+    /**
+     * @param is
+     * @param key AES session key
+     * @param nonce nonce of the message
+     * @throws IOException if AES/GCM is not supported
+     */
+    public GCMDecryptingInputStream(InputStream is, Key key, long nonce) throws IOException {
+        this.is = new DataInputStream(is);
+        this.key = key;
+        this.nonce = nonce;
+        try {
+            this.cipher = Cipher.getInstance(GCMEncryptingOutputStream.TRANSFORMATION);
+        } catch (GeneralSecurityException ex) {
+            throw new IOException(ex.getMessage());
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if(!this.fill()) {
+            return -1;
+        }
+        return this.chunk[this.counter++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if(len == 0) {
+            return 0;
+        }
+        if(!this.fill()) {
+            return -1;
+        }
+        int n = Math.min(len, this.chunk.length - this.counter);
+        System.arraycopy(this.chunk, this.counter, b, off, n);
+        this.counter += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return this.chunk.length - this.counter;
+    }
+
+    /**
+     * @return false if message is read completely
+     */
+    private boolean fill() throws IOException {
+        while(this.counter == this.chunk.length) {
+            if(this.finished) {
+                return false;
+            }
+            this.readChunk();
+        }
+        return true;
+    }
+
+    private void readChunk() throws IOException {
+        byte flag;
+        byte[] encryptedChunk;
+        try {
+            flag = this.is.readByte();
+            int length = this.is.readInt();
+            if(length < GCMEncryptingOutputStream.TAG_BITS / 8
+                    || length > GCMEncryptingOutputStream.CHUNK_SIZE + GCMEncryptingOutputStream.TAG_BITS / 8) {
+                throw new IOException("invalid chunk length: " + length);
+            }
+            encryptedChunk = new byte[length];
+            this.is.readFully(encryptedChunk);
+        } catch (EOFException ex) {
+            throw new IOException("encrypted message cut off");
+        }
+
+        try {
+            this.cipher.init(Cipher.DECRYPT_MODE, this.key,
+                    new GCMParameterSpec(GCMEncryptingOutputStream.TAG_BITS,
+                            GCMEncryptingOutputStream.iv(this.nonce, this.chunkNumber)));
+            this.cipher.updateAAD(new byte[] {flag});
+            this.chunk = this.cipher.doFinal(encryptedChunk);
+        } catch (AEADBadTagException ex) {
+            throw new IOException("encrypted message was changed");
+        } catch (GeneralSecurityException ex) {
+            throw new IOException(ex.getMessage());
+        }
+
+        this.counter = 0;
+        this.chunkNumber++;
+        this.finished = flag == GCMEncryptingOutputStream.FINAL_CHUNK;
+    }
+}
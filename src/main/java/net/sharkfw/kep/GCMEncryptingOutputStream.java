@@ -0,0 +1,142 @@
+package net.sharkfw.kep;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Encrypts a message with AES/GCM in chunks. Each chunk is sent as
+ *
+ * <ul>
+ * <li>one byte: FINAL_CHUNK for the last chunk of the message, MORE_CHUNKS otherwise
+ * <li>four bytes: length of the encrypted chunk
+ * <li>encrypted chunk including its authentication tag
+ * </ul>
+ *
+ * The IV of a chunk is made of the message nonce (8 bytes) and the number of
+ * the chunk (4 bytes). The flag byte is authenticated as well. Receivers notice
+ * changed, reordered, dropped or cut off chunks. A session key can be used for
+ * several messages as long as each message gets its own nonce, see
+ * SessionKeyCache.
+ *
+ * @see GCMDecryptingInputStream
+ * @author thsc
+ */
+public class GCMEncryptingOutputStream extends OutputStream {
+
+    public static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    public static final int TAG_BITS = 128;
+    public static final int CHUNK_SIZE = 8192;
+
+    static final byte MORE_CHUNKS = 0;
+    static final byte FINAL_CHUNK = 1;
+
+    private final DataOutputStream os;
+    private final Key key;
+    private final long nonce;
+    private final Cipher cipher;
+
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+    private int counter = 0;
+    private int chunkNumber = 0;
+    private boolean finished = false;
+
+    /**
+     * @param os
+     * @param key AES session key
+     * @param nonce must not be used twice with this key
+     * @throws IOException if AES/GCM is not supported
+     */
+    public GCMEncryptingOutputStream(OutputStream os, Key key, long nonce) throws IOException {
+        this.os = new DataOutputStream(os);
+        this.key = key;
+        this.nonce = nonce;
+        try {
+            this.cipher = Cipher.getInstance(TRANSFORMATION);
+        } catch (GeneralSecurityException ex) {
+            throw new IOException(ex.getMessage());
+        }
+    }
+
+    /**
+     * @return IV of a chunk - nonce followed by chunk number
+     */
+    static byte[] iv(long nonce, int chunkNumber) {
+        byte[] iv = new byte[12];
+        for(int i = 0; i < 8; i++) {
+            iv[i] = (byte) (nonce >>> (56 - 8 * i));
+        }
+        for(int i = 0; i < 4; i++) {
+            iv[8 + i] = (byte) (chunkNumber >>> (24 - 8 * i));
+        }
+        return iv;
+    }
+
+    @Override
+    public void write(int i) throws IOException {
+        if(this.counter == CHUNK_SIZE) {
+            this.sendChunk(MORE_CHUNKS);
+        }
+        this.chunk[this.counter++] = (byte) i;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while(len > 0) {
+            if(this.counter == CHUNK_SIZE) {
+                this.sendChunk(MORE_CHUNKS);
+            }
+            int n = Math.min(len, CHUNK_SIZE - this.counter);
+            System.arraycopy(b, off, this.chunk, this.counter, n);
+            this.counter += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void sendChunk(byte flag) throws IOException {
+        if(this.finished) {
+            throw new IOException("message already finished");
+        }
+        if(this.chunkNumber == -1) {
+            // number would repeat an IV
+            throw new IOException("message too long");
+        }
+
+        byte[] encryptedChunk;
+        try {
+            this.cipher.init(Cipher.ENCRYPT_MODE, this.key,
+                    new GCMParameterSpec(TAG_BITS, iv(this.nonce, this.chunkNumber)));
+            this.cipher.updateAAD(new byte[] {flag});
+            encryptedChunk = this.cipher.doFinal(this.chunk, 0, this.counter);
+        } catch (GeneralSecurityException ex) {
+            throw new IOException(ex.getMessage());
+        }
+
+        this.os.writeByte(flag);
+        this.os.writeInt(encryptedChunk.length);
+        this.os.write(encryptedChunk);
+
+        this.chunkNumber++;
+        this.counter = 0;
+        this.finished = flag == FINAL_CHUNK;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        this.os.flush();
+    }
+
+    /**
+     * Sends the final chunk - nothing can be written afterwards.
+     * @throws IOException
+     */
+    void doFinal() throws IOException {
+        this.sendChunk(FINAL_CHUNK);
+        this.flush();
+    }
+}
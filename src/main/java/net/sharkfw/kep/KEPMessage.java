@@ -48,9 +48,39 @@ public abstract class KEPMessage {
     public static final int MAXMSGLEN = 5000;
     //public static final int VERSIONLEN = 20;
     /**
-     * The current KEP version.
+     * The current KEP version. Encrypted messages carry a nonce after the
+     * session key and are encrypted with AES/GCM.
      */
-    public static final String THISVERSION = "KEP 1.0 ";
+    public static final String THISVERSION = "KEP 1.1 ";
+    /**
+     * Former KEP version - encrypted messages are encrypted with AES/ECB
+     * and a fresh session key.
+     */
+    public static final String VERSION_1_0 = "KEP 1.0 ";
+    /**
+     * Message in VERSION_1_0 format from a peer which speaks THISVERSION as
+     * well. Sent until the recipient was seen speaking THISVERSION. KEP 1.0
+     * peers ignore the version and read it as VERSION_1_0 message.
+     */
+    public static final String VERSION_1_0_UPGRADE = "KEP 1.0 1.1 ";
+
+    /**
+     * @param version version string of a received message
+     * @return true if message is in VERSION_1_0 format
+     */
+    public static boolean isVersion1_0(String version) {
+        return KEPMessage.VERSION_1_0.equals(version)
+                || KEPMessage.VERSION_1_0_UPGRADE.equals(version);
+    }
+
+    /**
+     * @param version version string of a received message
+     * @return true if sender speaks THISVERSION
+     */
+    public static boolean speaksThisVersion(String version) {
+        return KEPMessage.THISVERSION.equals(version)
+                || KEPMessage.VERSION_1_0_UPGRADE.equals(version);
+    }
     /**
      * RDF based format
      */
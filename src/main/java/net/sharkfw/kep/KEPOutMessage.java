@@ -47,6 +47,7 @@ public class KEPOutMessage extends KEPMessage implements KEPEngine {
     private PrivateKey privateKey;
     private SecretKey sessionKey = null;
     private String sendingPeerSIString = null;
+    private String[] recipientSIs = null;
     private boolean sign;
 
     /**
@@ -65,7 +66,7 @@ public class KEPOutMessage extends KEPMessage implements KEPEngine {
      * Message will be send over a already created output stream
      */
     public KEPOutMessage(SharkEngine se, StreamConnection con, KnowledgeSerializer ks) {
-      L.d("Created KEPResponse with stream connection to: " + con.getReplyAddressString(), this);
+      L.debug(this, "Created KEPResponse with stream connection to: {}", con.getReplyAddressString());
         this.se = se;
         this.con = con;
 //        L.d("Trying to get output stream", this);
@@ -114,12 +115,14 @@ public class KEPOutMessage extends KEPMessage implements KEPEngine {
         
         // everything is done - signature was last thing to encrypt.
         // force padding or whatever in encryption stream if any
-        if(this.encryptingStream != null) {
-            try {
+        try {
+            if(this.encryptingStream != null) {
                 this.encryptingStream.doFinal();
-            } catch (IOException ex) {
-                L.d(ex.getMessage(), this);
+            } else if(this.legacyEncryptingStream != null) {
+                this.legacyEncryptingStream.doFinal();
             }
+        } catch (IOException ex) {
+            L.d(ex.getMessage(), this);
         }
         
         // Do I work on a message stub ?
@@ -153,12 +156,18 @@ public class KEPOutMessage extends KEPMessage implements KEPEngine {
       // write version
 //      L.d("Writing Header", this);
         
+        /* KEP 1.0 peers can't read nonces or AES/GCM. Use the former
+         * format until recipient was seen speaking this version.
+         */
+        boolean upgraded = this.getSessionKeyCache().isUpgraded(this.recipientSIs);
+        String version = upgraded ? KEPMessage.THISVERSION : KEPMessage.VERSION_1_0_UPGRADE;
+
         if(this.versionByte == null) {
-            this.versionByte = KEPMessage.THISVERSION.getBytes("UTF-8");
+            this.versionByte = version.getBytes("UTF-8");
         }
 
-        this.os.write(KEPMessage.THISVERSION);
-        L.d("Wrote version: " + KEPMessage.THISVERSION, this);
+        this.os.write(version);
+        L.debug(this, "Wrote version: {}", version);
 
 /*        
         String replyAddress = null;
@@ -171,7 +180,7 @@ public class KEPOutMessage extends KEPMessage implements KEPEngine {
 
         if(replyAddress != null) {
             this.os.write(replyAddress);
-            L.d("Wrote replyaddress: " + replyAddress, this);
+            L.debug(this, "Wrote replyaddress: {}", replyAddress);
         } else {
             this.os.write("0");
             L.d("Wrote replyaddress: 0", this);
@@ -191,7 +200,7 @@ public class KEPOutMessage extends KEPMessage implements KEPEngine {
              * si is required to allow receiving peer finding public key - 
              * either to verify signature or to unwrap session key
              */
-            L.d("write peer SI String: " + this.sendingPeerSIString, this);
+            L.debug(this, "write peer SI String: {}", this.sendingPeerSIString);
             this.os.write(this.sendingPeerSIString);
         } else {
             L.d("no peer SI String written", this);
@@ -207,44 +216,51 @@ public class KEPOutMessage extends KEPMessage implements KEPEngine {
         }
 
         // do we want to encrypt ?
-        if(this.encrypt()) {
+        byte[] sessionKeyBytes = null;
+        long nonce = 0;
+        if(this.encrypt() && upgraded) {
+            L.d("get session key", this);
+            /* encryption needed - reuse or create session key. Each message
+             * gets its own nonce, see SessionKeyCache.
+             */
+            try {
+                SessionKeyCache.SessionKey cachedKey = this.getSessionKeyCache().sessionKey(
+                        this.sendingPeerSIString, this.publicKeyRecipient);
+
+                this.sessionKey = cachedKey.getKey();
+                sessionKeyBytes = cachedKey.getWrappedKey();
+                nonce = cachedKey.getNonce();
+            } catch (GeneralSecurityException ex) {
+                L.e(ex.getMessage(), this);
+                this.sessionKey = null;
+            }
+        } else if(this.encrypt()) {
             L.d("create session key", this);
-            // encryption needed - setup session key
+            // encryption needed - fresh session key for KEP 1.0
             try {
-                // create AES session key
-                KeyGenerator gen = KeyGenerator.getInstance("AES");
-                
-                this.sessionKey = gen.generateKey();
-            } catch (NoSuchAlgorithmException ex) {
-                L.d(ex.getMessage(), this);
+                this.sessionKey = KeyGenerator.getInstance("AES").generateKey();
+
+                Cipher cipher = Cipher.getInstance("RSA");
+                cipher.init(Cipher.WRAP_MODE, this.publicKeyRecipient);
+                sessionKeyBytes = cipher.wrap(this.sessionKey);
+            } catch (GeneralSecurityException ex) {
+                L.e(ex.getMessage(), this);
+                this.sessionKey = null;
             }
         } else { // make sure not to encrypt
             this.sessionKey = null;
         }
         
-        String encryptedSessionKey = null;
         // do we encrypt that stuff?
         if(this.sessionKey != null) {
-            try {
-                // encrypt that thing
-                L.d("wrap session key", this);
-                Cipher cipher = Cipher.getInstance("RSA");
-                cipher.init(Cipher.WRAP_MODE, this.publicKeyRecipient);
-                byte[] sessionKeyBytes = cipher.wrap(this.sessionKey);
-                
-//                System.out.println("\n session key bytes len (sent): " + sessionKeyBytes.length);
-                L.printByte(sessionKeyBytes, "wrapped session key bytes (sent)");
-                
-                this.os.write(String.valueOf(sessionKeyBytes.length));
-                this.os.getOutputStream().write(sessionKeyBytes);
-                
-            } catch (GeneralSecurityException ex) {
-                
-                L.e(ex.getMessage(), this);
-                this.os.write("0");
-            } catch(IOException ioe) {
-                // I don't know
-            } 
+            // session key is wrapped with recipients public key
+            L.printByte(sessionKeyBytes, "wrapped session key bytes (sent)");
+
+            this.os.write(String.valueOf(sessionKeyBytes.length));
+            this.os.getOutputStream().write(sessionKeyBytes);
+            if(upgraded) {
+                this.os.write(Long.toString(nonce));
+            }
         } else {
             // make sure there won't be a session key
             this.os.write("0");
@@ -253,10 +269,15 @@ public class KEPOutMessage extends KEPMessage implements KEPEngine {
         // we are done here - set up encrypting protocol stack
         
         // add encryption stream if necessary
-        if (this.encrypt()) {
+        if (this.sessionKey != null) {
             L.d("put encryption stream on top of output stream", this);
-            this.encryptingStream = new EncryptingOutputStream(this.os.getOutputStream(), this.sessionKey);
-            this.os.set(this.encryptingStream);
+            if(upgraded) {
+                this.encryptingStream = new GCMEncryptingOutputStream(this.os.getOutputStream(), this.sessionKey, nonce);
+                this.os.set(this.encryptingStream);
+            } else {
+                this.legacyEncryptingStream = new EncryptingOutputStream(this.os.getOutputStream(), this.sessionKey);
+                this.os.set(this.legacyEncryptingStream);
+            }
         }
 
         // add signing stream if necessary
@@ -271,11 +292,16 @@ public class KEPOutMessage extends KEPMessage implements KEPEngine {
     
     private SigningOutputStream sos = null;
     private Cipher cipher;
-    private EncryptingOutputStream encryptingStream;
+    private GCMEncryptingOutputStream encryptingStream;
+    private EncryptingOutputStream legacyEncryptingStream;
     
     private DigestOutputStream digestStream = null;
     private OutputStream underDigestStream = null;
         
+    private SessionKeyCache getSessionKeyCache() {
+        return this.se != null ? this.se.getSessionKeyCache() : SessionKeyCache.getDefault();
+    }
+
     private boolean encrypt() {
         return (this.publicKeyRecipient != null && this.sendingPeerSIString != null);
     }
@@ -359,7 +385,7 @@ public class KEPOutMessage extends KEPMessage implements KEPEngine {
       // notify we are done with that message
         this.sent();
         L.d(">>>>>>>>>>> insert sent", this);
-        L.d(L.knowledge2String(k.contextPoints()), this);
+        L.debug(this, "{}", L.lazyKnowledge(k));
 
         // Remember that this knowledge has been sent
         this.se.setSentInformation(k, address); 
@@ -426,7 +452,21 @@ public class KEPOutMessage extends KEPMessage implements KEPEngine {
     public void initSecurity(PrivateKey privateKey, PublicKey publicKeyRemotePeer,
             String[] sendingPeerSIString, boolean sign) {
 
+        this.initSecurity(privateKey, publicKeyRemotePeer, sendingPeerSIString, null, sign);
+    }
+
+    /**
+     * @param privateKey must be set if signing or encryption is wanted
+     * @param publicKeyRemotePeer if set - message will be encrypted.
+     * @param sendingPeerSIString must be set if signing or encryption is wanted
+     * @param recipientSIs recipient of the message. Cached session keys are
+     * only used if it is known to speak the current KEP version.
+     */
+    public void initSecurity(PrivateKey privateKey, PublicKey publicKeyRemotePeer,
+            String[] sendingPeerSIString, String[] recipientSIs, boolean sign) {
+
         this.publicKeyRecipient = publicKeyRemotePeer;
+        this.recipientSIs = recipientSIs;
         this.privateKey = privateKey;
         if(sendingPeerSIString != null) {
             this.sendingPeerSIString = Utils.serialize(sendingPeerSIString);
@@ -54,7 +54,7 @@ public class KEPSession extends Thread {
     	do {
     		L.d("Next run starts.", this);
     		try { 
-    			L.d("Creating KEPRequest from connection replyaddress: " + this.con.getReplyAddressString(), this);
+    			L.debug(this, "Creating KEPRequest from connection replyaddress: {}", this.con.getReplyAddressString());
     			KEPInMessage inMsg = new KEPInMessage(this.se, this.con);
     			inMsg.initSecurity(this.privateKey, /*this.publicKeyStorage,*/ this.sharkPkiStorage,
                                 this.encryptionLevel, this.signatureLevel,
@@ -64,7 +64,7 @@ public class KEPSession extends Thread {
     			handled = this.kepStub.callListener(inMsg);
     			handled = handled && inMsg.keepOpen();
     		} catch (SharkNotSupportedException e) {
-    			L.e("unsupported KEP format: " + e.getMessage(), this);
+    			L.error(this, "unsupported KEP format: {}", e.getMessage());
 //              e.printStackTrace();
     		} catch (IOException ioe) {
     			// connection closed - bye
@@ -84,7 +84,7 @@ public class KEPSession extends Thread {
             	L.d("connection refused - peer already gone", this);
             }
 
-    		L.d("Handled = " + handled, this);
+    		L.debug(this, "Handled = {}", handled);
     		if(!handled) {
     			L.d("Checking for more KEP-Commands", this);
                 // no listener handled that request
@@ -95,7 +95,7 @@ public class KEPSession extends Thread {
                     	handled = true;
                     } else {
                         // maybe remote peer wasn't fast enough - give it some time
-                        L.d("Waiting for remotepeer for: " + se.getConnectionTimeOut(), this);
+                        L.debug(this, "Waiting for remotepeer for: {}", se.getConnectionTimeOut());
                         Thread.sleep(se.getConnectionTimeOut());
                         if(this.con.getSharkInputStream().available() > 0) {
                         	handled = true;
@@ -115,7 +115,7 @@ public class KEPSession extends Thread {
                 Streamer.stream(inputStream, System.err, 5);
             }
         } catch (IOException e) {
-            L.l("Closing TCPConnection although there is more data on the stream: " + e.getMessage(), this);
+            L.log(this, "Closing TCPConnection although there is more data on the stream: {}", e.getMessage());
         }
 
         //this.kepStub.removeStreamConnection(con);
@@ -0,0 +1,303 @@
+package net.sharkfw.kep;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import net.sharkfw.knowledgeBase.SITable;
+import net.sharkfw.system.Util;
+
+/**
+ * Keeps session keys of encrypted messages. Wrapping and unwrapping a
+ * session key are RSA operations - unwrapping with the private key is
+ * expensive. Peers which talk often reuse a session key instead:
+ *
+ * <ul>
+ * <li>Sender side: One session key per pair of sending peer and recipient
+ * key. It is wrapped once and used for further messages - over any
+ * connection - until it is too old or was used too often. A new key is
+ * created then.
+ * <li>Receiver side: Unwrapped session keys are kept by the fingerprint
+ * of the wrapped key. A message carrying a known wrapped key is decrypted
+ * without any RSA operation.
+ * </ul>
+ *
+ * Messages still carry the wrapped session key. A receiver which lost
+ * its cache - or doesn't have one - just unwraps it again.
+ *
+ * A reused key must not encrypt two messages equally. Each message gets
+ * a nonce - the number of messages encrypted with that key before - and
+ * is encrypted with AES/GCM, see GCMEncryptingOutputStream. Keys are never
+ * persisted, a nonce can't repeat with the same key.
+ *
+ * Peers speaking KEP 1.0 don't know nonces or AES/GCM. Cached keys are only
+ * used for peers which were seen speaking the current KEP version, see
+ * setUpgraded(). Other peers get a fresh session key per message in the
+ * KEP 1.0 format.
+ *
+ * @author thsc
+ */
+public class SessionKeyCache {
+
+    public static final long DEFAULT_MAX_AGE = 30 * 60 * 1000;
+    public static final int DEFAULT_MAX_USES = 10000;
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+    private static final String SESSION_KEY_ALGORITHM = "AES";
+    private static final String WRAP_ALGORITHM = "RSA";
+
+    /**
+     * Session key of one message: key, its wrapped form and the nonce of
+     * the message.
+     */
+    public static final class SessionKey {
+        private final SecretKey key;
+        private final byte[] wrappedKey;
+        private final long nonce;
+
+        private SessionKey(SecretKey key, byte[] wrappedKey, long nonce) {
+            this.key = key;
+            this.wrappedKey = wrappedKey;
+            this.nonce = nonce;
+        }
+
+        public SecretKey getKey() {
+            return this.key;
+        }
+
+        /**
+         * @return session key wrapped with the recipients public key
+         */
+        public byte[] getWrappedKey() {
+            return this.wrappedKey.clone();
+        }
+
+        /**
+         * @return nonce of this message - unique for this key
+         */
+        public long getNonce() {
+            return this.nonce;
+        }
+    }
+
+    private static final class SentKey {
+        private final SecretKey key;
+        private final byte[] wrappedKey;
+        private final long created;
+        private long uses = 0;
+
+        private SentKey(SecretKey key, byte[] wrappedKey, long created) {
+            this.key = key;
+            this.wrappedKey = wrappedKey;
+            this.created = created;
+        }
+
+        /**
+         * @return session key for the next message
+         */
+        private SessionKey next() {
+            return new SessionKey(this.key, this.wrappedKey, this.uses++);
+        }
+    }
+
+    private static final class ReceivedKey {
+        private final PrivateKey privateKey;
+        private final SecretKey key;
+        private final long received;
+
+        private ReceivedKey(PrivateKey privateKey, SecretKey key, long received) {
+            this.privateKey = privateKey;
+            this.key = key;
+            this.received = received;
+        }
+    }
+
+    private static final SessionKeyCache DEFAULT = new SessionKeyCache();
+
+    /**
+     * @return cache shared by all messages which don't have an engine
+     */
+    public static SessionKeyCache getDefault() {
+        return SessionKeyCache.DEFAULT;
+    }
+
+    // sending peer si + recipient key fingerprint -> session key
+    private final LinkedHashMap<String, SentKey> sent;
+    // wrapped key fingerprint -> session key
+    private final LinkedHashMap<String, ReceivedKey> received;
+    // normalized si of peers speaking the current KEP version
+    private final LinkedHashMap<String, Boolean> upgraded;
+
+    private long maxAge = DEFAULT_MAX_AGE;
+    private int maxUses = DEFAULT_MAX_USES;
+
+    public SessionKeyCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public SessionKeyCache(final int maxEntries) {
+        this.sent = new LinkedHashMap<String, SentKey>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SentKey> eldest) {
+                return this.size() > maxEntries;
+            }
+        };
+
+        this.received = new LinkedHashMap<String, ReceivedKey>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ReceivedKey> eldest) {
+                return this.size() > maxEntries;
+            }
+        };
+
+        this.upgraded = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return this.size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Remembers a peer which sent a message in the current KEP version.
+     * Messages to that peer are encrypted with cached session keys from
+     * now on.
+     *
+     * @param peerSIs
+     */
+    public synchronized void setUpgraded(String[] peerSIs) {
+        if(peerSIs == null) return;
+
+        for(String si : peerSIs) {
+            if(si != null) {
+                this.upgraded.put(SITable.normalize(si), Boolean.TRUE);
+            }
+        }
+    }
+
+    /**
+     * @param peerSIs
+     * @return true if that peer was seen speaking the current KEP version.
+     * False if it wasn't or peerSIs is null.
+     */
+    public synchronized boolean isUpgraded(String[] peerSIs) {
+        if(peerSIs == null) return false;
+
+        for(String si : peerSIs) {
+            if(si != null && this.upgraded.containsKey(SITable.normalize(si))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Session keys are replaced after that time. Receivers keep unwrapped
+     * keys that long after they got them first.
+     * @param millis
+     */
+    public synchronized void setMaxAge(long millis) {
+        this.maxAge = millis;
+    }
+
+    /**
+     * Session keys are replaced after encrypting that number of messages.
+     * @param uses
+     */
+    public synchronized void setMaxUses(int uses) {
+        this.maxUses = uses;
+    }
+
+    public SessionKey sessionKey(String sendingPeerSI, PublicKey recipientKey)
+            throws GeneralSecurityException {
+
+        return this.sessionKey(sendingPeerSI, recipientKey, System.currentTimeMillis());
+    }
+
+    /**
+     * @param sendingPeerSI
+     * @param recipientKey
+     * @param now
+     * @return session key and nonce for the next message from sending peer
+     * to the owner of recipient key
+     * @throws GeneralSecurityException
+     */
+    public SessionKey sessionKey(String sendingPeerSI, PublicKey recipientKey, long now)
+            throws GeneralSecurityException {
+
+        String id = sendingPeerSI + "|" + SessionKeyCache.fingerprint(recipientKey.getEncoded());
+
+        synchronized(this) {
+            SentKey sentKey = this.sent.get(id);
+            if(sentKey != null && now - sentKey.created <= this.maxAge
+                    && sentKey.uses < this.maxUses) {
+                return sentKey.next();
+            }
+        }
+
+        // rekey - outside the lock, other peers don't have to wait
+        SecretKey key = KeyGenerator.getInstance(SESSION_KEY_ALGORITHM).generateKey();
+        Cipher cipher = Cipher.getInstance(WRAP_ALGORITHM);
+        cipher.init(Cipher.WRAP_MODE, recipientKey);
+        SentKey sentKey = new SentKey(key, cipher.wrap(key), now);
+
+        synchronized(this) {
+            this.sent.put(id, sentKey);
+            return sentKey.next();
+        }
+    }
+
+    public SecretKey unwrap(PrivateKey privateKey, byte[] wrappedKey)
+            throws GeneralSecurityException {
+
+        return this.unwrap(privateKey, wrappedKey, System.currentTimeMillis());
+    }
+
+    /**
+     * @param privateKey
+     * @param wrappedKey
+     * @param now
+     * @return session key - unwrapped with private key if not already known
+     * @throws GeneralSecurityException
+     */
+    public SecretKey unwrap(PrivateKey privateKey, byte[] wrappedKey, long now)
+            throws GeneralSecurityException {
+
+        String id = SessionKeyCache.fingerprint(wrappedKey);
+
+        synchronized(this) {
+            ReceivedKey receivedKey = this.received.get(id);
+            if(receivedKey != null && now - receivedKey.received <= this.maxAge
+                    && receivedKey.privateKey.equals(privateKey)) {
+                return receivedKey.key;
+            }
+        }
+
+        Cipher cipher = Cipher.getInstance(WRAP_ALGORITHM);
+        cipher.init(Cipher.UNWRAP_MODE, privateKey);
+        SecretKey key = (SecretKey) cipher.unwrap(wrappedKey, SESSION_KEY_ALGORITHM, Cipher.SECRET_KEY);
+
+        synchronized(this) {
+            this.received.put(id, new ReceivedKey(privateKey, key, now));
+        }
+
+        return key;
+    }
+
+    /**
+     * Drops all keys - e.g. after the private key changed.
+     */
+    public synchronized void clear() {
+        this.sent.clear();
+        this.received.clear();
+    }
+
+    private static String fingerprint(byte[] bytes) throws GeneralSecurityException {
+        return Util.toHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    }
+}
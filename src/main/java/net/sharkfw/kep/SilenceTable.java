@@ -0,0 +1,76 @@
+package net.sharkfw.kep;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import net.sharkfw.knowledgeBase.SpaceFingerprint;
+
+/**
+ * Remembers when spaces were sent last. A space must not be sent again
+ * within the silent period. Entries are kept in sending order - entries
+ * older than the silent period are dropped whenever the table is used,
+ * the oldest ones are dropped as well if the table exceeds its size.
+ *
+ * @author thsc
+ */
+public class SilenceTable {
+
+    public static final int DEFAULT_MAX_ENTRIES = 4096;
+
+    // fingerprint -> time sent, oldest first
+    private final LinkedHashMap<SpaceFingerprint, Long> sent = new LinkedHashMap<>();
+    private final int maxEntries;
+    private long silentPeriod;
+
+    public SilenceTable(long silentPeriod) {
+        this(silentPeriod, DEFAULT_MAX_ENTRIES);
+    }
+
+    public SilenceTable(long silentPeriod, int maxEntries) {
+        this.silentPeriod = silentPeriod;
+        this.maxEntries = maxEntries;
+    }
+
+    public synchronized void setSilentPeriod(long millis) {
+        this.silentPeriod = millis;
+    }
+
+    public void sent(SpaceFingerprint fingerprint) {
+        this.sent(fingerprint, System.currentTimeMillis());
+    }
+
+    public synchronized void sent(SpaceFingerprint fingerprint, long now) {
+        // move to end - keeps sending order
+        this.sent.remove(fingerprint);
+        this.sent.put(fingerprint, now);
+        this.evict(now);
+    }
+
+    /**
+     * @return true if that space wasn't sent within the silent period
+     */
+    public boolean allowed(SpaceFingerprint fingerprint) {
+        return this.allowed(fingerprint, System.currentTimeMillis());
+    }
+
+    public synchronized boolean allowed(SpaceFingerprint fingerprint, long now) {
+        this.evict(now);
+        return !this.sent.containsKey(fingerprint);
+    }
+
+    public synchronized int size() {
+        return this.sent.size();
+    }
+
+    private void evict(long now) {
+        Iterator<Map.Entry<SpaceFingerprint, Long>> entryIter = this.sent.entrySet().iterator();
+        while(entryIter.hasNext()) {
+            Map.Entry<SpaceFingerprint, Long> entry = entryIter.next();
+            if(now - entry.getValue() <= this.silentPeriod
+                    && this.sent.size() <= this.maxEntries) {
+                break;
+            }
+            entryIter.remove();
+        }
+    }
+}
@@ -1,9 +1,7 @@
 package net.sharkfw.kep;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Enumeration;
-import java.util.Hashtable;
 import java.util.Iterator;
 
 import net.sharkfw.asip.ASIPInterest;
@@ -17,6 +15,7 @@ import net.sharkfw.knowledgeBase.SharkVocabulary;
 import net.sharkfw.knowledgeBase.Knowledge;
 import net.sharkfw.knowledgeBase.SharkCS;
 import net.sharkfw.knowledgeBase.SharkKBException;
+import net.sharkfw.knowledgeBase.SpaceFingerprint;
 import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
 import net.sharkfw.peer.ASIPPort;
 import net.sharkfw.peer.KEPInMessage;
@@ -41,15 +40,15 @@ import net.sharkfw.system.SharkSecurityException;
 
 public class SimpleKEPStub extends AbstractSharkStub implements KEPStub {
   /**
-   * The table that stores all messages' contextspaces in their serialized form plus the timestamp when they've been sent.
+   * Fingerprints of all messages' contextspaces plus the timestamp when they've been sent.
    */
-    private Hashtable<String, Long> messages = new Hashtable<String, Long>();
+    private SilenceTable messages = new SilenceTable(SharkEngine.DEFAULT_SILTENT_PERIOD);
 
 
   /**
-   * This table stores all knowledges' contextspaces in their serialized form plus the timestamp when they've been sent.
+   * Fingerprints of all knowledges' contextspaces plus the timestamp when they've been sent.
    */
-    private Hashtable<String, Long> knowledges = new Hashtable<String, Long>();
+    private SilenceTable knowledges = new SilenceTable(SharkEngine.DEFAULT_SILTENT_PERIOD);
   /**
    * Create a new <code>SimpleKEPStub</code> for the <code>SharkEngine</code> se.
    *
@@ -100,7 +99,7 @@ public class SimpleKEPStub extends AbstractSharkStub implements KEPStub {
     @Override
 	public final void handleMessage(byte[] msg, MessageStub stub) {
     // Use byte[] to avoid encoding issues. Encoding is job of the sending and receiving parties.
-		L.d("KEPStub: message received: " + msg, this);
+		L.debug(this, "KEPStub: message received: {}", msg);
 		try {
 			KEPInMessage inMsg = new KEPInMessage(this.se, msg, stub);
                         inMsg.initSecurity(this.privateKey, /*this.publicKeyStorage,*/ this.sharkPkiStorage,
@@ -109,9 +108,9 @@ public class SimpleKEPStub extends AbstractSharkStub implements KEPStub {
                         inMsg.parse();
 			this.callListener(inMsg);
 		} catch (SharkNotSupportedException e) {
-			L.e("unsupported KEP format: " + e.getMessage(), this);
+			L.error(this, "unsupported KEP format: {}", e.getMessage());
 		} catch (IOException ioe) {
-			L.e("IOException while reading KEP message: " + ioe.getMessage(), this);
+			L.error(this, "IOException while reading KEP message: {}", ioe.getMessage());
 			ioe.printStackTrace();
 		} catch (SharkSecurityException ioe) {
                     // connection closed - bye
@@ -131,21 +130,14 @@ public class SimpleKEPStub extends AbstractSharkStub implements KEPStub {
    * @return True if at least one listener was able to handle the message. False otherwise.
   */
   @Override
-    final synchronized public boolean callListener(KEPInMessage msg) {
-        Iterator<ASIPPort> kpIter = this.getListener();
-        /* make a copy of listener - kp can be added or withdrawn during message handling
-         * which can cause strange side effects.
+    final public boolean callListener(KEPInMessage msg) {
+        /* port registry is copy on write - ports can be added or withdrawn 
+         * during message handling without side effects on this iteration.
          */
+        Iterator<ASIPPort> kpIter = this.getListener();
         
-        ArrayList<ASIPPort> kpList = new ArrayList<>();
-        while(kpIter.hasNext()) {
-            kpList.add(kpIter.next());
-        }
-        
-        // iterate copied list now
         boolean handled = false;
         
-        kpIter = kpList.iterator();
         while (kpIter.hasNext()) {
           ASIPPort l = kpIter.next();
 //            TODO deactivated KEPStub
@@ -213,20 +205,9 @@ public class SimpleKEPStub extends AbstractSharkStub implements KEPStub {
     }
 
     try {
-      // Create a string representation to be used as a key
-      KnowledgeSerializer ks = KEPMessage.getKnowledgeSerializer(KEPMessage.XML);
-      String key = ks.serializeSharkCS(interest);
-      // Generate timestamp
-      Long timestamp = System.currentTimeMillis();
-
-      // Save key along with timestamp
-      this.messages.put(key, timestamp);
-
+      this.messages.sent(SpaceFingerprint.of(interest));
     } catch (SharkKBException ex) {
-      L.e("Exception while serializing context space:", this);
-      ex.printStackTrace();
-    } catch (SharkNotSupportedException ex) {
-      L.e("Exception while serializing context space:", this);
+      L.e("Exception while fingerprinting context space:", this);
       ex.printStackTrace();
     }
   }
@@ -243,28 +224,15 @@ public class SimpleKEPStub extends AbstractSharkStub implements KEPStub {
       return;
     }
 
-    try {
-      // Create a string representation to be used as a key
-      KnowledgeSerializer ks = KEPMessage.getKnowledgeSerializer(KEPMessage.XML);
-      
-      SharkVocabulary context = knowledge.getVocabulary();
-      if(context == null) {
-          return;
-      }
-      
-      SharkCS cs = context.asSharkCS();
-      String key = ks.serializeSharkCS(cs);
-      // Generate timestamp
-      Long timestamp = System.currentTimeMillis();
-
-      // Save key along with timestamp
-      this.knowledges.put(key, timestamp);
+    SharkVocabulary context = knowledge.getVocabulary();
+    if(context == null) {
+        return;
+    }
 
+    try {
+      this.knowledges.sent(SpaceFingerprint.of(context.asSharkCS()));
     } catch (SharkKBException ex) {
-      L.e("Exception while serializing context space:", this);
-      ex.printStackTrace();
-    } catch (SharkNotSupportedException ex) {
-      L.e("Exception while serializing context space:", this);
+      L.e("Exception while fingerprinting context space:", this);
       ex.printStackTrace();
     }
   }
@@ -277,39 +245,14 @@ public class SimpleKEPStub extends AbstractSharkStub implements KEPStub {
     }
 
     try {
-      // Generate a serialized representation to be used as a key in the table.
-      KnowledgeSerializer ks = KEPMessage.getKnowledgeSerializer(KEPMessage.XML);
-      String key = ks.serializeSharkCS(interest);
-
-      // Find out when the kepInterest has been sent last
-      Long timestamp = null;
-      timestamp = this.messages.get(key);
-
-      if(timestamp == null) {
-        // Interest is not inside the silence table. Allowed.
+      if(this.messages.allowed(SpaceFingerprint.of(interest))) {
         return true;
       }
-
-      Long currentTime = System.currentTimeMillis();
-      Long delta = currentTime - timestamp;
-      // Check if it is still inside the silence period. Return true.
-      if(delta > this.silentPeriod) {
-        // It's not. Remove it from the table.
-        this.messages.remove(key);
-        L.d("Interest is allowed. Silence period is over.", this);
-        return true;
-      } else {
-        // It is INSIDE the silence period. Return false.
-        L.l("Interest is inside silence period. Interest won't be sent.", this);
-        return false;
-//        L.d("Silence feature was switched OFF, though", this);
-//        return true;
-      }
-
+      
+      L.l("Interest is inside silence period. Interest won't be sent.", this);
+      return false;
     } catch (SharkKBException ex) {
       L.e("Exceptionin KB while checking message for allowance in message accountine", this);
-    } catch (SharkNotSupportedException ex) {
-      L.e("Exception while checking message for allowance in message accounting", this);
     }
 
     // If we can't find out if the message is allowed for some reasons we send it.
@@ -322,46 +265,21 @@ public class SimpleKEPStub extends AbstractSharkStub implements KEPStub {
       return false;
     }
 
-    try {
-      // Generate a serialized representation to be used as a key in the table.
-      KnowledgeSerializer ks = KEPMessage.getKnowledgeSerializer(KEPMessage.XML);
-      
-      SharkVocabulary context = knowledge.getVocabulary();
-      if(context == null) {
-          return true; // TODO 
-      } 
-      
-      SharkCS cs = context.asSharkCS(); // using the context map
-      
-      String key = ks.serializeSharkCS(cs);
-
-      // Find out when the knowledge has been sent last
-      Long timestamp = null;
-      timestamp = this.knowledges.get(key);
-
-      if(timestamp == null) {
-        L.d("Knowledge is not inside the silence table. Allowed.", this);
-        return true;
-      }
+    SharkVocabulary context = knowledge.getVocabulary();
+    if(context == null) {
+        return true; // TODO 
+    } 
 
-      Long currentTime = System.currentTimeMillis();
-      Long delta = currentTime - timestamp;
-      // Check if it is still inside the silence period. Return true.
-      if(delta > this.silentPeriod) {
-        // It's not. Remove it from the table.
-        this.knowledges.remove(key);
-        L.d("Knowledge is allowed. Silence period is over.", this);
+    try {
+      // using the context map
+      if(this.knowledges.allowed(SpaceFingerprint.of(context.asSharkCS()))) {
         return true;
-      } else {
-        // It is INSIDE the silence period. Return false.
-        L.d("Knowledge is inside silence period. Won't be sent.", this);
-        return false;
       }
-
+      
+      L.d("Knowledge is inside silence period. Won't be sent.", this);
+      return false;
     } catch (SharkKBException ex) {
       L.e("Exceptionin KB while checking message for allowance in message accountine", this);
-    } catch (SharkNotSupportedException ex) {
-      L.e("Exception while checking message for allowance in message accounting", this);
     }
 
     // If we can't find out if the message is allowed for some reasons we send it.
@@ -456,6 +374,8 @@ public class SimpleKEPStub extends AbstractSharkStub implements KEPStub {
     public void setSilentPeriod(int milliseconds) {
         if(milliseconds > 0) {
             this.silentPeriod = milliseconds;
+            this.messages.setSilentPeriod(milliseconds);
+            this.knowledges.setSilentPeriod(milliseconds);
         }
     }
 
@@ -1015,31 +1015,31 @@ public class XMLSerializer implements KnowledgeSerializer {
         SharkCS background = context.asSharkCS();
         String serialBackground = this.serializeSharkCS(background);
 
-        L.d("send serialBackground: " + serialBackground, this);
+        L.debug(this, "send serialBackground: {}", serialBackground);
         os.write(serialBackground);
         int number = k.getNumberOfContextPoints();
         // pruefe ob cps vorhanden moeglich
 
-        L.d("send number: " + number, this);
+        L.debug(this, "send number: {}", number);
         os.write(Integer.toString(number));
 
         for (int i = 0; i < number; i++) {
             ContextPoint cp = k.getCP(i);
             ContextCoordinates co = cp.getContextCoordinates();
             String serialCoordinates = this.serializeSharkCS(co);
-            L.d("send serialCoordinates: " + serialCoordinates, this);
+            L.debug(this, "send serialCoordinates: {}", serialCoordinates);
 
             os.write(serialCoordinates);
 
             // serialize cp properties
             String cpProperties = this.serializeProperties(cp);
-            L.d("send cpProperties: " + cpProperties, this);
+            L.debug(this, "send cpProperties: {}", cpProperties);
             if(cpProperties != null) {
                 os.write(cpProperties);
             }
 
             int infonumber = cp.getNumberInformation();
-            L.d("send infonumber: " + infonumber, this);
+            L.debug(this, "send infonumber: {}", infonumber);
             os.write(Integer.toString(infonumber));
 
             Enumeration<Information> infoEnum = cp.enumInformation();
@@ -1047,7 +1047,7 @@ public class XMLSerializer implements KnowledgeSerializer {
                 while (infoEnum.hasMoreElements()) {
                     Information info = infoEnum.nextElement();
                     String properties = this.serializeProperties(info);
-                    L.d("send properties: " + properties, this);
+                    L.debug(this, "send properties: {}", properties);
                     if(properties != null) {
                         os.write(properties);
                     }
@@ -1062,9 +1062,9 @@ public class XMLSerializer implements KnowledgeSerializer {
                     werden kann. Dazu muss zuvor alles bisher zusammengebaute geschickt werden, damit der Content
                     an der richtigen stelle auftaucht (und nicht z.B. VOR dem eigentlichen Dokument
                         */
-                    L.d("send len: " + len, this);
+                    L.debug(this, "send len: {}", len);
                     os.write(Long.toString(len));
-                    L.d("send type: " + type, this);
+                    L.debug(this, "send type: {}", type);
                     os.write(type);
                     info.streamContent(os.getOutputStream());
                     }
@@ -1080,7 +1080,7 @@ public class XMLSerializer implements KnowledgeSerializer {
         
         InMemoSharkKB target = new InMemoSharkKB();
         String serialBg = is.readUTF8();
-        L.d("read background knowledge: " + serialBg, this);
+        L.debug(this, "read background knowledge: {}", serialBg);
         
         SharkCS background = this.deserializeSharkCS(serialBg);
         L.d("serialized background", this);
@@ -1093,13 +1093,13 @@ public class XMLSerializer implements KnowledgeSerializer {
         Knowledge k = target.createKnowledge();
 
         String numberCpString = is.readUTF8();
-        L.d("read numberCpString: " + numberCpString, this);
+        L.debug(this, "read numberCpString: {}", numberCpString);
         
         int numberCp = Integer.parseInt(numberCpString);
         if (numberCp > 0) {
             for (int cpCount = 0; cpCount < numberCp; cpCount++) {
                 String serialCo = is.readUTF8();
-                L.d("read serialCo: " + serialCo, this);
+                L.debug(this, "read serialCo: {}", serialCo);
                 ContextCoordinates co = this.deserializeContextCoordinates(target, serialCo);
                 
                 // Neuer ContextPoint aus geparsten Koordinaten
@@ -1108,28 +1108,28 @@ public class XMLSerializer implements KnowledgeSerializer {
 
                 // read properties
                 String serializedCPProperties = is.readUTF8();
-                L.d("read serializedCPProperties: " + serializedCPProperties, this);
+                L.debug(this, "read serializedCPProperties: {}", serializedCPProperties);
                 
                 this.deserializeProperties(cp, serializedCPProperties);
 
                 String numberInfoString = is.readUTF8();
-                L.d("read numberInfoString: " + numberInfoString, this);
+                L.debug(this, "read numberInfoString: {}", numberInfoString);
                 int numberInfo = Integer.parseInt(numberInfoString);
 
                 if (numberInfo > 0) {
                     for (int infoCount = 0; infoCount < numberInfo; infoCount++) {
                         String infoPropertyString = is.readUTF8();
-                        L.d("read infoPropertyString: " + infoPropertyString, this);
+                        L.debug(this, "read infoPropertyString: {}", infoPropertyString);
                         Information info = cp.addInformation();
 
                         this.deserializeProperties(info, infoPropertyString);
 
                         String lenString = is.readUTF8();
-                        L.d("read lenString: " + lenString, this);
+                        L.debug(this, "read lenString: {}", lenString);
                         long len = TimeLong.parse(lenString);
 
                         String type = is.readUTF8();
-                        L.d("read type: " + type, this);
+                        L.debug(this, "read type: {}", type);
                         info.setContentType(type);
 
                         OutputStream os = info.getOutputStream();
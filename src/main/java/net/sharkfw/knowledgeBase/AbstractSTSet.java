@@ -1,8 +1,9 @@
 package net.sharkfw.knowledgeBase;
 
-import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import net.sharkfw.knowledgeBase.inmemory.InMemoSTSet;
 
 /**
@@ -150,12 +151,13 @@ public abstract class AbstractSTSet implements STSet {
     /*****************************************************
      *               st set listener                     * 
      *****************************************************/
-    private ArrayList<STSetListener> listener;
+    private List<STSetListener> listener;
     
     // make a late binding - I guess most apps wont use ST listener.
-    private void checkInit() {
+    private synchronized void checkInit() {
         if(this.listener == null) {
-            this.listener = new ArrayList<>();
+            // copy on write: listeners can be notified while others register
+            this.listener = new CopyOnWriteArrayList<>();
         }
     }
     
@@ -20,7 +20,10 @@ public abstract class AbstractSemanticTag extends PropertyHolderDelegate
     public static final String HIDDEN = "AbstractST_hidden";
   
     private boolean hidden = false;
-    private boolean HIDDEN_DEFAULT = false;
+    private static final boolean HIDDEN_DEFAULT = false;
+    
+    // symbols of the si array they were created from
+    private transient volatile SymbolCache symbolCache = null;
   
     protected AbstractSemanticTag(SystemPropertyHolder persistentHolder) {
         super(persistentHolder);
@@ -71,7 +74,35 @@ public abstract class AbstractSemanticTag extends PropertyHolderDelegate
      */
     @Override
     public boolean isAny() {
-        return SharkCSAlgebra.isAny(this.getSI());
+        return SharkCSAlgebra.isAny(this);
+    }
+    
+    /**
+     * Symbols of the subject identifiers of this tag, see {@link SITable}.
+     * Symbols are cached and created again after the si array has been
+     * replaced.
+     * 
+     * @return symbols of all sis, never null
+     */
+    public SITable.Symbol[] getSISymbols() {
+        String[] sis = this.getSI();
+        SymbolCache cache = this.symbolCache;
+        if(cache == null || cache.sis != sis) {
+            cache = new SymbolCache(sis);
+            this.symbolCache = cache;
+        }
+        
+        return cache.symbols;
+    }
+    
+    private static class SymbolCache {
+        private final String[] sis;
+        private final SITable.Symbol[] symbols;
+        
+        SymbolCache(String[] sis) {
+            this.sis = sis;
+            this.symbols = SITable.symbols(sis);
+        }
     }
     
     public static final String TYPE_SYSTEM_PROPERTY_NAME = "ST_class";
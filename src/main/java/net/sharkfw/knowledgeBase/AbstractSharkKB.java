@@ -6,16 +6,20 @@ import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.StringTokenizer;
+import java.util.concurrent.CopyOnWriteArrayList;
 import net.sharkfw.asip.ASIPInformation;
 import net.sharkfw.asip.ASIPInterest;
 import net.sharkfw.asip.ASIPKnowledge;
 import net.sharkfw.kep.format.XMLSerializer;
 import net.sharkfw.knowledgeBase.inmemory.InMemoInformationCoordinates;
+import net.sharkfw.knowledgeBase.inmemory.InMemoSTSet;
 import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
 import net.sharkfw.knowledgeBase.inmemory.InMemoTaxonomy;
 import net.sharkfw.system.EnumerationChain;
 import net.sharkfw.system.Iterator2Enumeration;
+import net.sharkfw.system.Util;
 
 /**
  * This class implements as much methods from SharkKB as possible
@@ -606,7 +610,8 @@ public abstract class AbstractSharkKB extends PropertyHolderDelegate
         return result;
     }
 
-    private ArrayList<KnowledgeBaseListener> listeners = new ArrayList<KnowledgeBaseListener>();
+    private List<KnowledgeBaseListener> listeners = new CopyOnWriteArrayList<KnowledgeBaseListener>();
+    private volatile KBEventBus eventBus = null;
 
     @Override
     public void addListener(KnowledgeBaseListener kbl) {
@@ -618,6 +623,19 @@ public abstract class AbstractSharkKB extends PropertyHolderDelegate
         this.listeners.remove(kbl);
     }
 
+    /**
+     * Changes are published on that bus as well. Subscribers get them
+     * asynchronously and in batches - see KBEventBus.
+     * 
+     * @return event bus of this knowledge base
+     */
+    public synchronized KBEventBus getEventBus() {
+        if(this.eventBus == null) {
+            this.eventBus = new KBEventBus();
+        }
+        return this.eventBus;
+    }
+
     @Override
     public STSet getTopicSTSet() throws SharkKBException {
         return this.topics;
@@ -867,7 +885,38 @@ public abstract class AbstractSharkKB extends PropertyHolderDelegate
         this.notifyCpRemoved(cp);
     }
     
+    /**
+     * @return true if changes have to be published on event bus
+     */
+    private boolean publishes() {
+        KBEventBus bus = this.eventBus;
+        return bus != null && bus.hasSubscribers();
+    }
+
+    // events of a bulk operation of a thread - published at once
+    private final ThreadLocal<List<KBEvent>> batch = new ThreadLocal<>();
+    
+    /**
+     * Event is published on event bus. Changes during a bulk operation are
+     * collected instead - listeners are called after it, see callListeners().
+     * 
+     * @return true if event was collected
+     */
+    private boolean published(KBEvent event) {
+        List<KBEvent> events = this.batch.get();
+        if(events != null) {
+            events.add(event);
+            return true;
+        }
+        
+        if(this.publishes()) {
+            this.eventBus.publish(event);
+        }
+        return false;
+    }
+
     protected void notifyCpCreated(ContextPoint cp) {
+        if(this.published(new KBEvent(KBEvent.CP_ADDED, cp))) return;
         Iterator<KnowledgeBaseListener> listenerIterator = this.listeners.iterator();
         while(listenerIterator.hasNext()) {
             KnowledgeBaseListener listener = listenerIterator.next();
@@ -876,6 +925,7 @@ public abstract class AbstractSharkKB extends PropertyHolderDelegate
     }
 
     protected void notifyCpChanged(ContextPoint cp) {
+        if(this.published(new KBEvent(KBEvent.CP_CHANGED, cp))) return;
         Iterator<KnowledgeBaseListener> listenerIterator = this.listeners.iterator();
         while(listenerIterator.hasNext()) {
             KnowledgeBaseListener listener = listenerIterator.next();
@@ -884,6 +934,7 @@ public abstract class AbstractSharkKB extends PropertyHolderDelegate
     }
 
     protected void notifyCpRemoved(ContextPoint cp) {
+        if(this.published(new KBEvent(KBEvent.CP_REMOVED, cp))) return;
         Iterator<KnowledgeBaseListener> listenerIterator = this.listeners.iterator();
         while(listenerIterator.hasNext()) {
             KnowledgeBaseListener listener = listenerIterator.next();
@@ -892,6 +943,7 @@ public abstract class AbstractSharkKB extends PropertyHolderDelegate
     }
 
     protected void notifySemanticTagCreated(SemanticTag tag) {
+        if(this.published(new KBEvent(KBEvent.TOPIC_ADDED, tag))) return;
         Iterator<KnowledgeBaseListener> listenerIterator = this.listeners.iterator();
         while(listenerIterator.hasNext()) {
             KnowledgeBaseListener listener = listenerIterator.next();
@@ -900,6 +952,7 @@ public abstract class AbstractSharkKB extends PropertyHolderDelegate
     }
 
     protected void notifyPeerCreated(PeerSemanticTag tag) {
+        if(this.published(new KBEvent(KBEvent.PEER_ADDED, tag))) return;
         Iterator<KnowledgeBaseListener> listenerIterator = this.listeners.iterator();
         while(listenerIterator.hasNext()) {
             KnowledgeBaseListener listener = listenerIterator.next();
@@ -908,6 +961,7 @@ public abstract class AbstractSharkKB extends PropertyHolderDelegate
     }
 
     protected void notifyLocationCreated(SpatialSemanticTag tag) {
+        if(this.published(new KBEvent(KBEvent.LOCATION_ADDED, tag))) return;
         Iterator<KnowledgeBaseListener> listenerIterator = this.listeners.iterator();
         while(listenerIterator.hasNext()) {
             KnowledgeBaseListener listener = listenerIterator.next();
@@ -916,6 +970,7 @@ public abstract class AbstractSharkKB extends PropertyHolderDelegate
     }
 
     protected void notifyTimeCreated(TimeSemanticTag tag) {
+        if(this.published(new KBEvent(KBEvent.TIME_ADDED, tag))) return;
         Iterator<KnowledgeBaseListener> listenerIterator = this.listeners.iterator();
         while(listenerIterator.hasNext()) {
             KnowledgeBaseListener listener = listenerIterator.next();
@@ -924,6 +979,7 @@ public abstract class AbstractSharkKB extends PropertyHolderDelegate
     }
 
     protected void notifySemanticTagRemoved(SemanticTag tag) {
+        if(this.published(new KBEvent(KBEvent.TOPIC_REMOVED, tag))) return;
         Iterator<KnowledgeBaseListener> listenerIterator = this.listeners.iterator();
         while(listenerIterator.hasNext()) {
             KnowledgeBaseListener listener = listenerIterator.next();
@@ -932,6 +988,7 @@ public abstract class AbstractSharkKB extends PropertyHolderDelegate
     }
 
     protected void notifySemanticTagChanged(SemanticTag tag) {
+        if(this.published(new KBEvent(KBEvent.TAG_CHANGED, tag))) return;
         Iterator<KnowledgeBaseListener> listenerIterator = this.listeners.iterator();
         while(listenerIterator.hasNext()) {
             KnowledgeBaseListener listener = listenerIterator.next();
@@ -940,6 +997,7 @@ public abstract class AbstractSharkKB extends PropertyHolderDelegate
     }
 
     protected void notifyPeerRemoved(PeerSemanticTag tag) {
+        if(this.published(new KBEvent(KBEvent.PEER_REMOVED, tag))) return;
         Iterator<KnowledgeBaseListener> listenerIterator = this.listeners.iterator();
         while(listenerIterator.hasNext()) {
             KnowledgeBaseListener listener = listenerIterator.next();
@@ -948,6 +1006,7 @@ public abstract class AbstractSharkKB extends PropertyHolderDelegate
     }
 
     protected void notifyLocationRemoved(SpatialSemanticTag tag) {
+        if(this.published(new KBEvent(KBEvent.LOCATION_REMOVED, tag))) return;
         Iterator<KnowledgeBaseListener> listenerIterator = this.listeners.iterator();
         while(listenerIterator.hasNext()) {
             KnowledgeBaseListener listener = listenerIterator.next();
@@ -956,6 +1015,7 @@ public abstract class AbstractSharkKB extends PropertyHolderDelegate
     }
 
     protected void notifyTimeRemoved(TimeSemanticTag tag) {
+        if(this.published(new KBEvent(KBEvent.TIME_REMOVED, tag))) return;
         Iterator<KnowledgeBaseListener> listenerIterator = this.listeners.iterator();
         while(listenerIterator.hasNext()) {
             KnowledgeBaseListener listener = listenerIterator.next();
@@ -964,6 +1024,7 @@ public abstract class AbstractSharkKB extends PropertyHolderDelegate
     }
 
     protected void notifyPredicateCreated(SNSemanticTag subject, String predicate, SNSemanticTag object) {
+        if(this.published(new KBEvent(KBEvent.PREDICATE_CREATED, subject, predicate, object))) return;
         Iterator<KnowledgeBaseListener> listenerIterator = this.listeners.iterator();
         while(listenerIterator.hasNext()) {
             KnowledgeBaseListener listener = listenerIterator.next();
@@ -972,6 +1033,7 @@ public abstract class AbstractSharkKB extends PropertyHolderDelegate
     }
 
     protected void notifyPredicateRemoved(SNSemanticTag subject, String predicate, SNSemanticTag object) {
+        if(this.published(new KBEvent(KBEvent.PREDICATE_REMOVED, subject, predicate, object))) return;
         Iterator<KnowledgeBaseListener> listenerIterator = this.listeners.iterator();
         while(listenerIterator.hasNext()) {
             KnowledgeBaseListener listener = listenerIterator.next();
@@ -992,72 +1054,59 @@ public abstract class AbstractSharkKB extends PropertyHolderDelegate
      *                  Interest storage interface                    * 
      ******************************************************************/
     
+    /**
+     * Former storage: all interests serialized into one property.
+     * Read once and moved into the interest storage.
+     */
     public static final String INTEREST_PROPERTY_NAME = "SharkKB_InterestsString";
-    private ArrayList<SharkCS> interestsList = null;
     private static final String INTEREST_DELIMITER = "||";
-            
-    private void saveInterestsToProperties() throws SharkKBException {
-        this.restoreInterestsFromProperties();
-        
-        XMLSerializer s = new XMLSerializer();
-        
-        Iterator<SharkCS> interestIter = this.interests();
-        if(interestIter == null) {
-            // remove property at all
-            this.setProperty(INTEREST_PROPERTY_NAME, null);
-            return;
-        }
-        
-        StringBuilder interestString = new StringBuilder();
+    private IndexedInterestStorage interestStorage = null;
+    
+    /**
+     * Creates storage for interests. This implementation keeps each interest
+     * in a hidden property. Subclasses with other persistence should
+     * overwrite it.
+     * 
+     * @return 
+     */
+    protected IndexedInterestStorage createInterestStorage() {
+        return new IndexedInterestStorage(this);
+    }
+    
+    /**
+     * @return interest storage - created with first use
+     * @throws SharkKBException 
+     */
+    protected synchronized IndexedInterestStorage getInterestStorage() 
+            throws SharkKBException {
         
-        while(interestIter.hasNext()) {
-            SharkCS interest = interestIter.next();
-            String serializedInterest = s.serializeSharkCS(interest);
-            
-            interestString.append(serializedInterest);
-            interestString.append(INTEREST_DELIMITER);
+        if(this.interestStorage == null) {
+            this.interestStorage = this.createInterestStorage();
+            this.restoreInterestsFromProperties();
         }
         
-//        this.setProperty(INTEREST_PROPERTY_NAME, interestString.toString());
-        this.setProperty(INTEREST_PROPERTY_NAME, interestString.toString(), false);
+        return this.interestStorage;
     }
     
     private void restoreInterestsFromProperties() throws SharkKBException {
-        if(this.interestsList == null) {
-            this.interestsList = new ArrayList();
-            
-            String interestsString = this.getProperty(INTEREST_PROPERTY_NAME);
-            if(interestsString == null) {
-                return;
-            }
-            
-            StringTokenizer st = new StringTokenizer(interestsString, INTEREST_DELIMITER);
-            
-            XMLSerializer s = new XMLSerializer();
-            
-            while(st.hasMoreTokens()) {
-                String interestString = st.nextToken();
-                SharkCS interest = s.deserializeSharkCS(interestString);
-                this.interestsList.add(interest);
-            }
+        String interestsString = this.getProperty(INTEREST_PROPERTY_NAME);
+        if(interestsString == null) {
+            return;
         }
-    }
-    
-    /**
-     * 
-     * @param interests
-     * @return -1 of no such kepInterest in in the list
-     */
-    private int findInterestIndex(SharkCS interest) throws SharkKBException {
-        for(int index = 0; index < this.interestsList.size(); index++) {
-            SharkCS next = this.interestsList.get(index);
-            if(SharkCSAlgebra.identical(next, interest)) {
-                return index;
-            }
+
+        StringTokenizer st = new StringTokenizer(interestsString, INTEREST_DELIMITER);
+
+        XMLSerializer s = new XMLSerializer();
+
+        while(st.hasMoreTokens()) {
+            String interestString = st.nextToken();
+            SharkCS interest = s.deserializeSharkCS(interestString);
+            this.interestStorage.addInterest(interest);
         }
         
-        // no matching kepInterest found
-        return -1;
+        // moved - older versions transferred that property
+        this.setProperty(INTEREST_PROPERTY_NAME, null, false);
+        this.setProperty(INTEREST_PROPERTY_NAME, null, true);
     }
     
     /**
@@ -1067,12 +1116,8 @@ public abstract class AbstractSharkKB extends PropertyHolderDelegate
      */
     @Override
     public void addInterest(SharkCS interest) throws SharkKBException {
-        this.restoreInterestsFromProperties();
         // if not already in there - add
-        if(this.findInterestIndex(interest) == -1) {
-            this.interestsList.add(interest);
-            this.saveInterestsToProperties();
-        }
+        this.getInterestStorage().addInterest(interest);
     }
     
     /**
@@ -1082,14 +1127,7 @@ public abstract class AbstractSharkKB extends PropertyHolderDelegate
      */
     @Override
     public void removeInterest(SharkCS interest) throws SharkKBException {
-        this.restoreInterestsFromProperties();
-        
-        int index = this.findInterestIndex(interest);
-        
-        if(index != -1) {
-            this.interestsList.remove(index);
-            this.saveInterestsToProperties();
-        }
+        this.getInterestStorage().removeInterest(interest);
     }
     
     /**
@@ -1101,8 +1139,16 @@ public abstract class AbstractSharkKB extends PropertyHolderDelegate
      */
     @Override
     public Iterator<SharkCS> interests() throws SharkKBException {
-        this.restoreInterestsFromProperties();
-        return this.interestsList.iterator();
+        return this.getInterestStorage().interests();
+    }
+    
+    /**
+     * @param space
+     * @return stored interests which have a mutual interest with space
+     * @throws SharkKBException 
+     */
+    public Iterator<SharkCS> interests(SharkCS space) throws SharkKBException {
+        return this.getInterestStorage().interests(space);
     }
     
     /**
@@ -1210,5 +1256,291 @@ public abstract class AbstractSharkKB extends PropertyHolderDelegate
     public ASIPInformationSpace mergeInformation(Iterator<ASIPInformation> information, ASIPSpace space) throws SharkKBException {
         return this.knowledge.mergeInformation(information, space);
     }
+
+    @Override
+    public void mergeKnowledge(Knowledge k) throws SharkKBException {
+        if(k == null) return;
+
+        List<KBEvent> events = this.batch.get();
+        boolean outer = events == null;
+        if(outer) {
+            events = new ArrayList<>();
+            this.batch.set(events);
+        }
+
+        try {
+            SharkVocabulary vocabulary = k.getVocabulary();
+            if(vocabulary != null) {
+                this.mergeVocabulary(vocabulary, events);
+            }
+
+            Enumeration<ContextPoint> cpEnum = k.contextPoints();
+            while(cpEnum != null && cpEnum.hasMoreElements()) {
+                ContextPoint cp = cpEnum.nextElement();
+                ContextPoint localCP = this.createContextPoint(
+                        this.localCoordinates(cp.getContextCoordinates()));
+
+                Enumeration<Information> infoEnum = cp.enumInformation();
+                while(infoEnum != null && infoEnum.hasMoreElements()) {
+                    localCP.addInformation(infoEnum.nextElement());
+                }
+
+                Util.copyPropertiesFromPropertyHolderToPropertyHolder(cp, localCP);
+            }
+        }
+        finally {
+            if(outer) {
+                this.batch.remove();
+                if(!events.isEmpty()) {
+                    if(this.publishes()) {
+                        this.eventBus.publish(events);
+                    }
+                    this.callListeners(events);
+                }
+            }
+        }
+
+        this.persist();
+    }
+
+    /**
+     * Listeners are called after a bulk operation - once for each change
+     * collected meanwhile.
+     */
+    private void callListeners(List<KBEvent> events) {
+        if(this.listeners.isEmpty()) return;
+
+        for(KBEvent event : events) {
+            for(KnowledgeBaseListener listener : this.listeners) {
+                AbstractSharkKB.call(listener, event);
+            }
+        }
+    }
+
+    private static void call(KnowledgeBaseListener listener, KBEvent event) {
+        Object subject = event.getSubject();
+        switch(event.getType()) {
+            case KBEvent.CP_ADDED: listener.contextPointAdded((ContextPoint) subject); break;
+            case KBEvent.CP_CHANGED: listener.cpChanged((ContextPoint) subject); break;
+            case KBEvent.CP_REMOVED: listener.contextPointRemoved((ContextPoint) subject); break;
+            case KBEvent.TOPIC_ADDED: listener.topicAdded((SemanticTag) subject); break;
+            case KBEvent.PEER_ADDED: listener.peerAdded((PeerSemanticTag) subject); break;
+            case KBEvent.LOCATION_ADDED: listener.locationAdded((SpatialSemanticTag) subject); break;
+            case KBEvent.TIME_ADDED: listener.timespanAdded((TimeSemanticTag) subject); break;
+            case KBEvent.TOPIC_REMOVED: listener.topicRemoved((SemanticTag) subject); break;
+            case KBEvent.PEER_REMOVED: listener.peerRemoved((PeerSemanticTag) subject); break;
+            case KBEvent.LOCATION_REMOVED: listener.locationRemoved((SpatialSemanticTag) subject); break;
+            case KBEvent.TIME_REMOVED: listener.timespanRemoved((TimeSemanticTag) subject); break;
+            case KBEvent.TAG_CHANGED: listener.tagChanged((SemanticTag) subject); break;
+            case KBEvent.PREDICATE_CREATED:
+                listener.predicateCreated((SNSemanticTag) subject, event.getPredicate(),
+                        (SNSemanticTag) event.getObject());
+                break;
+            case KBEvent.PREDICATE_REMOVED:
+                listener.predicateRemoved((SNSemanticTag) subject, event.getPredicate(),
+                        (SNSemanticTag) event.getObject());
+                break;
+            // listeners aren't told about types
+        }
+    }
+
+    /**
+     * Merges all dimensions first - predicates are set afterwards when
+     * all tags exist.
+     */
+    private void mergeVocabulary(SharkVocabulary vocabulary, List<KBEvent> events)
+            throws SharkKBException {
+
+        List<SemanticTag> topicSources = AbstractSharkKB.tagList(vocabulary.getTopicSTSet());
+        List<SemanticTag> mergedTopics = this.mergeTags(this.getTopicSTSet(),
+                topicSources, KBEvent.TOPIC_ADDED, events);
+
+        List<SemanticTag> typeSources = null, mergedTypes = null;
+        if(this.types != null) {
+            typeSources = AbstractSharkKB.tagList(vocabulary.getTypeSTSet());
+            mergedTypes = this.mergeTags(this.types, typeSources,
+                    KBEvent.TYPE_ADDED, events);
+        }
+
+        List<SemanticTag> peerSources = AbstractSharkKB.tagList(vocabulary.getPeerSTSet());
+        List<SemanticTag> mergedPeers = this.mergeTags(this.getPeerSTSet(),
+                peerSources, KBEvent.PEER_ADDED, events);
+
+        this.mergeTags(this.getSpatialSTSet(),
+                AbstractSharkKB.tagList(vocabulary.getSpatialSTSet()),
+                KBEvent.LOCATION_ADDED, events);
+
+        this.mergeTags(this.getTimeSTSet(),
+                AbstractSharkKB.tagList(vocabulary.getTimeSTSet()),
+                KBEvent.TIME_ADDED, events);
+
+        // all tags exist - link them
+        this.linkPredicates(topicSources, mergedTopics, this.getTopicSTSet(), events);
+        if(typeSources != null) {
+            this.linkPredicates(typeSources, mergedTypes, this.types, events);
+        }
+        if(this.peers instanceof PeerSemanticNet) {
+            this.linkPredicates(peerSources, mergedPeers, (PeerSemanticNet) this.peers, events);
+        }
+    }
+
+    private static List<SemanticTag> tagList(STSet set) throws SharkKBException {
+        List<SemanticTag> tags = new ArrayList<>();
+        if(set == null) return tags;
+
+        Enumeration<SemanticTag> tagEnum = set.tags();
+        while(tagEnum != null && tagEnum.hasMoreElements()) {
+            tags.add(tagEnum.nextElement());
+        }
+        return tags;
+    }
+
+    /**
+     * @return tag in target for each source - same order
+     */
+    private List<SemanticTag> mergeTags(STSet target, List<SemanticTag> sources,
+            int eventType, List<KBEvent> events) throws SharkKBException {
+
+        if(target == null || sources.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        if(target instanceof InMemoSTSet) {
+            List<SemanticTag> created = new ArrayList<>();
+            List<SemanticTag> merged = ((InMemoSTSet) target).mergeSemanticTags(sources, created);
+            for(SemanticTag tag : created) {
+                events.add(new KBEvent(eventType, tag));
+            }
+            return merged;
+        }
+
+        // tag by tag - notifications are collected in batch anyway
+        List<SemanticTag> merged = new ArrayList<>(sources.size());
+        for(SemanticTag tag : sources) {
+            merged.add(target.merge(tag));
+        }
+        return merged;
+    }
+
+    private void linkPredicates(List<SemanticTag> sources, List<SemanticTag> merged,
+            STSet target, List<KBEvent> events) throws SharkKBException {
+
+        for(int i = 0; i < sources.size() && i < merged.size(); i++) {
+            SemanticTag source = sources.get(i);
+            SemanticTag subject = merged.get(i);
+            if(!(source instanceof SNSemanticTag) || !(subject instanceof SNSemanticTag)) {
+                continue;
+            }
+
+            SNSemanticTag snSource = (SNSemanticTag) source;
+            Enumeration<String> nameEnum = snSource.predicateNames();
+            while(nameEnum != null && nameEnum.hasMoreElements()) {
+                String name = nameEnum.nextElement();
+                Enumeration<SNSemanticTag> targetEnum = snSource.targetTags(name);
+                while(targetEnum != null && targetEnum.hasMoreElements()) {
+                    SemanticTag object = target.getSemanticTag(targetEnum.nextElement().getSI());
+                    if(object instanceof SNSemanticTag) {
+                        ((SNSemanticTag) subject).setPredicate(name, (SNSemanticTag) object);
+                        events.add(new KBEvent(KBEvent.PREDICATE_CREATED,
+                                subject, name, object));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return coordinates made of tags of this kb - unknown tags are merged
+     */
+    private ContextCoordinates localCoordinates(ContextCoordinates cc)
+            throws SharkKBException {
+
+        return this.createContextCoordinates(
+                this.localTag(this.getTopicSTSet(), cc.getTopic()),
+                (PeerSemanticTag) this.localTag(this.getPeerSTSet(), cc.getOriginator()),
+                (PeerSemanticTag) this.localTag(this.getPeerSTSet(), cc.getPeer()),
+                (PeerSemanticTag) this.localTag(this.getPeerSTSet(), cc.getRemotePeer()),
+                (TimeSemanticTag) this.localTag(this.getTimeSTSet(), cc.getTime()),
+                (SpatialSemanticTag) this.localTag(this.getSpatialSTSet(), cc.getLocation()),
+                cc.getDirection());
+    }
+
+    private SemanticTag localTag(STSet set, SemanticTag tag) throws SharkKBException {
+        if(tag == null || SharkCSAlgebra.isAny(tag)) return null;
+
+        SemanticTag local = set.getSemanticTag(tag.getSI());
+        return local != null ? local : set.merge(tag);
+    }
+
+    /**
+     * Default implementation: Vocabulary, context points and information
+     * spaces are copied into a new in memory knowledge base. Information is
+     * copied with content, name, content type and properties. The copy is
+     * returned as read only snapshot. Derived classes should offer a cheaper
+     * implementation.
+     * 
+     * @return read only copy of this knowledge base
+     * @throws SharkKBException 
+     */
+    @Override
+    public SharkKB snapshot() throws SharkKBException {
+        SemanticNet typesCopy = this.types != null ? 
+                InMemoSharkKB.createInMemoCopy(this.types) : 
+                InMemoSharkKB.createInMemoSemanticNet();
+        
+        InMemoSharkKB copy = new InMemoSharkKB(
+                InMemoSharkKB.createInMemoCopy(this.topics),
+                typesCopy,
+                InMemoSharkKB.createInMemoCopy(this.peers),
+                InMemoSharkKB.createInMemoCopy(this.locations),
+                InMemoSharkKB.createInMemoCopy(this.times));
+        
+        Enumeration<ContextPoint> cpEnum = this.knowledge != null ? 
+                this.knowledge.contextPoints() : null;
+        while(cpEnum != null && cpEnum.hasMoreElements()) {
+            ContextPoint cp = cpEnum.nextElement();
+            ContextPoint cpCopy = copy.createContextPoint(cp.getContextCoordinates());
+            
+            Enumeration<Information> infoEnum = cp.enumInformation();
+            while(infoEnum != null && infoEnum.hasMoreElements()) {
+                Information info = infoEnum.nextElement();
+                Information infoCopy = cpCopy.addInformation();
+                infoCopy.setContent(info.getContentAsByte());
+                AbstractSharkKB.copyInformationMetadata(info, infoCopy);
+            }
+            
+            Util.copyPropertiesFromPropertyHolderToPropertyHolder(cp, cpCopy);
+        }
+        
+        Iterator<ASIPInformationSpace> spaces = this.informationSpaces();
+        while(spaces != null && spaces.hasNext()) {
+            ASIPInformationSpace space = spaces.next();
+            Iterator<ASIPInformation> infos = space.informations();
+            while(infos != null && infos.hasNext()) {
+                ASIPInformation info = infos.next();
+                ASIPInformation infoCopy = copy.addInformation(
+                        info.getContentAsByte(), space.getASIPSpace());
+                AbstractSharkKB.copyInformationMetadata(info, infoCopy);
+            }
+        }
+        
+        if(this.owner != null) {
+            copy.setOwner(this.owner);
+        }
+        
+        // nobody else knows copy - its snapshot can't miss anything
+        return copy.snapshot();
+    }
     
+    private static void copyInformationMetadata(ASIPInformation source, 
+            ASIPInformation target) throws SharkKBException {
+        
+        if(source.getName() != null) {
+            target.setName(source.getName());
+        }
+        if(source.getContentType() != null) {
+            target.setContentType(source.getContentType());
+        }
+        Util.copyPropertiesFromPropertyHolderToPropertyHolder(source, target);
+    }
 }
@@ -0,0 +1,362 @@
+package net.sharkfw.knowledgeBase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.NoSuchElementException;
+import net.sharkfw.kep.format.XMLSerializer;
+
+/**
+ * Interest storage that keeps each interest in a record of its own. Adding
+ * or removing an interest writes or removes one record - other interests
+ * aren't serialized again.
+ *
+ * Record ids start with a hash of the sis of an interest. Interests are
+ * identical (see SharkCSAlgebra.identical) only if their hashes are equal.
+ * Duplicates are detected by deserializing records with the same hash.
+ * Other records are deserialized when they are iterated.
+ *
+ * Sis are only hashed if each tag has a single si. Tags with several sis
+ * are identical to tags with one of them - such interests get the
+ * wildcard hash and are compared with each other interest.
+ *
+ * This implementation stores records as hidden properties of a property
+ * holder. Subclasses can use other places by overwriting the record methods.
+ *
+ * @author thsc
+ */
+public class IndexedInterestStorage implements InterestStorage {
+
+    public static final String RECORD_PROPERTY_PREFIX = "SharkKB_Interest_";
+
+    private static final String WILDCARD = "x";
+    private static final char SEPARATOR = '_';
+
+    private final PropertyHolder holder;
+
+    // record id -> entry in insertion order
+    private LinkedHashMap<String, Entry> entries = null;
+    // hash -> entries
+    private final HashMap<String, List<Entry>> buckets = new HashMap<>();
+    private long nextNumber = 0;
+
+    private final XMLSerializer serializer = new XMLSerializer();
+
+    private static class Entry {
+        final String id;
+        final String hash;
+        SharkCS interest = null; // deserialized lazily
+
+        Entry(String id, String hash) {
+            this.id = id;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * @param holder records are kept as hidden properties of holder
+     */
+    public IndexedInterestStorage(PropertyHolder holder) {
+        this.holder = holder;
+    }
+
+    /**
+     * For subclasses that overwrite record methods.
+     */
+    protected IndexedInterestStorage() {
+        this(null);
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    //                             records                               //
+    ///////////////////////////////////////////////////////////////////////
+
+    /**
+     * @return ids of all stored records - in any order
+     */
+    protected Iterator<String> recordIds() throws SharkKBException {
+        List<String> ids = new ArrayList<>();
+        Enumeration<String> names = this.holder.propertyNames(true);
+        while(names != null && names.hasMoreElements()) {
+            String name = names.nextElement();
+            if(name.startsWith(RECORD_PROPERTY_PREFIX)) {
+                ids.add(name.substring(RECORD_PROPERTY_PREFIX.length()));
+            }
+        }
+        return ids.iterator();
+    }
+
+    protected String readRecord(String id) throws SharkKBException {
+        return this.holder.getProperty(RECORD_PROPERTY_PREFIX + id);
+    }
+
+    protected void writeRecord(String id, String record) throws SharkKBException {
+        this.holder.setProperty(RECORD_PROPERTY_PREFIX + id, record, false);
+    }
+
+    protected void removeRecord(String id) throws SharkKBException {
+        this.holder.setProperty(RECORD_PROPERTY_PREFIX + id, null, false);
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    //                              index                                //
+    ///////////////////////////////////////////////////////////////////////
+
+    /**
+     * Reads record ids - records are not deserialized.
+     */
+    private void load() throws SharkKBException {
+        if(this.entries != null) return;
+
+        List<String> ids = new ArrayList<>();
+        Iterator<String> idIter = this.recordIds();
+        while(idIter.hasNext()) {
+            String id = idIter.next();
+            if(IndexedInterestStorage.number(id) >= 0) {
+                ids.add(id);
+            }
+        }
+
+        // insertion order
+        String[] sorted = ids.toArray(new String[ids.size()]);
+        Arrays.sort(sorted, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                long na = IndexedInterestStorage.number(a);
+                long nb = IndexedInterestStorage.number(b);
+                return na < nb ? -1 : (na == nb ? 0 : 1);
+            }
+        });
+
+        this.entries = new LinkedHashMap<>();
+        for(String id : sorted) {
+            String hash = id.substring(0, id.lastIndexOf(SEPARATOR));
+            this.index(new Entry(id, hash));
+            long number = IndexedInterestStorage.number(id);
+            if(number >= this.nextNumber) this.nextNumber = number + 1;
+        }
+    }
+
+    /**
+     * @return insertion number of a record id or -1 if it isn't one
+     */
+    private static long number(String id) {
+        int i = id.lastIndexOf(SEPARATOR);
+        if(i < 1) return -1;
+
+        try {
+            return Long.parseLong(id.substring(i + 1));
+        }
+        catch(NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void index(Entry entry) {
+        this.entries.put(entry.id, entry);
+        List<Entry> bucket = this.buckets.get(entry.hash);
+        if(bucket == null) {
+            bucket = new ArrayList<>(1);
+            this.buckets.put(entry.hash, bucket);
+        }
+        bucket.add(entry);
+    }
+
+    private void unindex(Entry entry) {
+        this.entries.remove(entry.id);
+        List<Entry> bucket = this.buckets.get(entry.hash);
+        if(bucket != null) {
+            bucket.remove(entry);
+            if(bucket.isEmpty()) this.buckets.remove(entry.hash);
+        }
+    }
+
+    private SharkCS interest(Entry entry) throws SharkKBException {
+        if(entry.interest == null) {
+            String record = this.readRecord(entry.id);
+            if(record == null) {
+                throw new SharkKBException("interest record missing: " + entry.id);
+            }
+            entry.interest = this.serializer.deserializeSharkCS(record);
+        }
+        return entry.interest;
+    }
+
+    /**
+     * @return stored entry with an identical interest or null
+     */
+    private Entry find(SharkCS interest, String hash) throws SharkKBException {
+        Iterable<Entry> candidates;
+        if(hash.equals(WILDCARD)) {
+            candidates = this.entries.values();
+        } else {
+            List<Entry> all = new ArrayList<>();
+            List<Entry> bucket = this.buckets.get(hash);
+            if(bucket != null) all.addAll(bucket);
+            bucket = this.buckets.get(WILDCARD);
+            if(bucket != null) all.addAll(bucket);
+            candidates = all;
+        }
+
+        for(Entry entry : candidates) {
+            if(SharkCSAlgebra.identical(this.interest(entry), interest)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return hash of direction and sis of each dimension - wildcard if a
+     * tag hasn't exactly one si
+     */
+    static String hash(SharkCS interest) throws SharkKBException {
+        if(interest == null) return WILDCARD;
+
+        long h = interest.getDirection();
+        STSet[] sets = {interest.getTopics(), interest.getPeers(),
+            interest.getRemotePeers(), interest.getLocations(), interest.getTimes()};
+
+        for(STSet set : sets) {
+            List<String> sis = new ArrayList<>();
+            Enumeration<SemanticTag> tags = set == null ? null : set.tags();
+            while(tags != null && tags.hasMoreElements()) {
+                String[] tagSIs = tags.nextElement().getSI();
+                if(tagSIs == null || tagSIs.length != 1) return WILDCARD;
+
+                // sis are compared ignoring case
+                sis.add(SITable.normalize(tagSIs[0]));
+            }
+            Collections.sort(sis);
+
+            h = 31 * h + sis.size();
+            for(String si : sis) {
+                h = 1000003 * h + si.hashCode();
+            }
+        }
+
+        return Long.toHexString(h);
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+    //                        interest storage                           //
+    ///////////////////////////////////////////////////////////////////////
+
+    @Override
+    public synchronized void addInterest(SharkCS interest) throws SharkKBException {
+        this.load();
+
+        String hash = IndexedInterestStorage.hash(interest);
+        if(this.find(interest, hash) != null) return;
+
+        Entry entry = new Entry(hash + SEPARATOR + this.nextNumber++, hash);
+        this.writeRecord(entry.id, this.serializer.serializeSharkCS(interest));
+        entry.interest = interest;
+        this.index(entry);
+    }
+
+    @Override
+    public synchronized void removeInterest(SharkCS interest) throws SharkKBException {
+        this.load();
+
+        Entry entry = this.find(interest, IndexedInterestStorage.hash(interest));
+        if(entry == null) return;
+
+        this.remove(entry);
+    }
+
+    private void remove(Entry entry) throws SharkKBException {
+        this.removeRecord(entry.id);
+        this.unindex(entry);
+    }
+
+    /**
+     * Records are deserialized while iterating. Iterator.remove() removes
+     * the last returned interest from this storage.
+     */
+    @Override
+    public synchronized Iterator<SharkCS> interests() throws SharkKBException {
+        this.load();
+
+        final Iterator<Entry> entryIter =
+                new ArrayList<>(this.entries.values()).iterator();
+
+        return new Iterator<SharkCS>() {
+            private Entry last = null;
+
+            @Override
+            public boolean hasNext() {
+                return entryIter.hasNext();
+            }
+
+            @Override
+            public SharkCS next() {
+                Entry entry = entryIter.next();
+                this.last = entry;
+                try {
+                    synchronized(IndexedInterestStorage.this) {
+                        return IndexedInterestStorage.this.interest(entry);
+                    }
+                }
+                catch(SharkKBException e) {
+                    throw new NoSuchElementException(e.getMessage());
+                }
+            }
+
+            @Override
+            public void remove() {
+                if(this.last == null) {
+                    throw new IllegalStateException("next() not called");
+                }
+
+                try {
+                    synchronized(IndexedInterestStorage.this) {
+                        // removed in the meantime?
+                        if(IndexedInterestStorage.this.entries.get(this.last.id) == this.last) {
+                            IndexedInterestStorage.this.remove(this.last);
+                        }
+                    }
+                }
+                catch(SharkKBException e) {
+                    throw new IllegalStateException(e.getMessage());
+                }
+                this.last = null;
+            }
+        };
+    }
+
+    /**
+     * @param space
+     * @return stored interests with a mutual interest with space - see
+     * SharkCSAlgebra.contextualize
+     * @throws SharkKBException
+     */
+    public synchronized Iterator<SharkCS> interests(SharkCS space) throws SharkKBException {
+        this.load();
+
+        List<SharkCS> result = new ArrayList<>();
+        for(Entry entry : this.entries.values()) {
+            SharkCS interest = this.interest(entry);
+            if(SharkCSAlgebra.contextualize(interest, space,
+                    FragmentationParameter.getZeroFPs()) != null) {
+
+                result.add(interest);
+            }
+        }
+        return result.iterator();
+    }
+
+    /**
+     * @return number of stored interests
+     */
+    public synchronized int size() throws SharkKBException {
+        this.load();
+        return this.entries.size();
+    }
+}
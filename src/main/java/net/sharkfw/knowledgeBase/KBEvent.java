@@ -0,0 +1,65 @@
+package net.sharkfw.knowledgeBase;
+
+/**
+ * A change of a knowledge base - delivered by KBEventBus.
+ *
+ * @author thsc
+ */
+public class KBEvent {
+    public static final int CP_ADDED = 0;
+    public static final int CP_CHANGED = 1;
+    public static final int CP_REMOVED = 2;
+    public static final int TOPIC_ADDED = 3;
+    public static final int PEER_ADDED = 4;
+    public static final int LOCATION_ADDED = 5;
+    public static final int TIME_ADDED = 6;
+    public static final int TOPIC_REMOVED = 7;
+    public static final int PEER_REMOVED = 8;
+    public static final int LOCATION_REMOVED = 9;
+    public static final int TIME_REMOVED = 10;
+    public static final int TAG_CHANGED = 11;
+    public static final int PREDICATE_CREATED = 12;
+    public static final int PREDICATE_REMOVED = 13;
+    public static final int TYPE_ADDED = 14;
+
+    private final int type;
+    private final Object subject;
+    private final String predicate;
+    private final Object object;
+
+    public KBEvent(int type, Object subject) {
+        this(type, subject, null, null);
+    }
+
+    /**
+     * @param type
+     * @param subject changed context point or tag - subject of a predicate
+     * @param predicate predicate type or null
+     * @param object object of a predicate or null
+     */
+    public KBEvent(int type, Object subject, String predicate, Object object) {
+        this.type = type;
+        this.subject = subject;
+        this.predicate = predicate;
+        this.object = object;
+    }
+
+    public int getType() {
+        return this.type;
+    }
+
+    /**
+     * @return context point or semantic tag
+     */
+    public Object getSubject() {
+        return this.subject;
+    }
+
+    public String getPredicate() {
+        return this.predicate;
+    }
+
+    public Object getObject() {
+        return this.object;
+    }
+}
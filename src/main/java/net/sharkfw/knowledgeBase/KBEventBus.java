@@ -0,0 +1,206 @@
+package net.sharkfw.knowledgeBase;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import net.sharkfw.system.L;
+
+/**
+ * Delivers knowledge base changes asynchronously and in batches.
+ *
+ * Each subscription has a bounded ring buffer. Publishing only puts events
+ * into buffers - listeners are called on the executor of their subscription
+ * with all events that came in meanwhile, up to a batch size. A slow
+ * listener doesn't stall the thread that changes the knowledge base unless
+ * it subscribed with BLOCK and its buffer is full.
+ *
+ * Listeners can change the knowledge base themselves. Events they cause
+ * while their buffer is full are dropped even with BLOCK - the listener
+ * would wait for itself otherwise.
+ *
+ * @author thsc
+ */
+public class KBEventBus {
+
+    /** full buffer: new events are dropped and counted */
+    public static final int DROP = 0;
+
+    /** full buffer: publishing thread waits for the listener */
+    public static final int BLOCK = 1;
+
+    public static final int DEFAULT_CAPACITY = 16384;
+    public static final int DEFAULT_BATCH_SIZE = 10000;
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    private static ExecutorService defaultExecutor = null;
+
+    private static synchronized Executor getDefaultExecutor() {
+        if(KBEventBus.defaultExecutor == null) {
+            KBEventBus.defaultExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "KBEventBus");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return KBEventBus.defaultExecutor;
+    }
+
+    private static class Subscription implements Runnable {
+        private final KBEventListener listener;
+        private final Executor executor;
+        private final int policy;
+        private final int batchSize;
+
+        private final ArrayBlockingQueue<KBEvent> buffer;
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+        private final AtomicLong dropped = new AtomicLong();
+
+        // thread that calls the listener right now
+        private volatile Thread deliveryThread = null;
+
+        Subscription(KBEventListener listener, Executor executor, int capacity,
+                int batchSize, int policy) {
+
+            this.listener = listener;
+            this.executor = executor;
+            this.policy = policy;
+            this.batchSize = batchSize;
+            this.buffer = new ArrayBlockingQueue<>(capacity);
+        }
+
+        void put(KBEvent event) {
+            if(this.policy == BLOCK && Thread.currentThread() != this.deliveryThread) {
+                boolean interrupted = false;
+                while(true) {
+                    try {
+                        this.buffer.put(event);
+                        break;
+                    }
+                    catch(InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if(interrupted) Thread.currentThread().interrupt();
+            } else if(!this.buffer.offer(event)) {
+                this.dropped.incrementAndGet();
+            }
+        }
+
+        /**
+         * Makes sure that a delivery is pending.
+         */
+        void schedule() {
+            if(this.scheduled.compareAndSet(false, true)) {
+                this.executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            this.deliveryThread = Thread.currentThread();
+            try {
+                List<KBEvent> events = new ArrayList<>();
+                while(this.buffer.drainTo(events, this.batchSize) > 0
+                        || this.dropped.get() > 0) {
+
+                    try {
+                        this.listener.eventsOccurred(events, this.dropped.getAndSet(0));
+                    }
+                    catch(RuntimeException e) {
+                        L.warn(this, "kb event listener failed: {}", e.getMessage());
+                    }
+                    events = new ArrayList<>();
+                }
+            }
+            finally {
+                this.deliveryThread = null;
+                this.scheduled.set(false);
+            }
+
+            // events arrived or were dropped after last drain
+            if(!this.buffer.isEmpty() || this.dropped.get() > 0) this.schedule();
+        }
+    }
+
+    /**
+     * Events are delivered on a shared daemon thread pool. Events are
+     * dropped and counted if buffer is full.
+     *
+     * @param listener
+     */
+    public void subscribe(KBEventListener listener) {
+        this.subscribe(listener, null, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, DROP);
+    }
+
+    /**
+     * @param listener
+     * @param executor runs deliveries - shared daemon threads if null
+     * @param capacity maximum number of undelivered events
+     * @param batchSize maximum number of events in one call
+     * @param policy DROP or BLOCK
+     */
+    public void subscribe(KBEventListener listener, Executor executor,
+            int capacity, int batchSize, int policy) {
+
+        if(executor == null) executor = KBEventBus.getDefaultExecutor();
+
+        this.subscriptions.add(new Subscription(listener, executor,
+                capacity, batchSize, policy));
+    }
+
+    /**
+     * Undelivered events of that listener are discarded.
+     *
+     * @param listener
+     */
+    public void unsubscribe(KBEventListener listener) {
+        for(Subscription s : this.subscriptions) {
+            if(s.listener == listener) {
+                this.subscriptions.remove(s);
+                s.buffer.clear();
+            }
+        }
+    }
+
+    public boolean hasSubscribers() {
+        return !this.subscriptions.isEmpty();
+    }
+
+    public void publish(KBEvent event) {
+        for(Subscription s : this.subscriptions) {
+            s.put(event);
+            s.schedule();
+        }
+    }
+
+    /**
+     * Publishes a number of events at once, e.g. after an import. Listeners
+     * get them in batches.
+     *
+     * @param events
+     */
+    public void publish(Collection<KBEvent> events) {
+        for(Subscription s : this.subscriptions) {
+            for(KBEvent event : events) {
+                s.put(event);
+                if(s.policy == BLOCK && s.buffer.remainingCapacity() == 0) {
+                    // listener has to make room
+                    s.schedule();
+                }
+            }
+            s.schedule();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package net.sharkfw.knowledgeBase;
+
+import java.util.List;
+
+/**
+ * Receives changes of a knowledge base in batches, see KBEventBus.
+ *
+ * @author thsc
+ */
+public interface KBEventListener {
+
+    /**
+     * Called on the executor of the subscription - never concurrently
+     * for the same subscription.
+     *
+     * @param events changes in the order they happened
+     * @param dropped number of events dropped since last call - due to a
+     * full buffer
+     */
+    public void eventsOccurred(List<KBEvent> events, long dropped);
+}
@@ -1,50 +1,76 @@
 package net.sharkfw.knowledgeBase;
 
+import java.util.Collections;
 import java.util.Enumeration;
 import net.sharkfw.knowledgeBase.inmemory.InMemoPropertyHolder;
 
 /**
+ * Delegates properties to a property holder. Without a persistent holder an
+ * in memory holder is created with the first property. Objects without any
+ * properties - most tags - don't need a holder at all.
+ *
+ * Objects can be shared between threads (e.g. by ConcurrentInMemoSharkKB).
+ * The holder is created only once even if two threads set the first property
+ * at the same time.
  *
  * @author thsc
  */
 public class PropertyHolderDelegate implements SystemPropertyHolder {
-    private SystemPropertyHolder propertyHolder = null;
+    private volatile SystemPropertyHolder propertyHolder = null;
 
     protected PropertyHolderDelegate(SystemPropertyHolder persistentHolder) {
         this.propertyHolder = persistentHolder;
     }
     
     protected PropertyHolderDelegate() {
-        this.propertyHolder = new InMemoPropertyHolder();
+        // in memory holder is created with first property
     }
     
     @Override
     public String getProperty(String name) throws SharkKBException {
-        return this.propertyHolder.getProperty(name);
+        SystemPropertyHolder holder = this.propertyHolder;
+        if(holder == null) return null;
+        return holder.getProperty(name);
     }
     
     @Override
     public void setProperty(String name, String value) throws SharkKBException {
-        this.propertyHolder.setProperty(name, value);
+        if(this.propertyHolder == null && value == null) return;
+        this.getPropertyHolder().setProperty(name, value);
     }
 
     @Override
     public void setProperty(String name, String value, boolean transfer) throws SharkKBException {
-        this.propertyHolder.setProperty(name, value, transfer);
+        if(this.propertyHolder == null && value == null) return;
+        this.getPropertyHolder().setProperty(name, value, transfer);
     }
 
     @Override
-    public Enumeration propertyNames() throws SharkKBException {
-        return this.propertyHolder.propertyNames();
+    public Enumeration<String> propertyNames() throws SharkKBException {
+        SystemPropertyHolder holder = this.propertyHolder;
+        if(holder == null) return Collections.emptyEnumeration();
+        return holder.propertyNames();
     }
 
     @Override
-    public Enumeration propertyNames(boolean all) throws SharkKBException {
-        return this.propertyHolder.propertyNames(all);
+    public Enumeration<String> propertyNames(boolean all) throws SharkKBException {
+        SystemPropertyHolder holder = this.propertyHolder;
+        if(holder == null) return Collections.emptyEnumeration();
+        return holder.propertyNames(all);
     }
     
     public SystemPropertyHolder getPropertyHolder() {
-        return this.propertyHolder;
+        SystemPropertyHolder holder = this.propertyHolder;
+        if(holder == null) {
+            synchronized(this) {
+                holder = this.propertyHolder;
+                if(holder == null) {
+                    holder = new InMemoPropertyHolder();
+                    this.propertyHolder = holder;
+                }
+            }
+        }
+        return holder;
     }
     
     public void setPropertyHolder(SystemPropertyHolder ph) {
@@ -63,14 +89,22 @@ public class PropertyHolderDelegate implements SystemPropertyHolder {
      */
     public void refreshStatus() {}
 
+    /* in memory holders don't keep system properties - there is no need
+     * to create a holder for them
+     */
+    
     @Override
     public void setSystemProperty(String name, String value) {
-        this.propertyHolder.setSystemProperty(name, value);
+        SystemPropertyHolder holder = this.propertyHolder;
+        if(holder == null) return;
+        holder.setSystemProperty(name, value);
     }
 
     @Override
     public String getSystemProperty(String name) {
-        return this.propertyHolder.getSystemProperty(name);
+        SystemPropertyHolder holder = this.propertyHolder;
+        if(holder == null) return null;
+        return holder.getSystemProperty(name);
     }
 
     @Override
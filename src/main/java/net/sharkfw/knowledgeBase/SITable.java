@@ -0,0 +1,246 @@
+package net.sharkfw.knowledgeBase;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Global symbol table of subject identifiers.
+ *
+ * Subject identifiers are compared case insensitive. This table normalizes
+ * each si once and keeps exactly one {@link Symbol} for each normalized si.
+ * Symbols carry a small integer id. Two sis are identical if and only if
+ * their symbols have the same id.
+ *
+ * The table holds its symbols weakly. A symbol and its id live as long as
+ * someone refers to the symbol object - e.g. a semantic tag which cached
+ * its symbols. Don't store plain ids without keeping the symbol: An si can get
+ * another id after its symbol was garbage collected.
+ *
+ * @author thsc
+ */
+public final class SITable {
+
+    /**
+     * Interned and normalized subject identifier.
+     */
+    public static final class Symbol {
+        private final int id;
+        private final String si;
+        // first spelling of this si - shared by intern()
+        private final String spelling;
+
+        private Symbol(int id, String si, String spelling) {
+            this.id = id;
+            this.si = si;
+            this.spelling = spelling;
+        }
+
+        /**
+         * @return id - unique as long as this symbol is alive
+         */
+        public int id() {
+            return this.id;
+        }
+
+        /**
+         * @return normalized si
+         */
+        public String si() {
+            return this.si;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.id;
+        }
+
+        @Override
+        public String toString() {
+            return this.si;
+        }
+    }
+
+    private static final WeakHashMap<String, WeakReference<Symbol>> TABLE =
+            new WeakHashMap<>();
+
+    private static int nextID = 0;
+
+    private static final Symbol[] NO_SYMBOLS = new Symbol[0];
+
+    /** symbol of the any si - never garbage collected */
+    public static final Symbol ANY = SITable.symbol(SharkCS.ANYURL);
+
+    // changes whenever a tag outside a tag storage got or lost an si
+    private static final AtomicInteger CHANGES = new AtomicInteger();
+
+    private SITable() {}
+
+    /**
+     * Tags which aren't kept in a tag storage call it after they got or
+     * lost an si. Tags of a storage tell their storage instead.
+     */
+    public static void sisChanged() {
+        CHANGES.incrementAndGet();
+    }
+
+    /**
+     * @return number that changes whenever an si of a tag outside a tag
+     * storage was added or removed - indexes keyed by sis of such tags are
+     * rebuilt if it differs
+     */
+    public static int changes() {
+        return CHANGES.get();
+    }
+
+    /**
+     * Normalizes an si. Normalization fits to String.equalsIgnoreCase():
+     * Two sis are equal ignoring case if and only if their normalized
+     * forms are equal. No new string is created if si is already normalized.
+     *
+     * @param si
+     * @return normalized si or null if si is null
+     */
+    public static String normalize(String si) {
+        if(si == null) return null;
+
+        int length = si.length();
+        int i = 0;
+        while(i < length) {
+            char c = si.charAt(i);
+            if(SITable.fold(c) != c) break;
+            i++;
+        }
+
+        // already normalized
+        if(i == length) return si;
+
+        char[] chars = si.toCharArray();
+        for(; i < length; i++) {
+            chars[i] = SITable.fold(chars[i]);
+        }
+
+        return new String(chars);
+    }
+
+    // same rule as String.regionMatches(true, ...)
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /**
+     * @param si
+     * @return the one symbol for that si or null if si is null
+     */
+    public static Symbol symbol(String si) {
+        if(si == null) return null;
+
+        String normalized = SITable.normalize(si);
+
+        synchronized(TABLE) {
+            WeakReference<Symbol> ref = TABLE.get(normalized);
+            Symbol symbol = ref != null ? ref.get() : null;
+
+            if(symbol == null) {
+                /* symbol refers to the key - entry lives as long as symbol.
+                 * put() would keep the key of a stale entry - remove it first
+                 */
+                if(ref != null) TABLE.remove(normalized);
+                symbol = new Symbol(nextID++, normalized, si);
+                TABLE.put(normalized, new WeakReference<>(symbol));
+            }
+
+            return symbol;
+        }
+    }
+
+    /**
+     * @param sis
+     * @return symbols of all not null sis
+     */
+    public static Symbol[] symbols(String[] sis) {
+        if(sis == null || sis.length == 0) return NO_SYMBOLS;
+
+        Symbol[] symbols = new Symbol[sis.length];
+        int n = 0;
+        for(String si : sis) {
+            if(si != null) {
+                symbols[n++] = SITable.symbol(si);
+            }
+        }
+
+        if(n < symbols.length) {
+            Symbol[] shrunk = new Symbol[n];
+            System.arraycopy(symbols, 0, shrunk, 0, n);
+            symbols = shrunk;
+        }
+
+        return symbols;
+    }
+
+    /**
+     * Returns a shared instance of that si. The table keeps the normalized
+     * si and the spelling it has seen first for each symbol. An si equal to
+     * one of both is replaced by the kept string. Other spellings are
+     * returned as they are.
+     *
+     * @param si
+     * @return
+     */
+    public static String intern(String si) {
+        Symbol symbol = SITable.symbol(si);
+        if(symbol == null) return null;
+
+        if(symbol.si.equals(si)) return symbol.si;
+
+        return symbol.spelling.equals(si) ? symbol.spelling : si;
+    }
+
+    /**
+     * @param si
+     * @return id of that si. Keep in mind: The id is only stable as long
+     * as its symbol is referenced, see {@link #symbol(String)}.
+     */
+    public static int id(String si) {
+        return SITable.symbol(si).id;
+    }
+
+    /**
+     * @param symbolsA
+     * @param symbolsB
+     * @return true if at least one symbol is in both arrays
+     */
+    public static boolean intersect(Symbol[] symbolsA, Symbol[] symbolsB) {
+        for(int a = 0; a < symbolsA.length; a++) {
+            int id = symbolsA[a].id;
+            for(int b = 0; b < symbolsB.length; b++) {
+                if(symbolsB[b].id == id) return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @param symbols
+     * @param symbol
+     * @return true if symbol is in that array
+     */
+    public static boolean contains(Symbol[] symbols, Symbol symbol) {
+        for(int i = 0; i < symbols.length; i++) {
+            if(symbols[i].id == symbol.id) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return number of symbols currently in the table (including symbols
+     * which are already garbage collected but not yet removed)
+     */
+    public static int size() {
+        synchronized(TABLE) {
+            return TABLE.size();
+        }
+    }
+}
@@ -10,6 +10,8 @@ import java.util.Iterator;
 import java.util.Stack;
 import java.util.Vector;
 
+import net.sharkfw.knowledgeBase.inmemory.ConcurrentInMemoSharkKB;
+import net.sharkfw.knowledgeBase.inmemory.InMemoIndexedSemanticNet;
 import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
 import net.sharkfw.system.Iterator2Enumeration;
 import net.sharkfw.system.L;
@@ -49,11 +51,11 @@ public abstract class SharkCSAlgebra extends SharkAlgebra {
             done = true;
                     
         } catch (ClassNotFoundException | java.lang.NoClassDefFoundError ex) {
-            L.d("no JTS Spatial Algebra found - take default: " + ex.getMessage());
+            L.debug(null, "no JTS Spatial Algebra found - take default: {}", ex.getMessage());
         } catch (InstantiationException | IllegalAccessException ex) {
-            L.d("couldn't instantiate JTS Spatial Algebra - take default: " + ex.getMessage());
+            L.debug(null, "couldn't instantiate JTS Spatial Algebra - take default: {}", ex.getMessage());
         } catch (ClassCastException ex) {
-            L.d("weired: JTS Spatial Algebra found and instanziated but object isn't of type SpatialAlgebra - take default: " + ex.getMessage());
+            L.debug(null, "weired: JTS Spatial Algebra found and instanziated but object isn't of type SpatialAlgebra - take default: {}", ex.getMessage());
         }
         
         if(!done) {
@@ -92,12 +94,19 @@ public abstract class SharkCSAlgebra extends SharkAlgebra {
             }
             catch(SharkKBException e) {
                 // weired
-                L.w("exception while calculating whether two spatial tags are identical: " + e.getMessage());
+                L.warn(null, "exception while calculating whether two spatial tags are identical: {}", e.getMessage());
                 return false;
             }
             
         }
         
+        if(tagA instanceof AbstractSemanticTag && tagB instanceof AbstractSemanticTag) {
+            // int compares on cached si symbols
+            return SITable.intersect(
+                    ((AbstractSemanticTag) tagA).getSISymbols(), 
+                    ((AbstractSemanticTag) tagB).getSISymbols());
+        }
+        
         String si_a[] = tagA.getSI();
         String si_b[] = tagB.getSI();
         
@@ -140,7 +149,8 @@ public abstract class SharkCSAlgebra extends SharkAlgebra {
      * @return 
      */
     public static boolean identical(String siA, String siB) { 
-        return siA.equalsIgnoreCase(siB);
+        // interned sis are often the same object
+        return siA == siB || siA.equalsIgnoreCase(siB);
     }
     
 
@@ -1119,6 +1129,15 @@ public abstract class SharkCSAlgebra extends SharkAlgebra {
         
         if(si == null || si.length == 0) return true;
         
+        if(tag instanceof AbstractSemanticTag) {
+            for(int i = 0; i < si.length; i++) {
+                if(si[i] == null) return true;
+            }
+            
+            return SITable.contains(((AbstractSemanticTag) tag).getSISymbols(), 
+                    SITable.ANY);
+        }
+        
         return SharkCSAlgebra.isAny(si);
     }
     
@@ -1476,7 +1495,7 @@ public abstract class SharkCSAlgebra extends SharkAlgebra {
         Interest effectiveBackground = SharkCSAlgebra.contextualize(
                 knowledge.getVocabulary().asSharkCS(), interest, backgroundFP);
         
-        L.d("Effective background for assimilation\n" + L.contextSpace2String(effectiveBackground), target);
+        L.debug(target, "Effective background for assimilation\n{}", L.lazyCS(effectiveBackground));
         
         if(effectiveBackground == null) {
             L.d("no effective background - no assimilation", null);
@@ -1507,7 +1526,7 @@ public abstract class SharkCSAlgebra extends SharkAlgebra {
                     SharkCS.DIRECTION_IN
                     );
             
-            L.d("Algebra: #1225: check, whether this cp fits:\n" + L.contextSpace2String(cc), target);
+            L.debug(target, "Algebra: #1225: check, whether this cp fits:\n{}", L.lazyCS(cc));
             // check if this cp fits to effective background
             
             if(SharkCSAlgebra.isIn(effectiveBackground, cc)) {
@@ -2129,6 +2148,11 @@ public abstract class SharkCSAlgebra extends SharkAlgebra {
             boolean cutGroups, PeerSemanticTag recipient) 
                 throws SharkKBException {
 
+        // extract from a consistent state even if other threads change the kb
+        if(source instanceof ConcurrentInMemoSharkKB) {
+            source = ((ConcurrentInMemoSharkKB) source).snapshot();
+        }
+
         // create fragment
 //        Interest effectiveInterest = source.createInterest();
 //
@@ -2574,6 +2598,10 @@ public abstract class SharkCSAlgebra extends SharkAlgebra {
     * @return true if all connections of the Predicate are transitive, false if they are not
     */
    public static boolean isTransitive(SemanticNet semanticNet, String predicate) throws SharkKBException {
+        if(semanticNet instanceof InMemoIndexedSemanticNet) {
+            return ((InMemoIndexedSemanticNet) semanticNet).isTransitive(predicate);
+        }
+
         tChecked = new HashMap<SNSemanticTag, Boolean>();
 
         Iterator<SemanticTag> iter = semanticNet.stTags();
@@ -2687,6 +2715,11 @@ public abstract class SharkCSAlgebra extends SharkAlgebra {
     * @param predicate The predicate that should be checked.
     */
    public static void makeTransitive(SemanticNet semanticNet, String predicate) throws SharkKBException {
+        if(semanticNet instanceof InMemoIndexedSemanticNet) {
+            ((InMemoIndexedSemanticNet) semanticNet).makeTransitive(predicate);
+            return;
+        }
+
         tChecked = new HashMap<>();
 
         Iterator<SemanticTag> iter = semanticNet.stTags();
@@ -365,4 +365,27 @@ public interface SharkKB extends SharkVocabulary, SystemPropertyHolder, STSetLis
    */
   public FragmentationParameter[] getStandardFPSet();
 
+  /**
+   * Creates a read only point in time view on this knowledge base.
+   * Changes made after taking the snapshot are not visible in the snapshot.
+   * Serializing or extracting from a snapshot doesn't interfere with
+   * threads changing the knowledge base at the same time.
+   *
+   * @return read only snapshot of this knowledge base
+   * @throws SharkKBException
+   */
+  public SharkKB snapshot() throws SharkKBException;
+
+  /**
+   * Merges vocabulary and context points of a knowledge into this
+   * knowledge base at once, e.g. after receiving it. Tags are deduplicated
+   * by their SIs, predicates are set after all tags exist. Changes are
+   * published as one batch on the event bus. KnowledgeBaseListeners are
+   * called after the merge is complete - once for each change.
+   *
+   * @param knowledge knowledge to merge
+   * @throws SharkKBException
+   */
+  public void mergeKnowledge(Knowledge knowledge) throws SharkKBException;
+
 }
@@ -2,6 +2,8 @@ package net.sharkfw.knowledgeBase;
 
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.List;
+import net.sharkfw.knowledgeBase.inmemory.InMemoIndexedSemanticNet;
 import net.sharkfw.knowledgeBase.inmemory.InMemoSemanticNet;
 
 /**
@@ -35,6 +37,12 @@ public class ShortestPath {
             throw new SharkKBException("find shortest path requires non empty semantic networks and an existing start point");
         }
 
+        if(snSource instanceof InMemoIndexedSemanticNet) {
+            // breadth first search over primitive arrays
+            this.findIndexedPath((InMemoIndexedSemanticNet) snSource, snSourceTag, snTarget);
+            return;
+        }
+
         // add first step
         Step firstStep = new Step();
         
@@ -55,6 +63,28 @@ public class ShortestPath {
         this.findPath(snTarget);
     }
 
+    private void findIndexedPath(InMemoIndexedSemanticNet source,
+            SNSemanticTag start, SemanticNet target) throws SharkKBException {
+
+        List<String> predicates = new ArrayList<>();
+        List<SNSemanticTag> tags = source.shortestPath(start, target, predicates);
+        if(tags == null) return;
+
+        // copy path
+        SemanticNet path = new InMemoSemanticNet();
+        SNSemanticTag previous = path.merge(tags.get(0));
+        for(int i = 1; i < tags.size(); i++) {
+            SNSemanticTag next = path.merge(tags.get(i));
+            previous.setPredicate(predicates.get(i-1), next);
+            previous = next;
+        }
+
+        this.endpoint = previous;
+        this.shortestPath = path;
+        this.length = tags.size() - 1;
+        this.found = true;
+    }
+
     private void findPath(SemanticNet target) 
             throws SharkKBException {
         
@@ -0,0 +1,176 @@
+package net.sharkfw.knowledgeBase;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import net.sharkfw.asip.ASIPSpace;
+import net.sharkfw.knowledgeBase.geom.SharkGeometry;
+
+/**
+ * 128 bit fingerprint of a context space or an ASIP space. It is made of
+ * the direction and the sorted sis of each dimension - the order of tags
+ * and sis doesn't matter, sis are normalized by SITable. Tags without si
+ * are described by their name - time tags by their period, location tags
+ * by their geometry as well.
+ *
+ * Spaces with equal fingerprints are taken as the same, e.g. when
+ * checking whether a message was sent before.
+ *
+ * @author thsc
+ */
+public final class SpaceFingerprint {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    // marks a dimension which is null or any
+    private static final byte ANY = 0;
+    private static final byte TAGS = 1;
+
+    private final long high;
+    private final long low;
+
+    private SpaceFingerprint(byte[] digest) {
+        long h = 0, l = 0;
+        for(int i = 0; i < 8; i++) {
+            h = (h << 8) | (digest[i] & 0xff);
+            l = (l << 8) | (digest[i + 8] & 0xff);
+        }
+        this.high = h;
+        this.low = l;
+    }
+
+    public static SpaceFingerprint of(SharkCS cs) throws SharkKBException {
+        MessageDigest md = SpaceFingerprint.digest();
+        if(cs != null) {
+            SpaceFingerprint.update(md, cs.getDirection());
+            SpaceFingerprint.update(md, cs.getTopics());
+            SpaceFingerprint.update(md, cs.getOriginator());
+            SpaceFingerprint.update(md, cs.getPeers());
+            SpaceFingerprint.update(md, cs.getRemotePeers());
+            SpaceFingerprint.update(md, cs.getTimes());
+            SpaceFingerprint.update(md, cs.getLocations());
+        }
+        return new SpaceFingerprint(md.digest());
+    }
+
+    public static SpaceFingerprint of(ASIPSpace space) throws SharkKBException {
+        MessageDigest md = SpaceFingerprint.digest();
+        if(space != null) {
+            SpaceFingerprint.update(md, space.getDirection());
+            SpaceFingerprint.update(md, space.getTopics());
+            SpaceFingerprint.update(md, space.getTypes());
+            SpaceFingerprint.update(md, space.getSender());
+            SpaceFingerprint.update(md, space.getReceivers());
+            SpaceFingerprint.update(md, space.getApprovers());
+            SpaceFingerprint.update(md, space.getTimes());
+            SpaceFingerprint.update(md, space.getLocations());
+        }
+        return new SpaceFingerprint(md.digest());
+    }
+
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        }
+        catch(NoSuchAlgorithmException e) {
+            // each java platform must support md5
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(MessageDigest md, int value) {
+        md.update((byte) (value >>> 24));
+        md.update((byte) (value >>> 16));
+        md.update((byte) (value >>> 8));
+        md.update((byte) value);
+    }
+
+    private static void update(MessageDigest md, String s) {
+        byte[] bytes = s.getBytes(UTF8);
+        SpaceFingerprint.update(md, bytes.length);
+        md.update(bytes);
+    }
+
+    private static void update(MessageDigest md, SemanticTag tag) {
+        if(tag == null || SharkCSAlgebra.isAny(tag)) {
+            md.update(ANY);
+            return;
+        }
+        md.update(TAGS);
+        SpaceFingerprint.update(md, 1);
+        SpaceFingerprint.update(md, SpaceFingerprint.key(tag));
+    }
+
+    private static void update(MessageDigest md, STSet set) throws SharkKBException {
+        Enumeration<SemanticTag> tagEnum = set == null ? null : set.tags();
+        if(tagEnum == null || !tagEnum.hasMoreElements()) {
+            md.update(ANY);
+            return;
+        }
+
+        List<String> keys = new ArrayList<>();
+        while(tagEnum.hasMoreElements()) {
+            keys.add(SpaceFingerprint.key(tagEnum.nextElement()));
+        }
+        Collections.sort(keys);
+
+        md.update(TAGS);
+        SpaceFingerprint.update(md, keys.size());
+        for(String key : keys) {
+            SpaceFingerprint.update(md, key);
+        }
+    }
+
+    /**
+     * @return sorted normalized sis of a tag
+     */
+    static String key(SemanticTag tag) {
+        String[] sis = tag.getSI();
+        if(sis == null || sis.length == 0) {
+            if(tag instanceof TimeSemanticTag) {
+                TimeSemanticTag time = (TimeSemanticTag) tag;
+                return "\u0000" + time.getFrom() + "+" + time.getDuration();
+            }
+            if(tag instanceof SpatialSemanticTag) {
+                SharkGeometry geom = ((SpatialSemanticTag) tag).getGeometry();
+                if(geom != null) {
+                    return "\u0000" + tag.getName() + "\u0000" + geom.getEWKT();
+                }
+            }
+            return "\u0000" + tag.getName();
+        }
+
+        String[] lower = new String[sis.length];
+        for(int i = 0; i < sis.length; i++) {
+            lower[i] = sis[i] == null ? "" : SITable.normalize(sis[i]);
+        }
+        Arrays.sort(lower);
+
+        StringBuilder buf = new StringBuilder();
+        for(String si : lower) {
+            buf.append(si).append('\u0000');
+        }
+        return buf.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(!(o instanceof SpaceFingerprint)) return false;
+        SpaceFingerprint other = (SpaceFingerprint) o;
+        return this.high == other.high && this.low == other.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (this.low ^ (this.low >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", this.high, this.low);
+    }
+}
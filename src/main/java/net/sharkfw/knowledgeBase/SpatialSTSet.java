@@ -1,6 +1,7 @@
 package net.sharkfw.knowledgeBase;
 
 import java.util.Enumeration;
+import java.util.Iterator;
 import java.util.Vector;
 import net.sharkfw.knowledgeBase.geom.SharkGeometry;
 
@@ -23,4 +24,23 @@ public interface SpatialSTSet extends STSet {
     public SpatialSemanticTag getSpatialSemanticTag(String si) throws SharkKBException;
     
     public Enumeration<SpatialSemanticTag> spatialTags() throws SharkKBException;
+    
+    /**
+     * @param latitude WGS84 degrees
+     * @param longitude WGS84 degrees
+     * @param k maximal number of tags
+     * @return up to k tags with geometry - nearest first
+     * @throws SharkKBException 
+     */
+    public Iterator<SpatialSemanticTag> nearestTags(double latitude, double longitude, int k) 
+            throws SharkKBException;
+    
+    /**
+     * @param anchor tag with geometry
+     * @param k maximal number of tags
+     * @return up to k tags with geometry - nearest to anchor first
+     * @throws SharkKBException anchor has no geometry
+     */
+    public Iterator<SpatialSemanticTag> nearestTags(SpatialSemanticTag anchor, int k) 
+            throws SharkKBException;
 }
@@ -177,7 +177,7 @@ public class FSContextPoint extends InMemoContextPoint {
             // create in memory copy and use it
             this.setContextCoordinates(xs.deserializeContextCoordinates(imkb, cooString));
         } catch (SharkKBException ex) {
-            L.w("cannot deserialize context coordinates from persistent storage: " + ex.getMessage(), this);
+            L.warn(this, "cannot deserialize context coordinates from persistent storage: {}", ex.getMessage());
         }
 
         // info folder
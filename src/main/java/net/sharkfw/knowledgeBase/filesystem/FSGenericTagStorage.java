@@ -3,9 +3,11 @@ package net.sharkfw.knowledgeBase.filesystem;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import net.sharkfw.knowledgeBase.AbstractSemanticTag;
 import net.sharkfw.knowledgeBase.PropertyHolderDelegate;
 import net.sharkfw.knowledgeBase.SemanticTag;
@@ -133,7 +135,7 @@ public class FSGenericTagStorage<ST extends SemanticTag> extends
             this.persist();
         }
         catch(Exception e) {
-            L.w("probleme while creating property folder: " + e.getMessage(), this);
+            L.warn(this, "probleme while creating property folder: {}", e.getMessage());
         }
     }
     
@@ -179,10 +181,77 @@ public class FSGenericTagStorage<ST extends SemanticTag> extends
             }
         }
         catch(Exception e) {
-            L.w("probleme while creating property folder: " + e.getMessage(), this);
+            L.warn(this, "probleme while creating property folder: {}", e.getMessage());
         }
     }
 
+    /**
+     * Each tag is persisted on its own. Si mapping is written once.
+     */
+    @Override
+    protected synchronized void addAll(Collection<? extends ST> newTags) throws SharkKBException {
+        boolean outer = this.deferPersist();
+        try {
+            for(ST tag : newTags) {
+                this.add(tag);
+            }
+        }
+        finally {
+            this.endDeferPersist(outer);
+        }
+    }
+
+    /**
+     * Each tag is removed from file system on its own. Si mapping is
+     * written once.
+     */
+    @Override
+    protected synchronized void removeAll(Collection<? extends ST> oldTags) throws SharkKBException {
+        boolean outer = this.deferPersist();
+        try {
+            for(ST tag : oldTags) {
+                this.removeSemanticTag(tag);
+            }
+        }
+        finally {
+            this.endDeferPersist(outer);
+        }
+    }
+
+    /**
+     * Si mapping is written once - sis of known tags could be added.
+     */
+    @Override
+    protected synchronized List<ST> mergeAll(Collection<? extends ST> sources,
+            Collection<? super ST> created) throws SharkKBException {
+        
+        boolean outer = this.deferPersist();
+        try {
+            return super.mergeAll(sources, created);
+        }
+        finally {
+            this.endDeferPersist(outer);
+        }
+    }
+    
+    // si mapping is written when bulk operation ends
+    private boolean deferred = false;
+    
+    /**
+     * @return true if called first
+     */
+    private boolean deferPersist() {
+        if(this.deferred) return false;
+        this.deferred = true;
+        return true;
+    }
+    
+    private void endDeferPersist(boolean outer) {
+        if(!outer) return;
+        this.deferred = false;
+        this.persist();
+    }
+
     @Override
     public ST getSemanticTag(String si) throws SharkKBException {    
         // already in memory ?
@@ -335,14 +404,16 @@ public class FSGenericTagStorage<ST extends SemanticTag> extends
 //    }
 
     protected void persist() {
+        if(this.deferred) return;
+        
         try {
             // persist si->filename mapping
             FSPropertyHolder.persistToFile(this.si2folderName, this.getPropertyFilename());
         } catch (FileNotFoundException ex) {
-            L.w("cannot write tag set properties: " + ex.getMessage(), this);
+            L.warn(this, "cannot write tag set properties: {}", ex.getMessage());
         }
         catch (IOException ioe) {
-            L.w("cannot write tag set properties: " + ioe.getMessage(), this);
+            L.warn(this, "cannot write tag set properties: {}", ioe.getMessage());
         }
     }
 }
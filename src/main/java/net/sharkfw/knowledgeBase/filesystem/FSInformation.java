@@ -151,7 +151,7 @@ public class FSInformation extends InMemoInformation {
             
             this.persist();
         } catch (Exception ex) {
-            L.e("setContent("+content+"): couldn't write information to file: " + ex.getMessage(), this);
+            L.error(this, "setContent({}): couldn't write information to file: {}", content, ex.getMessage());
 			ex.printStackTrace();
         }
     }
@@ -170,7 +170,7 @@ public class FSInformation extends InMemoInformation {
             
             this.persist();
         } catch (Exception ex) {
-            L.e("setContent(byte[]): couldn't write information to file: " + ex.getMessage(), this);
+            L.error(this, "setContent(byte[]): couldn't write information to file: {}", ex.getMessage());
 			ex.printStackTrace();
         }
     }
@@ -208,7 +208,7 @@ public class FSInformation extends InMemoInformation {
             this.persist();
             
         } catch (Exception ex) {
-            L.e("setContent(InputStream,"+len+"): couldn't write information to file: " + ex.getMessage(), this);
+            L.error(this, "setContent(InputStream,{}): couldn't write information to file: {}", len, ex.getMessage());
             ex.printStackTrace();
         }
     }
@@ -238,7 +238,7 @@ public class FSInformation extends InMemoInformation {
 			unlockFile();
             fis.close();
         } catch (Exception ex) {
-            L.l("streamContent(): couldn't read information from file (might be ok - no content)" + ex.getMessage(), this);
+            L.log(this, "streamContent(): couldn't read information from file (might be ok - no content){}", ex.getMessage());
 			ex.printStackTrace();
         }
 //        finally {
@@ -318,7 +318,7 @@ public class FSInformation extends InMemoInformation {
             this.setupContentFile();
         }
         catch(SharkKBException e) {
-            L.e("unhandled exception: " + e.getMessage(), this);
+            L.error(this, "unhandled exception: {}", e.getMessage());
         }
     }
     
@@ -330,7 +330,7 @@ public class FSInformation extends InMemoInformation {
             this.setupContentFile();
         }
         catch(SharkKBException e) {
-            L.e("unhandled exception: " + e.getMessage(), this);
+            L.error(this, "unhandled exception: {}", e.getMessage());
         }
     }
     
@@ -543,7 +543,7 @@ public class FSInformation extends InMemoInformation {
 			k++;
 		}	
 		if ((ioe != null) && (k > 0)) {
-			L.l(k+"th attempt to get lock", this);
+			L.log(this, "{}th attempt to get lock", k);
 			ioe.printStackTrace();	
 		}			
 	}
@@ -553,7 +553,7 @@ public class FSInformation extends InMemoInformation {
 			try {
 				_fLock.release();
 			} catch (IOException e) {
-				L.l("getContentAsByte(): error in unlockFile(): " + e.getMessage(), this);
+				L.log(this, "getContentAsByte(): error in unlockFile(): {}", e.getMessage());
 				e.printStackTrace();
 			}
 			_fLock = null;
@@ -0,0 +1,97 @@
+package net.sharkfw.knowledgeBase.filesystem;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import net.sharkfw.knowledgeBase.IndexedInterestStorage;
+import net.sharkfw.knowledgeBase.SharkKBException;
+
+/**
+ * Keeps each interest in a file of its own. Adding an interest writes a
+ * single file, removing one deletes it.
+ *
+ * @author thsc
+ */
+public class FSInterestStorage extends IndexedInterestStorage {
+    private static final String ENCODING = "UTF-8";
+
+    private final String foldername;
+
+    FSInterestStorage(String foldername) {
+        this.foldername = foldername;
+    }
+
+    private File file(String id) {
+        return new File(this.foldername, id);
+    }
+
+    @Override
+    protected Iterator<String> recordIds() {
+        List<String> ids = new ArrayList<>();
+        String[] names = new File(this.foldername).list();
+        if(names != null) {
+            for(String name : names) {
+                ids.add(name);
+            }
+        }
+        return ids.iterator();
+    }
+
+    @Override
+    protected String readRecord(String id) throws SharkKBException {
+        try {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(this.file(id)), ENCODING));
+
+            try {
+                StringBuilder record = new StringBuilder();
+                char[] buffer = new char[1024];
+                int read;
+                while((read = reader.read(buffer)) != -1) {
+                    record.append(buffer, 0, read);
+                }
+                return record.toString();
+            }
+            finally {
+                reader.close();
+            }
+        }
+        catch(FileNotFoundException e) {
+            return null;
+        }
+        catch(IOException e) {
+            throw new SharkKBException("cannot read interest: " + e.getMessage());
+        }
+    }
+
+    @Override
+    protected void writeRecord(String id, String record) throws SharkKBException {
+        new File(this.foldername).mkdirs();
+        try {
+            Writer writer = new OutputStreamWriter(new FileOutputStream(this.file(id)), ENCODING);
+            try {
+                writer.write(record);
+            }
+            finally {
+                writer.close();
+            }
+        }
+        catch(IOException e) {
+            throw new SharkKBException("cannot write interest: " + e.getMessage());
+        }
+    }
+
+    @Override
+    protected void removeRecord(String id) {
+        this.file(id).delete();
+    }
+}
@@ -57,10 +57,10 @@ public class FSPropertyHolder extends InMemoPropertyHolder {
             }
         }
         catch(FileNotFoundException fnfe) {
-            L.e("couldn't open file to write (hidden) properties: " + fnfe, this);
+            L.error(this, "couldn't open file to write (hidden) properties: {}", fnfe);
         }
         catch(IOException fnfe) {
-            L.e("couldn't open file to write (hidden) properties: " + fnfe, this);
+            L.error(this, "couldn't open file to write (hidden) properties: {}", fnfe);
         }
     }
     
@@ -76,10 +76,10 @@ public class FSPropertyHolder extends InMemoPropertyHolder {
             this.persistSystemProperties();
         }
         catch(FileNotFoundException fnfe) {
-            L.w("couldn't open file to write system properties: " + fnfe, this);
+            L.warn(this, "couldn't open file to write system properties: {}", fnfe);
         }
         catch(IOException fnfe) {
-            L.w("couldn't open file to write system properties: " + fnfe, this);
+            L.warn(this, "couldn't open file to write system properties: {}", fnfe);
         }
     }
     
@@ -100,12 +100,12 @@ public class FSPropertyHolder extends InMemoPropertyHolder {
         FSPropertyHolder.persistToFile(this.getSystemProperties(), filename);
     }
 
-    private void persistHiddenProperties() throws FileNotFoundException, IOException {
+    private synchronized void persistHiddenProperties() throws FileNotFoundException, IOException {
         String filename = this.getHiddenPropertyFilename();
         FSPropertyHolder.persistToFile(this.getHiddenProperties(), filename);
     }
     
-    private void persistProperties() throws FileNotFoundException, IOException {
+    private synchronized void persistProperties() throws FileNotFoundException, IOException {
         String filename = this.getPropertyFilename();
         FSPropertyHolder.persistToFile(this.getUnhiddenProperties(), filename);
     }
@@ -194,7 +194,7 @@ public class FSPropertyHolder extends InMemoPropertyHolder {
         }
     }
     
-    public void restore() throws SharkKBException {
+    public synchronized void restore() throws SharkKBException {
         FSPropertyHolder.restoreFromFile(this.getHiddenProperties(), this.getHiddenPropertyFilename());
         FSPropertyHolder.restoreFromFile(this.getUnhiddenProperties(), this.getPropertyFilename());
         FSPropertyHolder.restoreFromFile(this.getSystemProperties(), this.getSystemPropertyFilename());
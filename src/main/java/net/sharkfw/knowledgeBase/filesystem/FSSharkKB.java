@@ -3,6 +3,7 @@ package net.sharkfw.knowledgeBase.filesystem;
 import java.io.File;
 import net.sharkfw.knowledgeBase.ContextCoordinates;
 import net.sharkfw.knowledgeBase.ContextPoint;
+import net.sharkfw.knowledgeBase.IndexedInterestStorage;
 import net.sharkfw.knowledgeBase.PeerTaxonomy;
 import net.sharkfw.knowledgeBase.SemanticNet;
 import net.sharkfw.knowledgeBase.SharkKB;
@@ -26,6 +27,7 @@ public class FSSharkKB extends InMemoSharkKB implements SharkKB {
     public static final String LOCATIONS_FOLDER = "/locations";
     public static final String TIMES_FOLDER = "/times";
     public static final String KNOWLEDGE_FOLDER = "/knowledge";
+    public static final String INTERESTS_FOLDER = "/interests";
     
     private static String chosenName = null;
     private static String uniqueFileName(String proposedName) {
@@ -121,7 +123,7 @@ public class FSSharkKB extends InMemoSharkKB implements SharkKB {
         }
         catch(Exception e) {
             // ignore
-            L.l("cannot remove folder: " + e.getMessage(), null);
+            L.log(null, "cannot remove folder: {}", e.getMessage());
         }
     }
     
@@ -167,6 +169,14 @@ public class FSSharkKB extends InMemoSharkKB implements SharkKB {
         return this.fsk.createContextPoint(coordinates);
     }
     
+    /**
+     * Interests are kept in files of their own.
+     */
+    @Override
+    protected IndexedInterestStorage createInterestStorage() {
+        return new FSInterestStorage(this.rootFolder + INTERESTS_FOLDER);
+    }
+    
     public String getFoldername() {
         return this.rootFolder;
     }
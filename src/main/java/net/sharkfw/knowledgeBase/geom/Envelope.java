@@ -0,0 +1,85 @@
+package net.sharkfw.knowledgeBase.geom;
+
+/**
+ * Axis aligned bounding box of a geometry. Immutable.
+ *
+ * @author thsc
+ */
+public final class Envelope {
+
+    private final double minX, minY, maxX, maxY;
+
+    public Envelope(double minX, double minY, double maxX, double maxY) {
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+
+    public double getMinX() {
+        return this.minX;
+    }
+
+    public double getMinY() {
+        return this.minY;
+    }
+
+    public double getMaxX() {
+        return this.maxX;
+    }
+
+    public double getMaxY() {
+        return this.maxY;
+    }
+
+    public boolean intersects(Envelope other) {
+        return this.minX <= other.maxX && other.minX <= this.maxX
+                && this.minY <= other.maxY && other.minY <= this.maxY;
+    }
+
+    /**
+     * @return true if other lies in this envelope - borders included
+     */
+    public boolean contains(Envelope other) {
+        return this.minX <= other.minX && other.maxX <= this.maxX
+                && this.minY <= other.minY && other.maxY <= this.maxY;
+    }
+
+    public boolean contains(double x, double y) {
+        return this.minX <= x && x <= this.maxX && this.minY <= y && y <= this.maxY;
+    }
+
+    public Envelope union(Envelope other) {
+        if(this.contains(other)) return this;
+
+        return new Envelope(
+                Math.min(this.minX, other.minX), Math.min(this.minY, other.minY),
+                Math.max(this.maxX, other.maxX), Math.max(this.maxY, other.maxY));
+    }
+
+    public double area() {
+        return (this.maxX - this.minX) * (this.maxY - this.minY);
+    }
+
+    /**
+     * @return area growth if other would be added to this envelope
+     */
+    public double enlargement(Envelope other) {
+        double width = Math.max(this.maxX, other.maxX) - Math.min(this.minX, other.minX);
+        double height = Math.max(this.maxY, other.maxY) - Math.min(this.minY, other.minY);
+        return width * height - this.area();
+    }
+
+    public double getCenterX() {
+        return (this.minX + this.maxX) / 2;
+    }
+
+    public double getCenterY() {
+        return (this.minY + this.maxY) / 2;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + this.minX + " " + this.minY + ", " + this.maxX + " " + this.maxY + "]";
+    }
+}
@@ -1,15 +1,28 @@
 package net.sharkfw.knowledgeBase.geom;
 
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import net.sharkfw.knowledgeBase.SemanticTag;
+import net.sharkfw.knowledgeBase.SharkCSAlgebra;
 import net.sharkfw.knowledgeBase.SharkKBException;
 import net.sharkfw.knowledgeBase.SpatialSTSet;
 import net.sharkfw.knowledgeBase.SpatialSemanticTag;
+import net.sharkfw.knowledgeBase.geom.inmemory.InMemoSharkGeometry;
+import net.sharkfw.knowledgeBase.geom.inmemory.ParsedGeometry;
+import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
 
 /**
- * That class is just a placeholder. It allows defining a spatial algebra in
- * SharkCSAlgebra. The actual implementation with J2SE is made by means of Java
- * Topology Suite (JTS).
+ * Default spatial algebra in SharkCSAlgebra. The implementation with J2SE
+ * can be made by means of Java Topology Suite (JTS) which replaces this class
+ * if available.
  *
  * That class will be used on every device which can't or don't want to use JTS.
+ * Geometries are parsed from their WKT and compared in the plane of their
+ * coordinates - see ParsedGeometry. Bounding boxes are compared first.
+ * 
+ * Tags without geometry are compared by their subject identifiers. An
+ * empty or missing set is interpreted as any.
  *
  * @author thsc, Fabian Schmöker (s0542541), Tino Herrmann (s0542709)
  * @version 1.0
@@ -25,7 +38,8 @@ public class SpatialAlgebra {
      * @return Returns true if semantics of WKT is valid - otherwise false.
      */
     public boolean isValidWKT(String wkt) throws SharkKBException {
-        //see InMemoSharkGeometry createGeomByWKT();
+        // syntax errors are thrown
+        ParsedGeometry.parse(wkt);
         return true;
     }
 
@@ -38,14 +52,69 @@ public class SpatialAlgebra {
      * @return Returns true if semantics of WKT (not EWKT!) is valid - otherwise false.
      */
     public boolean isValidEWKT(String ewkt) throws SharkKBException {
-        //see InMemoSharkGeometry createGeomByEWKT();
-        return true;
+        if(ewkt == null) throw new SharkKBException("EWKT must not be null");
+        
+        String wkt = ewkt.trim();
+        if(wkt.toUpperCase().startsWith("SRID")) {
+            int end = wkt.indexOf(';');
+            if(end == -1) throw new SharkKBException("';' expected after SRID: " + ewkt);
+            
+            String srid = wkt.substring(0, end);
+            int equals = srid.indexOf('=');
+            try {
+                Integer.parseInt(srid.substring(equals + 1).trim());
+            }
+            catch(NumberFormatException e) {
+                throw new SharkKBException("malformed SRID: " + ewkt);
+            }
+            wkt = wkt.substring(end + 1);
+        }
+        
+        return this.isValidWKT(wkt);
     }
 
-    ////////////////////////////////////////////////////////////////////////
-    //           very optimistic dummy implementation start here.         //
-    ////////////////////////////////////////////////////////////////////////
+    /**
+     * @return parsed geometry of tag or null if tag has no geometry
+     */
+    protected ParsedGeometry getGeometry(SpatialSemanticTag tag) throws SharkKBException {
+        if(tag == null) return null;
+        
+        SharkGeometry geom = tag.getGeometry();
+        if(geom == null) return null;
+        
+        return InMemoSharkGeometry.parse(geom);
+    }
+    
+    /**
+     * @return geometries of all tags in set - tags without geometry are
+     * added to noGeometry if not null
+     */
+    private List<ParsedGeometry> getGeometries(SpatialSTSet set, 
+            List<SemanticTag> noGeometry) throws SharkKBException {
+        
+        List<ParsedGeometry> geometries = new ArrayList<>();
+        if(set == null) return geometries;
+        
+        Enumeration<SemanticTag> tags = set.tags();
+        while(tags != null && tags.hasMoreElements()) {
+            SemanticTag tag = tags.nextElement();
+            ParsedGeometry geometry = tag instanceof SpatialSemanticTag
+                    ? this.getGeometry((SpatialSemanticTag) tag) : null;
+            
+            if(geometry != null) {
+                geometries.add(geometry);
+            } else if(noGeometry != null) {
+                noGeometry.add(tag);
+            }
+        }
+        
+        return geometries;
+    }
     
+    private static boolean isEmpty(SpatialSTSet set) {
+        return set == null || set.isEmpty();
+    }
+
     /**
      * Checks if two Shark-SpatialSemanticTags
      * are identical. In that case, it checkes whether the geometries of both
@@ -58,7 +127,16 @@ public class SpatialAlgebra {
      * @return Returns true if both SpatialSemanticTags are identical - otherwise false.
      */    
     public boolean identical(SpatialSemanticTag a, SpatialSemanticTag b) throws SharkKBException {
-        return true;
+        if(a == null || b == null) return true;
+        
+        ParsedGeometry geomA = this.getGeometry(a);
+        ParsedGeometry geomB = this.getGeometry(b);
+        
+        if(geomA == null || geomB == null) {
+            return SharkCSAlgebra.identical(a.getSI(), b.getSI());
+        }
+        
+        return geomA.equalsTopologically(geomB);
     }
 
     /**
@@ -75,7 +153,13 @@ public class SpatialAlgebra {
      *         - otherwise false.
      */    
     public boolean identical(SpatialSTSet a, SpatialSemanticTag b) throws SharkKBException {
-        return true;
+        if(SpatialAlgebra.isEmpty(a) || b == null) return true;
+        
+        ParsedGeometry geomB = this.getGeometry(b);
+        List<ParsedGeometry> geomsA = this.getGeometries(a, null);
+        if(geomB == null || geomsA.isEmpty()) return false;
+        
+        return ParsedGeometry.collect(geomsA).equalsTopologically(geomB);
     }
 
     /**
@@ -90,7 +174,14 @@ public class SpatialAlgebra {
      * @return Returns true if both SpatialSTSets are identical - otherwise false.
      */    
     public boolean identical(SpatialSTSet a, SpatialSTSet b) throws SharkKBException {
-        return true;
+        if(SpatialAlgebra.isEmpty(a) || SpatialAlgebra.isEmpty(b)) return true;
+        
+        List<ParsedGeometry> geomsA = this.getGeometries(a, null);
+        List<ParsedGeometry> geomsB = this.getGeometries(b, null);
+        if(geomsA.isEmpty() || geomsB.isEmpty()) return false;
+        
+        return ParsedGeometry.collect(geomsA).equalsTopologically(
+                ParsedGeometry.collect(geomsB));
     }
 
     /**
@@ -109,7 +200,16 @@ public class SpatialAlgebra {
      *         - otherwise false.
      */    
     public boolean isIn(SpatialSemanticTag a, SpatialSemanticTag b) throws SharkKBException {
-        return true;
+        if(a == null || b == null) return true;
+        
+        ParsedGeometry geomA = this.getGeometry(a);
+        ParsedGeometry geomB = this.getGeometry(b);
+        
+        if(geomA == null || geomB == null) {
+            return SharkCSAlgebra.identical(a.getSI(), b.getSI());
+        }
+        
+        return geomA.covers(geomB);
     }
 
     /**
@@ -127,7 +227,17 @@ public class SpatialAlgebra {
      *         - otherwise false.
      */    
     public boolean isIn(SpatialSTSet a, SpatialSemanticTag b) throws SharkKBException {
-        return true;
+        if(SpatialAlgebra.isEmpty(a) || b == null) return true;
+        
+        ParsedGeometry geomB = this.getGeometry(b);
+        if(geomB == null) {
+            return a.getSemanticTag(b.getSI()) != null;
+        }
+        
+        List<ParsedGeometry> geomsA = this.getGeometries(a, null);
+        if(geomsA.isEmpty()) return false;
+        
+        return ParsedGeometry.collect(geomsA).covers(geomB);
     }
 
     /**
@@ -145,7 +255,21 @@ public class SpatialAlgebra {
      *         - otherwise false.
      */    
     public boolean isIn(SpatialSTSet a, SpatialSTSet b) throws SharkKBException {
-        return true;
+        if(SpatialAlgebra.isEmpty(a) || SpatialAlgebra.isEmpty(b)) return true;
+        
+        List<SemanticTag> noGeometryB = new ArrayList<>();
+        List<ParsedGeometry> geomsB = this.getGeometries(b, noGeometryB);
+        
+        for(SemanticTag tag : noGeometryB) {
+            if(a.getSemanticTag(tag.getSI()) == null) return false;
+        }
+        
+        if(geomsB.isEmpty()) return true;
+        
+        List<ParsedGeometry> geomsA = this.getGeometries(a, null);
+        if(geomsA.isEmpty()) return false;
+        
+        return ParsedGeometry.collect(geomsA).covers(ParsedGeometry.collect(geomsB));
     }
 
     /**
@@ -165,7 +289,34 @@ public class SpatialAlgebra {
      *         fragment was null, then an empty SpatialSTSet will returned.
      */    
     public SpatialSTSet fragment(SpatialSTSet fragment, SpatialSTSet source, SpatialSemanticTag anchor) throws SharkKBException {
-        return null;
+        if(fragment == null) {
+            fragment = InMemoSharkKB.createInMemoSpatialSTSet();
+        }
+        
+        if(source == null || anchor == null) return fragment;
+        
+        ParsedGeometry geomAnchor = this.getGeometry(anchor);
+        if(geomAnchor == null) {
+            // no geometry - same subject
+            SemanticTag tag = source.getSemanticTag(anchor.getSI());
+            if(tag != null) {
+                fragment.merge(tag);
+            }
+            return fragment;
+        }
+        
+        Enumeration<SemanticTag> tags = source.tags();
+        while(tags != null && tags.hasMoreElements()) {
+            SemanticTag tag = tags.nextElement();
+            if(!(tag instanceof SpatialSemanticTag)) continue;
+            
+            ParsedGeometry geometry = this.getGeometry((SpatialSemanticTag) tag);
+            if(geometry != null && geometry.intersects(geomAnchor)) {
+                fragment.merge(tag);
+            }
+        }
+        
+        return fragment;
     }
 
 }
@@ -0,0 +1,180 @@
+package net.sharkfw.knowledgeBase.geom.inmemory;
+
+import net.sharkfw.knowledgeBase.geom.Envelope;
+
+/**
+ * Distances on earth in meters. Coordinates are WGS84 degrees - x is
+ * longitude, y is latitude like in WKT.
+ *
+ * Earth is taken as sphere. Haversine is exact on that sphere. Equirectangular
+ * projects around a reference point - it is fast and precise enough for
+ * distances of some kilometers.
+ *
+ * Bulk kernels work on flat coordinate arrays x0, y0, x1, y1, ... like
+ * ParsedGeometry. Their loops are free of branches and allocations.
+ *
+ * @author thsc
+ */
+public final class GeoDistance {
+
+    /** mean earth radius in meters */
+    public static final double EARTH_RADIUS = 6371008.8;
+
+    private static final double RAD = Math.PI / 180;
+
+    private GeoDistance() {}
+
+    /**
+     * @return great circle distance in meters
+     */
+    public static double haversine(double lat1, double lon1, double lat2, double lon2) {
+        double sinLat = Math.sin((lat2 - lat1) * RAD / 2);
+        double sinLon = Math.sin((lon2 - lon1) * RAD / 2);
+        double a = sinLat * sinLat
+                + Math.cos(lat1 * RAD) * Math.cos(lat2 * RAD) * sinLon * sinLon;
+
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * @return approximated distance in meters - projected around first point
+     */
+    public static double equirectangular(double lat1, double lon1, double lat2, double lon2) {
+        double x = wrap(lon2 - lon1) * RAD * Math.cos((lat1 + lat2) / 2 * RAD);
+        double y = (lat2 - lat1) * RAD;
+
+        return EARTH_RADIUS * Math.sqrt(x * x + y * y);
+    }
+
+    /**
+     * Haversine distances from (lat, lon) to each point of xy.
+     *
+     * @param xy longitude, latitude pairs
+     * @param distances receives n / 2 distances in meters
+     */
+    public static void haversine(double lat, double lon, double[] xy, double[] distances) {
+        double cosLat = Math.cos(lat * RAD);
+        int n = xy.length / 2;
+        for(int i = 0; i < n; i++) {
+            double sinLat = Math.sin((xy[2 * i + 1] - lat) * RAD / 2);
+            double sinLon = Math.sin((xy[2 * i] - lon) * RAD / 2);
+            double a = sinLat * sinLat
+                    + cosLat * Math.cos(xy[2 * i + 1] * RAD) * sinLon * sinLon;
+
+            distances[i] = 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+        }
+    }
+
+    /**
+     * Marks points of xy within radius of (lat, lon). Distances are
+     * compared as haversine terms - no inverse trigonometry per point.
+     *
+     * @param xy longitude, latitude pairs
+     * @param inRange receives true for n / 2 points within radius
+     * @return number of points within radius
+     */
+    public static int inRange(double lat, double lon, double radius, double[] xy,
+            boolean[] inRange) {
+
+        double cosLat = Math.cos(lat * RAD);
+        double threshold = haversineTerm(radius);
+        int n = xy.length / 2;
+        int number = 0;
+        for(int i = 0; i < n; i++) {
+            double sinLat = Math.sin((xy[2 * i + 1] - lat) * RAD / 2);
+            double sinLon = Math.sin((xy[2 * i] - lon) * RAD / 2);
+            double a = sinLat * sinLat
+                    + cosLat * Math.cos(xy[2 * i + 1] * RAD) * sinLon * sinLon;
+
+            boolean in = a <= threshold;
+            inRange[i] = in;
+            number += in ? 1 : 0;
+        }
+        return number;
+    }
+
+    /**
+     * @return haversine term a of distance - sin^2(d / 2R)
+     */
+    private static double haversineTerm(double distance) {
+        if(distance >= Math.PI * EARTH_RADIUS) return 1;
+        double s = Math.sin(distance / EARTH_RADIUS / 2);
+        return s * s;
+    }
+
+    /**
+     * @return minimal haversine distance from (lat, lon) to points of xy -
+     * infinite if there are no points
+     */
+    public static double minHaversine(double lat, double lon, double[] xy) {
+        double cosLat = Math.cos(lat * RAD);
+        double min = Double.POSITIVE_INFINITY;
+        for(int i = 0; i + 1 < xy.length; i += 2) {
+            double sinLat = Math.sin((xy[i + 1] - lat) * RAD / 2);
+            double sinLon = Math.sin((xy[i] - lon) * RAD / 2);
+            double a = sinLat * sinLat + cosLat * Math.cos(xy[i + 1] * RAD) * sinLon * sinLon;
+            min = Math.min(min, a);
+        }
+        if(min == Double.POSITIVE_INFINITY) return min;
+
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(min)));
+    }
+
+    /**
+     * @return distance in meters from (lat, lon) to the polyline xy - segments
+     * are projected equirectangular around (lat, lon)
+     */
+    public static double toPolyline(double lat, double lon, double[] xy) {
+        if(xy.length == 2) return haversine(lat, lon, xy[1], xy[0]);
+
+        double cosLat = Math.cos(lat * RAD);
+        double min = Double.POSITIVE_INFINITY;
+        for(int i = 0; i + 3 < xy.length; i += 2) {
+            // local plane in radians - reference point is origin
+            double ax = wrap(xy[i] - lon) * RAD * cosLat;
+            double ay = (xy[i + 1] - lat) * RAD;
+            double bx = wrap(xy[i + 2] - lon) * RAD * cosLat;
+            double by = (xy[i + 3] - lat) * RAD;
+
+            double dx = bx - ax, dy = by - ay;
+            double length = dx * dx + dy * dy;
+            double t = length == 0 ? 0 : -(ax * dx + ay * dy) / length;
+            t = Math.max(0, Math.min(1, t));
+
+            double px = ax + t * dx, py = ay + t * dy;
+            min = Math.min(min, px * px + py * py);
+        }
+
+        return EARTH_RADIUS * Math.sqrt(min);
+    }
+
+    /**
+     * @return bounding box in degrees of all points within radius of
+     * (lat, lon). Boxes crossing the antimeridian or a pole cover all
+     * longitudes.
+     */
+    public static Envelope box(double lat, double lon, double radius) {
+        double dLat = radius / EARTH_RADIUS / RAD;
+        double minLat = lat - dLat, maxLat = lat + dLat;
+        if(minLat <= -90 || maxLat >= 90) {
+            return new Envelope(-180, Math.max(-90, minLat), 180, Math.min(90, maxLat));
+        }
+
+        double cos = Math.cos(Math.max(Math.abs(minLat), Math.abs(maxLat)) * RAD);
+        double dLon = radius / (EARTH_RADIUS * cos) / RAD;
+        if(dLon >= 180 || lon - dLon < -180 || lon + dLon > 180) {
+            return new Envelope(-180, minLat, 180, maxLat);
+        }
+
+        return new Envelope(lon - dLon, minLat, lon + dLon, maxLat);
+    }
+
+    /**
+     * @return longitude difference in [-180, 180]
+     */
+    private static double wrap(double dLon) {
+        if(dLon > 180) return dLon - 360;
+        if(dLon < -180) return dLon + 360;
+        return dLon;
+    }
+}
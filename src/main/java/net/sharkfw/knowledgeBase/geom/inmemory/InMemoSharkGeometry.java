@@ -23,6 +23,9 @@ public class InMemoSharkGeometry implements SharkGeometry {
     private final String wkt;
     private final int srs;
 
+    // parsed on first use
+    private volatile ParsedGeometry parsed = null;
+
     private InMemoSharkGeometry(String wkt, int srs) {
         this.wkt = wkt;
         this.srs = srs;
@@ -83,6 +86,31 @@ public class InMemoSharkGeometry implements SharkGeometry {
         return SharkGeometry.SHARK_POINT_SI_PREFIX + geom.getEWKT();
     }
 
+    /**
+     * @return parsed geometry - it is parsed once and kept
+     * @throws SharkKBException malformed WKT
+     */
+    public ParsedGeometry getParsedGeometry() throws SharkKBException {
+        ParsedGeometry p = this.parsed;
+        if(p == null) {
+            p = ParsedGeometry.parse(this.wkt);
+            this.parsed = p;
+        }
+        return p;
+    }
+
+    /**
+     * @param geom any shark geometry
+     * @return parsed geometry - cached with in memory geometries
+     * @throws SharkKBException malformed WKT
+     */
+    public static ParsedGeometry parse(SharkGeometry geom) throws SharkKBException {
+        if(geom instanceof InMemoSharkGeometry) {
+            return ((InMemoSharkGeometry) geom).getParsedGeometry();
+        }
+        return ParsedGeometry.parse(geom.getWKT());
+    }
+
     /**
      *
      * @return WKT
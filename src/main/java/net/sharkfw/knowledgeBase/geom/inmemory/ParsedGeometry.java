@@ -0,0 +1,903 @@
+package net.sharkfw.knowledgeBase.geom.inmemory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import net.sharkfw.knowledgeBase.SharkKBException;
+import net.sharkfw.knowledgeBase.geom.Envelope;
+
+/**
+ * Parsed form of a Well-known text. Immutable.
+ *
+ * A geometry is a collection of points, lines and polygons. Coordinates are
+ * kept in flat double arrays: x0, y0, x1, y1, ... Polygons are arrays of
+ * closed rings - shell first, holes following. Z and M values are dropped.
+ *
+ * Supported are POINT, LINESTRING, POLYGON, their MULTI variants and
+ * GEOMETRYCOLLECTION. The legacy Shark notation "latitude, longitude[, radius]"
+ * is read as point.
+ *
+ * Topological predicates are computed in the plane of the coordinates.
+ * Boundaries are part of a geometry.
+ *
+ * @author thsc
+ */
+public final class ParsedGeometry {
+
+    /**
+     * tolerance of coordinate comparisons - about a tenth of a millimeter
+     * with degrees
+     */
+    static final double EPSILON = 1e-9;
+
+    private static final double[] NO_POINTS = new double[0];
+    private static final double[][] NO_LINES = new double[0][];
+    private static final double[][][] NO_POLYGONS = new double[0][][];
+
+    private final double[] points;
+    private final double[][] lines;
+    private final double[][][] polygons;
+
+    // radius of legacy point notation in meters, 0 otherwise
+    private final double radius;
+
+    private final Envelope envelope;
+
+    // all coordinates of points, lines and rings
+    private final double[] vertices;
+
+    private ParsedGeometry(double[] points, double[][] lines,
+            double[][][] polygons, double radius) {
+
+        this.points = points;
+        this.lines = lines;
+        this.polygons = polygons;
+        this.radius = radius;
+        this.envelope = this.calculateEnvelope();
+        this.vertices = this.collectVertices();
+    }
+
+    /**
+     * @param wkt Well-known text or legacy point notation
+     * @return parsed geometry
+     * @throws SharkKBException malformed text
+     */
+    public static ParsedGeometry parse(String wkt) throws SharkKBException {
+        if(wkt == null) {
+            throw new SharkKBException("WKT must not be null");
+        }
+
+        String text = wkt.trim();
+        if(text.isEmpty()) {
+            throw new SharkKBException("WKT must not be empty");
+        }
+
+        char first = text.charAt(0);
+        if(Character.isDigit(first) || first == '-' || first == '+' || first == '.') {
+            return parseLegacyPoint(text);
+        }
+
+        Parser parser = new Parser(text);
+        Builder builder = new Builder();
+        parser.geometry(builder);
+        parser.end();
+
+        return builder.build(0);
+    }
+
+    /**
+     * @return point geometry - x is longitude, y latitude with WGS84
+     */
+    public static ParsedGeometry point(double x, double y) {
+        return new ParsedGeometry(new double[] {x, y}, NO_LINES, NO_POLYGONS, 0);
+    }
+
+    /**
+     * @return one geometry made of all parts - it covers their union
+     */
+    public static ParsedGeometry collect(List<ParsedGeometry> parts) {
+        if(parts.size() == 1) return parts.get(0);
+
+        Builder builder = new Builder();
+        for(ParsedGeometry part : parts) {
+            for(int i = 0; i < part.points.length; i += 2) {
+                builder.point(part.points[i], part.points[i + 1]);
+            }
+            builder.lines.addAll(Arrays.asList(part.lines));
+            builder.polygons.addAll(Arrays.asList(part.polygons));
+        }
+        return builder.build(0);
+    }
+
+    /**
+     * "latitude, longitude[, radius]"
+     */
+    private static ParsedGeometry parseLegacyPoint(String text) throws SharkKBException {
+        String[] values = text.split(",");
+        if(values.length < 2 || values.length > 3) {
+            throw new SharkKBException("malformed point: " + text);
+        }
+
+        try {
+            double latitude = Double.parseDouble(values[0].trim());
+            double longitude = Double.parseDouble(values[1].trim());
+            double radius = values.length > 2 ? Double.parseDouble(values[2].trim()) : 0;
+
+            return new ParsedGeometry(new double[] {longitude, latitude},
+                    NO_LINES, NO_POLYGONS, radius);
+        }
+        catch(NumberFormatException e) {
+            throw new SharkKBException("malformed point: " + text);
+        }
+    }
+
+    /**
+     * @return bounding box or null if geometry is empty
+     */
+    public Envelope getEnvelope() {
+        return this.envelope;
+    }
+
+    public boolean isEmpty() {
+        return this.envelope == null;
+    }
+
+    /**
+     * @return radius in meters given with legacy point notation - 0 otherwise
+     */
+    public double getRadius() {
+        return this.radius;
+    }
+
+    /**
+     * @return copy of point coordinates x0, y0, x1, y1, ...
+     */
+    public double[] getPoints() {
+        return this.points.clone();
+    }
+
+    public int getNumberOfPoints() {
+        return this.points.length / 2;
+    }
+
+    public double getX(int point) {
+        return this.points[2 * point];
+    }
+
+    public double getY(int point) {
+        return this.points[2 * point + 1];
+    }
+
+    public int getNumberOfLines() {
+        return this.lines.length;
+    }
+
+    /**
+     * @return copy of coordinates of line i
+     */
+    public double[] getLine(int i) {
+        return this.lines[i].clone();
+    }
+
+    public int getNumberOfPolygons() {
+        return this.polygons.length;
+    }
+
+    /**
+     * @return copy of rings of polygon i - shell first
+     */
+    public double[][] getPolygon(int i) {
+        double[][] rings = new double[this.polygons[i].length][];
+        for(int r = 0; r < rings.length; r++) {
+            rings[r] = this.polygons[i][r].clone();
+        }
+        return rings;
+    }
+
+    /**
+     * @return true if geometry consists of points only
+     */
+    public boolean isPoints() {
+        return this.lines.length == 0 && this.polygons.length == 0;
+    }
+
+    private double[] collectVertices() {
+        if(this.isPoints()) return this.points;
+
+        int length = this.points.length;
+        for(double[] curve : this.curves()) {
+            length += curve.length;
+        }
+
+        double[] xy = Arrays.copyOf(this.points, length);
+        int i = this.points.length;
+        for(double[] curve : this.curves()) {
+            System.arraycopy(curve, 0, xy, i, curve.length);
+            i += curve.length;
+        }
+        return xy;
+    }
+
+    private Envelope calculateEnvelope() {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+
+        List<double[]> arrays = new ArrayList<>();
+        arrays.add(this.points);
+        arrays.addAll(Arrays.asList(this.lines));
+        for(double[][] polygon : this.polygons) {
+            // shell is sufficient
+            arrays.add(polygon[0]);
+        }
+
+        for(double[] xy : arrays) {
+            for(int i = 0; i < xy.length; i += 2) {
+                minX = Math.min(minX, xy[i]);
+                maxX = Math.max(maxX, xy[i]);
+                minY = Math.min(minY, xy[i + 1]);
+                maxY = Math.max(maxY, xy[i + 1]);
+            }
+        }
+
+        if(minX > maxX) return null;
+
+        return new Envelope(minX, minY, maxX, maxY);
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    //                       topological predicates                       //
+    ////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @return true if both geometries have at least one point in common
+     */
+    public boolean intersects(ParsedGeometry other) {
+        if(this.isEmpty() || other.isEmpty()) return false;
+        if(!this.envelope.intersects(other.envelope)) return false;
+
+        // points
+        for(int i = 0; i < this.points.length; i += 2) {
+            if(other.covers(this.points[i], this.points[i + 1])) return true;
+        }
+        for(int i = 0; i < other.points.length; i += 2) {
+            if(this.covers(other.points[i], other.points[i + 1])) return true;
+        }
+
+        // crossing boundaries
+        for(double[] a : this.curves()) {
+            for(double[] b : other.curves()) {
+                if(curvesIntersect(a, b)) return true;
+            }
+        }
+
+        // no crossing - a connected part lies completely inside the other geometry
+        for(double[] a : this.curves()) {
+            if(other.covers(a[0], a[1])) return true;
+        }
+        for(double[] b : other.curves()) {
+            if(this.covers(b[0], b[1])) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return true if no point of other lies outside this geometry
+     */
+    public boolean covers(ParsedGeometry other) {
+        if(this.isEmpty() || other.isEmpty()) return false;
+        if(!this.envelope.contains(other.envelope)) return false;
+
+        for(int i = 0; i < other.points.length; i += 2) {
+            if(!this.covers(other.points[i], other.points[i + 1])) return false;
+        }
+
+        // all lines and polygon boundaries of other
+        for(double[] curve : other.curves()) {
+            for(int i = 0; i + 3 < curve.length; i += 2) {
+                if(!this.coversSegment(curve[i], curve[i + 1], curve[i + 2], curve[i + 3])) {
+                    return false;
+                }
+            }
+        }
+
+        if(other.polygons.length == 0) return true;
+
+        /* boundary of other is covered. Areas of other can still contain
+         * holes or gaps of this geometry. Probe both sides of each polygon
+         * boundary of this geometry.
+         */
+        for(double[][] polygon : this.polygons) {
+            for(double[] ring : polygon) {
+                for(int i = 0; i + 3 < ring.length; i += 2) {
+                    double x1 = ring[i], y1 = ring[i + 1];
+                    double x2 = ring[i + 2], y2 = ring[i + 3];
+                    double length = Math.hypot(x2 - x1, y2 - y1);
+                    if(length == 0) continue;
+
+                    double offset = Math.max(length * 1e-6, EPSILON * 10);
+                    double mx = (x1 + x2) / 2, my = (y1 + y2) / 2;
+                    double nx = -(y2 - y1) / length * offset;
+                    double ny = (x2 - x1) / length * offset;
+
+                    if(other.coversArea(mx + nx, my + ny) && !this.covers(mx + nx, my + ny)) {
+                        return false;
+                    }
+                    if(other.coversArea(mx - nx, my - ny) && !this.covers(mx - nx, my - ny)) {
+                        return false;
+                    }
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return true if both geometries cover each other
+     */
+    public boolean equalsTopologically(ParsedGeometry other) {
+        return this.covers(other) && other.covers(this);
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    //                         distances on earth                         //
+    ////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Distance between a position and this geometry. Coordinates are taken
+     * as WGS84 degrees. A radius of legacy point notation is subtracted.
+     *
+     * @return distance in meters - 0 if position lies in this geometry,
+     * NaN if this geometry is empty
+     */
+    public double distance(double latitude, double longitude) {
+        if(this.isEmpty()) return Double.NaN;
+
+        return Math.max(0, this.distanceToShape(latitude, longitude) - this.radius);
+    }
+
+    /**
+     * Distance between closest points of both geometries. Coordinates are
+     * taken as WGS84 degrees. Radii of legacy point notation are subtracted.
+     *
+     * @return distance in meters - 0 if geometries intersect, NaN if one is
+     * empty
+     */
+    public double distance(ParsedGeometry other) {
+        if(this.isEmpty() || other.isEmpty()) return Double.NaN;
+
+        double distance;
+        if(this.isPoints() && other.isPoints()) {
+            distance = Double.POSITIVE_INFINITY;
+            for(int i = 0; i < other.points.length; i += 2) {
+                distance = Math.min(distance, GeoDistance.minHaversine(
+                        other.points[i + 1], other.points[i], this.points));
+            }
+        }
+        else if(this.intersects(other)) {
+            return 0;
+        }
+        else {
+            // closest points of non intersecting geometries include a vertex
+            distance = Double.POSITIVE_INFINITY;
+            for(int i = 0; i < other.vertices.length; i += 2) {
+                distance = Math.min(distance,
+                        this.distanceToShape(other.vertices[i + 1], other.vertices[i]));
+            }
+            for(int i = 0; i < this.vertices.length; i += 2) {
+                distance = Math.min(distance,
+                        other.distanceToShape(this.vertices[i + 1], this.vertices[i]));
+            }
+        }
+
+        return Math.max(0, distance - this.radius - other.radius);
+    }
+
+    private double distanceToShape(double latitude, double longitude) {
+        if(this.polygons.length > 0 && this.coversArea(longitude, latitude)) return 0;
+
+        double distance = GeoDistance.minHaversine(latitude, longitude, this.points);
+        for(double[] curve : this.curves()) {
+            distance = Math.min(distance, GeoDistance.toPolyline(latitude, longitude, curve));
+        }
+        return distance;
+    }
+
+    /**
+     * @return true if point lies in this geometry - boundaries included
+     */
+    public boolean covers(double x, double y) {
+        if(this.envelope == null || !this.envelope.contains(x, y)) {
+            // tolerance
+            if(this.envelope == null || !expand(this.envelope).contains(x, y)) {
+                return false;
+            }
+        }
+
+        for(int i = 0; i < this.points.length; i += 2) {
+            if(Math.abs(this.points[i] - x) <= EPSILON
+                    && Math.abs(this.points[i + 1] - y) <= EPSILON) {
+                return true;
+            }
+        }
+
+        for(double[] line : this.lines) {
+            if(onCurve(line, x, y)) return true;
+        }
+
+        return this.coversArea(x, y);
+    }
+
+    /**
+     * @return true if point lies in a polygon of this geometry
+     */
+    private boolean coversArea(double x, double y) {
+        for(double[][] polygon : this.polygons) {
+            if(inPolygon(polygon, x, y)) return true;
+        }
+        return false;
+    }
+
+    private static Envelope expand(Envelope e) {
+        return new Envelope(e.getMinX() - EPSILON, e.getMinY() - EPSILON,
+                e.getMaxX() + EPSILON, e.getMaxY() + EPSILON);
+    }
+
+    /**
+     * Segment is split at each crossing with lines and polygon boundaries
+     * of this geometry. It is covered if each piece is covered.
+     */
+    private boolean coversSegment(double x1, double y1, double x2, double y2) {
+        if(!this.covers(x1, y1) || !this.covers(x2, y2)) return false;
+
+        double[] ts = new double[8];
+        int number = 0;
+        ts[number++] = 0;
+        ts[number++] = 1;
+
+        for(double[] curve : this.curves()) {
+            for(int i = 0; i + 3 < curve.length; i += 2) {
+                if(number + 2 > ts.length) ts = Arrays.copyOf(ts, ts.length * 2);
+                number = splitPoints(x1, y1, x2, y2, curve[i], curve[i + 1],
+                        curve[i + 2], curve[i + 3], ts, number);
+            }
+        }
+
+        Arrays.sort(ts, 0, number);
+        double dx = x2 - x1, dy = y2 - y1;
+        for(int i = 0; i + 1 < number; i++) {
+            if(ts[i + 1] - ts[i] <= 1e-12) continue;
+            double t = (ts[i] + ts[i + 1]) / 2;
+            if(!this.covers(x1 + t * dx, y1 + t * dy)) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * adds parameters t of a + t(b - a) where segment ab meets segment cd
+     */
+    private static int splitPoints(double ax, double ay, double bx, double by,
+            double cx, double cy, double dx, double dy, double[] ts, int number) {
+
+        double rx = bx - ax, ry = by - ay;
+        double sx = dx - cx, sy = dy - cy;
+        double denominator = rx * sy - ry * sx;
+        double qx = cx - ax, qy = cy - ay;
+
+        double rr = rx * rx + ry * ry;
+        if(rr == 0) return number;
+
+        if(Math.abs(denominator) <= EPSILON * (Math.abs(rx) + Math.abs(ry))
+                * (Math.abs(sx) + Math.abs(sy))) {
+            // parallel - collinear parts split at c and d
+            if(Math.abs(qx * ry - qy * rx) <= EPSILON * Math.sqrt(rr)) {
+                double tc = (qx * rx + qy * ry) / rr;
+                double td = ((dx - ax) * rx + (dy - ay) * ry) / rr;
+                if(tc > 0 && tc < 1) ts[number++] = tc;
+                if(td > 0 && td < 1) ts[number++] = td;
+            }
+            return number;
+        }
+
+        double t = (qx * sy - qy * sx) / denominator;
+        double u = (qx * ry - qy * rx) / denominator;
+        if(t > 0 && t < 1 && u >= -EPSILON && u <= 1 + EPSILON) {
+            ts[number++] = t;
+        }
+        return number;
+    }
+
+    /**
+     * @return lines and polygon rings
+     */
+    private List<double[]> curves() {
+        List<double[]> curves = new ArrayList<>(Arrays.asList(this.lines));
+        for(double[][] polygon : this.polygons) {
+            curves.addAll(Arrays.asList(polygon));
+        }
+        return curves;
+    }
+
+    private static boolean curvesIntersect(double[] a, double[] b) {
+        for(int i = 0; i + 3 < a.length; i += 2) {
+            double minAX = Math.min(a[i], a[i + 2]), maxAX = Math.max(a[i], a[i + 2]);
+            double minAY = Math.min(a[i + 1], a[i + 3]), maxAY = Math.max(a[i + 1], a[i + 3]);
+            for(int j = 0; j + 3 < b.length; j += 2) {
+                if(Math.max(b[j], b[j + 2]) < minAX - EPSILON
+                        || Math.min(b[j], b[j + 2]) > maxAX + EPSILON
+                        || Math.max(b[j + 1], b[j + 3]) < minAY - EPSILON
+                        || Math.min(b[j + 1], b[j + 3]) > maxAY + EPSILON) {
+                    continue;
+                }
+
+                if(segmentsIntersect(a[i], a[i + 1], a[i + 2], a[i + 3],
+                        b[j], b[j + 1], b[j + 2], b[j + 3])) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static double cross(double ax, double ay, double bx, double by,
+            double px, double py) {
+        return (bx - ax) * (py - ay) - (by - ay) * (px - ax);
+    }
+
+    private static int orientation(double ax, double ay, double bx, double by,
+            double px, double py) {
+        double c = cross(ax, ay, bx, by, px, py);
+        double scale = Math.abs(bx - ax) + Math.abs(by - ay);
+        if(Math.abs(c) <= EPSILON * scale) return 0;
+        return c > 0 ? 1 : -1;
+    }
+
+    static boolean onSegment(double ax, double ay, double bx, double by,
+            double px, double py) {
+        if(orientation(ax, ay, bx, by, px, py) != 0) return false;
+
+        return Math.min(ax, bx) - EPSILON <= px && px <= Math.max(ax, bx) + EPSILON
+            && Math.min(ay, by) - EPSILON <= py && py <= Math.max(ay, by) + EPSILON;
+    }
+
+    static boolean segmentsIntersect(double ax, double ay, double bx, double by,
+            double cx, double cy, double dx, double dy) {
+
+        int o1 = orientation(ax, ay, bx, by, cx, cy);
+        int o2 = orientation(ax, ay, bx, by, dx, dy);
+        int o3 = orientation(cx, cy, dx, dy, ax, ay);
+        int o4 = orientation(cx, cy, dx, dy, bx, by);
+
+        if(o1 != o2 && o3 != o4 && o1 * o2 <= 0 && o3 * o4 <= 0) {
+            if(o1 != 0 || o2 != 0) return true;
+        }
+
+        return onSegment(ax, ay, bx, by, cx, cy)
+                || onSegment(ax, ay, bx, by, dx, dy)
+                || onSegment(cx, cy, dx, dy, ax, ay)
+                || onSegment(cx, cy, dx, dy, bx, by);
+    }
+
+    private static boolean onCurve(double[] curve, double x, double y) {
+        if(curve.length == 2) {
+            return Math.abs(curve[0] - x) <= EPSILON && Math.abs(curve[1] - y) <= EPSILON;
+        }
+        for(int i = 0; i + 3 < curve.length; i += 2) {
+            if(onSegment(curve[i], curve[i + 1], curve[i + 2], curve[i + 3], x, y)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * even odd rule - boundary counts as inside
+     */
+    private static boolean inRing(double[] ring, double x, double y) {
+        boolean inside = false;
+        for(int i = 0, j = ring.length - 2; i < ring.length; j = i, i += 2) {
+            double xi = ring[i], yi = ring[i + 1];
+            double xj = ring[j], yj = ring[j + 1];
+
+            if((yi > y) != (yj > y)
+                    && x < (xj - xi) * (y - yi) / (yj - yi) + xi) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    private static boolean inPolygon(double[][] polygon, double x, double y) {
+        for(double[] ring : polygon) {
+            if(onCurve(ring, x, y)) return true;
+        }
+
+        if(!inRing(polygon[0], x, y)) return false;
+
+        for(int h = 1; h < polygon.length; h++) {
+            if(inRing(polygon[h], x, y)) return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("GEOMETRYCOLLECTION(");
+        boolean first = true;
+        for(int i = 0; i < this.points.length; i += 2) {
+            if(!first) sb.append(", ");
+            first = false;
+            sb.append("POINT(").append(coordinates(this.points, i, i + 2)).append(")");
+        }
+        for(double[] line : this.lines) {
+            if(!first) sb.append(", ");
+            first = false;
+            sb.append("LINESTRING(").append(coordinates(line, 0, line.length)).append(")");
+        }
+        for(double[][] polygon : this.polygons) {
+            if(!first) sb.append(", ");
+            first = false;
+            sb.append("POLYGON(");
+            for(int r = 0; r < polygon.length; r++) {
+                if(r > 0) sb.append(", ");
+                sb.append("(").append(coordinates(polygon[r], 0, polygon[r].length)).append(")");
+            }
+            sb.append(")");
+        }
+        return sb.append(")").toString();
+    }
+
+    private static String coordinates(double[] xy, int from, int to) {
+        StringBuilder sb = new StringBuilder();
+        for(int i = from; i < to; i += 2) {
+            if(i > from) sb.append(", ");
+            sb.append(xy[i]).append(' ').append(xy[i + 1]);
+        }
+        return sb.toString();
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    //                               parser                               //
+    ////////////////////////////////////////////////////////////////////////
+
+    private static class Builder {
+        private double[] points = new double[8];
+        private int pointNumber = 0;
+        private final List<double[]> lines = new ArrayList<>();
+        private final List<double[][]> polygons = new ArrayList<>();
+
+        void point(double x, double y) {
+            if(this.pointNumber + 2 > this.points.length) {
+                this.points = Arrays.copyOf(this.points, this.points.length * 2);
+            }
+            this.points[this.pointNumber++] = x;
+            this.points[this.pointNumber++] = y;
+        }
+
+        ParsedGeometry build(double radius) {
+            return new ParsedGeometry(
+                    this.pointNumber == 0 ? NO_POINTS : Arrays.copyOf(this.points, this.pointNumber),
+                    this.lines.toArray(new double[this.lines.size()][]),
+                    this.polygons.toArray(new double[this.polygons.size()][][]),
+                    radius);
+        }
+    }
+
+    private static class Parser {
+        private final String text;
+        private int position = 0;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        private SharkKBException error(String message) {
+            return new SharkKBException("malformed WKT at " + this.position
+                    + ": " + message + " - " + this.text);
+        }
+
+        private void skipWhitespace() {
+            while(this.position < this.text.length()
+                    && Character.isWhitespace(this.text.charAt(this.position))) {
+                this.position++;
+            }
+        }
+
+        private boolean next(char c) {
+            this.skipWhitespace();
+            if(this.position < this.text.length() && this.text.charAt(this.position) == c) {
+                this.position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) throws SharkKBException {
+            if(!this.next(c)) throw this.error("'" + c + "' expected");
+        }
+
+        private String word() {
+            this.skipWhitespace();
+            int start = this.position;
+            while(this.position < this.text.length()
+                    && Character.isLetter(this.text.charAt(this.position))) {
+                this.position++;
+            }
+            return this.text.substring(start, this.position).toUpperCase(Locale.ROOT);
+        }
+
+        private double number() throws SharkKBException {
+            this.skipWhitespace();
+            int start = this.position;
+            while(this.position < this.text.length()) {
+                char c = this.text.charAt(this.position);
+                if(Character.isDigit(c) || c == '-' || c == '+' || c == '.'
+                        || c == 'e' || c == 'E') {
+                    this.position++;
+                } else {
+                    break;
+                }
+            }
+            if(start == this.position) throw this.error("number expected");
+
+            try {
+                return Double.parseDouble(this.text.substring(start, this.position));
+            }
+            catch(NumberFormatException e) {
+                throw this.error("malformed number");
+            }
+        }
+
+        private boolean atNumber() {
+            this.skipWhitespace();
+            if(this.position >= this.text.length()) return false;
+            char c = this.text.charAt(this.position);
+            return Character.isDigit(c) || c == '-' || c == '+' || c == '.';
+        }
+
+        void end() throws SharkKBException {
+            this.skipWhitespace();
+            if(this.position != this.text.length()) throw this.error("end expected");
+        }
+
+        /**
+         * @return true if EMPTY follows
+         */
+        private boolean empty() {
+            int start = this.position;
+            String word = this.word();
+            // dimension tags
+            while(word.equals("Z") || word.equals("M") || word.equals("ZM")) {
+                start = this.position;
+                word = this.word();
+            }
+            if(word.equals("EMPTY")) return true;
+
+            this.position = start;
+            return false;
+        }
+
+        /**
+         * x y [z [m]]
+         */
+        private void coordinate(double[] xy, int index) throws SharkKBException {
+            xy[index] = this.number();
+            xy[index + 1] = this.number();
+            while(this.atNumber()) {
+                this.number();
+            }
+        }
+
+        /**
+         * (x y, x y, ...)
+         */
+        private double[] coordinates() throws SharkKBException {
+            this.expect('(');
+            double[] xy = new double[8];
+            int number = 0;
+            do {
+                if(number + 2 > xy.length) xy = Arrays.copyOf(xy, xy.length * 2);
+                this.coordinate(xy, number);
+                number += 2;
+            } while(this.next(','));
+            this.expect(')');
+
+            return Arrays.copyOf(xy, number);
+        }
+
+        private double[][] polygon() throws SharkKBException {
+            List<double[]> rings = new ArrayList<>();
+            this.expect('(');
+            do {
+                double[] ring = this.coordinates();
+                if(ring.length < 6) throw this.error("ring needs at least three points");
+
+                // close ring
+                int n = ring.length;
+                if(ring[0] != ring[n - 2] || ring[1] != ring[n - 1]) {
+                    ring = Arrays.copyOf(ring, n + 2);
+                    ring[n] = ring[0];
+                    ring[n + 1] = ring[1];
+                }
+                rings.add(ring);
+            } while(this.next(','));
+            this.expect(')');
+
+            return rings.toArray(new double[rings.size()][]);
+        }
+
+        void geometry(Builder builder) throws SharkKBException {
+            String type = this.word();
+            if(type.isEmpty()) throw this.error("geometry type expected");
+
+            if(this.empty()) return;
+
+            switch(type) {
+                case "POINT":
+                    double[] point = this.coordinates();
+                    if(point.length != 2) throw this.error("one coordinate expected");
+                    builder.point(point[0], point[1]);
+                    break;
+
+                case "LINESTRING":
+                    double[] line = this.coordinates();
+                    if(line.length < 4) throw this.error("line needs at least two points");
+                    builder.lines.add(line);
+                    break;
+
+                case "POLYGON":
+                    builder.polygons.add(this.polygon());
+                    break;
+
+                case "MULTIPOINT":
+                    this.expect('(');
+                    do {
+                        // (1 2, 3 4) or ((1 2), (3 4))
+                        double[] xy = new double[2];
+                        if(this.next('(')) {
+                            this.coordinate(xy, 0);
+                            this.expect(')');
+                        } else {
+                            this.coordinate(xy, 0);
+                        }
+                        builder.point(xy[0], xy[1]);
+                    } while(this.next(','));
+                    this.expect(')');
+                    break;
+
+                case "MULTILINESTRING":
+                    this.expect('(');
+                    do {
+                        double[] part = this.coordinates();
+                        if(part.length < 4) throw this.error("line needs at least two points");
+                        builder.lines.add(part);
+                    } while(this.next(','));
+                    this.expect(')');
+                    break;
+
+                case "MULTIPOLYGON":
+                    this.expect('(');
+                    do {
+                        builder.polygons.add(this.polygon());
+                    } while(this.next(','));
+                    this.expect(')');
+                    break;
+
+                case "GEOMETRYCOLLECTION":
+                    this.expect('(');
+                    do {
+                        this.geometry(builder);
+                    } while(this.next(','));
+                    this.expect(')');
+                    break;
+
+                default:
+                    throw this.error("unknown geometry type " + type);
+            }
+        }
+    }
+}
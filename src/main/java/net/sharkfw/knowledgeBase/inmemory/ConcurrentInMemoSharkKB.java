@@ -0,0 +1,82 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import net.sharkfw.asip.ASIPInterest;
+import net.sharkfw.asip.ASIPSpace;
+import net.sharkfw.knowledgeBase.FPSet;
+import net.sharkfw.knowledgeBase.FragmentationParameter;
+import net.sharkfw.knowledgeBase.Interest;
+import net.sharkfw.knowledgeBase.PeerSemanticTag;
+import net.sharkfw.knowledgeBase.SemanticTag;
+import net.sharkfw.knowledgeBase.SharkCS;
+import net.sharkfw.knowledgeBase.SharkKBException;
+import net.sharkfw.knowledgeBase.SpatialSemanticTag;
+import net.sharkfw.knowledgeBase.TimeSemanticTag;
+
+/**
+ * In memory knowledge base that can be shared by several threads, e.g.
+ * ASIP sessions, the sync manager and application threads, without wrapping
+ * the whole engine into a single lock.
+ *
+ * Each dimension uses a concurrent tag storage: subject identifier are looked
+ * up in a concurrent hash map, tags are kept in copy on write lists. Information
+ * spaces and context points are kept in copy on write lists as well.
+ * Enumerations and iterations work on snapshots - they never throw a
+ * ConcurrentModificationException and don't see changes made after they were
+ * created.
+ *
+ * Structural changes (adding, merging, removing tags, context points and
+ * information spaces) are serialized per knowledge base. Thus, snapshot()
+ * sees all dimensions and the knowledge at one point in time. That implementation fits best to knowledge bases that are
+ * read much more often than changed - which is the usual case for a peer.
+ *
+ * @author thsc
+ */
+public class ConcurrentInMemoSharkKB extends InMemoSharkKB {
+
+    // shared by all tag storages and knowledge lists, see snapshot()
+    private final Object snapshotLock;
+
+    public ConcurrentInMemoSharkKB() throws SharkKBException {
+        this(new Object());
+    }
+
+    private ConcurrentInMemoSharkKB(Object snapshotLock) throws SharkKBException {
+        super(new InMemoSemanticNet(new InMemoGenericTagStorage<SemanticTag>(true, snapshotLock)), // topic
+            new InMemoSemanticNet(new InMemoGenericTagStorage<SemanticTag>(true, snapshotLock)), // type
+            new InMemoPeerTaxonomy(new InMemoPeerSemanticNet(
+                    new InMemoGenericTagStorage<PeerSemanticTag>(true, snapshotLock))), // peers
+            new InMemoSpatialSTSet(new InMemoGenericTagStorage<SpatialSemanticTag>(true, snapshotLock)), // locations
+            new InMemoTimeSTSet(new InMemoGenericTagStorage<TimeSemanticTag>(true, snapshotLock))); // times
+
+        this.snapshotLock = snapshotLock;
+
+        // replace default knowledge by a thread safe one
+        this.setKnowledge(new InMemoKnowledge(this, snapshotLock));
+    }
+
+    /**
+     * Writers of all tag storages and knowledge lists synchronize on it -
+     * holding it, all lists can be snapshot at the same point in time.
+     */
+    @Override
+    protected Object getSnapshotLock() {
+        return this.snapshotLock;
+    }
+
+    /**
+     * Contextualizes a snapshot: tags added or removed by other threads
+     * meanwhile don't show up half way.
+     */
+    @Override
+    public Interest contextualize(SharkCS context, FragmentationParameter[] fp) throws SharkKBException {
+        return this.snapshot().contextualize(context, fp);
+    }
+
+    /**
+     * Contextualizes a snapshot, see contextualize(SharkCS, FragmentationParameter[])
+     */
+    @Override
+    public ASIPInterest contextualize(ASIPSpace as, FPSet fps) throws SharkKBException {
+        return this.snapshot().contextualize(as, fps);
+    }
+}
@@ -0,0 +1,665 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import net.sharkfw.knowledgeBase.*;
+
+/**
+ * Per dimension index over the coordinates of context points. Each
+ * dimension maps si symbols to context points whose tag in that
+ * dimension has that si. Context points with an any tag or a spatial tag
+ * are kept apart. Locations are compared by geometry and aren't indexed.
+ *
+ * A query never creates the cartesian product of the tags of a context
+ * space. It takes the candidates of its most selective dimension and
+ * checks the other dimensions - most selective first - while results
+ * are iterated.
+ *
+ * Exact lookups hash the coordinates: one symbol of each dimension and
+ * markers for any and spatial tags form a key. Tags with several sis are
+ * found under each combination. Directions are checked afterwards.
+ *
+ * Index is built with the first query and updated when context points are
+ * added or removed. Moved context points are indexed again under their new
+ * coordinates. Index is built again if a tag of an indexed context point
+ * got or lost an si. Tags are watched by
+ * the version of their tag storage - other tags by SITable.changes().
+ *
+ * @author thsc
+ */
+final class ContextPointIndex {
+
+    private static final int[] INDEXED = {SharkCS.DIM_TOPIC, SharkCS.DIM_ORIGINATOR,
+        SharkCS.DIM_PEER, SharkCS.DIM_REMOTEPEER, SharkCS.DIM_TIME};
+
+    private static final int[] CHECKED = {SharkCS.DIM_TOPIC, SharkCS.DIM_ORIGINATOR,
+        SharkCS.DIM_PEER, SharkCS.DIM_REMOTEPEER, SharkCS.DIM_TIME, SharkCS.DIM_LOCATION};
+
+    private static final int DIMENSIONS = SharkCS.DIM_TOPIC + 1;
+
+    private final List<ContextPoint> cps;
+
+    private final List<Map<SITable.Symbol, Set<ContextPoint>>> postings = new ArrayList<>();
+    private final List<Set<ContextPoint>> any = new ArrayList<>();
+    // spatial tags are identical by geometry - not by si
+    private final List<Set<ContextPoint>> spatial = new ArrayList<>();
+
+    // exact lookup - context points of a key in insertion order
+    private final Map<Key, List<ContextPoint>> exact = new HashMap<>();
+    // insertion order and coordinates each context point is indexed with
+    private final IdentityHashMap<ContextPoint, Entry> entries = new IdentityHashMap<>();
+    private long nextSequence = 0;
+
+    // key parts besides symbols
+    private static final Object ANY = new Object();
+    private static final Object SPATIAL = new Object();
+
+    private boolean built = false;
+
+    // si versions of the storages of indexed tags
+    private final IdentityHashMap<InMemoGenericTagStorage<?>, Integer> storages = new IdentityHashMap<>();
+    // true: some indexed tags aren't kept in a storage, see SITable.changes()
+    private boolean unowned = false;
+    private int siChanges;
+
+    /**
+     * @param cps context points to index - index must be told about changes
+     */
+    ContextPointIndex(List<ContextPoint> cps) {
+        this.cps = cps;
+        for(int dim = 0; dim < DIMENSIONS; dim++) {
+            this.postings.add(new HashMap<SITable.Symbol, Set<ContextPoint>>());
+            this.any.add(ContextPointIndex.newSet());
+            this.spatial.add(ContextPointIndex.newSet());
+        }
+    }
+
+    /**
+     * Context points call it after their coordinates were replaced. Only
+     * that context point is indexed again.
+     */
+    synchronized void moved(ContextPoint cp) {
+        if(!this.built) return;
+
+        Entry entry = this.entries.get(cp);
+        if(entry == null) return;
+
+        this.unindex(cp, entry.cc);
+        this.index(cp, entry.sequence);
+    }
+
+    synchronized void added(ContextPoint cp) {
+        if(this.isValid()) {
+            this.put(cp);
+        } else {
+            this.built = false;
+        }
+    }
+
+    synchronized void removed(ContextPoint cp) {
+        if(this.isValid()) {
+            this.remove(cp);
+        } else {
+            this.built = false;
+        }
+    }
+
+    boolean isValid() {
+        if(!this.built) return false;
+        if(this.unowned && this.siChanges != SITable.changes()) return false;
+
+        for(Map.Entry<InMemoGenericTagStorage<?>, Integer> storage : this.storages.entrySet()) {
+            if(storage.getKey().getSIVersion() != storage.getValue()) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Remembers how to notice si changes of tag. Called before the sis
+     * of tag are read.
+     */
+    private void watch(SemanticTag tag) {
+        if(SharkCSAlgebra.isAny(tag)) return;
+
+        InMemoGenericTagStorage<?> storage = tag instanceof InMemoSemanticTag
+                ? ((InMemoSemanticTag) tag).getStorage() : null;
+
+        if(storage == null) {
+            if(!this.unowned) {
+                this.unowned = true;
+                this.siChanges = SITable.changes();
+            }
+        } else if(!this.storages.containsKey(storage)) {
+            this.storages.put(storage, storage.getSIVersion());
+        }
+    }
+
+    private void check() {
+        if(this.isValid()) return;
+
+        for(int dim = 0; dim < DIMENSIONS; dim++) {
+            this.postings.get(dim).clear();
+            this.any.get(dim).clear();
+            this.spatial.get(dim).clear();
+        }
+        this.exact.clear();
+        this.entries.clear();
+        this.nextSequence = 0;
+        this.storages.clear();
+        this.unowned = false;
+
+        for(ContextPoint cp : new ArrayList<>(this.cps)) {
+            this.put(cp);
+        }
+        this.built = true;
+    }
+
+    private void put(ContextPoint cp) {
+        if(this.entries.containsKey(cp)) return;
+
+        // tell me about new coordinates
+        if(cp instanceof InMemoContextPoint) {
+            ((InMemoContextPoint) cp).addIndex(this);
+        }
+
+        this.index(cp, this.nextSequence++);
+    }
+
+    private void index(ContextPoint cp, long sequence) {
+        ContextCoordinates cc = cp.getContextCoordinates();
+        this.entries.put(cp, new Entry(sequence, cc));
+        if(cc == null) return;
+
+        for(int dim : CHECKED) {
+            this.watch(ContextPointIndex.tag(cc, dim));
+        }
+        for(Key key : ContextPointIndex.keys(cc)) {
+            List<ContextPoint> list = this.exact.get(key);
+            if(list == null) {
+                list = new ArrayList<>(1);
+                this.exact.put(key, list);
+            }
+
+            // lists are kept in insertion order - moved points keep their place
+            int pos = list.size();
+            while(pos > 0 && this.entries.get(list.get(pos - 1)).sequence > sequence) {
+                pos--;
+            }
+            list.add(pos, cp);
+        }
+
+        for(int dim : INDEXED) {
+            SemanticTag tag = ContextPointIndex.tag(cc, dim);
+            if(SharkCSAlgebra.isAny(tag)) {
+                this.any.get(dim).add(cp);
+                continue;
+            }
+            if(tag instanceof SpatialSemanticTag) {
+                this.spatial.get(dim).add(cp);
+                continue;
+            }
+
+            Map<SITable.Symbol, Set<ContextPoint>> map = this.postings.get(dim);
+            for(SITable.Symbol symbol : ContextPointIndex.symbols(tag)) {
+                Set<ContextPoint> set = map.get(symbol);
+                if(set == null) {
+                    set = ContextPointIndex.newSet();
+                    map.put(symbol, set);
+                }
+                set.add(cp);
+            }
+        }
+    }
+
+    private void remove(ContextPoint cp) {
+        Entry entry = this.entries.remove(cp);
+        if(entry == null) return;
+
+        if(cp instanceof InMemoContextPoint) {
+            ((InMemoContextPoint) cp).removeIndex(this);
+        }
+
+        this.unindex(cp, entry.cc);
+    }
+
+    /**
+     * Removes cp from all keys and postings of cc - coordinates it was
+     * indexed with.
+     */
+    private void unindex(ContextPoint cp, ContextCoordinates cc) {
+        if(cc == null) return;
+
+        for(Key key : ContextPointIndex.keys(cc)) {
+            List<ContextPoint> list = this.exact.get(key);
+            if(list == null) continue;
+
+            for(int i = 0; i < list.size(); i++) {
+                if(list.get(i) == cp) {
+                    list.remove(i);
+                    break;
+                }
+            }
+            if(list.isEmpty()) this.exact.remove(key);
+        }
+
+        for(int dim : INDEXED) {
+            SemanticTag tag = ContextPointIndex.tag(cc, dim);
+            if(SharkCSAlgebra.isAny(tag)) {
+                this.any.get(dim).remove(cp);
+                continue;
+            }
+            if(tag instanceof SpatialSemanticTag) {
+                this.spatial.get(dim).remove(cp);
+                continue;
+            }
+
+            Map<SITable.Symbol, Set<ContextPoint>> map = this.postings.get(dim);
+            for(SITable.Symbol symbol : ContextPointIndex.symbols(tag)) {
+                Set<ContextPoint> set = map.get(symbol);
+                if(set == null) continue;
+
+                set.remove(cp);
+                if(set.isEmpty()) map.remove(symbol);
+            }
+        }
+    }
+
+    /**
+     * @return first context point whose coordinates match exactly - see
+     * InMemoSharkKB.exactMatch - or null
+     */
+    synchronized ContextPoint find(ContextCoordinates cc) {
+        if(cc == null) return null;
+        this.check();
+
+        ContextPoint found = null;
+        long foundSequence = Long.MAX_VALUE;
+        for(Key key : ContextPointIndex.keys(cc)) {
+            List<ContextPoint> list = this.exact.get(key);
+            if(list == null) continue;
+
+            for(ContextPoint cp : list) {
+                long cpSequence = this.entries.get(cp).sequence;
+                if(cpSequence >= foundSequence) break;
+
+                if(InMemoSharkKB.exactMatch(cp.getContextCoordinates(), cc)) {
+                    found = cp;
+                    foundSequence = cpSequence;
+                    break;
+                }
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Finds context points like the coordinate based search of
+     * InMemoSharkKB did: With matchAny, any tags of context points match
+     * each tag. Otherwise context points must have exactly one of the tags
+     * of each dimension or an any tag if the dimension is unconstrained.
+     *
+     * @return matching context points or null if there are none
+     */
+    Iterator<ContextPoint> query(SharkCS cs, boolean matchAny) throws SharkKBException {
+        Query query = new Query(cs, matchAny);
+
+        synchronized(this) {
+            this.check();
+            query.plan(this);
+        }
+
+        if(!query.hasNext()) return null;
+
+        return query;
+    }
+
+    /**
+     * Query on one context space. Constraints and candidates are fixed
+     * when planning, candidates are checked while iterating.
+     */
+    private static final class Query implements Iterator<ContextPoint> {
+        private final boolean matchAny;
+        private final int direction;
+
+        // tags of each dimension - null: unconstrained
+        private final SemanticTag[][] tags = new SemanticTag[DIMENSIONS][];
+
+        // dimensions to check - most selective first
+        private int[] order;
+        private List<ContextPoint> candidates;
+
+        private int index = 0;
+        private ContextPoint next = null;
+
+        Query(SharkCS cs, boolean matchAny) throws SharkKBException {
+            this.matchAny = matchAny;
+            this.direction = cs.getDirection();
+
+            PeerSemanticTag originator = cs.getOriginator();
+            if(!SharkCSAlgebra.isAny(originator)) {
+                this.tags[SharkCS.DIM_ORIGINATOR] = new SemanticTag[] {originator};
+            }
+
+            this.tags[SharkCS.DIM_TOPIC] = Query.tags(cs.getTopics());
+            this.tags[SharkCS.DIM_PEER] = Query.tags(cs.getPeers());
+            this.tags[SharkCS.DIM_REMOTEPEER] = Query.tags(cs.getRemotePeers());
+            this.tags[SharkCS.DIM_TIME] = Query.tags(cs.getTimes());
+            this.tags[SharkCS.DIM_LOCATION] = Query.tags(cs.getLocations());
+        }
+
+        /**
+         * @return tags of a dimension like the coordinate combination
+         * enumerated them - null if dimension is unconstrained
+         */
+        private static SemanticTag[] tags(STSet set) throws SharkKBException {
+            if(SharkCSAlgebra.isAny(set)) return null;
+
+            set.setEnumerateHiddenTags(true);
+            Enumeration<SemanticTag> tagEnum = set.tags();
+            if(tagEnum == null) return null;
+
+            List<SemanticTag> tags = new ArrayList<>();
+            while(tagEnum.hasMoreElements()) {
+                tags.add(tagEnum.nextElement());
+            }
+
+            return tags.isEmpty() ? null : tags.toArray(new SemanticTag[tags.size()]);
+        }
+
+        /**
+         * Estimates selectivity of each dimension by the size of its
+         * candidates and takes candidates of the best one.
+         */
+        private void plan(ContextPointIndex index) {
+            final int[] sizes = new int[DIMENSIONS];
+            List<List<Set<ContextPoint>>> postings = new ArrayList<>();
+            for(int dim = 0; dim < DIMENSIONS; dim++) {
+                postings.add(null);
+                sizes[dim] = Integer.MAX_VALUE;
+            }
+
+            int best = -1;
+            for(int dim : INDEXED) {
+                List<Set<ContextPoint>> sets = this.postings(index, dim);
+                if(sets == null) continue; // no constraint at all
+
+                int size = 0;
+                for(Set<ContextPoint> set : sets) {
+                    size += set.size();
+                }
+                postings.set(dim, sets);
+                sizes[dim] = size;
+
+                if(best == -1 || size < sizes[best]) best = dim;
+            }
+
+            // check most selective dimension first, geometries last - index
+            // sets are larger than the actual result
+            List<Integer> dims = new ArrayList<>();
+            for(int dim : CHECKED) {
+                dims.add(dim);
+            }
+            Collections.sort(dims, new java.util.Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return Integer.compare(sizes[a], sizes[b]);
+                }
+            });
+            this.order = new int[dims.size()];
+            for(int i = 0; i < this.order.length; i++) {
+                this.order[i] = dims.get(i);
+            }
+
+            if(best == -1) {
+                this.candidates = new ArrayList<>(index.cps);
+                return;
+            }
+
+            // union of postings - a context point can be in several
+            Set<ContextPoint> union = ContextPointIndex.newSet();
+            this.candidates = new ArrayList<>(sizes[best]);
+            for(Set<ContextPoint> set : postings.get(best)) {
+                for(ContextPoint cp : set) {
+                    if(union.add(cp)) this.candidates.add(cp);
+                }
+            }
+        }
+
+        /**
+         * @return index sets that contain all matching context points of
+         * dimension dim - null if each context point could match
+         */
+        private List<Set<ContextPoint>> postings(ContextPointIndex index, int dim) {
+            SemanticTag[] dimTags = this.tags[dim];
+            List<Set<ContextPoint>> sets = new ArrayList<>();
+
+            if(dimTags == null) {
+                if(this.matchAny) return null;
+
+                // exact match: only any tags match unconstrained dimension
+                sets.add(index.any.get(dim));
+                return sets;
+            }
+
+            if(this.matchAny) {
+                sets.add(index.any.get(dim));
+            }
+            sets.add(index.spatial.get(dim));
+
+            Map<SITable.Symbol, Set<ContextPoint>> map = index.postings.get(dim);
+            for(SemanticTag tag : dimTags) {
+                for(SITable.Symbol symbol : ContextPointIndex.symbols(tag)) {
+                    Set<ContextPoint> set = map.get(symbol);
+                    if(set != null) sets.add(set);
+                }
+            }
+
+            return sets;
+        }
+
+        private boolean matches(ContextPoint cp) {
+            ContextCoordinates cc = cp.getContextCoordinates();
+            if(cc == null) return false;
+
+            if(!this.directionMatches(cc.getDirection())) return false;
+
+            for(int dim : this.order) {
+                if(!this.tagMatches(ContextPointIndex.tag(cc, dim), this.tags[dim])) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Same rules as identical (matchAny) or exactMatch of context
+         * coordinates with each direction the coordinate combination made of
+         * the query direction.
+         */
+        private boolean directionMatches(int cpDirection) {
+            if(this.matchAny) {
+                if(this.direction == SharkCS.DIRECTION_INOUT) {
+                    return cpDirection != SharkCS.DIRECTION_NOTHING;
+                }
+
+                return cpDirection == this.direction
+                        || (cpDirection == SharkCS.DIRECTION_INOUT
+                            && this.direction != SharkCS.DIRECTION_NOTHING);
+            }
+
+            if(this.direction == SharkCS.DIRECTION_INOUT) return true;
+
+            return !(cpDirection == SharkCS.DIRECTION_OUT && this.direction == SharkCS.DIRECTION_IN)
+                && !(cpDirection == SharkCS.DIRECTION_IN && this.direction == SharkCS.DIRECTION_OUT);
+        }
+
+        private boolean tagMatches(SemanticTag tag, SemanticTag[] dimTags) {
+            if(dimTags == null) {
+                return this.matchAny || SharkCSAlgebra.isAny(tag);
+            }
+
+            if(!this.matchAny && SharkCSAlgebra.isAny(tag)) return false;
+
+            for(SemanticTag dimTag : dimTags) {
+                if(tag == dimTag || SharkCSAlgebra.identical(tag, dimTag)) return true;
+            }
+
+            return false;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while(this.next == null && this.index < this.candidates.size()) {
+                ContextPoint cp = this.candidates.get(this.index++);
+                if(this.matches(cp)) this.next = cp;
+            }
+
+            return this.next != null;
+        }
+
+        @Override
+        public ContextPoint next() {
+            if(!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            ContextPoint cp = this.next;
+            this.next = null;
+            return cp;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("query results are read only");
+        }
+    }
+
+    private static final class Entry {
+        private final long sequence;
+        private final ContextCoordinates cc;
+
+        Entry(long sequence, ContextCoordinates cc) {
+            this.sequence = sequence;
+            this.cc = cc;
+        }
+    }
+
+    /**
+     * Coordinates without direction. Parts are compared by identity - symbols
+     * are unique while the index refers to them.
+     */
+    private static final class Key {
+        private final Object[] parts;
+        private final int hash;
+
+        Key(Object[] parts) {
+            this.parts = parts;
+            int h = 1;
+            for(Object part : parts) {
+                h = 31 * h + part.hashCode();
+            }
+            this.hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof Key)) return false;
+
+            Object[] other = ((Key) o).parts;
+            for(int i = 0; i < this.parts.length; i++) {
+                if(this.parts[i] != other[i]) return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @return all keys of coordinates - one for each combination of sis
+     */
+    private static List<Key> keys(ContextCoordinates cc) {
+        List<Object[]> keys = new ArrayList<>();
+        keys.add(new Object[CHECKED.length]);
+
+        for(int d = 0; d < CHECKED.length; d++) {
+            Object[] options = ContextPointIndex.keyParts(ContextPointIndex.tag(cc, CHECKED[d]));
+            if(options.length > 1) {
+                List<Object[]> combined = new ArrayList<>(keys.size() * options.length);
+                for(Object[] key : keys) {
+                    for(Object option : options) {
+                        Object[] copy = key.clone();
+                        copy[d] = option;
+                        combined.add(copy);
+                    }
+                }
+                keys = combined;
+            } else {
+                for(Object[] key : keys) {
+                    key[d] = options[0];
+                }
+            }
+        }
+
+        List<Key> result = new ArrayList<>(keys.size());
+        for(Object[] key : keys) {
+            result.add(new Key(key));
+        }
+        return result;
+    }
+
+    /**
+     * Spatial tags are identical to spatial tags by geometry and to other
+     * tags by sis - they are found both ways.
+     */
+    private static Object[] keyParts(SemanticTag tag) {
+        if(SharkCSAlgebra.isAny(tag)) return new Object[] {ANY};
+
+        SITable.Symbol[] symbols = ContextPointIndex.symbols(tag);
+        if(!(tag instanceof SpatialSemanticTag)) return symbols;
+
+        Object[] parts = new Object[symbols.length + 1];
+        parts[0] = SPATIAL;
+        System.arraycopy(symbols, 0, parts, 1, symbols.length);
+        return parts;
+    }
+
+    static SemanticTag tag(ContextCoordinates cc, int dim) {
+        switch(dim) {
+            case SharkCS.DIM_TOPIC: return cc.getTopic();
+            case SharkCS.DIM_ORIGINATOR: return cc.getOriginator();
+            case SharkCS.DIM_PEER: return cc.getPeer();
+            case SharkCS.DIM_REMOTEPEER: return cc.getRemotePeer();
+            case SharkCS.DIM_TIME: return cc.getTime();
+            case SharkCS.DIM_LOCATION: return cc.getLocation();
+        }
+
+        return null;
+    }
+
+    private static SITable.Symbol[] symbols(SemanticTag tag) {
+        if(tag instanceof AbstractSemanticTag) {
+            return ((AbstractSemanticTag) tag).getSISymbols();
+        }
+
+        return SITable.symbols(tag.getSI());
+    }
+
+    private static Set<ContextPoint> newSet() {
+        return Collections.newSetFromMap(new IdentityHashMap<ContextPoint, Boolean>());
+    }
+}
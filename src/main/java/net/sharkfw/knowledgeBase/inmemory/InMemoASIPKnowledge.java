@@ -2,6 +2,7 @@ package net.sharkfw.knowledgeBase.inmemory;
 
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.List;
@@ -10,18 +11,60 @@ import net.sharkfw.asip.ASIPInformationSpace;
 import net.sharkfw.asip.ASIPInterest;
 import net.sharkfw.asip.ASIPSpace;
 import net.sharkfw.knowledgeBase.*;
+import net.sharkfw.system.SnapshotList;
 
 /**
  *
  * @author j4rvis
  */
 public class InMemoASIPKnowledge implements Knowledge {
-    private ArrayList<ASIPInformationSpace> infoSpacesList;
+    private List<ASIPInformationSpace> infoSpacesList;
     private SharkVocabulary cm = null;
 
 
     public InMemoASIPKnowledge() {
-        this.infoSpacesList = new ArrayList<>();
+        this(false);
+    }
+
+    /**
+     * @param concurrent true: information spaces are kept in a copy on write
+     * list - iterations are snapshots and can run while other threads add spaces
+     */
+    public InMemoASIPKnowledge(boolean concurrent) {
+        if(concurrent) {
+            this.infoSpacesList = new SnapshotList<>();
+        } else {
+            this.infoSpacesList = new ArrayList<>();
+        }
+    }
+    
+    /**
+     * Concurrent knowledge - the information space list shares snapshotLock
+     * with the tag storages of its knowledge base, see ConcurrentInMemoSharkKB
+     */
+    InMemoASIPKnowledge(SharkVocabulary background, Object snapshotLock) {
+        this.cm = background;
+        this.infoSpacesList = new SnapshotList<>(snapshotLock);
+    }
+    
+    /**
+     * Creates a read only copy of other knowledge, see snapshot()
+     */
+    InMemoASIPKnowledge(SharkVocabulary background, InMemoASIPKnowledge other) {
+        this.cm = background;
+        this.infoSpacesList = InMemoASIPKnowledge.snapshot(other.infoSpacesList);
+    }
+    
+    /**
+     * @return read only point in time view on list - constant time if
+     * list is a SnapshotList (concurrent knowledge), a copy otherwise
+     */
+    static <T> List<T> snapshot(List<T> list) {
+        if(list instanceof SnapshotList) {
+            return ((SnapshotList<T>) list).snapshot();
+        }
+        
+        return Collections.unmodifiableList(new ArrayList<>(list));
     }
 
     public InMemoASIPKnowledge(SharkVocabulary background) {
@@ -29,7 +72,12 @@ public class InMemoASIPKnowledge implements Knowledge {
         this.cm = background;
     }
 
-    public ASIPInformationSpace addInformationSpace(ASIPSpace space) throws SharkKBException {
+    public InMemoASIPKnowledge(SharkVocabulary background, boolean concurrent) {
+        this(concurrent);
+        this.cm = background;
+    }
+
+    public synchronized ASIPInformationSpace addInformationSpace(ASIPSpace space) throws SharkKBException {
         InMemoInformationSpace infoSpace = new InMemoInformationSpace(space);
         infoSpacesList.add(infoSpace);
         return infoSpace;
@@ -40,7 +88,7 @@ public class InMemoASIPKnowledge implements Knowledge {
         infoSpace.addInformation(info);
     }
 
-    private InMemoInformationSpace createInformationSpace(ASIPSpace space) throws SharkKBException {
+    private synchronized InMemoInformationSpace createInformationSpace(ASIPSpace space) throws SharkKBException {
         Iterator<ASIPInformationSpace> infoIter = this.informationSpaces();
         while(infoIter.hasNext()){
             ASIPInformationSpace current = infoIter.next();
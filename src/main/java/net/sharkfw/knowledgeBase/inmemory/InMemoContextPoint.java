@@ -1,10 +1,12 @@
 package net.sharkfw.knowledgeBase.inmemory;
 
 import java.io.InputStream;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Vector;
 import net.sharkfw.knowledgeBase.*;
 
@@ -21,6 +23,9 @@ public class InMemoContextPoint extends PropertyHolderDelegate implements Contex
 
     private ContextPointListener listener = null;
 
+    // indexes that keep this context point, see ContextPointIndex
+    private List<WeakReference<ContextPointIndex>> indexes = null;
+
     public InMemoContextPoint(ContextCoordinates coordinates){
         coords = coordinates;
     }
@@ -195,7 +200,49 @@ public class InMemoContextPoint extends PropertyHolderDelegate implements Contex
     @Override
     public void setContextCoordinates(ContextCoordinates cc) {
         this.coords = cc;
+        for(ContextPointIndex index : this.indexes()) {
+            index.moved(this);
+        }
         this.persist();
+    }
+
+    synchronized void addIndex(ContextPointIndex index) {
+        if(this.indexes == null) {
+            this.indexes = new ArrayList<>(1);
+        }
+
+        Iterator<WeakReference<ContextPointIndex>> refIter = this.indexes.iterator();
+        while(refIter.hasNext()) {
+            ContextPointIndex known = refIter.next().get();
+            if(known == index) return;
+            if(known == null) refIter.remove();
+        }
+
+        this.indexes.add(new WeakReference<>(index));
+    }
+
+    synchronized void removeIndex(ContextPointIndex index) {
+        if(this.indexes == null) return;
+
+        Iterator<WeakReference<ContextPointIndex>> refIter = this.indexes.iterator();
+        while(refIter.hasNext()) {
+            ContextPointIndex known = refIter.next().get();
+            if(known == index || known == null) refIter.remove();
+        }
+    }
+
+    /**
+     * Indexes are called without holding the lock of this context point.
+     */
+    private synchronized List<ContextPointIndex> indexes() {
+        List<ContextPointIndex> result = new ArrayList<>();
+        if(this.indexes == null) return result;
+
+        for(WeakReference<ContextPointIndex> ref : this.indexes) {
+            ContextPointIndex index = ref.get();
+            if(index != null) result.add(index);
+        }
+        return result;
     }    
     
     @Override
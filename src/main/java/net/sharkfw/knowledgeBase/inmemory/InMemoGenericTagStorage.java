@@ -1,39 +1,224 @@
 package net.sharkfw.knowledgeBase.inmemory;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import net.sharkfw.knowledgeBase.*;
 import net.sharkfw.system.Iterator2Enumeration;
+import net.sharkfw.system.SlotList;
+import net.sharkfw.system.SnapshotList;
 
 /**
+ * Tag storage used by all in memory semantic tag sets.
+ * 
+ * A concurrent storage can be shared by several threads (ASIP sessions,
+ * sync manager, application). It uses a copy on write tag list and a
+ * concurrent si table. Enumerations work on a snapshot and never throw
+ * a ConcurrentModificationException. Structural changes are serialized.
+ * 
+ * A storage can produce a read only snapshot of itself. Snapshots of
+ * concurrent storages are created in constant time.
+ * 
+ * A non concurrent storage keeps its tags in a slot list. Tags are removed
+ * in constant time, enumerations don't fail if tags are removed or added
+ * meanwhile.
  *
  * @author thsc
  * @param <ST>
  */
 public class InMemoGenericTagStorage<ST extends SemanticTag> {
-        // A Hashtable containing all tags in this stset
-    private ArrayList<ST> tags;
+    // all tags in this stset in insertion order, see SlotList and SnapshotList
+    private Collection<ST> tags;
 
-    // local table for mapping si strings to id values
-    private HashMap<String, ST> si2tag;
+    // local table for mapping normalized si strings to tags, see SITable
+    private volatile Map<String, ST> si2tag;
     
-    private boolean hide = false;
+    private volatile boolean hide = false;
+    
+    // changes with each added or removed tag or changed super tag, see TaxonomyIndex
+    private final AtomicInteger version = new AtomicInteger();
+    
+    // changes whenever a tag of this storage got or lost an si, see ContextPointIndex
+    private final AtomicInteger siVersion = new AtomicInteger();
+    
+    private final boolean concurrent;
+    
+    // snapshots are read only
+    private final boolean frozen;
+    
+    // created with first name query on large storages, see NameIndex
+    private NameIndex<ST> nameIndex = null;
     
     public InMemoGenericTagStorage() {
-        this.tags = new ArrayList<ST>();
-        this.si2tag = new HashMap<String, ST>();
+        this(false);
+    }
+    
+    /**
+     * @param concurrent true: storage can be used by several threads concurrently
+     */
+    public InMemoGenericTagStorage(boolean concurrent) {
+        this(concurrent, null);
+    }
+    
+    /**
+     * @param concurrent true: storage can be used by several threads concurrently
+     * @param snapshotLock concurrent storages: lock shared with other storages
+     * and the knowledge of a knowledge base, see ConcurrentInMemoSharkKB
+     */
+    InMemoGenericTagStorage(boolean concurrent, Object snapshotLock) {
+        this.concurrent = concurrent;
+        this.frozen = false;
+        if(concurrent) {
+            this.tags = snapshotLock != null ? 
+                    new SnapshotList<ST>(snapshotLock) : new SnapshotList<ST>();
+            this.si2tag = new ConcurrentHashMap<String, ST>();
+        } else {
+            this.tags = new SlotList<ST>();
+            this.si2tag = new HashMap<String, ST>();
+        }
 //        this.initSi();
     }
     
+    /**
+     * Creates a read only storage. The si table is created with the first
+     * lookup.
+     */
+    private InMemoGenericTagStorage(List<ST> frozenTags, boolean hide) {
+        this.concurrent = true;
+        this.frozen = true;
+        this.tags = frozenTags;
+        this.si2tag = null;
+        this.hide = hide;
+    }
+    
+    public boolean isConcurrent() {
+        return this.concurrent;
+    }
+    
+    /**
+     * Creates a read only point in time view of this storage. The snapshot
+     * contains the same tag objects - tags are not copied. Tags added or
+     * removed later are not visible in the snapshot.
+     * 
+     * @return read only storage
+     */
+    @SuppressWarnings("unchecked")
+    public InMemoGenericTagStorage<ST> snapshot() {
+        if(this.frozen) {
+            return this;
+        }
+        
+        List<ST> frozenTags;
+        if(this.tags instanceof SnapshotList) {
+            // constant time
+            frozenTags = ((SnapshotList<ST>) this.tags).snapshot();
+        } else {
+            synchronized(this) {
+                frozenTags = Collections.unmodifiableList(new ArrayList<>(this.tags));
+            }
+        }
+        
+        return new InMemoGenericTagStorage<>(frozenTags, this.hide);
+    }
+    
+    public boolean isSnapshot() {
+        return this.frozen;
+    }
+    
+    private Map<String, ST> getSITable() {
+        Map<String, ST> table = this.si2tag;
+        if(table != null) {
+            return table;
+        }
+        
+        // frozen storage - create si table once
+        synchronized(this) {
+            if(this.si2tag == null) {
+                HashMap<String, ST> newTable = new HashMap<>();
+                for(ST tag : this.tags) {
+                    String[] sis = tag.getSI();
+                    if(sis == null) continue;
+                    for(String si : sis) {
+                        if(si != null) newTable.put(key(si), tag);
+                    }
+                }
+                this.si2tag = newTable;
+            }
+            return this.si2tag;
+        }
+    }
+    
+    private void checkWritable() throws SharkKBException {
+        if(this.frozen) {
+            throw new SharkKBException("tag storage is a read only snapshot");
+        }
+    }
+    
     public int number() {
         return this.tags.size();
     }
     
+    /**
+     * @return number that changes whenever a tag is added or removed or
+     * a super tag of a tag in this storage changes
+     */
+    int getVersion() {
+        return this.version.get();
+    }
+    
+    /**
+     * Tags call it after changing their super tag.
+     */
+    void hierarchyChanged() {
+        this.version.incrementAndGet();
+    }
+    
+    /**
+     * @return number that changes whenever a tag of this storage got or
+     * lost an si
+     */
+    int getSIVersion() {
+        return this.siVersion.get();
+    }
+    
+    /**
+     * Tags call it after they got or lost an si.
+     */
+    void sisChanged() {
+        this.siVersion.incrementAndGet();
+    }
+    
+    /**
+     * @return copy of the tag list - hidden tags included
+     */
+    synchronized List<ST> tagList() {
+        return new ArrayList<>(this.tags);
+    }
+    
+    boolean hidesTags() {
+        return this.hide;
+    }
+    
     protected ST getSemanticTag(String si) throws SharkKBException {
         if(si == null) return null;
-        return this.si2tag.get(si);
+        return this.getSITable().get(SITable.normalize(si));
+    }
+    
+    /**
+     * Sis are compared case insensitive. Keys are normalized sis - each
+     * one shared with the global si table.
+     */
+    private static String key(String si) {
+        return SITable.symbol(si).si();
     }
     
     public ST getSemanticTag(String[] si)  throws SharkKBException {
@@ -62,8 +247,12 @@ public class InMemoGenericTagStorage<ST extends SemanticTag> {
         this.hide = hide;
     }
     
-    protected final void put(ST tag) {
+    protected synchronized final void put(ST tag) {
         this.tags.add(tag);
+        this.version.incrementAndGet();
+        if(this.nameIndex != null) {
+            this.nameIndex.add(tag);
+        }
         
         // recreate si list - not a very performant implementation have to confess...
 //        this.initSi();
@@ -72,11 +261,13 @@ public class InMemoGenericTagStorage<ST extends SemanticTag> {
         if(sis == null) { return; }
 
         for(int i = 0; i < sis.length; i++) {
-            this.si2tag.put(sis[i], tag);
+            if(sis[i] != null) this.si2tag.put(key(sis[i]), tag);
         }
     }
     
-    protected void add(ST tag) throws SharkKBException {
+    protected synchronized void add(ST tag) throws SharkKBException {
+        this.checkWritable();
+        
         // only add if not yet in storage
         ST st = this.getSemanticTag(tag.getSI());
         
@@ -89,21 +280,130 @@ public class InMemoGenericTagStorage<ST extends SemanticTag> {
         this.put(tag);
     }
 
-    protected void removeSemanticTag(ST tag) {
-        this.tags.remove(tag);
+    protected synchronized void removeSemanticTag(ST tag) {
+        ST stored = this.stored(tag);
         
-        // tag is removed - remove reference in si2tag list
+        boolean removed = false;
+        if(stored != null) {
+            if(this.tags instanceof SnapshotList) {
+                removed = ((SnapshotList<ST>) this.tags).removeIdentical(Collections.singleton(stored));
+            } else {
+                removed = this.tags.remove(stored);
+            }
+        }
         
+        if(removed) {
+            this.version.incrementAndGet();
+            if(this.nameIndex != null) {
+                this.nameIndex.remove(stored);
+            }
+        }
+        
+        // tag is removed - remove reference in si2tag list
+        this.removeSIs(tag);
+    }
+    
+    private void removeSIs(ST tag) {
         String[] sis = tag.getSI();
-        if(sis == null | sis.length == 0) { return; }
+        if(sis == null || sis.length == 0) { return; }
         
         for(int i = 0; i < sis.length; i++) {
-            this.si2tag.remove(sis[i]);
+            if(sis[i] != null) this.si2tag.remove(SITable.normalize(sis[i]));
+        }
+    }
+    
+    /**
+     * @return tag object in this storage that represents tag - that very
+     * object is preferred, equals compares semantics. Each stored tag has an
+     * si (see add), thus it is found by si in constant time - the tag list
+     * is never scanned.
+     */
+    private ST stored(ST tag) {
+        if(this.tags instanceof SlotList && this.tags.contains(tag)) {
+            return tag;
+        }
+        
+        // that very object or another one with same si
+        String[] sis = tag.getSI();
+        ST equal = null;
+        if(sis != null) {
+            for(String si : sis) {
+                ST st = si == null ? null : this.si2tag.get(SITable.normalize(si));
+                if(st == tag) return st;
+                if(equal == null && st != null && st.equals(tag)) equal = st;
+            }
+        }
+        
+        return equal;
+    }
+    
+    /**
+     * Adds tags that are not yet in this storage. The version is changed
+     * once and the tag list is copied at most once.
+     */
+    protected synchronized void addAll(Collection<? extends ST> newTags) throws SharkKBException {
+        this.checkWritable();
+        
+        List<ST> added = new ArrayList<>(newTags.size());
+        for(ST tag : newTags) {
+            // only add if not yet in storage - or in this bulk
+            if(this.getSemanticTag(tag.getSI()) != null) continue;
+            
+            if(tag instanceof InMemoSemanticTag) {
+                ((InMemoSemanticTag) tag).setStorage(this);
+            }
+            
+            String[] sis = tag.getSI();
+            for(int i = 0; i < sis.length; i++) {
+                if(sis[i] != null) this.si2tag.put(key(sis[i]), tag);
+            }
+            added.add(tag);
+        }
+        if(added.isEmpty()) return;
+        
+        this.tags.addAll(added);
+        if(this.nameIndex != null) {
+            for(ST tag : added) {
+                this.nameIndex.add(tag);
+            }
+        }
+        this.version.addAndGet(added.size());
+    }
+    
+    /**
+     * Removes tags from this storage. The version is changed once and the
+     * tag list is copied at most once.
+     */
+    protected synchronized void removeAll(Collection<? extends ST> oldTags) throws SharkKBException {
+        this.checkWritable();
+        
+        Set<ST> removed = Collections.newSetFromMap(new IdentityHashMap<ST, Boolean>());
+        for(ST tag : oldTags) {
+            ST stored = this.stored(tag);
+            if(stored != null) {
+                removed.add(stored);
+            }
+            this.removeSIs(tag);
+        }
+        if(removed.isEmpty()) return;
+        
+        boolean changed;
+        if(this.tags instanceof SnapshotList) {
+            changed = ((SnapshotList<ST>) this.tags).removeIdentical(removed);
+        } else {
+            changed = this.tags.removeAll(removed);
+        }
+        if(!changed) return;
+        if(this.nameIndex != null) {
+            for(ST tag : removed) {
+                this.nameIndex.remove(tag);
+            }
         }
+        this.version.addAndGet(removed.size());
     }
 
-    ST merge(ST source) throws SharkKBException {
-        SemanticTag copyTag = null;
+    synchronized ST merge(ST source) throws SharkKBException {
+        ST copyTag = null;
         
         if(source == null) {
             return null;
@@ -112,51 +412,154 @@ public class InMemoGenericTagStorage<ST extends SemanticTag> {
         // try to find tag
         copyTag = this.getSemanticTag(source.getSI());
         
-        if(copyTag == null) {
+        if(this.frozen) {
+            // snapshots don't change - known tags are returned as they are
+            if(copyTag != null) return copyTag;
+            this.checkWritable();
+        }
         
-            if(source instanceof PeerTXSemanticTag) {
-                copyTag = InMemoSharkKB.createInMemoCopy((PeerTXSemanticTag) source);
-            } else 
-            if(source instanceof PeerSNSemanticTag) {
-                copyTag = InMemoSharkKB.createInMemoCopy((PeerTXSemanticTag) source);
-            } else 
-            if(source instanceof TimeSemanticTag) {
-                copyTag = InMemoSharkKB.createInMemoCopy((TimeSemanticTag) source);
-            } else 
-            if(source instanceof SpatialSemanticTag) {
-                copyTag = InMemoSharkKB.createInMemoCopy((SpatialSemanticTag) source);
-            } else 
-            if(source instanceof TXSemanticTag) {
-                copyTag = InMemoSharkKB.createInMemoCopy((TXSemanticTag) source);
-            } else 
-            if(source instanceof PeerSemanticTag) {
-                copyTag = InMemoSharkKB.createInMemoCopy((PeerSemanticTag) source);
-            } else 
-            if(source instanceof SNSemanticTag) {
-                copyTag = InMemoSharkKB.createInMemoCopy((SNSemanticTag) source);
-            } else 
-            if(source instanceof SemanticTag) {
-                copyTag = InMemoSharkKB.createInMemoCopy((SemanticTag) source);
-            }
-    
-            this.add((ST) copyTag);
+        if(copyTag == null) {
+            copyTag = this.copyOf(source);
+    
+            this.add(copyTag);
         } else {
             SharkCSAlgebra.merge(copyTag, source);
         }
         
 //        this.initSi();
 
-        return (ST) copyTag;
+        return copyTag;
+    }
+
+    /**
+     * @return in memory copy of source - copies are of the kind of source
+     */
+    @SuppressWarnings("unchecked")
+    private ST copyOf(ST source) throws SharkKBException {
+        return (ST) InMemoGenericTagStorage.copy(source);
+    }
+
+    /**
+     * @return in memory copy of source of the same kind
+     */
+    private static SemanticTag copy(SemanticTag source) throws SharkKBException {
+        if(source instanceof PeerTXSemanticTag) {
+            return InMemoSharkKB.createInMemoCopy((PeerTXSemanticTag) source);
+        } else 
+        if(source instanceof PeerSNSemanticTag) {
+            return InMemoSharkKB.createInMemoCopy((PeerTXSemanticTag) source);
+        } else 
+        if(source instanceof TimeSemanticTag) {
+            return InMemoSharkKB.createInMemoCopy((TimeSemanticTag) source);
+        } else 
+        if(source instanceof SpatialSemanticTag) {
+            return InMemoSharkKB.createInMemoCopy((SpatialSemanticTag) source);
+        } else 
+        if(source instanceof TXSemanticTag) {
+            return InMemoSharkKB.createInMemoCopy((TXSemanticTag) source);
+        } else 
+        if(source instanceof PeerSemanticTag) {
+            return InMemoSharkKB.createInMemoCopy((PeerSemanticTag) source);
+        } else 
+        if(source instanceof SNSemanticTag) {
+            return InMemoSharkKB.createInMemoCopy((SNSemanticTag) source);
+        }
+        
+        return InMemoSharkKB.createInMemoCopy(source);
+    }
+    
+    /**
+     * Merges tags like merge(ST) does but in one pass. Sources are looked
+     * up by si in this storage and among the copies made in that call.
+     * Copies are added at once - see addAll.
+     * 
+     * @param sources
+     * @param created newly created tags are added if not null
+     * @return merged tag for each source - in same order
+     * @throws SharkKBException 
+     */
+    protected synchronized List<ST> mergeAll(Collection<? extends ST> sources,
+            Collection<? super ST> created) throws SharkKBException {
+        
+        this.checkWritable();
+        
+        List<ST> result = new ArrayList<>(sources.size());
+        List<ST> copies = new ArrayList<>();
+        HashMap<String, ST> copied = new HashMap<>();
+        for(ST source : sources) {
+            if(source == null) {
+                result.add(null);
+                continue;
+            }
+            
+            String[] sis = source.getSI();
+            ST target = this.getSemanticTag(sis);
+            boolean isCopy = false;
+            for(int i = 0; target == null && i < sis.length; i++) {
+                if(sis[i] != null) target = copied.get(key(sis[i]));
+                isCopy = target != null;
+            }
+            
+            if(target == null) {
+                target = this.copyOf(source);
+                copies.add(target);
+                isCopy = true;
+            } else {
+                SharkCSAlgebra.merge(target, source);
+            }
+            
+            if(isCopy) {
+                // copies get sis of merged sources as well
+                for(String si : target.getSI()) {
+                    if(si != null) copied.put(key(si), target);
+                }
+            }
+            result.add(target);
+        }
+        
+        this.addAll(copies);
+        if(created != null) created.addAll(copies);
+        
+        return result;
+    }
+    
+    /**
+     * Tags call it after changing their name.
+     */
+    synchronized void nameChanged(ST tag) {
+        if(this.nameIndex != null) {
+            this.nameIndex.rename(tag);
+        }
+    }
+    
+    /**
+     * @return tags whose names could match pattern - null if all tags
+     * have to be checked. Hidden tags are included.
+     */
+    synchronized List<ST> nameCandidates(String pattern) {
+        // snapshots share tags but aren't told about renaming
+        if(this.frozen) return null;
+        
+        if(this.nameIndex == null) {
+            if(this.tags.size() < NameIndex.MIN_TAGS) return null;
+            
+            this.nameIndex = new NameIndex<>();
+            for(ST tag : this.tags) {
+                this.nameIndex.add(tag);
+            }
+        }
+        
+        return this.nameIndex.candidates(pattern);
     }
 
-    public void siAdded(String addSI, ST tag) {
-        if(addSI == null) { return; }
-        this.si2tag.put(addSI, tag);
+    public synchronized void siAdded(String addSI, ST tag) {
+        if(addSI == null || this.frozen) { return; }
+        this.si2tag.put(key(addSI), tag);
     }
 
-    public void siRemoved(String deleteSI, ST tag) {
-        if(deleteSI == null) { return; }
-        this.si2tag.remove(deleteSI);
+    public synchronized void siRemoved(String deleteSI, ST tag) {
+        if(deleteSI == null || this.frozen) { return; }
+        this.si2tag.remove(SITable.normalize(deleteSI));
     }
 
     private class HideEnumeration implements Enumeration<ST> {
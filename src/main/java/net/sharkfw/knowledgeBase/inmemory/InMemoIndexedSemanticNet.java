@@ -0,0 +1,354 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import net.sharkfw.knowledgeBase.*;
+import net.sharkfw.system.Util;
+
+/**
+ * Semantic net which keeps its predicates in primitive arrays.
+ *
+ * Tags get int ids, predicate names are interned. Edges are kept per
+ * predicate in CSR arrays with a delta overlay for changes, see
+ * {@link SNGraph}. Tags are {@link InMemoIndexedSemanticTag}s - they
+ * delegate all predicate methods to the graph of this net.
+ *
+ * Fragmentation, shortest path search and transitivity checks run as
+ * breadth first searches over the int arrays. Use this implementation
+ * for large or deep semantic nets. Tags of other implementations are copied
+ * into this net when they are added, merged or used as predicate target.
+ *
+ * @author thsc
+ */
+public class InMemoIndexedSemanticNet extends InMemoSemanticNet {
+
+    private final SNGraph graph = new SNGraph();
+
+    public InMemoIndexedSemanticNet() {
+        super();
+    }
+
+    @SuppressWarnings("rawtypes")
+    public InMemoIndexedSemanticNet(InMemoGenericTagStorage storage) {
+        super(storage);
+    }
+
+    SNGraph getGraph() {
+        return this.graph;
+    }
+
+    /**
+     * @return tag if it is a tag of this net, the tag of this net with
+     * same sis or null if there is none
+     */
+    InMemoIndexedSemanticTag getLocalTag(SemanticTag tag) {
+        if(tag instanceof InMemoIndexedSemanticTag
+                && ((InMemoIndexedSemanticTag) tag).getNet() == this) {
+
+            return (InMemoIndexedSemanticTag) tag;
+        }
+
+        try {
+            SNSemanticTag localTag = this.getSemanticTag(tag.getSI());
+            if(localTag instanceof InMemoIndexedSemanticTag) {
+                return (InMemoIndexedSemanticTag) localTag;
+            }
+        }
+        catch(SharkKBException e) {
+            // no tag
+        }
+
+        return null;
+    }
+
+    @Override
+    public SNSemanticTag createSemanticTag(String name, String[] si)
+            throws SharkKBException {
+
+        SNSemanticTag st = this.getSemanticTag(si);
+        if(st != null) {
+            return st;
+        }
+
+        st = new InMemoIndexedSemanticTag(name, si, this);
+        super.add(st);
+
+        return st;
+    }
+
+    /**
+     * Tags of other nets are copied into this net.
+     */
+    @Override
+    public void add(SemanticTag tag) throws SharkKBException {
+        if(this.getLocalTag(tag) == tag) {
+            super.add(tag);
+        } else {
+            this.merge(tag);
+        }
+    }
+
+    /**
+     * Copies name, sis and properties. No predicates are copied.
+     */
+    @Override
+    public SNSemanticTag merge(SemanticTag tag) throws SharkKBException {
+        InMemoIndexedSemanticTag localTag = this.getLocalTag(tag);
+        if(localTag != null) {
+            if(localTag != tag) {
+                SharkCSAlgebra.merge(localTag, tag);
+            }
+            return localTag;
+        }
+
+        SNSemanticTag copy = this.createSemanticTag(tag.getName(), tag.getSI());
+        Util.mergeProperties(copy, tag);
+        copy.setHidden(tag.hidden());
+
+        return copy;
+    }
+
+    /**
+     * Like merge(SemanticTag) for each tag but listeners are not notified.
+     */
+    @Override
+    public List<SemanticTag> mergeSemanticTags(Collection<? extends SemanticTag> tags,
+            Collection<? super SemanticTag> created) throws SharkKBException {
+
+        List<SemanticTag> result = new ArrayList<>(tags.size());
+        for(SemanticTag tag : tags) {
+            if(tag == null) {
+                result.add(null);
+                continue;
+            }
+
+            InMemoIndexedSemanticTag localTag = this.getLocalTag(tag);
+            if(localTag != null) {
+                if(localTag != tag) {
+                    SharkCSAlgebra.merge(localTag, tag);
+                }
+                result.add(localTag);
+                continue;
+            }
+
+            InMemoIndexedSemanticTag copy = new InMemoIndexedSemanticTag(tag.getName(), tag.getSI(), this);
+            Util.mergeProperties(copy, tag);
+            copy.setHidden(tag.hidden());
+            this.getSemanticTagStorage().add(copy);
+
+            if(created != null) created.add(copy);
+            result.add(copy);
+        }
+
+        return result;
+    }
+
+    @Override
+    public void removeSemanticTag(SemanticTag tag) {
+        InMemoIndexedSemanticTag localTag = this.getLocalTag(tag);
+        if(localTag == null) return;
+
+        // drop all predicates - super implementation finds none afterwards
+        localTag.removed();
+        super.removeSemanticTag((SNSemanticTag) localTag);
+    }
+
+    @Override
+    public void removeSemanticTag(SNSemanticTag tag) {
+        this.removeSemanticTag((SemanticTag) tag);
+    }
+
+    @Override
+    public void removeSemanticTags(Collection<? extends SemanticTag> tags)
+            throws SharkKBException {
+
+        List<SemanticTag> localTags = new ArrayList<>(tags.size());
+        for(SemanticTag tag : tags) {
+            InMemoIndexedSemanticTag localTag = this.getLocalTag(tag);
+            if(localTag == null || localTag.getID() == -1) continue;
+
+            localTag.removed();
+            localTags.add(localTag);
+        }
+
+        super.removeSemanticTags(localTags);
+    }
+
+    @Override
+    public void setPredicate(SNSemanticTag source, SNSemanticTag target,
+            String type) {
+
+        try {
+            SNSemanticTag localSource = this.merge(source);
+            SNSemanticTag localTarget = this.merge(target);
+
+            this.graph.addEdge(type,
+                    ((InMemoIndexedSemanticTag) localSource).getID(),
+                    ((InMemoIndexedSemanticTag) localTarget).getID());
+
+            this.hierarchyChanged(type);
+        }
+        catch(SharkKBException e) {
+            // cannot happen with in memory storage
+        }
+    }
+
+    @Override
+    public void removePredicate(SNSemanticTag source, SNSemanticTag target,
+            String type) {
+
+        InMemoIndexedSemanticTag localSource = this.getLocalTag(source);
+        InMemoIndexedSemanticTag localTarget = this.getLocalTag(target);
+
+        if(localSource == null || localTarget == null) return;
+
+        this.graph.removeEdge(type, localSource.getID(), localTarget.getID());
+        this.hierarchyChanged(type);
+    }
+
+    void hierarchyChanged(String type) {
+        if(SemanticNet.SUPERTAG.equals(type)) {
+            this.getTagStorage().hierarchyChanged();
+        }
+    }
+
+    /**
+     * Breadth first search along allowed predicates. The fragment contains
+     * all tags within depth and all allowed predicates between them.
+     */
+    @Override
+    public SemanticNet fragment(SemanticTag anchor,
+        FragmentationParameter fp) throws SharkKBException {
+
+        SemanticNet fragment = new InMemoSemanticNet();
+
+        InMemoIndexedSemanticTag anchorTag = this.getLocalTag(anchor);
+        if(anchorTag == null) return fragment;
+
+        boolean[] follow = this.follow(fp.getAllowedPredicates(),
+                fp.getForbiddenPredicates());
+
+        int[] nodes = this.graph.reachable(anchorTag.getID(), follow,
+                Math.max(fp.getDepth(), 0));
+
+        // copy tags
+        SNSemanticTag[] copies = new SNSemanticTag[this.graph.nodeCount()];
+        for(int node : nodes) {
+            copies[node] = fragment.merge(this.graph.getNode(node));
+        }
+
+        // copy predicates between them
+        for(int p = 0; p < follow.length; p++) {
+            if(!follow[p]) continue;
+
+            String predicate = this.graph.predicateName(p);
+            for(int node : nodes) {
+                for(SNSemanticTag target : this.graph.neighbours(predicate, node, true)) {
+                    int targetID = ((InMemoIndexedSemanticTag) target).getID();
+                    if(targetID >= 0 && targetID < copies.length && copies[targetID] != null) {
+                        copies[node].setPredicate(predicate, copies[targetID]);
+                    }
+                }
+            }
+        }
+
+        return fragment;
+    }
+
+    /**
+     * Allowed AND not forbidden predicates can be followed. No allowed
+     * predicates means: any not forbidden predicate can be followed - same
+     * rules as in SharkCSAlgebra.fragment().
+     */
+    private boolean[] follow(Enumeration<String> allowed,
+            Enumeration<String> forbidden) {
+
+        HashSet<String> forbiddenTypes = new HashSet<>();
+        while(forbidden != null && forbidden.hasMoreElements()) {
+            forbiddenTypes.add(forbidden.nextElement());
+        }
+
+        HashSet<String> allowedTypes = new HashSet<>();
+        while(allowed != null && allowed.hasMoreElements()) {
+            allowedTypes.add(allowed.nextElement());
+        }
+        allowedTypes.removeAll(forbiddenTypes);
+
+        int number = this.graph.predicateCount();
+        boolean[] follow = new boolean[number];
+        for(int p = 0; p < number; p++) {
+            String predicate = this.graph.predicateName(p);
+            follow[p] = (allowedTypes.isEmpty() || allowedTypes.contains(predicate))
+                    && !forbiddenTypes.contains(predicate);
+        }
+
+        return follow;
+    }
+
+    /**
+     * Shortest path along any predicate from start to the nearest tag
+     * which is also in targets.
+     *
+     * @param start
+     * @param targets
+     * @param predicates filled with predicate names of each step
+     * @return tags of this net along the path - start first - or null if
+     * there is no path.
+     * @throws SharkKBException
+     */
+    public List<SNSemanticTag> shortestPath(SemanticTag start, STSet targets,
+            List<String> predicates) throws SharkKBException {
+
+        InMemoIndexedSemanticTag startTag = this.getLocalTag(start);
+        if(startTag == null || targets == null) return null;
+
+        // mark goals
+        boolean[] goal = new boolean[this.graph.nodeCount()];
+        Enumeration<SemanticTag> targetEnum = targets.tags();
+        while(targetEnum != null && targetEnum.hasMoreElements()) {
+            InMemoIndexedSemanticTag goalTag = this.getLocalTag(targetEnum.nextElement());
+            if(goalTag != null && goalTag.getID() >= 0 && goalTag.getID() < goal.length) {
+                goal[goalTag.getID()] = true;
+            }
+        }
+
+        SNGraph.IntList predicateIDs = new SNGraph.IntList();
+        int[] path = this.graph.shortestPath(startTag.getID(), goal, predicateIDs);
+        if(path == null) return null;
+
+        List<SNSemanticTag> tags = new ArrayList<>(path.length);
+        for(int node : path) {
+            tags.add(this.graph.getNode(node));
+        }
+
+        if(predicates != null) {
+            for(int i = 0; i < predicateIDs.size(); i++) {
+                predicates.add(this.graph.predicateName(predicateIDs.get(i)));
+            }
+        }
+
+        return tags;
+    }
+
+    /**
+     * @param predicate
+     * @return true if each tag references each tag reachable with that
+     * predicate directly
+     */
+    public boolean isTransitive(String predicate) {
+        return this.graph.isTransitive(predicate);
+    }
+
+    /**
+     * Adds predicates from each tag to each tag reachable with that
+     * predicate - calculates transitive closure.
+     *
+     * @param predicate
+     */
+    public void makeTransitive(String predicate) {
+        this.graph.makeTransitive(predicate);
+    }
+}
@@ -0,0 +1,141 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import net.sharkfw.knowledgeBase.*;
+
+/**
+ * Tag of an {@link InMemoIndexedSemanticNet}. It doesn't keep predicates
+ * by itself. Each tag is a node with an int id in the graph of its semantic
+ * net. All predicate methods are delegated to that graph.
+ *
+ * @author thsc
+ */
+public class InMemoIndexedSemanticTag extends InMemo_SN_TX_SemanticTag {
+
+    private final InMemoIndexedSemanticNet net;
+    private volatile int id;
+
+    InMemoIndexedSemanticTag(String name, String[] si, InMemoIndexedSemanticNet net) {
+        super(name, si);
+        this.net = net;
+        this.id = net.getGraph().addNode(this);
+    }
+
+    /**
+     * @return id of this tag in the graph of its semantic net, -1 if
+     * this tag was removed from the net
+     */
+    public int getID() {
+        return this.id;
+    }
+
+    InMemoIndexedSemanticNet getNet() {
+        return this.net;
+    }
+
+    void removed() {
+        // id is handed out again after removal
+        int node = this.id;
+        this.id = -1;
+        this.net.getGraph().removeNode(node);
+    }
+
+    private static <T> Enumeration<T> enumeration(ArrayList<T> list) {
+        if(list.isEmpty()) return null;
+
+        return Collections.enumeration(list);
+    }
+
+    @Override
+    public Enumeration<String> predicateNames() {
+        return enumeration(this.net.getGraph().predicateNames(this.id, true));
+    }
+
+    @Override
+    public Enumeration<String> targetPredicateNames() {
+        return enumeration(this.net.getGraph().predicateNames(this.id, false));
+    }
+
+    @Override
+    public Enumeration<SNSemanticTag> targetTags(String predicateName) {
+        return enumeration(this.net.getGraph().neighbours(predicateName, this.id, true));
+    }
+
+    @Override
+    public Enumeration<SNSemanticTag> sourceTags(String predicateName) {
+        return enumeration(this.net.getGraph().neighbours(predicateName, this.id, false));
+    }
+
+    /**
+     * Tags from other semantic nets are merged into the semantic net of
+     * this tag first.
+     */
+    @Override
+    public void setPredicate(String type, SNSemanticTag target) {
+        this.net.setPredicate(this, target, type);
+    }
+
+    @Override
+    public void removePredicate(String type, SNSemanticTag target) {
+        this.net.removePredicate(this, target, type);
+    }
+
+    @Override
+    public void removePredicate(String type) {
+        this.net.getGraph().removeEdges(type, this.id);
+        this.net.hierarchyChanged(type);
+    }
+
+    @Override
+    public void move(TXSemanticTag supertag) {
+        TXSemanticTag oldSuperTag = this.getSuperTag();
+        this.removePredicate(SemanticNet.SUPERTAG);
+        if(oldSuperTag instanceof SNSemanticTag) {
+            ((SNSemanticTag) oldSuperTag).removePredicate(SemanticNet.SUBTAG, this);
+        }
+
+        if(supertag instanceof SNSemanticTag) {
+            SNSemanticTag snSuperTag = (SNSemanticTag) supertag;
+            this.setPredicate(SemanticNet.SUPERTAG, snSuperTag);
+
+            SNSemanticTag localSuperTag = this.net.getLocalTag(snSuperTag);
+            if(localSuperTag != null) {
+                localSuperTag.setPredicate(SemanticNet.SUBTAG, this);
+            }
+        }
+    }
+
+    @Override
+    public void merge(SNSemanticTag toMerge) {
+        this.mergePredicates(toMerge);
+    }
+
+    @Override
+    public void merge(TXSemanticTag toMerge) {
+        this.mergePredicates(toMerge);
+    }
+
+    /**
+     * Merges sis and properties and copies predicates in which
+     * toMerge is source.
+     */
+    private void mergePredicates(SemanticTag toMerge) {
+        SharkCSAlgebra.merge(this, toMerge);
+
+        if(!(toMerge instanceof SNSemanticTag) || toMerge == this) return;
+
+        SNSemanticTag snToMerge = (SNSemanticTag) toMerge;
+        Enumeration<String> types = snToMerge.predicateNames();
+        if(types == null) return;
+
+        while(types.hasMoreElements()) {
+            String type = types.nextElement();
+            Enumeration<SNSemanticTag> targets = snToMerge.targetTags(type);
+            while(targets != null && targets.hasMoreElements()) {
+                this.setPredicate(type, targets.nextElement());
+            }
+        }
+    }
+}
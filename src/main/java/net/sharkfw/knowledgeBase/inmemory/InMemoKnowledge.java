@@ -3,8 +3,11 @@ package net.sharkfw.knowledgeBase.inmemory;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import net.sharkfw.knowledgeBase.*;
 import net.sharkfw.system.Iterator2Enumeration;
+import net.sharkfw.system.SnapshotList;
 
 /**
  * An in memory implementation of the <code>Knowledge</code> interface.
@@ -15,7 +18,10 @@ import net.sharkfw.system.Iterator2Enumeration;
  * @author thsc
  */
 public class InMemoKnowledge extends InMemoASIPKnowledge implements Knowledge {
-    private final ArrayList<ContextPoint> cps;
+    private final List<ContextPoint> cps;
+    
+    // belongs to cps - knowledges sharing cps share it as well
+    private final ContextPointIndex index;
 
     /** 
      * Create knowledge without background 
@@ -23,23 +29,75 @@ public class InMemoKnowledge extends InMemoASIPKnowledge implements Knowledge {
     public InMemoKnowledge() {
         // create empty context point list
         cps = new ArrayList<>();
+        index = new ContextPointIndex(cps);
     }
 
     public InMemoKnowledge(SharkVocabulary background) {
         super(background);
         cps = new ArrayList<>();
+        index = new ContextPointIndex(cps);
+    }
+    
+    /**
+     * Create knowledge that can be read and changed by several threads.
+     * Context points and listeners are kept in copy on write lists.
+     * @param background
+     * @param concurrent 
+     */
+    public InMemoKnowledge(SharkVocabulary background, boolean concurrent) {
+        super(background, concurrent);
+        if(concurrent) {
+            cps = new SnapshotList<>();
+            listeners = new CopyOnWriteArrayList<>();
+        } else {
+            cps = new ArrayList<>();
+        }
+        index = new ContextPointIndex(cps);
+    }
+    
+    /**
+     * Concurrent knowledge - lists share snapshotLock with the tag storages
+     * of its knowledge base, see ConcurrentInMemoSharkKB
+     */
+    InMemoKnowledge(SharkVocabulary background, Object snapshotLock) {
+        super(background, snapshotLock);
+        cps = new SnapshotList<>(snapshotLock);
+        listeners = new CopyOnWriteArrayList<>();
+        index = new ContextPointIndex(cps);
+    }
+    
+    /**
+     * Read only copy of k, see snapshot()
+     */
+    private InMemoKnowledge(InMemoKnowledge k, SharkVocabulary background) {
+        super(background, k);
+        this.cps = InMemoASIPKnowledge.snapshot(k.getCPS());
+        this.index = new ContextPointIndex(this.cps);
+    }
+    
+    /**
+     * Creates a read only point in time view on this knowledge. Information
+     * spaces and context points added or removed later are not visible.
+     * Information spaces and context points themselves are not copied.
+     * 
+     * @param background vocabulary of the snapshot
+     * @return read only knowledge
+     */
+    InMemoKnowledge snapshot(SharkVocabulary background) {
+        return new InMemoKnowledge(this, background);
     }
     
     InMemoKnowledge(SharkVocabulary cm, InMemoKnowledge k) {
         super(cm);
         this.cps = k.getCPS();
+        this.index = k.index;
     }
     
     /**
      * @deprecated 
      * @return 
      */
-    private ArrayList<ContextPoint> getCPS() {
+    private List<ContextPoint> getCPS() {
         return this.cps;
     }
 
@@ -76,6 +134,7 @@ public class InMemoKnowledge extends InMemoASIPKnowledge implements Knowledge {
     @Override
     public final void addContextPoint(ContextPoint cp) {
         this.cps.add(cp);
+        this.index.added(cp);
         // notity
         Iterator<KnowledgeListener> listenerIter = this.listeners.iterator();
         while(listenerIter.hasNext()) {
@@ -90,7 +149,10 @@ public class InMemoKnowledge extends InMemoASIPKnowledge implements Knowledge {
      */
     @Override
     public void removeContextPoint(ContextPoint cp) {
-        this.cps.remove(cp);
+        ContextPoint removed = this.removeFromList(cp);
+        if(removed != null) {
+            this.index.removed(removed);
+        }
         // notity
         Iterator<KnowledgeListener> listenerIter = this.listeners.iterator();
         while(listenerIter.hasNext()) {
@@ -99,6 +161,42 @@ public class InMemoKnowledge extends InMemoASIPKnowledge implements Knowledge {
         }
     }
 
+    /**
+     * Context points are equal if their coordinates are identical. The
+     * object itself is removed if it is in the list - otherwise the first
+     * equal one as before.
+     * 
+     * @return removed context point or null
+     */
+    private ContextPoint removeFromList(ContextPoint cp) {
+        // writers of snapshot lists lock on their lock
+        Object lock = this.cps instanceof SnapshotList ? 
+                ((SnapshotList<ContextPoint>) this.cps).getLock() : this.cps;
+        
+        synchronized(lock) {
+            int i = 0;
+            for(ContextPoint listed : this.cps) {
+                if(listed == cp) break;
+                i++;
+            }
+            if(i == this.cps.size()) {
+                i = this.cps.indexOf(cp);
+                if(i < 0) return null;
+            }
+
+            return this.cps.remove(i);
+        }
+    }
+
+    /**
+     * @param coordinates
+     * @return first context point with exactly matching coordinates -
+     * see InMemoSharkKB.exactMatch - or null
+     */
+    ContextPoint getContextPoint(ContextCoordinates coordinates) {
+        return this.index.find(coordinates);
+    }
+
     /**
      * @deprecated 
      * @return 
@@ -108,10 +206,22 @@ public class InMemoKnowledge extends InMemoASIPKnowledge implements Knowledge {
         return new Iterator2Enumeration(this.cps.iterator());
     }
 
+    /**
+     * Context points within a context space - see ContextPointIndex.
+     * 
+     * @param cs
+     * @param matchAny true: any tags of context points match each tag
+     * @return matching context points or null if there are none
+     * @throws SharkKBException 
+     */
+    Iterator<ContextPoint> contextPoints(SharkCS cs, boolean matchAny) throws SharkKBException {
+        return this.index.query(cs, matchAny);
+    }
+
     //////////////////////////////////////////////////////////////////////////
     //                               knowledge listener                     //
     //////////////////////////////////////////////////////////////////////////
-    private ArrayList<KnowledgeListener> listeners = new ArrayList<>();
+    private List<KnowledgeListener> listeners = new ArrayList<>();
 
     @Override
     public void addListener(KnowledgeListener kbl) {
@@ -13,6 +13,18 @@ public class InMemoPeerTaxonomy extends InMemoTaxonomy implements PeerTaxonomy,
         super(new InMemoPeerSemanticNet());
     }
     
+    /**
+     * @return read only point in time view on this taxonomy or null if
+     * tags aren't kept in an in memory tag storage
+     */
+    InMemoPeerTaxonomy snapshot() {
+        SemanticNet storage = this.getStorage();
+        if(!(storage instanceof InMemoSTSet)) return null;
+        
+        InMemoGenericTagStorage<?> tagStorage = ((InMemoSTSet) storage).getTagStorage();
+        return new InMemoPeerTaxonomy(new InMemoPeerSemanticNet(tagStorage.snapshot()));
+    }
+    
     private PeerTXSemanticTag castPST(SemanticTag st)  throws SharkKBException {
         if(st == null) return null;
         
@@ -39,7 +51,12 @@ public class InMemoPeerTaxonomy extends InMemoTaxonomy implements PeerTaxonomy,
     public PeerTaxonomy fragment(SemanticTag anchor, FragmentationParameter fp) 
             throws SharkKBException {
         
-        PeerSemanticNet fragment = this.getStorage().fragment(anchor, fp);
+        PeerSemanticNet fragment = new InMemoPeerSemanticNet();
+        if(this.fragmentHierarchy(fragment, anchor, fp)) {
+            return new InMemoPeerTaxonomy(fragment);
+        }
+        
+        fragment = this.getStorage().fragment(anchor, fp);
         
         if(fragment == null) return null;
         
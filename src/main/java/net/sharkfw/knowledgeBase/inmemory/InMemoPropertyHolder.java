@@ -1,29 +1,55 @@
 package net.sharkfw.knowledgeBase.inmemory;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.Iterator;
 import net.sharkfw.knowledgeBase.SystemPropertyHolder;
 import net.sharkfw.system.Iterator2Enumeration;
 
 /**
+ * Properties are kept in a flat name / value array. Most holders have no or
+ * just a few properties - an array is much smaller than a hash map and
+ * linear search is fast enough. Arrays are created with the first property.
+ * Holders with many properties switch to a hash map. A hash map is used as
+ * well after handing out property maps, see {@link #getUnhiddenProperties()}.
+ *
+ * Holders are thread safe - arrays are changed in place. Handed out maps
+ * aren't, their users have to synchronize on this holder.
  *
  * @author thsc
  */
 public class InMemoPropertyHolder implements SystemPropertyHolder {
-    private HashMap<String,String> properties = null;
-    private HashMap<String,String> hiddenProperties = null;
+    // null, flat String[] {name, value, name, value, ...} or HashMap
+    private Object properties = null;
+    private Object hiddenProperties = null;
+    
+    /** max number of properties kept in an array */
+    static final int MAX_FLAT_PROPERTIES = 8;
     
-    public HashMap<String,String> getUnhiddenProperties() {
-        return this.properties;
+    /**
+     * @return map of properties which are transfered. Changes of that map
+     * change this holder.
+     */
+    public synchronized HashMap<String,String> getUnhiddenProperties() {
+        HashMap<String,String> map = InMemoPropertyHolder.toMap(this.properties);
+        this.properties = map;
+        return map;
     }
     
-    public HashMap<String,String> getHiddenProperties() {
-        return this.hiddenProperties;
+    /**
+     * @return map of properties which are not transfered. Changes of that map
+     * change this holder.
+     */
+    public synchronized HashMap<String,String> getHiddenProperties() {
+        HashMap<String,String> map = InMemoPropertyHolder.toMap(this.hiddenProperties);
+        this.hiddenProperties = map;
+        return map;
     }
     
     public InMemoPropertyHolder() {
-        this.properties = new HashMap<String,String>();
-        this.hiddenProperties = new HashMap<String,String>();
     }
     
     public static final boolean DEFAULT_TRANSFER_FLAG = true;
@@ -44,33 +70,136 @@ public class InMemoPropertyHolder implements SystemPropertyHolder {
      * @return property value or null
      */
     @Override
-    public String getProperty(String name) {
-        String value = this.properties.get(name);
+    public synchronized String getProperty(String name) {
+        String value = InMemoPropertyHolder.get(this.properties, name);
        
         if(value == null) {
-            value = this.hiddenProperties.get(name);
+            value = InMemoPropertyHolder.get(this.hiddenProperties, name);
         }
         
         return value;
     }
 
     @Override
-    public void setProperty(String name, String value, boolean transfer) {
+    public synchronized void setProperty(String name, String value, boolean transfer) {
         if(transfer) {
+            // null value removes
+            this.properties = InMemoPropertyHolder.put(this.properties, name, value);
+        } else {
+            this.hiddenProperties = InMemoPropertyHolder.put(this.hiddenProperties, name, value);
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static String get(Object table, String name) {
+        if(table == null) return null;
+        
+        if(table instanceof String[]) {
+            String[] flat = (String[]) table;
+            for(int i = 0; i < flat.length; i += 2) {
+                if(flat[i].equals(name)) return flat[i+1];
+            }
+            return null;
+        }
+        
+        return ((HashMap<String,String>) table).get(name);
+    }
+    
+    /**
+     * @return table containing name / value. Value null removes that entry.
+     */
+    @SuppressWarnings("unchecked")
+    private static Object put(Object table, String name, String value) {
+        if(table instanceof HashMap) {
+            HashMap<String,String> map = (HashMap<String,String>) table;
             if(value == null) {
-                // remove
-                this.properties.remove(name);
+                map.remove(name);
             } else {
-                this.properties.put(name, value);
+                map.put(name, value);
             }
-        } else {
-            if(value == null) {
-                this.hiddenProperties.remove(name);
+            return map;
+        }
+        
+        String[] flat = (String[]) table;
+        int index = -1;
+        if(flat != null) {
+            for(int i = 0; i < flat.length; i += 2) {
+                if(flat[i].equals(name)) {
+                    index = i;
+                    break;
+                }
             }
-            else {
-                this.hiddenProperties.put(name, value);
+        }
+        
+        if(value == null) {
+            // remove
+            if(index < 0) return flat;
+            if(flat.length == 2) return null;
+            
+            String[] newFlat = new String[flat.length - 2];
+            System.arraycopy(flat, 0, newFlat, 0, index);
+            System.arraycopy(flat, index + 2, newFlat, index, flat.length - index - 2);
+            return newFlat;
+        }
+        
+        if(index >= 0) {
+            flat[index+1] = value;
+            return flat;
+        }
+        
+        if(flat == null) {
+            return new String[] {name, value};
+        }
+        
+        if(flat.length / 2 >= MAX_FLAT_PROPERTIES) {
+            HashMap<String,String> map = InMemoPropertyHolder.toMap(flat);
+            map.put(name, value);
+            return map;
+        }
+        
+        String[] newFlat = Arrays.copyOf(flat, flat.length + 2);
+        newFlat[flat.length] = name;
+        newFlat[flat.length + 1] = value;
+        return newFlat;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static HashMap<String,String> toMap(Object table) {
+        if(table instanceof HashMap) {
+            return (HashMap<String,String>) table;
+        }
+        
+        HashMap<String,String> map = new HashMap<>();
+        if(table != null) {
+            String[] flat = (String[]) table;
+            for(int i = 0; i < flat.length; i += 2) {
+                map.put(flat[i], flat[i+1]);
             }
         }
+        
+        return map;
+    }
+    
+    /**
+     * @return copy of names - holder can be changed while iterating
+     */
+    @SuppressWarnings("unchecked")
+    private static Iterator<String> names(Object table) {
+        if(table == null) {
+            return Collections.<String>emptyIterator();
+        }
+        
+        if(table instanceof HashMap) {
+            return new ArrayList<>(((HashMap<String,String>) table).keySet()).iterator();
+        }
+        
+        String[] flat = (String[]) table;
+        ArrayList<String> names = new ArrayList<>(flat.length / 2);
+        for(int i = 0; i < flat.length; i += 2) {
+            names.add(flat[i]);
+        }
+        
+        return names.iterator();
     }
 
     /**
@@ -83,14 +212,14 @@ public class InMemoPropertyHolder implements SystemPropertyHolder {
     }
 
     @Override
-    public Enumeration propertyNames(boolean all) {
+    public synchronized Enumeration propertyNames(boolean all) {
         if(all) {
             return new Iterator2Enumeration(
-                    this.properties.keySet().iterator(),
-                    this.hiddenProperties.keySet().iterator());
+                    InMemoPropertyHolder.names(this.properties),
+                    InMemoPropertyHolder.names(this.hiddenProperties));
         }
         
-        return new Iterator2Enumeration(this.properties.keySet().iterator());
+        return new Iterator2Enumeration(InMemoPropertyHolder.names(this.properties));
     }
 
     // following messages only implemented in persistent storages, e.g. file system
@@ -48,6 +48,15 @@ public class InMemoSTSet extends AbstractSTSet implements STSet {
         return this.storage;
     }
 
+    /**
+     * Storages of subclasses are bound to a kind of tag. Tags are checked
+     * by the subclasses before they reach the storage.
+     */
+    @SuppressWarnings("unchecked")
+    InMemoGenericTagStorage<SemanticTag> getSemanticTagStorage() {
+        return (InMemoGenericTagStorage<SemanticTag>) this.storage;
+    }
+
     /**
      * creates a new st set with same tags - be careful
      * @param storage 
@@ -130,10 +139,48 @@ public class InMemoSTSet extends AbstractSTSet implements STSet {
     @Override
     public void removeSemanticTag(SemanticTag tag) {
         this.storage.removeSemanticTag(tag);
-        
+
         this.notifyRemoved(tag);
     }
 
+    /**
+     * Adds all tags like add(SemanticTag) does - objects are added, no
+     * copies. Listeners are <b>not</b> notified about each tag. Use it
+     * for imports and tell listeners afterwards if required.
+     *
+     * @param tags tags to add
+     * @throws SharkKBException
+     */
+    public void addSemanticTags(Collection<? extends SemanticTag> tags) throws SharkKBException {
+        this.getSemanticTagStorage().addAll(tags);
+    }
+
+    /**
+     * Removes all tags like removeSemanticTag(SemanticTag) does. Listeners
+     * are <b>not</b> notified about each tag.
+     *
+     * @param tags tags to remove
+     * @throws SharkKBException
+     */
+    public void removeSemanticTags(Collection<? extends SemanticTag> tags) throws SharkKBException {
+        this.getSemanticTagStorage().removeAll(tags);
+    }
+
+    /**
+     * Merges all tags like merge(SemanticTag) does - in a single pass over
+     * the tags. Listeners are <b>not</b> notified about each tag.
+     *
+     * @param tags tags to merge
+     * @param created tags newly created in this set are added - can be null
+     * @return tag of this set for each merged tag - in same order
+     * @throws SharkKBException
+     */
+    public List<SemanticTag> mergeSemanticTags(Collection<? extends SemanticTag> tags,
+            Collection<? super SemanticTag> created) throws SharkKBException {
+
+        return this.getSemanticTagStorage().mergeAll(tags, created);
+    }
+
     /**
      * A tag is created and added to the set
      * @param name Tag name
@@ -184,31 +231,54 @@ public class InMemoSTSet extends AbstractSTSet implements STSet {
         return InMemoSTSet.getSemanticTagByName(this, pattern);
     }
     
+    /**
+     * In memory sets with a larger number of tags use a trigram index on
+     * names to find candidates, see NameIndex. Each candidate is checked
+     * with the pattern.
+     */
     public static Iterator<SemanticTag> getSemanticTagByName(STSet source, String pattern) throws SharkKBException {
         ArrayList<SemanticTag> result = new ArrayList<>();
         
-        Enumeration<SemanticTag> tags = source.tags();
-        if(tags != null) {
-            try {
-                Pattern p = Pattern.compile(pattern);
+        try {
+            Pattern p = Pattern.compile(pattern);
+            
+            List<? extends SemanticTag> candidates = null;
+            boolean hide = false;
+            if(source instanceof InMemoSTSet) {
+                InMemoGenericTagStorage<?> storage = ((InMemoSTSet) source).getTagStorage();
+                candidates = storage.nameCandidates(pattern);
+                hide = storage.hidesTags();
+            }
+            
+            if(candidates != null) {
+                for(SemanticTag st : candidates) {
+                    if(hide && st.hidden()) continue;
+                    
+                    String name = st.getName();
+                    if(name != null && p.matcher(name).matches()) {
+                        result.add(st);
+                    }
+                }
+                return result.iterator();
+            }
 
-                while(tags.hasMoreElements()) {
-                    SemanticTag st = tags.nextElement();
+            Enumeration<SemanticTag> tags = source.tags();
+            while(tags != null && tags.hasMoreElements()) {
+                SemanticTag st = tags.nextElement();
 
-                    String name = st.getName();
+                String name = st.getName();
 
-                    if(name != null) {
-                        Matcher matcher = p.matcher(name);
-                        if(matcher.matches()) {
-                            result.add(st);
-                        }
+                if(name != null) {
+                    Matcher matcher = p.matcher(name);
+                    if(matcher.matches()) {
+                        result.add(st);
                     }
                 }
             }
-            catch(IllegalArgumentException e) {
-                // thrown if patter is in wrong shape
-                throw new SharkKBException(e.getClass().getName() +  " catched: " + e.getMessage());
-            }
+        }
+        catch(IllegalArgumentException e) {
+            // thrown if patter is in wrong shape
+            throw new SharkKBException(e.getClass().getName() +  " catched: " + e.getMessage());
         }
         return result.iterator();
     }
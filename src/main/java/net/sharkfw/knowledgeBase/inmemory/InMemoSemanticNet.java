@@ -1,6 +1,9 @@
 package net.sharkfw.knowledgeBase.inmemory;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Enumeration;
+import java.util.List;
 import net.sharkfw.knowledgeBase.*;
 
 /**
@@ -74,6 +77,26 @@ public class InMemoSemanticNet extends InMemoSTSet implements SemanticNet {
         return (SNSemanticTag) super.merge(snTag);
     }
 
+    /**
+     * Tags which are no SNSemanticTags are copied into SNSemanticTags first -
+     * see merge(SemanticTag). Predicates aren't merged.
+     */
+    @Override
+    public List<SemanticTag> mergeSemanticTags(Collection<? extends SemanticTag> tags,
+            Collection<? super SemanticTag> created) throws SharkKBException {
+
+        List<SemanticTag> snTags = new ArrayList<>(tags.size());
+        for(SemanticTag tag : tags) {
+            if(tag == null || tag instanceof SNSemanticTag) {
+                snTags.add(tag);
+            } else {
+                snTags.add(InMemoSharkKB.createInMemoCopyToSNSemanticTag(tag));
+            }
+        }
+        
+        return super.mergeSemanticTags(snTags, created);
+    }
+
     protected void add(SNSemanticTag tag) throws SharkKBException {
         super.add(tag);
     }
@@ -90,6 +113,29 @@ public class InMemoSemanticNet extends InMemoSTSet implements SemanticNet {
 
     @Override
     public void removeSemanticTag(SNSemanticTag tag) {
+        this.dropPredicates(tag);
+        
+        super.removeSemanticTag(tag);
+    }
+    
+    /**
+     * Predicates of each tag are dropped before tags are removed in one go.
+     * Listeners are not notified.
+     */
+    @Override
+    public void removeSemanticTags(Collection<? extends SemanticTag> tags) 
+            throws SharkKBException {
+        
+        for(SemanticTag tag : tags) {
+            if(tag instanceof InMemo_SN_TX_SemanticTag) {
+                this.dropPredicates((SNSemanticTag) tag);
+            }
+        }
+        
+        super.removeSemanticTags(tags);
+    }
+    
+    private void dropPredicates(SNSemanticTag tag) {
         /*
          * We keep any predicate twice: in target tag as well as source tag
          * Thus, we have to remove targets as well as source references
@@ -134,8 +180,6 @@ public class InMemoSemanticNet extends InMemoSTSet implements SemanticNet {
                 }
             }
         }
-        
-        super.removeSemanticTag(tag);
     }
     
     @Override
@@ -1,6 +1,7 @@
 package net.sharkfw.knowledgeBase.inmemory;
 
 import net.sharkfw.knowledgeBase.AbstractSemanticTag;
+import net.sharkfw.knowledgeBase.SITable;
 import net.sharkfw.knowledgeBase.SharkKBException;
 import net.sharkfw.knowledgeBase.SystemPropertyHolder;
 import net.sharkfw.system.Util;
@@ -48,8 +49,11 @@ public class InMemoSemanticTag extends AbstractSemanticTag implements Serializab
         }
 
         // copy the whole thing - for those who want to reuse that array
+        // sis are interned - the same si is shared by all tags
         String[] sis = new String[sisOrig.length];
-        System.arraycopy(sisOrig, 0, sis, 0, sisOrig.length);
+        for(int i = 0; i < sisOrig.length; i++) {
+            sis[i] = SITable.intern(sisOrig[i]);
+        }
 
         // remove duplicates first
         for(int origIndex = 0; origIndex < sis.length -1; origIndex++) {
@@ -119,6 +123,7 @@ public class InMemoSemanticTag extends AbstractSemanticTag implements Serializab
         }
 
         this.si = Util.removeSI(this.si, deleteSI);
+        this.siVersionChanged();
         if(this.storage != null) {
             this.storage.siRemoved(deleteSI, this);
             super.sisChanged();
@@ -142,7 +147,8 @@ public class InMemoSemanticTag extends AbstractSemanticTag implements Serializab
             }
         }
 
-        this.si = Util.addString(this.si, addSI);
+        this.si = Util.addString(this.si, SITable.intern(addSI));
+        this.siVersionChanged();
         if(this.storage != null) {
             this.storage.siAdded(addSI, this);
             super.sisChanged();
@@ -152,9 +158,33 @@ public class InMemoSemanticTag extends AbstractSemanticTag implements Serializab
     @Override
     public void setName(String newName) {
         this.name = newName;
+        this.nameChanged();
         this.persist();
     }
 
+    /**
+     * Indexes keyed by sis watch the storage of a tag - tags outside a
+     * storage are watched by SITable.
+     */
+    private void siVersionChanged() {
+        InMemoGenericTagStorage<?> tagStorage = this.storage;
+        if(tagStorage != null) {
+            tagStorage.sisChanged();
+        } else {
+            SITable.sisChanged();
+        }
+    }
+
+    /**
+     * A storage only holds tags of its kind - this one included.
+     */
+    @SuppressWarnings("unchecked")
+    private void nameChanged() {
+        if(this.storage != null) {
+            this.storage.nameChanged(this);
+        }
+    }
+
     void setStorage(InMemoGenericTagStorage storage) {
         this.storage = storage;
     }
@@ -187,13 +217,17 @@ public class InMemoSemanticTag extends AbstractSemanticTag implements Serializab
         super.refreshStatus();
 
         String newName = this.getSystemProperty(ST_NAME);
-        if(newName != null) this.name = newName;
+        if(newName != null && !newName.equals(this.name)) {
+            this.name = newName;
+            this.nameChanged();
+        }
 
         String sisString = this.getSystemProperty(ST_SIS);
         if(sisString != null) {
             String[] newSIs = Util.string2array(sisString);
             if(newSIs != null) {
                 this.si = newSIs;
+                this.siVersionChanged();
             }
         }
     }
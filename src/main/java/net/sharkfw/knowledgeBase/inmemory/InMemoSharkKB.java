@@ -1081,6 +1081,10 @@ public class InMemoSharkKB extends AbstractSharkKB implements SharkKB, SystemPro
      */
     @Override
     public ContextPoint getContextPoint(ContextCoordinates coordinates) throws SharkKBException {
+        if (coordinates != null && this.knowledge instanceof InMemoKnowledge) {
+            // hashed coordinates - no scan
+            return ((InMemoKnowledge) this.knowledge).getContextPoint(coordinates);
+        }
         Enumeration<ContextPoint> cpEnum = this.knowledge.contextPoints();
         while (cpEnum.hasMoreElements()) {
             ContextPoint cp = cpEnum.nextElement();
@@ -1130,7 +1134,7 @@ public class InMemoSharkKB extends AbstractSharkKB implements SharkKB, SystemPro
      * @deprecated 
      */
     @Override
-    public Enumeration getAllContextPoints() throws SharkKBException {
+    public Enumeration<ContextPoint> getAllContextPoints() throws SharkKBException {
         ContextCoordinates cc = InMemoSharkKB.getAnyCoordinates();
         return this.getContextPoints(cc);
     }
@@ -1198,6 +1202,10 @@ public class InMemoSharkKB extends AbstractSharkKB implements SharkKB, SystemPro
         if (cs == null) {
             return null;
         }
+        if (this.knowledge instanceof InMemoKnowledge) {
+            // indexed - no coordinate combinations
+            return ((InMemoKnowledge) this.knowledge).contextPoints(cs, matchAny);
+        }
         HashSet<ContextPoint> result = new HashSet<ContextPoint>();
         HashSet<ContextCoordinates> coo = this.possibleCoordinates(cs);
         if (coo == null) {
@@ -1473,4 +1481,67 @@ public class InMemoSharkKB extends AbstractSharkKB implements SharkKB, SystemPro
         ASIPSpace mergeASIPSpace = this.mergeASIPSpace(semanticalAnnotations);
         return this.getKnowledge().addInformation(content, mergeASIPSpace);
     }
+    /**
+     * @return lock all writers of tag storages and knowledge lists of this
+     * knowledge base synchronize on - null if there is no such lock. In
+     * that case, this knowledge base must not be changed while a snapshot
+     * is taken.
+     */
+    protected Object getSnapshotLock() {
+        return null;
+    }
+    
+    /**
+     * Takes a read only snapshot of this knowledge base. Tag storages and
+     * knowledge are frozen: Knowledge bases created with 
+     * ConcurrentInMemoSharkKB are snapshot in constant time, others are copied.
+     * Tags, information spaces and context points are shared, not copied.
+     * 
+     * @return read only snapshot
+     * @throws SharkKBException 
+     */
+    @Override
+    public SharkKB snapshot() throws SharkKBException {
+        // derived classes like file system kbs keep data outside of memory
+        boolean inMemory = this.getClass() == InMemoSharkKB.class 
+                || this.getClass() == ConcurrentInMemoSharkKB.class;
+        
+        if(!inMemory
+                || !(this.topics instanceof InMemoSTSet) 
+                || !(this.types instanceof InMemoSTSet)
+                || !(this.peers instanceof InMemoPeerTaxonomy)
+                || !(this.locations instanceof InMemoSTSet)
+                || !(this.times instanceof InMemoSTSet)
+                || !(this.knowledge instanceof InMemoKnowledge)) {
+            
+            // not our own structures - copy
+            return super.snapshot();
+        }
+        
+        InMemoSharkKBSnapshot snapshot = null;
+        
+        // one cut through all dimensions and the knowledge
+        Object lock = this.getSnapshotLock();
+        synchronized(lock != null ? lock : this) {
+            InMemoPeerTaxonomy peersSnapshot = ((InMemoPeerTaxonomy) this.peers).snapshot();
+            if(peersSnapshot != null) {
+                snapshot = new InMemoSharkKBSnapshot(
+                    new InMemoSemanticNet(((InMemoSTSet) this.topics).getTagStorage().snapshot()),
+                    new InMemoSemanticNet(((InMemoSTSet) this.types).getTagStorage().snapshot()),
+                    peersSnapshot,
+                    new InMemoSpatialSTSet(((InMemoSTSet) this.locations).getTagStorage().snapshot()),
+                    new InMemoTimeSTSet(((InMemoSTSet) this.times).getTagStorage().snapshot()),
+                    (InMemoKnowledge) this.knowledge);
+            }
+        }
+        
+        if(snapshot == null) {
+            return super.snapshot();
+        }
+        
+        snapshot.owner = this.owner;
+        snapshot.standardFP = this.standardFP;
+        
+        return snapshot;
+    }
 }
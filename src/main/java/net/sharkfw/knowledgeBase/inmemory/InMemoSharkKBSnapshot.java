@@ -0,0 +1,59 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import net.sharkfw.knowledgeBase.ContextCoordinates;
+import net.sharkfw.knowledgeBase.PeerSemanticTag;
+import net.sharkfw.knowledgeBase.PeerTaxonomy;
+import net.sharkfw.knowledgeBase.SemanticNet;
+import net.sharkfw.knowledgeBase.SemanticTag;
+import net.sharkfw.knowledgeBase.SharkKB;
+import net.sharkfw.knowledgeBase.SharkKBException;
+import net.sharkfw.knowledgeBase.SpatialSTSet;
+import net.sharkfw.knowledgeBase.SpatialSemanticTag;
+import net.sharkfw.knowledgeBase.TimeSTSet;
+import net.sharkfw.knowledgeBase.TimeSemanticTag;
+
+/**
+ * Read only point in time view on an in memory knowledge base,
+ * see InMemoSharkKB.snapshot().
+ * 
+ * Tag storages are frozen: Tags can be found and merged (which returns the
+ * already known tag) but new tags cannot be added. Semantic tags, information
+ * spaces and context points are shared with the original knowledge base - they
+ * are not copied.
+ *
+ * @author thsc
+ */
+class InMemoSharkKBSnapshot extends InMemoSharkKB {
+
+    InMemoSharkKBSnapshot(SemanticNet topics, SemanticNet types, 
+            PeerTaxonomy peers, SpatialSTSet locations, TimeSTSet times, 
+            InMemoKnowledge knowledge) throws SharkKBException {
+        
+        super(topics, types, peers, locations, times);
+        
+        this.setKnowledge(knowledge.snapshot(this));
+    }
+    
+    /**
+     * Snapshot of a snapshot is the snapshot itself.
+     * @return this
+     */
+    @Override
+    public SharkKB snapshot() {
+        return this;
+    }
+
+    /**
+     * Creates coordinates without merging tags into this read only 
+     * knowledge base.
+     */
+    @Override
+    public ContextCoordinates createContextCoordinates(SemanticTag topic, 
+            PeerSemanticTag originator, PeerSemanticTag peer, 
+            PeerSemanticTag remotePeer, TimeSemanticTag time, 
+            SpatialSemanticTag location, int direction) throws SharkKBException {
+        
+        return new InMemoContextCoordinates(topic, originator, peer, 
+                remotePeer, time, location, direction);
+    }
+}
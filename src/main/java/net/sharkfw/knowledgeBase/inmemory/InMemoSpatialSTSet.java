@@ -1,16 +1,33 @@
 package net.sharkfw.knowledgeBase.inmemory;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Enumeration;
-import java.util.Vector;
+import java.util.Iterator;
+import java.util.List;
 import net.sharkfw.knowledgeBase.*;
+import net.sharkfw.knowledgeBase.geom.Envelope;
 import net.sharkfw.knowledgeBase.geom.SharkGeometry;
+import net.sharkfw.knowledgeBase.geom.inmemory.GeoDistance;
+import net.sharkfw.knowledgeBase.geom.inmemory.InMemoSharkGeometry;
+import net.sharkfw.knowledgeBase.geom.inmemory.ParsedGeometry;
+import net.sharkfw.system.L;
 
 /**
+ * Tags are indexed by an R-tree over the bounding boxes of their
+ * geometries. Fragmentation only checks tags whose bounding box meets
+ * the anchor.
  *
  * @author Jacob Zschunke
  */
 public class InMemoSpatialSTSet extends InMemoSTSet implements SpatialSTSet, STSet {
 
+    private final SpatialRTree index = new SpatialRTree();
+    
+    // storage version the index was built for
+    private int indexVersion = -1;
+
     InMemoSpatialSTSet() {
         super(new InMemoGenericTagStorage<SpatialSemanticTag>());
     }
@@ -29,9 +46,69 @@ public class InMemoSpatialSTSet extends InMemoSTSet implements SpatialSTSet, STS
         super.add(gst);
     }
 
-    // TODO
+    /**
+     * Radius query. Anchors are Well-known texts (WKT, EWKT or legacy
+     * point notation) or subject identifiers of tags in gsts.
+     * 
+     * @param anchor anchor geometries
+     * @param gsts source set
+     * @param range meters
+     * @return tags of gsts within range of at least one anchor - gsts if
+     * there are no anchors
+     * @throws SharkKBException 
+     */
     public static SpatialSTSet fragmentSpatialSTSet(Enumeration<String> anchor, SpatialSTSet gsts, double range) throws SharkKBException {
-        return gsts;
+        if(anchor == null || gsts == null || !anchor.hasMoreElements()) {
+            return gsts;
+        }
+        
+        InMemoSpatialSTSet fragment = new InMemoSpatialSTSet();
+        while(anchor.hasMoreElements()) {
+            ParsedGeometry geomAnchor = InMemoSpatialSTSet.getGeometry(anchor.nextElement(), gsts);
+            if(geomAnchor == null || geomAnchor.isEmpty()) continue;
+            
+            if(gsts instanceof InMemoSpatialSTSet) {
+                for(SemanticTag tag : ((InMemoSpatialSTSet) gsts).inRange(geomAnchor, range)) {
+                    fragment.merge(tag);
+                }
+                continue;
+            }
+            
+            Enumeration<SemanticTag> tags = gsts.tags();
+            while(tags != null && tags.hasMoreElements()) {
+                SemanticTag tag = tags.nextElement();
+                ParsedGeometry geometry = InMemoSpatialSTSet.getGeometry(tag);
+                if(geometry != null && geometry.distance(geomAnchor) <= range) {
+                    fragment.merge(tag);
+                }
+            }
+        }
+        
+        return fragment;
+    }
+    
+    /**
+     * @return geometry of a WKT or of a tag in set with that subject
+     * identifier - null if neither exists
+     */
+    private static ParsedGeometry getGeometry(String anchor, SpatialSTSet set) 
+            throws SharkKBException {
+        
+        if(anchor == null) return null;
+        
+        String wkt = anchor.trim();
+        if(wkt.toUpperCase().startsWith("SRID") && wkt.indexOf(';') != -1) {
+            wkt = wkt.substring(wkt.indexOf(';') + 1);
+        }
+        
+        try {
+            return ParsedGeometry.parse(wkt);
+        }
+        catch(SharkKBException e) {
+            // no wkt - try si
+        }
+        
+        return InMemoSpatialSTSet.getGeometry(set.getSemanticTag(anchor));
     }
 
     @Override
@@ -48,16 +125,166 @@ public class InMemoSpatialSTSet extends InMemoSTSet implements SpatialSTSet, STS
     }
 
     /**
-     * TODO
+     * Each tag of context is taken as anchor. The result contains all tags
+     * of this set whose geometries meet at least one anchor.
      *
      * @param context
-     * @param fp
-     * @return
+     * @param fp ignored - there is no hierarchy of locations
+     * @return this set if context is null or empty - it means any location
      * @throws SharkKBException
      */
     @Override
     public SpatialSTSet contextualize(SpatialSTSet context, FragmentationParameter fp) throws SharkKBException {
-        return this;
+        if(context == null || context.isEmpty()) {
+            return this;
+        }
+        
+        InMemoSpatialSTSet fragment = new InMemoSpatialSTSet();
+        Enumeration<SemanticTag> anchors = context.tags();
+        while(anchors.hasMoreElements()) {
+            this.addFragment(fragment, anchors.nextElement());
+        }
+        
+        return fragment;
+    }
+
+    /**
+     * @return tags whose geometries meet anchor geometry. Tags without
+     * geometry are found by subject identifier. Null if nothing was found.
+     */
+    @Override
+    public STSet fragment(SemanticTag anchor) throws SharkKBException {
+        if(anchor == null) return null;
+        
+        InMemoSpatialSTSet fragment = new InMemoSpatialSTSet();
+        this.addFragment(fragment, anchor);
+        
+        if(fragment.isEmpty()) return null;
+        
+        return fragment;
+    }
+
+    @Override
+    public STSet fragment(SemanticTag anchor, FragmentationParameter fp) throws SharkKBException {
+        // ignore fp - no hierarchy
+        return this.fragment(anchor);
+    }
+    
+    /**
+     * Merges tags meeting anchor into fragment.
+     */
+    private void addFragment(SpatialSTSet fragment, SemanticTag anchor) throws SharkKBException {
+        // same subject
+        SemanticTag tag = this.getSemanticTag(anchor.getSI());
+        if(tag != null) {
+            fragment.merge(tag);
+        }
+        
+        ParsedGeometry geomAnchor = InMemoSpatialSTSet.getGeometry(anchor);
+        if(geomAnchor == null || geomAnchor.isEmpty()) return;
+        
+        for(SemanticTag candidate : this.intersecting(geomAnchor.getEnvelope())) {
+            if(candidate == tag) continue;
+            
+            ParsedGeometry geometry = InMemoSpatialSTSet.getGeometry(candidate);
+            if(geometry.intersects(geomAnchor)) {
+                fragment.merge(candidate);
+            }
+        }
+    }
+    
+    /**
+     * @return parsed geometry or null if tag has no (valid) geometry
+     */
+    static ParsedGeometry getGeometry(SemanticTag tag) {
+        if(!(tag instanceof SpatialSemanticTag)) return null;
+        
+        SharkGeometry geom = ((SpatialSemanticTag) tag).getGeometry();
+        if(geom == null) return null;
+        
+        try {
+            return InMemoSharkGeometry.parse(geom);
+        }
+        catch(SharkKBException e) {
+            L.warn(tag, "cannot parse geometry: {}", e.getMessage());
+            return null;
+        }
+    }
+    
+    private static Envelope getEnvelope(SemanticTag tag) {
+        ParsedGeometry geometry = InMemoSpatialSTSet.getGeometry(tag);
+        return geometry == null ? null : geometry.getEnvelope();
+    }
+    
+    /**
+     * @return index of all tags in storage - rebuilt if storage was
+     * changed by someone else
+     */
+    private SpatialRTree index() {
+        InMemoGenericTagStorage<?> storage = this.getTagStorage();
+        int version = storage.getVersion();
+        if(version != this.indexVersion) {
+            List<SemanticTag> tags = new ArrayList<>();
+            List<Envelope> boxes = new ArrayList<>();
+            for(SemanticTag tag : storage.tagList()) {
+                tags.add(tag);
+                boxes.add(InMemoSpatialSTSet.getEnvelope(tag));
+            }
+            this.index.load(tags, boxes);
+            this.indexVersion = version;
+        }
+        
+        return this.index;
+    }
+    
+    /**
+     * Keeps index in sync after this set added or removed a tag.
+     * @param version storage version before that change
+     */
+    private void indexChanged(int version, SemanticTag tag, boolean added) {
+        int newVersion = this.getTagStorage().getVersion();
+        if(newVersion == version) return; // nothing changed
+        
+        if(this.indexVersion != version || newVersion != version + 1) {
+            // someone else was faster
+            this.indexVersion = -1;
+            return;
+        }
+        
+        if(added) {
+            this.index.insert(tag, InMemoSpatialSTSet.getEnvelope(tag));
+        } else if(!this.index.remove(tag)) {
+            // storage removed another object with same si
+            this.indexVersion = -1;
+            return;
+        }
+        
+        this.indexVersion = newVersion;
+    }
+    
+    /**
+     * @return tags with geometries whose bounding box meets box
+     */
+    private synchronized List<SemanticTag> intersecting(Envelope box) {
+        List<SemanticTag> result = new ArrayList<>();
+        this.index().search(box, result);
+        return result;
+    }
+
+    @Override
+    public synchronized void add(SemanticTag tag) throws SharkKBException {
+        this.index();
+        int version = this.indexVersion;
+        super.add(tag);
+        this.indexChanged(version, tag, true);
+    }
+    
+    @Override
+    public synchronized void removeSemanticTag(SemanticTag tag) {
+        this.index();
+        int version = this.indexVersion;
+        super.removeSemanticTag(tag);
+        this.indexChanged(version, tag, false);
     }
 
     private SpatialSemanticTag castGST(SemanticTag st) throws SharkKBException {
@@ -100,14 +327,158 @@ public class InMemoSpatialSTSet extends InMemoSTSet implements SpatialSTSet, STS
         return tags;
     }
 
+    /**
+     * @return distance in meters between closest points of both geometries -
+     * NaN if a tag has no geometry
+     */
     @Override
     public double getDistance(SpatialSemanticTag gc1, SpatialSemanticTag gc2) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        ParsedGeometry geom1 = InMemoSpatialSTSet.getGeometry(gc1);
+        ParsedGeometry geom2 = InMemoSpatialSTSet.getGeometry(gc2);
+        if(geom1 == null || geom2 == null) return Double.NaN;
+        
+        return geom1.distance(geom2);
     }
 
+    /**
+     * @param radius meters
+     * @return true if distance of both geometries doesn't exceed radius
+     */
     @Override
     public boolean isInRange(SpatialSemanticTag gc1, SpatialSemanticTag gc2, double radius) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        return this.getDistance(gc1, gc2) <= radius;
+    }
+    
+    // first radius in meters of nearest neighbour search
+    private static final double NEAREST_RADIUS = 1000;
+
+    @Override
+    public Iterator<SpatialSemanticTag> nearestTags(double latitude, double longitude, int k) 
+            throws SharkKBException {
+        
+        return this.nearest(ParsedGeometry.point(longitude, latitude), k).iterator();
+    }
+
+    @Override
+    public Iterator<SpatialSemanticTag> nearestTags(SpatialSemanticTag anchor, int k) 
+            throws SharkKBException {
+        
+        ParsedGeometry geomAnchor = InMemoSpatialSTSet.getGeometry(anchor);
+        if(geomAnchor == null || geomAnchor.isEmpty()) {
+            throw new SharkKBException("anchor has no geometry");
+        }
+        
+        return this.nearest(geomAnchor, k).iterator();
+    }
+    
+    /**
+     * Searches in growing distances until k tags are found within. 
+     */
+    private synchronized List<SpatialSemanticTag> nearest(ParsedGeometry anchor, int k) {
+        List<SpatialSemanticTag> result = new ArrayList<>();
+        if(k <= 0) return result;
+        
+        SpatialRTree tree = this.index();
+        for(double range = NEAREST_RADIUS; ; range *= 4) {
+            // final range reaches every place on earth
+            boolean everywhere = range >= Math.PI * GeoDistance.EARTH_RADIUS;
+            
+            List<SemanticTag> candidates = new ArrayList<>();
+            tree.search(InMemoSpatialSTSet.box(anchor, range), candidates);
+            if(candidates.size() < k && !everywhere) continue;
+            
+            final double[] distances = this.distances(anchor, candidates);
+            Integer[] order = new Integer[candidates.size()];
+            int inRange = 0;
+            for(int i = 0; i < order.length; i++) {
+                order[i] = i;
+                if(distances[i] <= range) inRange++;
+            }
+            if(inRange < k && !everywhere) continue;
+            
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return Double.compare(distances[a], distances[b]);
+                }
+            });
+            
+            for(int i = 0; i < order.length && result.size() < k; i++) {
+                if(Double.isNaN(distances[order[i]])) break;
+                result.add((SpatialSemanticTag) candidates.get(order[i]));
+            }
+            return result;
+        }
+    }
+    
+    /**
+     * @return tags of this set within range of anchor
+     */
+    private synchronized List<SemanticTag> inRange(ParsedGeometry anchor, double range) {
+        List<SemanticTag> candidates = new ArrayList<>();
+        this.index().search(InMemoSpatialSTSet.box(anchor, range), candidates);
+        
+        double[] distances = this.distances(anchor, candidates);
+        List<SemanticTag> result = new ArrayList<>();
+        for(int i = 0; i < distances.length; i++) {
+            if(distances[i] <= range) {
+                result.add(candidates.get(i));
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * @return meters from anchor to each candidate geometry. Candidates
+     * which are single points are calculated in one haversine run if 
+     * anchor is a point.
+     */
+    private double[] distances(ParsedGeometry anchor, List<SemanticTag> candidates) {
+        int n = candidates.size();
+        double[] distances = new double[n];
+        
+        boolean pointAnchor = anchor.isPoints() && anchor.getNumberOfPoints() == 1;
+        double[] xy = new double[2 * n];
+        int[] points = new int[n];
+        int pointNumber = 0;
+        
+        for(int i = 0; i < n; i++) {
+            ParsedGeometry geometry = InMemoSpatialSTSet.getGeometry(candidates.get(i));
+            if(pointAnchor && geometry.isPoints() && geometry.getRadius() == 0 
+                    && geometry.getNumberOfPoints() == 1) {
+                
+                xy[2 * pointNumber] = geometry.getX(0);
+                xy[2 * pointNumber + 1] = geometry.getY(0);
+                points[pointNumber++] = i;
+            } else {
+                distances[i] = geometry.distance(anchor);
+            }
+        }
+        
+        if(pointNumber > 0) {
+            double[] pointDistances = new double[pointNumber];
+            GeoDistance.haversine(anchor.getY(0), anchor.getX(0), 
+                    Arrays.copyOf(xy, 2 * pointNumber), pointDistances);
+            
+            for(int p = 0; p < pointNumber; p++) {
+                distances[points[p]] = Math.max(0, pointDistances[p] - anchor.getRadius());
+            }
+        }
+        
+        return distances;
+    }
+    
+    /**
+     * @return bounding box in degrees of all places within range of geometry
+     */
+    private static Envelope box(ParsedGeometry geometry, double range) {
+        Envelope envelope = geometry.getEnvelope();
+        range += geometry.getRadius();
+        
+        return GeoDistance.box(envelope.getMinY(), envelope.getMinX(), range)
+                .union(GeoDistance.box(envelope.getMinY(), envelope.getMaxX(), range))
+                .union(GeoDistance.box(envelope.getMaxY(), envelope.getMinX(), range))
+                .union(GeoDistance.box(envelope.getMaxY(), envelope.getMaxX(), range));
     }
 
     /**
@@ -199,9 +199,14 @@ public class InMemoSpatialSemanticTag extends InMemo_SN_TX_SemanticTag implement
         
         if(wkt != null) {
             try {
-                this.geom = InMemoSharkGeometry.createGeomByWKT(wkt);
+                // persisted as EWKT
+                if(wkt.toUpperCase().startsWith("SRID")) {
+                    this.geom = InMemoSharkGeometry.createGeomByEWKT(wkt);
+                } else {
+                    this.geom = InMemoSharkGeometry.createGeomByWKT(wkt);
+                }
             } catch (SharkKBException ex) {
-                L.d("couldn't refresh geometry: " + ex.getMessage());
+                L.debug(null, "couldn't refresh geometry: {}", ex.getMessage());
             }
         }
     }
@@ -1,16 +1,27 @@
 package net.sharkfw.knowledgeBase.inmemory;
 
+import java.util.ArrayDeque;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import net.sharkfw.knowledgeBase.*;
 import net.sharkfw.system.Iterator2Enumeration;
 
 /**
  * Follow delegate pattern
+ * 
+ * Taxonomies kept in an in memory tag storage use a {@link TaxonomyIndex}.
+ * Root tags, sub tag checks and fragments along super and sub tags are
+ * calculated with pre order labels instead of walking tags.
+ * 
  * @author thsc
  */
 public class InMemoTaxonomy extends TaxonomyWrapper implements Taxonomy, STSet {
     
+    private TaxonomyIndex index;
+    
     public InMemoTaxonomy(SemanticNet storage) {
         super(storage);
     }
@@ -62,6 +73,7 @@ public class InMemoTaxonomy extends TaxonomyWrapper implements Taxonomy, STSet {
             Enumeration<SNSemanticTag> subTagEnum = snTag.sourceTags(SemanticNet.SUPERTAG);
             // first - tell super tag about removing
             snTag.removePredicate(SemanticNet.SUPERTAG, superTag);
+            superTag.removePredicate(SemanticNet.SUBTAG, snTag);
             if (subTagEnum != null && subTagEnum.hasMoreElements()) {
                 // is has sub tags
                 // in any case - substitute super tag predicate in sub tags
@@ -72,6 +84,7 @@ public class InMemoTaxonomy extends TaxonomyWrapper implements Taxonomy, STSet {
                     // tell sub tags new super tag
                     if (superTag != null) {
                         subTag.setPredicate(SemanticNet.SUPERTAG, superTag);
+                        superTag.setPredicate(SemanticNet.SUBTAG, subTag);
                     }
                 }
             }
@@ -99,12 +112,38 @@ public class InMemoTaxonomy extends TaxonomyWrapper implements Taxonomy, STSet {
         }
     }
 
+    /**
+     * @return index of this taxonomy or null if tags aren't kept
+     * in a writable in memory tag storage
+     */
+    synchronized TaxonomyIndex getIndex() {
+        if(!(this.sn instanceof InMemoSTSet)) return null;
+        
+        InMemoGenericTagStorage<?> storage = ((InMemoSTSet) this.sn).getTagStorage();
+        if(storage == null || storage.isSnapshot()) return null;
+        
+        if(this.index == null || !this.index.isIndexOf(storage)) {
+            this.index = new TaxonomyIndex(storage);
+        }
+        
+        return this.index;
+    }
+
     /**
      * @return enumeration of all root tags or null if there is no root tag.
      * @throws SharkKBException
      */
     @Override
     public Enumeration rootTags() throws SharkKBException {
+        TaxonomyIndex taxonomyIndex = this.getIndex();
+        if(taxonomyIndex != null) {
+            List<TXSemanticTag> rootTags = taxonomyIndex.labels().roots();
+            if (rootTags.isEmpty()) {
+                return null;
+            }
+            return new Iterator2Enumeration(rootTags.iterator());
+        }
+        
         Enumeration<SemanticTag> tagEnum = this.sn.tags();
         if (tagEnum == null) {
             return null;
@@ -127,6 +166,152 @@ public class InMemoTaxonomy extends TaxonomyWrapper implements Taxonomy, STSet {
         }
     }
 
+    /**
+     * Answered with pre order labels in constant time if taxonomy wasn't
+     * changed since last calls.
+     */
+    @Override
+    public boolean isSubTag(TXSemanticTag root, TXSemanticTag tag) {
+        if(tag == null || root == null) return false;
+        
+        TaxonomyIndex taxonomyIndex = this.getIndex();
+        if(taxonomyIndex != null) {
+            Boolean subTag = taxonomyIndex.isSubTag(root, tag);
+            if(subTag != null) {
+                return subTag;
+            }
+        }
+        
+        return super.isSubTag(root, tag);
+    }
+
+    @Override
+    public Taxonomy fragment(SemanticTag anchor, FragmentationParameter fp) throws SharkKBException {
+        SemanticNet fragment = new InMemoSemanticNet();
+        if(this.fragmentHierarchy(fragment, anchor, fp)) {
+            return new InMemoTaxonomy(fragment);
+        }
+        
+        return super.fragment(anchor, fp);
+    }
+    
+    /**
+     * Fragmentation along super and sub tags only. Sub trees are range scans
+     * over pre order labels.
+     * 
+     * @param fragment empty semantic net
+     * @param anchor
+     * @param fp
+     * @return false if fragment parameter allows other predicates or
+     * taxonomy isn't indexed - nothing is copied into fragment in that case.
+     * @throws SharkKBException 
+     */
+    protected boolean fragmentHierarchy(SemanticNet fragment, SemanticTag anchor,
+            FragmentationParameter fp) throws SharkKBException {
+        
+        if(anchor == null || fp == null) return false;
+        
+        TaxonomyIndex taxonomyIndex = this.getIndex();
+        if(taxonomyIndex == null) return false;
+        
+        // allowed and not forbidden - nothing allowed means anything allowed
+        HashSet<String> types = new HashSet<>();
+        Enumeration<String> typeEnum = fp.getAllowedPredicates();
+        while(typeEnum != null && typeEnum.hasMoreElements()) {
+            types.add(typeEnum.nextElement());
+        }
+        typeEnum = fp.getForbiddenPredicates();
+        while(typeEnum != null && typeEnum.hasMoreElements()) {
+            types.remove(typeEnum.nextElement());
+        }
+        
+        boolean sub = types.remove(SemanticNet.SUBTAG);
+        boolean sup = types.remove(SemanticNet.SUPERTAG);
+        if(!types.isEmpty() || !(sub || sup)) return false;
+        
+        SemanticTag anchorTag = this.sn.getSemanticTag(anchor.getSI());
+        if(anchorTag == null) {
+            // not here - empty fragment
+            return true;
+        }
+        
+        TaxonomyIndex.Labels labels = taxonomyIndex.labels();
+        int a = labels.pre(anchorTag);
+        if(a < 0 || labels.detached(a)) return false;
+        
+        int depth = Math.max(fp.getDepth(), 0);
+        
+        if(sub && !sup) {
+            // range scan
+            SNSemanticTag[] copies = new SNSemanticTag[labels.size(a)];
+            int end = a + labels.size(a);
+            int maxLevel = labels.level(a) + depth;
+            int p = a;
+            while(p < end) {
+                if(labels.level(p) > maxLevel) {
+                    // skip sub tree
+                    p += labels.size(p);
+                    continue;
+                }
+                
+                copies[p - a] = fragment.merge(labels.tag(p));
+                if(p != a) {
+                    copies[labels.parent(p) - a].setPredicate(
+                            SemanticNet.SUBTAG, copies[p - a]);
+                }
+                p++;
+            }
+            
+            return true;
+        }
+        
+        // breadth first search along the tree
+        Map<Integer, SNSemanticTag> copies = new HashMap<>();
+        ArrayDeque<int[]> queue = new ArrayDeque<>();
+        copies.put(a, fragment.merge(labels.tag(a)));
+        queue.add(new int[] {a, 0});
+        
+        while(!queue.isEmpty()) {
+            int[] entry = queue.poll();
+            int p = entry[0];
+            int distance = entry[1];
+            if(distance >= depth) continue;
+            
+            if(sup) {
+                int parent = labels.parent(p);
+                if(parent >= 0 && !copies.containsKey(parent)) {
+                    copies.put(parent, fragment.merge(labels.tag(parent)));
+                    queue.add(new int[] {parent, distance + 1});
+                }
+            }
+            
+            if(sub) {
+                int end = p + labels.size(p);
+                for(int child = p + 1; child < end; child += labels.size(child)) {
+                    if(!copies.containsKey(child)) {
+                        copies.put(child, fragment.merge(labels.tag(child)));
+                        queue.add(new int[] {child, distance + 1});
+                    }
+                }
+            }
+        }
+        
+        // predicates between copied tags
+        for(Map.Entry<Integer, SNSemanticTag> entry : copies.entrySet()) {
+            SNSemanticTag superCopy = copies.get(labels.parent(entry.getKey()));
+            if(superCopy == null) continue;
+            
+            if(sub) {
+                superCopy.setPredicate(SemanticNet.SUBTAG, entry.getValue());
+            }
+            if(sup) {
+                entry.getValue().setPredicate(SemanticNet.SUPERTAG, superCopy);
+            }
+        }
+        
+        return true;
+    }
+
     @Override
     public void removeSemanticTag(String si) throws SharkKBException {
         this.sn.removeSemanticTag(si);
@@ -1,7 +1,14 @@
 package net.sharkfw.knowledgeBase.inmemory;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Enumeration;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 import net.sharkfw.knowledgeBase.*;
 
 /**
@@ -11,10 +18,18 @@ import net.sharkfw.knowledgeBase.*;
  * TODO: Override addSemanticTag and check the type of the tag to be created.
  * Allow only TimeSemanticTags.
  * 
+ * Tags are indexed by an interval tree. Fragmentation and fitting in of new
+ * tags only touch overlapping tags.
+ * 
  * @author mfi, thsc
  */
 public class InMemoTimeSTSet extends InMemoSTSet implements TimeSTSet {
     
+    private final TimeIntervalTree index = new TimeIntervalTree();
+    
+    // storage version the index was built for
+    private int indexVersion = -1;
+    
     InMemoTimeSTSet() {
         super(new InMemoGenericTagStorage<TimeSemanticTag>());
     }
@@ -32,22 +47,73 @@ public class InMemoTimeSTSet extends InMemoSTSet implements TimeSTSet {
         throw new SharkKBException("cannot use non time semantic tag in time semantic tag set");
     }
 
-    @Override
-    public TimeSTSet fragment(TimeSemanticTag anchor) throws SharkKBException {
-        Enumeration<SemanticTag> tagEnum = this.tags();
-        if(tagEnum == null) return null;
+    /**
+     * @return index of all time tags in storage - rebuilt if storage was
+     * changed by someone else
+     */
+    private TimeIntervalTree index() throws SharkKBException {
+        InMemoGenericTagStorage<?> storage = this.getTagStorage();
+        int version = storage.getVersion();
+        if(version != this.indexVersion) {
+            this.index.clear();
+            for(SemanticTag tag : storage.tagList()) {
+                this.index.insert(this.castTST(tag));
+            }
+            this.indexVersion = version;
+        }
         
-        // create a fragment
-        InMemoTimeSTSet fragment = new InMemoTimeSTSet();
+        return this.index;
+    }
+    
+    /**
+     * Keeps index in sync after this set added or removed a tag.
+     * @param version storage version before that change
+     */
+    private void indexChanged(int version, TimeSemanticTag tst, boolean added) {
+        int newVersion = this.getTagStorage().getVersion();
+        if(newVersion == version) return; // nothing changed
+        
+        if(this.indexVersion != version || newVersion != version + 1) {
+            // someone else was faster
+            this.indexVersion = -1;
+            return;
+        }
+        
+        if(added) {
+            this.index.insert(tst);
+        } else if(!this.index.remove(tst)) {
+            // storage removed another object with same si
+            this.indexVersion = -1;
+            return;
+        }
+        
+        this.indexVersion = newVersion;
+    }
+    
+    /**
+     * @return tags whose periods overlap [from, end] - bounds included
+     */
+    private synchronized List<TimeSemanticTag> overlapping(long from, long end) 
+            throws SharkKBException {
+        
+        List<TimeSemanticTag> result = new ArrayList<>();
+        this.index().overlapping(from, end, result);
+        return result;
+    }
+    
+    /**
+     * Adds intersections of anchor with tags of this set.
+     */
+    private void intersections(TimeSemanticTag anchor, List<long[]> result) 
+            throws SharkKBException {
         
-        // no enumerate all tags and look for intersection
         long aFrom = anchor.getFrom();
-        long aEnd = anchor.getDuration() + aFrom;
+        long aEnd = TimeIntervalTree.end(anchor);
 
-        while(tagEnum.hasMoreElements()) {
-            TimeSemanticTag tst = this.castTST(tagEnum.nextElement());
+        // case 1 - no overlap - is excluded by index
+        for(TimeSemanticTag tst : this.overlapping(aFrom, aEnd)) {
             long bFrom = tst.getFrom();
-            long bEnd = tst.getDuration() + bFrom;
+            long bEnd = TimeIntervalTree.end(tst);
             
             /**
             * 1. Dont overlap:
@@ -62,18 +128,57 @@ public class InMemoTimeSTSet extends InMemoSTSet implements TimeSTSet {
             * -> bFrom
             */
             
-            // case 1
-            if(aFrom > bEnd || aEnd < bFrom) continue;
-            
             if(aFrom <= bFrom && aEnd <= bEnd) {
                 long earliestEnd = aEnd < bEnd ? aEnd : bEnd;
-                fragment.createTimeSemanticTag(bFrom, earliestEnd - bFrom);
+                result.add(new long[] {bFrom, earliestEnd});
             } 
             else if(bFrom <= aFrom && bEnd <= aEnd) {
                 long earliestEnd = aEnd < bEnd ? aEnd : bEnd;
-                fragment.createTimeSemanticTag(aFrom, earliestEnd - aFrom);
+                result.add(new long[] {aFrom, earliestEnd});
             }
         }
+    }
+    
+    /**
+     * Adds periods [from, end]. Periods are sorted by start and overlapping
+     * periods are coalesced in a single sweep before they are fitted in.
+     */
+    private void addPeriods(List<long[]> periods) throws SharkKBException {
+        if(periods.isEmpty()) return;
+        
+        Collections.sort(periods, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] a, long[] b) {
+                return a[0] < b[0] ? -1 : (a[0] == b[0] ? 0 : 1);
+            }
+        });
+        
+        long from = periods.get(0)[0];
+        long end = periods.get(0)[1];
+        for(long[] period : periods) {
+            if(period[0] <= end) {
+                if(period[1] > end) end = period[1];
+            } else {
+                this.createTimeSemanticTag(from, end - from);
+                from = period[0];
+                end = period[1];
+            }
+        }
+        this.createTimeSemanticTag(from, end - from);
+    }
+    
+    @Override
+    public TimeSTSet fragment(TimeSemanticTag anchor) throws SharkKBException {
+        Enumeration<SemanticTag> tagEnum = this.tags();
+        if(tagEnum == null) return null;
+        
+        // create a fragment
+        InMemoTimeSTSet fragment = new InMemoTimeSTSet();
+        
+        // look for intersections
+        List<long[]> periods = new ArrayList<>();
+        this.intersections(anchor, periods);
+        fragment.addPeriods(periods);
         
         if(fragment.tags() == null) {
             return null;
@@ -84,115 +189,160 @@ public class InMemoTimeSTSet extends InMemoSTSet implements TimeSTSet {
     }
     
     /**
-     * Both tags are assumed to be already in the set. Concepts can be deleted
-     * during this methode call.
+     * Checks for overlapping and substitutes overlapping concepts.
+     * 
+     * tst is removed if another tag contains it. Tags contained in tst are
+     * removed. Otherwise tst and all overlapping tags are replaced by one tag
+     * covering all of them.
      * 
-     * @return the resulting tst i both tags overlap. Null is returned only
-     * if both concepts don't overlap. 
+     * @return true if something was changed
      */
-    @SuppressWarnings("unused")
-    private TimeSemanticTag merge(TimeSemanticTag a, TimeSemanticTag b) throws SharkKBException {
-        // check if two identical tags are to be merged - makes no sense
-        if(a == b) return null;
+    private synchronized boolean fitin(TimeSemanticTag tst) throws SharkKBException {
+        long from = tst.getFrom();
+        long end = TimeIntervalTree.end(tst);
         
-        TimeSemanticTag retval = null;
-
-        /**
-            * Do tag and tst overlap
-            * we have these cases:
-            * 1. A is bevor B -> no overlapping
-            * A.end < B.from
-            * 
-            * 2. A is behind B -> no overlapping
-            * A.from > B.end
-            * 
-            * 3. A contains B -> remove B
-            * A.from =< B.from && A.end >= B.end
-            * 
-            * 4. B contains A -> remove A
-            * B.from =< A.from && B.end => A.end
-            * 
-            * 5. B begins in A -> merge and drop both
-            * A.from <= B.from && A.end < B.end -> new.from = tag.from, end = greatest end.
-            * 
-            * 6. A begins in B -> merge and drop both
-            * B.from <= A.from && B.end < A.end (tag starts in tst) -> new.from = tst.from, end = greatest end.
-            */
-
-        long aFrom = a.getFrom();
-        long aEnd = a.getDuration() + aFrom;
-
-        long bFrom = b.getFrom();
-        long bEnd = b.getDuration() + bFrom;
-
-        // case 1 and 2
-        if(aEnd < bFrom || bEnd < aFrom) return null;
-
-        // case 3: B in A
-        if(aFrom <= bFrom && aEnd >= bEnd) {
-            this.removeSemanticTag(b);
-            return a;
-        }
-
-        // case 4: A in B
-        if(aFrom >= bFrom && bEnd >= aEnd) {
-            this.removeSemanticTag(a);
-            return b;
-        }
-
-        // case 5 (overlaps slightly with 3 but 3 is already done)
-        if(aFrom <= bFrom && aEnd <= bEnd) {
-            long longestEnd = aEnd > bEnd ? aEnd : bEnd;
-            this.removeSemanticTag(a);
-            this.removeSemanticTag(b);
-            return this.createTimeSemanticTag(aFrom, longestEnd - aFrom);
-        }
-
-        // case 6 (overlaps slightly with 4 but 4 is already done)
-        if(aFrom >= bFrom && aEnd >= bEnd) {
-            long longestEnd = aEnd > bEnd ? aEnd : bEnd;
-            this.removeSemanticTag(a);
-            this.removeSemanticTag(b);
-            return this.createTimeSemanticTag(bFrom, longestEnd - bFrom);
+        List<TimeSemanticTag> overlapping = this.overlapping(from, end);
+        for(int i = 0; i < overlapping.size(); i++) {
+            if(overlapping.get(i) == tst) {
+                overlapping.remove(i);
+                break;
+            }
         }
+        if(overlapping.isEmpty()) return false;
         
-        return null;
-    }
-    
-    /**
-     * checks for overlapping and substitutes overlapping concepts
-     * @return true if something was changed
-     */
-    private boolean fitin(TimeSemanticTag tst) throws SharkKBException {
-        boolean changed = false;
-        
-        Enumeration<SemanticTag> tagEnum = this.tags();
-        if(tagEnum == null) {
-            // impossible - at least tst should be in
-            return false;
+        // tst is in another tag
+        for(TimeSemanticTag tag : overlapping) {
+            if(tag.getFrom() <= from && TimeIntervalTree.end(tag) >= end) {
+                this.removeSemanticTag(tst);
+                return true;
+            }
         }
         
-        while(tagEnum.hasMoreElements()) {
-            TimeSemanticTag tag = this.castTST(tagEnum.nextElement());
-            
-            TimeSemanticTag result = this.merge(tag, tst);
+        long unionFrom = from;
+        long unionEnd = end;
+        for(TimeSemanticTag tag : overlapping) {
+            long tagFrom = tag.getFrom();
+            long tagEnd = TimeIntervalTree.end(tag);
+            unionFrom = unionFrom < tagFrom ? unionFrom : tagFrom;
+            unionEnd = unionEnd > tagEnd ? unionEnd : tagEnd;
             
-            changed = result != tag && result != tst;
+            this.removeSemanticTag(tag);
         }
         
-        return changed;
+        // tst contains all other tags
+        if(unionFrom == from && unionEnd == end) return true;
+        
+        this.removeSemanticTag(tst);
+        this.createTimeSemanticTag(unionFrom, unionEnd - unionFrom);
+        
+        return true;
     }
     
     @Override
-    public void add(SemanticTag st) throws SharkKBException {
+    public synchronized void add(SemanticTag st) throws SharkKBException {
         TimeSemanticTag tst = this.castTST(st);
-
+        
         // add tag at first
+        this.index();
+        int version = this.indexVersion;
         super.add(st);
+        if(this.getTagStorage().getVersion() == version) {
+            // tag with same si already in this set
+            return;
+        }
+        this.indexChanged(version, tst, true);
         
         // duplicate supression
         this.fitin(tst);
     }
+    
+    /**
+     * Tags are added in one go, index is rebuilt once. Duplicates are
+     * suppressed afterwards.
+     */
+    @Override
+    public synchronized void addSemanticTags(Collection<? extends SemanticTag> tags)
+            throws SharkKBException {
+
+        List<TimeSemanticTag> tsts = new ArrayList<>(tags.size());
+        for(SemanticTag tag : tags) {
+            tsts.add(this.castTST(tag));
+        }
+
+        super.addSemanticTags(tsts);
+
+        for(TimeSemanticTag tst : tsts) {
+            // could be merged into another one meanwhile
+            if(this.getSemanticTag(tst.getSI()) == tst) {
+                this.fitin(tst);
+            }
+        }
+    }
+
+    /**
+     * Periods are coalesced in one sweep like merge(STSet) does. Result
+     * contains the tag that covers each merged tag afterwards.
+     */
+    @Override
+    public synchronized List<SemanticTag> mergeSemanticTags(Collection<? extends SemanticTag> tags,
+            Collection<? super SemanticTag> created) throws SharkKBException {
+
+        List<long[]> periods = new ArrayList<>(tags.size());
+        for(SemanticTag tag : tags) {
+            if(tag == null) continue;
+            TimeSemanticTag tst = this.castTST(tag);
+            periods.add(new long[] {tst.getFrom(), TimeIntervalTree.end(tst)});
+        }
+
+        Set<TimeSemanticTag> before = Collections.newSetFromMap(
+                new IdentityHashMap<TimeSemanticTag, Boolean>());
+        before.addAll(this.overlapping(Long.MIN_VALUE, Long.MAX_VALUE));
+
+        this.addPeriods(periods);
+
+        List<SemanticTag> result = new ArrayList<>(tags.size());
+        for(SemanticTag tag : tags) {
+            TimeSemanticTag covering = null;
+            if(tag != null) {
+                TimeSemanticTag tst = (TimeSemanticTag) tag;
+                long end = TimeIntervalTree.end(tst);
+                for(TimeSemanticTag candidate : this.overlapping(tst.getFrom(), end)) {
+                    if(candidate.getFrom() <= tst.getFrom() && TimeIntervalTree.end(candidate) >= end) {
+                        covering = candidate;
+                        break;
+                    }
+                }
+            }
+            result.add(covering);
+        }
+
+        if(created != null) {
+            for(TimeSemanticTag tst : this.overlapping(Long.MIN_VALUE, Long.MAX_VALUE)) {
+                if(!before.contains(tst)) created.add(tst);
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public synchronized void removeSemanticTag(SemanticTag tag) {
+        try {
+            this.index();
+        }
+        catch(SharkKBException e) {
+            // no time tag in storage - rebuild later
+            this.indexVersion = -1;
+        }
+        int version = this.indexVersion;
+        super.removeSemanticTag(tag);
+        
+        if(tag instanceof TimeSemanticTag) {
+            this.indexChanged(version, (TimeSemanticTag) tag, false);
+        } else {
+            this.indexVersion = -1;
+        }
+    }
 
     @Override
     public TimeSTSet fragment(SemanticTag anchor) throws SharkKBException {
@@ -214,15 +364,22 @@ public class InMemoTimeSTSet extends InMemoSTSet implements TimeSTSet {
         return this.createTimeSemanticTag(tst.getFrom(), tst.getDuration());
     }
     
+    /**
+     * Periods of all tags are coalesced in one sorted sweep. Each resulting
+     * period is fitted in once.
+     */
     @Override
     public void merge(STSet stSet) throws SharkKBException {
         if(stSet == null) return;
         
         Enumeration<SemanticTag> tagEnum = stSet.tags();
         if(tagEnum != null) {
+            List<long[]> periods = new ArrayList<>();
             while (tagEnum.hasMoreElements()) {
-                this.merge(tagEnum.nextElement());
+                TimeSemanticTag tst = this.castTST(tagEnum.nextElement());
+                periods.add(new long[] {tst.getFrom(), TimeIntervalTree.end(tst)});
             }
+            this.addPeriods(periods);
         }
     }
 
@@ -258,12 +415,14 @@ public class InMemoTimeSTSet extends InMemoSTSet implements TimeSTSet {
         
         InMemoTimeSTSet fragment = new InMemoTimeSTSet();
         
+        // intersections with all anchors are merged at once
+        List<long[]> periods = new ArrayList<>();
         while(anchorSet.hasMoreElements()) {
             TimeSemanticTag tag = this.castTST(anchorSet.nextElement());
             
-            TimeSTSet s = this.fragment(tag);
-            if(s != null) fragment.merge(s);
+            this.intersections(tag, periods);
         }
+        fragment.addPeriods(periods);
         
         return fragment;
     }
@@ -1,9 +1,12 @@
 package net.sharkfw.knowledgeBase.inmemory;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.*;
 import net.sharkfw.knowledgeBase.*;
-import net.sharkfw.system.Iterator2Enumeration;
 import net.sharkfw.system.L;
 import net.sharkfw.system.Util;
 
@@ -17,14 +20,78 @@ import net.sharkfw.system.Util;
 @SuppressWarnings("unchecked")
 public class InMemo_SN_TX_SemanticTag extends InMemoSemanticTag implements SNSemanticTag, TXSemanticTag, Serializable {
     
+    /* predicates are kept in immutable flat tables which are replaced with
+     * each change - tags can be shared between threads and enumerations must
+     * not fail when another thread sets or removes predicates
+     */
+    
     // targets means: referenced tags with a given predicate
-    private HashMap<String, HashSet<SNSemanticTag>> targets;
+    private transient volatile PredicateTable targets = PredicateTable.EMPTY;
     
     // sources means: tag that reference this target with a predicate
-    private HashMap<String, HashSet<SNSemanticTag>> sources;
+    private transient volatile PredicateTable sources = PredicateTable.EMPTY;
     
     private boolean refreshed = false;
 
+    /* serialized form is kept as it was before predicate tables: hash maps
+     * of predicate names and hash sets of tags. Tags serialized by older 
+     * versions can still be read.
+     */
+    private static final long serialVersionUID = 4157137752386741187L;
+    
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("targets", HashMap.class),
+        new ObjectStreamField("sources", HashMap.class),
+        new ObjectStreamField("refreshed", boolean.class),
+        new ObjectStreamField("storage", InMemoGenericTagStorage.class)
+    };
+    
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("targets", InMemo_SN_TX_SemanticTag.toMap(this.targets));
+        fields.put("sources", InMemo_SN_TX_SemanticTag.toMap(this.sources));
+        fields.put("refreshed", this.refreshed);
+        fields.put("storage", this.storage);
+        out.writeFields();
+    }
+    
+    @SuppressWarnings("rawtypes")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        this.targets = InMemo_SN_TX_SemanticTag.toTable(
+                (Map<String, ? extends Set<SNSemanticTag>>) fields.get("targets", null));
+        this.sources = InMemo_SN_TX_SemanticTag.toTable(
+                (Map<String, ? extends Set<SNSemanticTag>>) fields.get("sources", null));
+        this.refreshed = fields.get("refreshed", false);
+        this.storage = (InMemoGenericTagStorage) fields.get("storage", null);
+    }
+    
+    private static HashMap<String, HashSet<SNSemanticTag>> toMap(PredicateTable table) {
+        if(table.isEmpty()) return null;
+        
+        String[] types = table.typeArray();
+        SNSemanticTag[][] adjacency = table.adjacency();
+        HashMap<String, HashSet<SNSemanticTag>> map = new HashMap<>();
+        for(int i = 0; i < types.length; i++) {
+            map.put(types[i], new HashSet<>(Arrays.asList(adjacency[i])));
+        }
+        
+        return map;
+    }
+    
+    private static PredicateTable toTable(Map<String, ? extends Set<SNSemanticTag>> map) {
+        PredicateTable table = PredicateTable.EMPTY;
+        if(map == null) return table;
+        
+        for(Map.Entry<String, ? extends Set<SNSemanticTag>> entry : map.entrySet()) {
+            for(SNSemanticTag tag : entry.getValue()) {
+                table = table.with(entry.getKey(), tag);
+            }
+        }
+        
+        return table;
+    }
+
     //TODO: Serializable only needed because PKI is not migrated to new SharkFW Version
     public InMemo_SN_TX_SemanticTag() {
         super();
@@ -45,10 +112,7 @@ public class InMemo_SN_TX_SemanticTag extends InMemoSemanticTag implements SNSem
     @Override
     public Enumeration<String> predicateNames() {
         this.refreshPredicates();
-        if(this.targets == null) return null;
-        
-        // there is at least one target
-        return new Iterator2Enumeration(this.targets.keySet().iterator());
+        return this.targets.types();
     }
     
     /**
@@ -67,10 +131,7 @@ public class InMemo_SN_TX_SemanticTag extends InMemoSemanticTag implements SNSem
     @Override
     public Enumeration<String> targetPredicateNames() {
         this.refreshPredicates();
-        if(this.sources == null) return null;
-        
-        // there is at least one target
-        return new Iterator2Enumeration(this.sources.keySet().iterator());
+        return this.sources.types();
     }
     
     
@@ -81,17 +142,10 @@ public class InMemo_SN_TX_SemanticTag extends InMemoSemanticTag implements SNSem
      * @param predicateName predicate type name
      * @return enumeration or null, if there is no such tag
      */
-    @SuppressWarnings({ "rawtypes" })
     @Override
     public Enumeration <SNSemanticTag> targetTags(String predicateName) {
         this.refreshPredicates();
-        if(this.targets == null) return null;
-        
-        HashSet tags = this.targets.get(predicateName);
-        
-        if(tags != null) return new Iterator2Enumeration(tags.iterator());
-        
-        return null;
+        return this.targets.tags(predicateName);
     }
     
     @Override
@@ -138,31 +192,16 @@ public class InMemo_SN_TX_SemanticTag extends InMemoSemanticTag implements SNSem
      */
     private void updateSIInPredicates() {
         // targets
-        if(this.targets != null) {
-            Collection<HashSet<SNSemanticTag>> targetSets = this.targets.values();
-            
-            if( targetSets != null ) {
-                this.forcePredicateWriting(targetSets.iterator());
-            }
-        }
+        this.forcePredicateWriting(this.targets.adjacency());
 
         // sources
-        if(this.sources != null) {
-            Collection<HashSet<SNSemanticTag>> sourceSets = this.sources.values();
-            
-            if(sourceSets != null) {
-                this.forcePredicateWriting(sourceSets.iterator());
-            }
-        }
+        this.forcePredicateWriting(this.sources.adjacency());
     }
     
-    private void forcePredicateWriting(Iterator<HashSet<SNSemanticTag>> setIter) {
+    private void forcePredicateWriting(SNSemanticTag[][] adjacency) {
         
-        while(setIter.hasNext()) {
-            HashSet<SNSemanticTag> tagSet = setIter.next();
-            Iterator<SNSemanticTag> tagSetIter = tagSet.iterator();
-            while(tagSetIter.hasNext()) {
-                SNSemanticTag tag = tagSetIter.next();
+        for(SNSemanticTag[] tagSet : adjacency) {
+            for(SNSemanticTag tag : tagSet) {
                 
                 if(tag instanceof AbstractSemanticTag) {
                     AbstractSemanticTag inTag = (AbstractSemanticTag) tag;
@@ -183,17 +222,10 @@ public class InMemo_SN_TX_SemanticTag extends InMemoSemanticTag implements SNSem
      * @param predicateName predicate type name
      * @return enumeration or null, if there is no such tag
      */
-    @SuppressWarnings({ "rawtypes" })
     @Override
     public Enumeration <SNSemanticTag> sourceTags(String predicateName) {
         this.refreshPredicates();
-        if(this.sources == null) return null;
-        
-        HashSet tags = this.sources.get(predicateName);
-        
-        if(tags != null) return new Iterator2Enumeration(tags.iterator());
-        
-        return null;
+        return this.sources.tags(predicateName);
     }
 
     /**
@@ -213,12 +245,16 @@ public class InMemo_SN_TX_SemanticTag extends InMemoSemanticTag implements SNSem
      * @param type 
      */
     public void removePredicate(String type) {
-        if(this.targets == null) {
-            // nothings exists - nothing todo
-            return;
+        synchronized(this) {
+            this.targets = this.targets.without(type);
+        }
+        this.hierarchyChanged(type);
+    }
+    
+    private void hierarchyChanged(String type) {
+        if(SemanticNet.SUPERTAG.equals(type)) {
+            TaxonomyIndex.hierarchyChanged(this);
         }
-
-        this.targets.remove(type);
     }
     
     /**
@@ -228,32 +264,19 @@ public class InMemo_SN_TX_SemanticTag extends InMemoSemanticTag implements SNSem
      * @param type
      * @param target if null - all associations of this type are removed
      */
-    @SuppressWarnings({ "unused", "rawtypes" })
+    @SuppressWarnings({ "unused" })
     private void setPredicate(String type, SemanticTag target) {
         if(target == null) {
             this.removePredicate(type);
+            return;
         }
         
-        boolean hashSetAlreadyExists = true;
-        HashSet targetHashSet = null;
-        
-        if(this.targets == null) {
-            hashSetAlreadyExists = false;
-            this.targets = new HashMap<String, HashSet<SNSemanticTag>>();
-        } else {
-            targetHashSet = this.targets.get(type);
-        }
-
-        if(targetHashSet == null) {
-            hashSetAlreadyExists = false;
-            targetHashSet = new HashSet<SNSemanticTag>();
-            this.targets.put(type, targetHashSet);
+        // don't hold this lock while informing target - it locks itself
+        synchronized(this) {
+            // add target - table prevents duplicates
+            this.targets = this.targets.with(type, (SNSemanticTag) target);
         }
-        
-        // structures to store relations are no established
-
-        // add target - hash set prevents duplicates
-        targetHashSet.add(target);
+        this.hierarchyChanged(type);
         
         // inform target to let it make a cross reference if it is of this class
         if(target instanceof InMemo_SN_TX_SemanticTag) {
@@ -267,28 +290,16 @@ public class InMemo_SN_TX_SemanticTag extends InMemoSemanticTag implements SNSem
      * @param type
      * @param source 
      */
-    @SuppressWarnings({ "rawtypes" })
     private void addSourcePredicate(String type, SNSemanticTag source) {
         this.refreshPredicates();
         
         /* I believe in my own code and don't check whether this reference 
          already exists */
         
-        HashSet sourceTags = null;
-        if(this.sources == null) {
-            this.sources = new HashMap<String, HashSet<SNSemanticTag>>();
-        } else {
-            sourceTags = this.sources.get(type);
+        synchronized(this) {
+            this.sources = this.sources.with(type, source);
         }
         
-        if(sourceTags == null) {
-            sourceTags = new HashSet<SNSemanticTag>();
-            this.sources.put(type, sourceTags);
-        }
-        
-        // add 
-        sourceTags.add(source);
-        
         // remember
         this.persist();
     }
@@ -302,21 +313,15 @@ public class InMemo_SN_TX_SemanticTag extends InMemoSemanticTag implements SNSem
     @Override
     public void removePredicate(String type, SNSemanticTag target) {
         this.refreshPredicates();
-        if(this.targets == null) {
-            return;
-        }
         
-        HashSet<SNSemanticTag> targetTags = this.targets.get(type);
-        
-        if(targetTags != null) {
-            targetTags.remove(target);
-            
-            this.removePropertyEntry(TARGET_PREFIX, type, target);
-            
-            if(targetTags.isEmpty()) {
-                this.targets.remove(type);
+        synchronized(this) {
+            PredicateTable newTargets = this.targets.without(type, target);
+            if(newTargets != this.targets) {
+                this.targets = newTargets;
+                this.removePropertyEntry(TARGET_PREFIX, type, target);
             }
         }
+        this.hierarchyChanged(type);
         
         // inform target to let it delete cross reference if it is a InMemoSemanticTag
         if(target instanceof InMemo_SN_TX_SemanticTag) {
@@ -362,19 +367,13 @@ public class InMemo_SN_TX_SemanticTag extends InMemoSemanticTag implements SNSem
         }
     }
 
-    @SuppressWarnings("rawtypes")
     private void removeSourcePredicate(String type, InMemo_SN_TX_SemanticTag source) {
-        if(this.sources == null) return;
-        
-        HashSet sourceTags = this.sources.get(type);
-        if(sourceTags == null) return;
-        
-        sourceTags.remove(source);
-        
-        this.removePropertyEntry(SOURCE_PREFIX, type, source);
-        
-        if(sourceTags.isEmpty()) {
-            this.sources.remove(type);
+        synchronized(this) {
+            PredicateTable newSources = this.sources.without(type, source);
+            if(newSources == this.sources) return;
+            
+            this.sources = newSources;
+            this.removePropertyEntry(SOURCE_PREFIX, type, source);
         }
         
         // remember
@@ -478,7 +477,7 @@ public class InMemo_SN_TX_SemanticTag extends InMemoSemanticTag implements SNSem
         }
         catch(ClassCastException cce) {
             // strange - hwo could a non ST find its way into this collection?
-            L.e("a non TXSemanticTag is supertag in a Taxonomy:" + cce.getMessage(), this);
+            L.error(this, "a non TXSemanticTag is supertag in a Taxonomy:{}", cce.getMessage());
         }
         
         return null;
@@ -526,44 +525,36 @@ public class InMemo_SN_TX_SemanticTag extends InMemoSemanticTag implements SNSem
         super.persist();
 
         // sources
-        if(this.sources != null) {
-            if (this.sources.keySet().size() > 0) {
-                this.writePredicates(SOURCE_PREFIX, this.sources);
-            } else {
-                // remove property 
-                this.setSystemProperty(SOURCE_PREFIX, null);
-            }
+        if(!this.sources.isEmpty()) {
+            this.writePredicates(SOURCE_PREFIX, this.sources);
+        } else if(this.refreshed) {
+            // remove property 
+            this.setSystemProperty(SOURCE_PREFIX, null);
         }
         
         // targets
-        if(this.targets != null) {
-            if (this.targets.keySet().size() > 0) {
-                this.writePredicates(TARGET_PREFIX, this.targets);
-            }
-            else {
-                this.setSystemProperty(TARGET_PREFIX, null);
-            }
+        if(!this.targets.isEmpty()) {
+            this.writePredicates(TARGET_PREFIX, this.targets);
+        } else if(this.refreshed) {
+            this.setSystemProperty(TARGET_PREFIX, null);
         }
     }
     
-    private void writePredicates(String prefix, 
-            HashMap<String, HashSet<SNSemanticTag>> map ) {
+    private void writePredicates(String prefix, PredicateTable table) {
         
-        Iterator<String> predicateIter = map.keySet().iterator();
+        String[] predicates = table.typeArray();
+        SNSemanticTag[][] adjacency = table.adjacency();
         Vector<String> p = new Vector<String>();
         
-        while(predicateIter.hasNext()) {
-            String predicate = predicateIter.next();
+        for(int i = 0; i < predicates.length; i++) {
+            String predicate = predicates[i];
             p.add(predicate);
 
             String propertyNamePrefix = prefix + "_" + predicate;
 
             // iterate referenced tags
-            Iterator<SNSemanticTag> snIter = map.get(predicate).iterator();
-
             int snTagNumber = 0;
-            while(snIter.hasNext()) {
-                SNSemanticTag snTag = snIter.next();
+            for(SNSemanticTag snTag : adjacency[i]) {
                 if (snTag == null) {
                 	continue;
                 }
@@ -598,14 +589,15 @@ public class InMemo_SN_TX_SemanticTag extends InMemoSemanticTag implements SNSem
      * @param map 
      */
     @SuppressWarnings({ "rawtypes" })
-    private void readPredicates(String prefix, 
-            HashMap<String, HashSet<SNSemanticTag>> map,
+    private PredicateTable readPredicates(String prefix, 
             InMemoGenericTagStorage home) {
         
+        PredicateTable table = PredicateTable.EMPTY;
+        
         // read prefix names
         String pNamesValue = this.getSystemProperty(prefix);
         
-        if(pNamesValue == null) { return; }
+        if(pNamesValue == null) { return table; }
         
         // split names
         Vector p = Util.string2Vector(pNamesValue, "|");
@@ -614,8 +606,6 @@ public class InMemo_SN_TX_SemanticTag extends InMemoSemanticTag implements SNSem
         while(pNames.hasMoreElements()) {
             String pName = pNames.nextElement();
             
-            // create set to store sis
-            HashSet<SNSemanticTag> referencedTags = new HashSet();
             
             // construct property name
             String propNamePrefix = prefix + "_" + pName;
@@ -647,11 +637,11 @@ public class InMemo_SN_TX_SemanticTag extends InMemoSemanticTag implements SNSem
                         try {
                             SNSemanticTag snTag = (SNSemanticTag) tag;
                             // remember
-                            referencedTags.add(snTag);
+                            table = table.with(pName, snTag);
                         }
                         catch(ClassCastException cce) {
                             // shouldn't happen
-                           L.d("restored wrong semantic tag type from persistent storage: " + p, this);
+                           L.debug(this, "restored wrong semantic tag type from persistent storage: {}", p);
                            continue;
                         }
                     }
@@ -661,12 +651,9 @@ public class InMemo_SN_TX_SemanticTag extends InMemoSemanticTag implements SNSem
                     }
                 }
             }
-            
-            // hang in reference tag - if any
-            if(!referencedTags.isEmpty()) {
-                map.put(pName, referencedTags);
-            }
         }
+        
+        return table;
     }
     
     @Override
@@ -675,7 +662,7 @@ public class InMemo_SN_TX_SemanticTag extends InMemoSemanticTag implements SNSem
     }
     
     @SuppressWarnings({ "rawtypes" })
-    private void refreshPredicates() {
+    private synchronized void refreshPredicates() {
         if(this.refreshed) { return; }
         
         if(this.storage == null) {
@@ -686,11 +673,8 @@ public class InMemo_SN_TX_SemanticTag extends InMemoSemanticTag implements SNSem
 
         this.refreshed = true;
         
-        this.sources = new HashMap();
-        this.readPredicates(SOURCE_PREFIX, this.sources, this.storage);
-
-        this.targets = new HashMap();
-        this.readPredicates(TARGET_PREFIX, this.targets, this.storage);
+        this.sources = this.readPredicates(SOURCE_PREFIX, this.storage);
+        this.targets = this.readPredicates(TARGET_PREFIX, this.storage);
     }
     
     @SuppressWarnings("rawtypes")
@@ -0,0 +1,434 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import net.sharkfw.knowledgeBase.SemanticTag;
+
+/**
+ * Trigram index over tag names. It narrows the tags whose names could
+ * match a regular expression - callers verify each candidate with the
+ * expression itself.
+ *
+ * Names are folded character by character (upper, then lower case). Literal
+ * parts of a pattern must occur in the folded name - it holds for case
+ * sensitive and case insensitive patterns. Tags are found by
+ * <ul>
+ * <li>exact name if pattern is a literal,</li>
+ * <li>name prefix if pattern is a literal followed by .*,</li>
+ * <li>trigrams of literals the pattern requires.</li>
+ * </ul>
+ * Patterns with alternatives or look arounds can't be narrowed.
+ *
+ * Not thread safe.
+ *
+ * @author thsc
+ */
+final class NameIndex<ST extends SemanticTag> {
+
+    /** sets smaller than that are scanned */
+    static final int MIN_TAGS = 64;
+
+    private static final class Entry {
+        final String name; // folded
+        final long number; // insertion order
+
+        Entry(String name, long number) {
+            this.name = name;
+            this.number = number;
+        }
+    }
+
+    private final IdentityHashMap<ST, Entry> entries = new IdentityHashMap<>();
+    private final Map<Long, Set<ST>> trigrams = new HashMap<>();
+    private final TreeMap<String, Set<ST>> names = new TreeMap<>();
+    private long number = 0;
+
+    int size() {
+        return this.entries.size();
+    }
+
+    void add(ST tag) {
+        if(this.entries.containsKey(tag)) return;
+
+        this.add(tag, this.number++);
+    }
+
+    private void add(ST tag, long number) {
+        String name = tag.getName() == null ? "" : fold(tag.getName());
+        this.entries.put(tag, new Entry(name, number));
+
+        put(this.names, name, tag);
+        for(int i = 0; i + 3 <= name.length(); i++) {
+            put(this.trigrams, trigram(name, i), tag);
+        }
+    }
+
+    void remove(ST tag) {
+        Entry entry = this.entries.remove(tag);
+        if(entry == null) return;
+
+        String name = entry.name;
+        remove(this.names, name, tag);
+        for(int i = 0; i + 3 <= name.length(); i++) {
+            remove(this.trigrams, trigram(name, i), tag);
+        }
+    }
+
+    /**
+     * Tag got a new name - it keeps its position.
+     */
+    void rename(ST tag) {
+        Entry entry = this.entries.get(tag);
+        if(entry == null) return;
+
+        this.remove(tag);
+        this.add(tag, entry.number);
+    }
+
+    /**
+     * @return tags whose names could match pattern in insertion order - null
+     * if pattern can't be narrowed
+     */
+    List<ST> candidates(String pattern) {
+        Query query = Query.analyze(pattern);
+        if(query == null) return null;
+
+        Set<ST> result;
+        if(query.exact != null) {
+            Set<ST> tags = this.names.get(fold(query.exact));
+            result = tags == null ? Collections.<ST>emptySet() : tags;
+        }
+        else if(query.prefix != null) {
+            if(query.prefix.isEmpty()) return null; // .*
+
+            String from = fold(query.prefix);
+            SortedMap<String, Set<ST>> range = this.names.subMap(from, from + Character.MAX_VALUE);
+            result = Collections.newSetFromMap(new IdentityHashMap<ST, Boolean>());
+            for(Set<ST> tags : range.values()) {
+                result.addAll(tags);
+            }
+        }
+        else {
+            // all trigrams of all required literals - smallest posting first
+            List<Set<ST>> postings = new ArrayList<>();
+            for(String literal : query.literals) {
+                String folded = fold(literal);
+                for(int i = 0; i + 3 <= folded.length(); i++) {
+                    Set<ST> tags = this.trigrams.get(trigram(folded, i));
+                    if(tags == null) return new ArrayList<>();
+                    postings.add(tags);
+                }
+            }
+            if(postings.isEmpty()) return null; // no literal with 3 chars
+
+            Collections.sort(postings, new Comparator<Set<ST>>() {
+                @Override
+                public int compare(Set<ST> a, Set<ST> b) {
+                    return Integer.compare(a.size(), b.size());
+                }
+            });
+
+            result = Collections.newSetFromMap(new IdentityHashMap<ST, Boolean>());
+            for(ST tag : postings.get(0)) {
+                boolean all = true;
+                for(int p = 1; p < postings.size() && all; p++) {
+                    all = postings.get(p).contains(tag);
+                }
+                if(all) result.add(tag);
+            }
+        }
+
+        List<ST> ordered = new ArrayList<>(result);
+        Collections.sort(ordered, new Comparator<ST>() {
+            @Override
+            public int compare(ST a, ST b) {
+                return Long.compare(NameIndex.this.entries.get(a).number,
+                        NameIndex.this.entries.get(b).number);
+            }
+        });
+        return ordered;
+    }
+
+    private static <K, T> void put(Map<K, Set<T>> map, K key, T tag) {
+        Set<T> tags = map.get(key);
+        if(tags == null) {
+            tags = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+            map.put(key, tags);
+        }
+        tags.add(tag);
+    }
+
+    private static <K, T> void remove(Map<K, Set<T>> map, K key, T tag) {
+        Set<T> tags = map.get(key);
+        if(tags == null) return;
+
+        tags.remove(tag);
+        if(tags.isEmpty()) map.remove(key);
+    }
+
+    private static Long trigram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    /**
+     * Folds each char on its own - length is kept.
+     */
+    static String fold(String s) {
+        char[] chars = s.toCharArray();
+        for(int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Literal parts of a regular expression.
+     */
+    static final class Query {
+        // pattern is that literal
+        String exact = null;
+        // pattern is that literal followed by .*
+        String prefix = null;
+        // each match contains these literals
+        final List<String> literals = new ArrayList<>();
+
+        /**
+         * @return null if pattern can't be narrowed
+         */
+        static Query analyze(String pattern) {
+            int start = 0;
+            if(pattern.startsWith("(?i)")) start = 4;
+
+            Query query = new Query();
+            boolean literal = query.scan(pattern, start, pattern.length());
+            if(query.failed) return null;
+
+            if(literal) {
+                query.exact = query.literals.isEmpty() ? "" : query.literals.get(0);
+                return query;
+            }
+
+            // prefix: literal followed by .*
+            if(pattern.endsWith(".*") && pattern.length() - 2 >= start) {
+                Query head = new Query();
+                int end = pattern.length() - 2;
+                if(!endsWithEscape(pattern, start, end) && head.scan(pattern, start, end)) {
+                    query.prefix = head.literals.isEmpty() ? "" : head.literals.get(0);
+                }
+            }
+
+            return query;
+        }
+
+        private static boolean endsWithEscape(String pattern, int start, int end) {
+            int backslashes = 0;
+            for(int i = end - 1; i >= start && pattern.charAt(i) == '\\'; i--) {
+                backslashes++;
+            }
+            return backslashes % 2 == 1;
+        }
+
+        private StringBuilder run = new StringBuilder();
+        private boolean failed = false;
+
+        private void endRun() {
+            if(this.run.length() > 0) {
+                this.literals.add(this.run.toString());
+                this.run = new StringBuilder();
+            }
+        }
+
+        /**
+         * Collects required literals of pattern[start, end).
+         * @return true if that part is one literal
+         */
+        private boolean scan(String p, int start, int end) {
+            boolean literal = true;
+            int i = start;
+            while(i < end) {
+                char c = p.charAt(i);
+                switch(c) {
+                    case '\\':
+                        if(i + 1 >= end) return this.fail();
+                        char next = p.charAt(i + 1);
+                        if(next == 'Q') {
+                            int quoteEnd = p.indexOf("\\E", i + 2);
+                            if(quoteEnd == -1 || quoteEnd > end) quoteEnd = end;
+                            this.run.append(p, i + 2, quoteEnd);
+                            i = Math.min(end, quoteEnd + 2);
+                        } else if(Character.isLetterOrDigit(next)) {
+                            // class, anchor or back reference
+                            this.endRun();
+                            literal = false;
+                            i += 2;
+                        } else {
+                            this.run.append(next);
+                            i += 2;
+                        }
+                        break;
+
+                    case '|':
+                        return this.fail();
+
+                    case '[':
+                        this.endRun();
+                        literal = false;
+                        i = classEnd(p, i, end);
+                        if(i < 0) return this.fail();
+                        break;
+
+                    case '(':
+                        if(i + 1 < end && p.charAt(i + 1) == '?'
+                                && !(i + 2 < end && p.charAt(i + 2) == ':')) {
+                            // look around or inline flags
+                            return this.fail();
+                        }
+                        this.endRun();
+                        literal = false;
+                        int close = groupEnd(p, i, end);
+                        if(close < 0) return this.fail();
+                        if(optional(p, close + 1, end)) {
+                            // whole group can be missing
+                            i = close + 1;
+                        } else {
+                            i += (i + 1 < end && p.charAt(i + 1) == '?') ? 3 : 1;
+                        }
+                        break;
+
+                    case ')':
+                    case '.':
+                    case '^':
+                    case '$':
+                        this.endRun();
+                        literal = false;
+                        i++;
+                        break;
+
+                    case '*':
+                    case '?':
+                    case '+':
+                    case '{':
+                        if(optional(p, i, end) && this.run.length() > 0) {
+                            // previous char can be missing
+                            this.run.setLength(this.run.length() - 1);
+                        }
+                        this.endRun();
+                        literal = false;
+                        i = quantifierEnd(p, i, end);
+                        if(i < 0) return this.fail();
+                        break;
+
+                    default:
+                        this.run.append(c);
+                        i++;
+                }
+            }
+
+            this.endRun();
+            return literal && this.literals.size() <= 1;
+        }
+
+        /**
+         * marks query as not narrowable
+         */
+        private boolean fail() {
+            this.literals.clear();
+            this.run.setLength(0);
+            this.failed = true;
+            return false;
+        }
+
+        /**
+         * @return true if quantifier at i allows zero repetitions
+         */
+        private static boolean optional(String p, int i, int end) {
+            if(i >= end) return false;
+            char c = p.charAt(i);
+            if(c == '*' || c == '?') return true;
+            if(c == '{') {
+                int j = i + 1;
+                while(j < end && p.charAt(j) == ' ') j++;
+                return j < end && p.charAt(j) == '0';
+            }
+            return false;
+        }
+
+        /**
+         * @return index behind quantifier at i - lazy and possessive marks
+         * included, -1 if malformed
+         */
+        private static int quantifierEnd(String p, int i, int end) {
+            if(p.charAt(i) == '{') {
+                int close = p.indexOf('}', i);
+                if(close == -1 || close >= end) return -1;
+                i = close + 1;
+            } else {
+                i++;
+            }
+            if(i < end && (p.charAt(i) == '?' || p.charAt(i) == '+')) i++;
+            return i;
+        }
+
+        /**
+         * @return index behind character class starting at i, -1 if malformed
+         */
+        private static int classEnd(String p, int i, int end) {
+            int depth = 0;
+            int j = i;
+            while(j < end) {
+                char c = p.charAt(j);
+                if(c == '\\') {
+                    j += 2;
+                    continue;
+                }
+                if(c == '[') {
+                    depth++;
+                    // ] right after [ or [^ is literal
+                    if(j + 1 < end && p.charAt(j + 1) == '^') j++;
+                    if(j + 1 < end && p.charAt(j + 1) == ']') j++;
+                } else if(c == ']') {
+                    depth--;
+                    if(depth == 0) return j + 1;
+                }
+                j++;
+            }
+            return -1;
+        }
+
+        /**
+         * @return index of closing parenthesis of group starting at i, -1 if
+         * malformed
+         */
+        private static int groupEnd(String p, int i, int end) {
+            int depth = 0;
+            int j = i;
+            while(j < end) {
+                char c = p.charAt(j);
+                if(c == '\\') {
+                    j += 2;
+                    continue;
+                }
+                if(c == '[') {
+                    j = classEnd(p, j, end);
+                    if(j < 0) return -1;
+                    continue;
+                }
+                if(c == '(') depth++;
+                if(c == ')') {
+                    depth--;
+                    if(depth == 0) return j;
+                }
+                j++;
+            }
+            return -1;
+        }
+    }
+}
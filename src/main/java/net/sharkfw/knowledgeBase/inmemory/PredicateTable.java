@@ -0,0 +1,161 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import net.sharkfw.knowledgeBase.SNSemanticTag;
+
+/**
+ * Predicates of a semantic net tag kept in flat arrays: predicate names and
+ * one adjacency array of tags for each name.
+ *
+ * Tables are immutable. Each change returns a new table. Thus, a table can
+ * be read by any thread and enumerations never fail if the tag is changed in
+ * the meantime. Most tags have no or just a few predicates - tables are much
+ * smaller than maps of hash sets.
+ *
+ * @author thsc
+ */
+final class PredicateTable implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    static final PredicateTable EMPTY = new PredicateTable(new String[0], new SNSemanticTag[0][]);
+
+    private final String[] types;
+    private final SNSemanticTag[][] tags;
+
+    private PredicateTable(String[] types, SNSemanticTag[][] tags) {
+        this.types = types;
+        this.tags = tags;
+    }
+
+    boolean isEmpty() {
+        return this.types.length == 0;
+    }
+
+    private int indexOf(String type) {
+        for(int i = 0; i < this.types.length; i++) {
+            if(this.types[i].equals(type)) return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return predicate names or null if there is none
+     */
+    Enumeration<String> types() {
+        if(this.isEmpty()) return null;
+
+        return Collections.enumeration(Arrays.asList(this.types));
+    }
+
+    /**
+     * @param type
+     * @return tags referenced with that predicate or null if there is none
+     */
+    Enumeration<SNSemanticTag> tags(String type) {
+        int index = this.indexOf(type);
+        if(index < 0) return null;
+
+        return Collections.enumeration(Arrays.asList(this.tags[index]));
+    }
+
+    /**
+     * @return table which contains tag in predicate type as well
+     */
+    PredicateTable with(String type, SNSemanticTag tag) {
+        int index = this.indexOf(type);
+
+        if(index < 0) {
+            String[] newTypes = Arrays.copyOf(this.types, this.types.length + 1);
+            newTypes[this.types.length] = type;
+
+            SNSemanticTag[][] newTags = Arrays.copyOf(this.tags, this.tags.length + 1);
+            newTags[this.tags.length] = new SNSemanticTag[] { tag };
+
+            return new PredicateTable(newTypes, newTags);
+        }
+
+        SNSemanticTag[] adjacent = this.tags[index];
+        for(int i = 0; i < adjacent.length; i++) {
+            // no duplicates
+            if(adjacent[i] == tag) return this;
+        }
+
+        SNSemanticTag[] newAdjacent = Arrays.copyOf(adjacent, adjacent.length + 1);
+        newAdjacent[adjacent.length] = tag;
+
+        SNSemanticTag[][] newTags = this.tags.clone();
+        newTags[index] = newAdjacent;
+
+        return new PredicateTable(this.types, newTags);
+    }
+
+    /**
+     * @return table without tag in predicate type. Predicates without
+     * tags are removed.
+     */
+    PredicateTable without(String type, SNSemanticTag tag) {
+        int index = this.indexOf(type);
+        if(index < 0) return this;
+
+        SNSemanticTag[] adjacent = this.tags[index];
+        int tagIndex = -1;
+        for(int i = 0; i < adjacent.length; i++) {
+            if(adjacent[i] == tag) {
+                tagIndex = i;
+                break;
+            }
+        }
+
+        if(tagIndex < 0) return this;
+
+        if(adjacent.length == 1) {
+            return this.without(type);
+        }
+
+        SNSemanticTag[] newAdjacent = new SNSemanticTag[adjacent.length - 1];
+        System.arraycopy(adjacent, 0, newAdjacent, 0, tagIndex);
+        System.arraycopy(adjacent, tagIndex + 1, newAdjacent, tagIndex,
+                adjacent.length - tagIndex - 1);
+
+        SNSemanticTag[][] newTags = this.tags.clone();
+        newTags[index] = newAdjacent;
+
+        return new PredicateTable(this.types, newTags);
+    }
+
+    /**
+     * @return table without predicate type at all
+     */
+    PredicateTable without(String type) {
+        int index = this.indexOf(type);
+        if(index < 0) return this;
+
+        if(this.types.length == 1) return EMPTY;
+
+        String[] newTypes = new String[this.types.length - 1];
+        SNSemanticTag[][] newTags = new SNSemanticTag[this.tags.length - 1][];
+        for(int i = 0, j = 0; i < this.types.length; i++) {
+            if(i != index) {
+                newTypes[j] = this.types[i];
+                newTags[j++] = this.tags[i];
+            }
+        }
+
+        return new PredicateTable(newTypes, newTags);
+    }
+
+    /**
+     * @return all tags of all predicates
+     */
+    SNSemanticTag[][] adjacency() {
+        return this.tags;
+    }
+
+    String[] typeArray() {
+        return this.types;
+    }
+}
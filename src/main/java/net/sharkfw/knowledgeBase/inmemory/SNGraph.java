@@ -0,0 +1,659 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import net.sharkfw.knowledgeBase.SNSemanticTag;
+
+/**
+ * Graph of a semantic net kept in primitive arrays.
+ *
+ * Each tag gets an int id, each predicate name gets an int id. Edges are
+ * stored per predicate in compressed sparse row (CSR) arrays - once for
+ * outgoing and once for incoming edges. Changes are written into a small
+ * delta overlay: added edges are kept in per node arrays, removed edges are
+ * marked. The overlay is merged into new CSR arrays after it has grown
+ * beyond a quarter of the base arrays.
+ *
+ * Traversals (breadth first search, transitive closure) run over int arrays
+ * and don't create objects at each hop.
+ *
+ * All methods are synchronized.
+ *
+ * @author thsc
+ */
+final class SNGraph {
+    private static final int[] NO_INTS = new int[0];
+
+    // overlay is merged at least after that number of changes
+    static final int MIN_COMPACTION = 64;
+
+    private SNSemanticTag[] nodes = new SNSemanticTag[16];
+    private int nodeCount = 0;
+    // ids of removed nodes - handed out again before nodeCount grows
+    private final IntList freeIDs = new IntList();
+
+    private final HashMap<String, Integer> predicateIDs = new HashMap<>();
+    private final ArrayList<String> predicates = new ArrayList<>();
+    private final ArrayList<Adjacency> outgoing = new ArrayList<>();
+    private final ArrayList<Adjacency> incoming = new ArrayList<>();
+
+    ////////////////////////////////////////////////////////////////
+    //                          nodes                             //
+    ////////////////////////////////////////////////////////////////
+
+    synchronized int addNode(SNSemanticTag tag) {
+        if(this.freeIDs.size > 0) {
+            int node = this.freeIDs.values[--this.freeIDs.size];
+            this.nodes[node] = tag;
+            return node;
+        }
+
+        if(this.nodeCount == this.nodes.length) {
+            this.nodes = Arrays.copyOf(this.nodes, this.nodes.length * 2);
+        }
+
+        this.nodes[this.nodeCount] = tag;
+        return this.nodeCount++;
+    }
+
+    /**
+     * Drops all edges of that node. Its id is reused by the next added node.
+     */
+    synchronized void removeNode(int node) {
+        if(!this.isNode(node)) return;
+
+        IntList buffer = new IntList();
+        for(int p = 0; p < this.predicates.size(); p++) {
+            Adjacency out = this.outgoing.get(p);
+            Adjacency in = this.incoming.get(p);
+
+            buffer.clear();
+            out.neighbours(node, buffer);
+            for(int i = 0; i < buffer.size; i++) {
+                out.remove(node, buffer.values[i]);
+                in.remove(buffer.values[i], node);
+            }
+
+            buffer.clear();
+            in.neighbours(node, buffer);
+            for(int i = 0; i < buffer.size; i++) {
+                in.remove(node, buffer.values[i]);
+                out.remove(buffer.values[i], node);
+            }
+        }
+
+        this.nodes[node] = null;
+        this.freeIDs.add(node);
+    }
+
+    synchronized SNSemanticTag getNode(int node) {
+        return this.isNode(node) ? this.nodes[node] : null;
+    }
+
+    private boolean isNode(int node) {
+        return node >= 0 && node < this.nodeCount && this.nodes[node] != null;
+    }
+
+    /**
+     * @return upper bound of node ids - removed nodes included
+     */
+    synchronized int nodeCount() {
+        return this.nodeCount;
+    }
+
+    ////////////////////////////////////////////////////////////////
+    //                        predicates                          //
+    ////////////////////////////////////////////////////////////////
+
+    /**
+     * @return predicate id or -1 if there is no such predicate (yet)
+     */
+    synchronized int predicateID(String predicate) {
+        Integer id = this.predicateIDs.get(predicate);
+        return id == null ? -1 : id;
+    }
+
+    private int internPredicate(String predicate) {
+        Integer id = this.predicateIDs.get(predicate);
+        if(id != null) return id;
+
+        int newID = this.predicates.size();
+        this.predicateIDs.put(predicate, newID);
+        this.predicates.add(predicate);
+        this.outgoing.add(new Adjacency());
+        this.incoming.add(new Adjacency());
+
+        return newID;
+    }
+
+    synchronized int predicateCount() {
+        return this.predicates.size();
+    }
+
+    synchronized String predicateName(int predicateID) {
+        return this.predicates.get(predicateID);
+    }
+
+    ////////////////////////////////////////////////////////////////
+    //                           edges                            //
+    ////////////////////////////////////////////////////////////////
+
+    synchronized boolean addEdge(String predicate, int source, int target) {
+        if(!this.isNode(source) || !this.isNode(target)) return false;
+
+        int p = this.internPredicate(predicate);
+        if(!this.outgoing.get(p).add(source, target)) return false;
+        this.incoming.get(p).add(target, source);
+
+        this.compactIfRequired(p);
+        return true;
+    }
+
+    synchronized boolean removeEdge(String predicate, int source, int target) {
+        int p = this.predicateID(predicate);
+        if(p < 0) return false;
+
+        if(!this.outgoing.get(p).remove(source, target)) return false;
+        this.incoming.get(p).remove(target, source);
+
+        this.compactIfRequired(p);
+        return true;
+    }
+
+    /**
+     * Removes all edges of that predicate starting at source
+     */
+    synchronized void removeEdges(String predicate, int source) {
+        int p = this.predicateID(predicate);
+        if(p < 0) return;
+
+        IntList targets = new IntList();
+        this.outgoing.get(p).neighbours(source, targets);
+        for(int i = 0; i < targets.size; i++) {
+            this.outgoing.get(p).remove(source, targets.values[i]);
+            this.incoming.get(p).remove(targets.values[i], source);
+        }
+
+        this.compactIfRequired(p);
+    }
+
+    synchronized boolean hasEdge(String predicate, int source, int target) {
+        int p = this.predicateID(predicate);
+        if(p < 0) return false;
+
+        return this.outgoing.get(p).contains(source, target);
+    }
+
+    /**
+     * @param node
+     * @param outgoing true: predicates in which node is source, false:
+     * node is target
+     * @return names of predicates with at least one edge at that node
+     */
+    synchronized ArrayList<String> predicateNames(int node, boolean outgoing) {
+        ArrayList<String> names = new ArrayList<>();
+        if(!this.isNode(node)) return names;
+
+        ArrayList<Adjacency> direction = outgoing ? this.outgoing : this.incoming;
+        for(int p = 0; p < direction.size(); p++) {
+            if(direction.get(p).hasNeighbours(node)) {
+                names.add(this.predicates.get(p));
+            }
+        }
+
+        return names;
+    }
+
+    /**
+     * @return tags connected to that node with predicate
+     */
+    synchronized ArrayList<SNSemanticTag> neighbours(String predicate, int node, boolean outgoing) {
+        ArrayList<SNSemanticTag> tags = new ArrayList<>();
+
+        int p = this.predicateID(predicate);
+        if(p < 0 || !this.isNode(node)) return tags;
+
+        IntList ids = new IntList();
+        (outgoing ? this.outgoing : this.incoming).get(p).neighbours(node, ids);
+        for(int i = 0; i < ids.size; i++) {
+            tags.add(this.nodes[ids.values[i]]);
+        }
+
+        return tags;
+    }
+
+    private void compactIfRequired(int p) {
+        Adjacency out = this.outgoing.get(p);
+        if(out.needsCompaction()) {
+            out.compact(this.nodeCount);
+            this.incoming.get(p).compact(this.nodeCount);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////
+    //                        traversals                          //
+    ////////////////////////////////////////////////////////////////
+
+    /**
+     * @param follow predicate ids which can be followed, null: all
+     */
+    private Adjacency[] outgoing(boolean[] follow) {
+        ArrayList<Adjacency> result = new ArrayList<>();
+        for(int p = 0; p < this.outgoing.size(); p++) {
+            if(follow == null || (p < follow.length && follow[p])) {
+                result.add(this.outgoing.get(p));
+            }
+        }
+
+        return result.toArray(new Adjacency[result.size()]);
+    }
+
+    /**
+     * Breadth first search along outgoing edges.
+     *
+     * @param start
+     * @param follow predicate ids which can be followed, null: all
+     * @param depth max number of hops
+     * @return reached nodes (including start) in the order they were found
+     */
+    synchronized int[] reachable(int start, boolean[] follow, int depth) {
+        if(!this.isNode(start)) return NO_INTS;
+
+        Adjacency[] adjacencies = this.outgoing(follow);
+        boolean[] visited = new boolean[this.nodeCount];
+        IntList queue = new IntList();
+        IntList buffer = new IntList();
+
+        queue.add(start);
+        visited[start] = true;
+
+        int head = 0;
+        int levelEnd = queue.size;
+        int level = 0;
+        while(head < queue.size && level < depth) {
+            int node = queue.values[head++];
+
+            for(Adjacency adjacency : adjacencies) {
+                buffer.clear();
+                adjacency.neighbours(node, buffer);
+                for(int i = 0; i < buffer.size; i++) {
+                    int next = buffer.values[i];
+                    if(!visited[next]) {
+                        visited[next] = true;
+                        queue.add(next);
+                    }
+                }
+            }
+
+            if(head == levelEnd) {
+                level++;
+                levelEnd = queue.size;
+            }
+        }
+
+        return queue.toArray();
+    }
+
+    /**
+     * Breadth first search for the nearest node which fulfills goal.
+     *
+     * @param start
+     * @param goal nodes which end the search - start itself isn't tested
+     * @param predicates filled with the predicate ids used at each hop
+     * @return nodes of shortest path (start first) or null if there is none
+     */
+    synchronized int[] shortestPath(int start, boolean[] goal, IntList predicates) {
+        if(!this.isNode(start)) return null;
+
+        int[] parent = new int[this.nodeCount];
+        int[] parentPredicate = new int[this.nodeCount];
+        Arrays.fill(parent, -1);
+        parent[start] = start;
+
+        IntList queue = new IntList();
+        IntList buffer = new IntList();
+        queue.add(start);
+
+        int head = 0;
+        while(head < queue.size) {
+            int node = queue.values[head++];
+
+            for(int p = 0; p < this.outgoing.size(); p++) {
+                buffer.clear();
+                this.outgoing.get(p).neighbours(node, buffer);
+                for(int i = 0; i < buffer.size; i++) {
+                    int next = buffer.values[i];
+                    if(parent[next] >= 0) continue;
+
+                    parent[next] = node;
+                    parentPredicate[next] = p;
+
+                    if(next < goal.length && goal[next]) {
+                        return path(start, next, parent, parentPredicate, predicates);
+                    }
+
+                    queue.add(next);
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private static int[] path(int start, int end, int[] parent,
+            int[] parentPredicate, IntList predicates) {
+
+        IntList reversed = new IntList();
+        IntList reversedPredicates = new IntList();
+        for(int node = end; node != start; node = parent[node]) {
+            reversed.add(node);
+            reversedPredicates.add(parentPredicate[node]);
+        }
+        reversed.add(start);
+
+        int[] path = new int[reversed.size];
+        for(int i = 0; i < path.length; i++) {
+            path[i] = reversed.values[reversed.size - 1 - i];
+        }
+
+        for(int i = reversedPredicates.size - 1; i >= 0; i--) {
+            predicates.add(reversedPredicates.values[i]);
+        }
+
+        return path;
+    }
+
+    /**
+     * A predicate is transitive if each node reachable from a node is
+     * referenced directly by that node.
+     */
+    synchronized boolean isTransitive(String predicate) {
+        int p = this.predicateID(predicate);
+        if(p < 0) return true;
+
+        Adjacency out = this.outgoing.get(p);
+        boolean[] follow = this.follow(p);
+        IntList direct = new IntList();
+        boolean[] isDirect = new boolean[this.nodeCount];
+
+        for(int node = 0; node < this.nodeCount; node++) {
+            if(this.nodes[node] == null || !out.hasNeighbours(node)) continue;
+
+            int[] reached = this.reachable(node, follow, Integer.MAX_VALUE);
+
+            direct.clear();
+            out.neighbours(node, direct);
+            // reached contains node itself
+            if(reached.length - 1 > direct.size) return false;
+
+            // all reached nodes must be direct neighbours
+            for(int i = 0; i < direct.size; i++) {
+                isDirect[direct.values[i]] = true;
+            }
+            boolean transitive = true;
+            for(int i = 1; i < reached.length && transitive; i++) {
+                transitive = isDirect[reached[i]];
+            }
+            for(int i = 0; i < direct.size; i++) {
+                isDirect[direct.values[i]] = false;
+            }
+
+            if(!transitive) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Adds an edge from each node to each node reachable with predicate.
+     *
+     * @return number of added edges
+     */
+    synchronized int makeTransitive(String predicate) {
+        int p = this.predicateID(predicate);
+        if(p < 0) return 0;
+
+        Adjacency out = this.outgoing.get(p);
+        boolean[] follow = this.follow(p);
+
+        // calculate closure on the unchanged graph first
+        ArrayList<int[]> missing = new ArrayList<>();
+        for(int node = 0; node < this.nodeCount; node++) {
+            if(this.nodes[node] == null || !out.hasNeighbours(node)) continue;
+
+            int[] reached = this.reachable(node, follow, Integer.MAX_VALUE);
+            for(int i = 1; i < reached.length; i++) {
+                if(!out.contains(node, reached[i])) {
+                    missing.add(new int[] {node, reached[i]});
+                }
+            }
+        }
+
+        for(int[] edge : missing) {
+            this.addEdge(predicate, edge[0], edge[1]);
+        }
+
+        return missing.size();
+    }
+
+    private boolean[] follow(int predicateID) {
+        boolean[] follow = new boolean[this.predicates.size()];
+        follow[predicateID] = true;
+        return follow;
+    }
+
+    ////////////////////////////////////////////////////////////////
+    //                    adjacency arrays                        //
+    ////////////////////////////////////////////////////////////////
+
+    /**
+     * Edges of one predicate in one direction: CSR base arrays plus overlay.
+     */
+    static final class Adjacency {
+        // CSR: neighbours of node n are edges[offsets[n] .. offsets[n+1]-1], sorted
+        private int[] offsets = new int[] {0};
+        private int[] edges = NO_INTS;
+
+        // overlay: added edges per node and removed base edges
+        private IntList[] added = new IntList[0];
+        private final HashSet<Long> removed = new HashSet<>();
+        private int deltaSize = 0;
+
+        private static long key(int node, int neighbour) {
+            return ((long) node << 32) | (neighbour & 0xffffffffL);
+        }
+
+        private boolean inBase(int node, int neighbour) {
+            if(node >= this.offsets.length - 1) return false;
+
+            return Arrays.binarySearch(this.edges, this.offsets[node],
+                    this.offsets[node + 1], neighbour) >= 0;
+        }
+
+        private IntList addedList(int node, boolean create) {
+            if(node >= this.added.length) {
+                if(!create) return null;
+                this.added = Arrays.copyOf(this.added, Math.max(node + 1, this.added.length * 2));
+            }
+
+            IntList list = this.added[node];
+            if(list == null && create) {
+                list = new IntList();
+                this.added[node] = list;
+            }
+
+            return list;
+        }
+
+        boolean contains(int node, int neighbour) {
+            if(this.inBase(node, neighbour)) {
+                return this.removed.isEmpty() || !this.removed.contains(key(node, neighbour));
+            }
+
+            IntList list = this.addedList(node, false);
+            return list != null && list.indexOf(neighbour) >= 0;
+        }
+
+        boolean add(int node, int neighbour) {
+            if(this.inBase(node, neighbour)) {
+                // revive removed base edge
+                if(this.removed.remove(key(node, neighbour))) {
+                    this.deltaSize++;
+                    return true;
+                }
+                return false;
+            }
+
+            IntList list = this.addedList(node, true);
+            if(list.indexOf(neighbour) >= 0) return false;
+
+            list.add(neighbour);
+            this.deltaSize++;
+            return true;
+        }
+
+        boolean remove(int node, int neighbour) {
+            IntList list = this.addedList(node, false);
+            if(list != null) {
+                int index = list.indexOf(neighbour);
+                if(index >= 0) {
+                    list.remove(index);
+                    this.deltaSize++;
+                    return true;
+                }
+            }
+
+            if(this.inBase(node, neighbour) && this.removed.add(key(node, neighbour))) {
+                this.deltaSize++;
+                return true;
+            }
+
+            return false;
+        }
+
+        boolean hasNeighbours(int node) {
+            IntList list = this.addedList(node, false);
+            if(list != null && list.size > 0) return true;
+
+            if(node >= this.offsets.length - 1) return false;
+
+            int from = this.offsets[node];
+            int to = this.offsets[node + 1];
+            if(this.removed.isEmpty()) return to > from;
+
+            for(int i = from; i < to; i++) {
+                if(!this.removed.contains(key(node, this.edges[i]))) return true;
+            }
+
+            return false;
+        }
+
+        /**
+         * Appends all neighbours of node to result
+         */
+        void neighbours(int node, IntList result) {
+            if(node < this.offsets.length - 1) {
+                int from = this.offsets[node];
+                int to = this.offsets[node + 1];
+                if(this.removed.isEmpty()) {
+                    result.addAll(this.edges, from, to);
+                } else {
+                    for(int i = from; i < to; i++) {
+                        if(!this.removed.contains(key(node, this.edges[i]))) {
+                            result.add(this.edges[i]);
+                        }
+                    }
+                }
+            }
+
+            IntList list = this.addedList(node, false);
+            if(list != null) {
+                result.addAll(list.values, 0, list.size);
+            }
+        }
+
+        boolean needsCompaction() {
+            return this.deltaSize > Math.max(MIN_COMPACTION, this.edges.length / 4);
+        }
+
+        /**
+         * Merges overlay into new base arrays.
+         */
+        void compact(int nodeCount) {
+            int[] newOffsets = new int[nodeCount + 1];
+            IntList newEdges = new IntList();
+            IntList buffer = new IntList();
+
+            for(int node = 0; node < nodeCount; node++) {
+                newOffsets[node] = newEdges.size;
+
+                buffer.clear();
+                this.neighbours(node, buffer);
+                Arrays.sort(buffer.values, 0, buffer.size);
+                newEdges.addAll(buffer.values, 0, buffer.size);
+            }
+            newOffsets[nodeCount] = newEdges.size;
+
+            this.offsets = newOffsets;
+            this.edges = newEdges.toArray();
+            this.added = new IntList[0];
+            this.removed.clear();
+            this.deltaSize = 0;
+        }
+    }
+
+    /**
+     * Growable int array
+     */
+    static final class IntList {
+        int[] values = new int[8];
+        int size = 0;
+
+        void add(int value) {
+            if(this.size == this.values.length) {
+                this.values = Arrays.copyOf(this.values, this.size * 2);
+            }
+            this.values[this.size++] = value;
+        }
+
+        void addAll(int[] source, int from, int to) {
+            int length = to - from;
+            if(this.size + length > this.values.length) {
+                this.values = Arrays.copyOf(this.values,
+                        Math.max(this.size + length, this.values.length * 2));
+            }
+            System.arraycopy(source, from, this.values, this.size, length);
+            this.size += length;
+        }
+
+        int indexOf(int value) {
+            for(int i = 0; i < this.size; i++) {
+                if(this.values[i] == value) return i;
+            }
+            return -1;
+        }
+
+        void remove(int index) {
+            System.arraycopy(this.values, index + 1, this.values, index, this.size - index - 1);
+            this.size--;
+        }
+
+        void clear() {
+            this.size = 0;
+        }
+
+        int get(int index) {
+            return this.values[index];
+        }
+
+        int size() {
+            return this.size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(this.values, this.size);
+        }
+    }
+}
@@ -0,0 +1,433 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import net.sharkfw.knowledgeBase.SemanticTag;
+import net.sharkfw.knowledgeBase.geom.Envelope;
+
+/**
+ * R-tree of semantic tags indexed by the bounding box of their geometry.
+ *
+ * Nodes are split quadratically (Guttman). Underflowing nodes are dissolved
+ * on removal and their tags are inserted again. A whole set of tags is
+ * loaded bottom up (sort tile recursive) which produces well filled nodes.
+ *
+ * Tags without a geometry are kept aside - they are no part of any
+ * spatial query.
+ *
+ * Not thread safe.
+ *
+ * @author thsc
+ */
+final class SpatialRTree {
+
+    static final int MAX_ENTRIES = 16;
+    static final int MIN_ENTRIES = 6;
+
+    private static final class Node {
+        final boolean leaf;
+        final Envelope[] boxes = new Envelope[MAX_ENTRIES + 1];
+        // tags in leafs - nodes otherwise
+        final Object[] entries = new Object[MAX_ENTRIES + 1];
+        int size = 0;
+        Node parent;
+
+        Node(boolean leaf) {
+            this.leaf = leaf;
+        }
+
+        void add(Envelope box, Object entry) {
+            this.boxes[this.size] = box;
+            this.entries[this.size] = entry;
+            this.size++;
+            if(entry instanceof Node) {
+                ((Node) entry).parent = this;
+            }
+        }
+
+        void remove(int i) {
+            this.size--;
+            this.boxes[i] = this.boxes[this.size];
+            this.entries[i] = this.entries[this.size];
+            this.boxes[this.size] = null;
+            this.entries[this.size] = null;
+        }
+
+        int indexOf(Object entry) {
+            for(int i = 0; i < this.size; i++) {
+                if(this.entries[i] == entry) return i;
+            }
+            return -1;
+        }
+
+        Envelope box() {
+            Envelope box = this.boxes[0];
+            for(int i = 1; i < this.size; i++) {
+                box = box.union(this.boxes[i]);
+            }
+            return box;
+        }
+    }
+
+    // leaf of each indexed tag
+    private final IdentityHashMap<SemanticTag, Node> leafs = new IdentityHashMap<>();
+    private final List<SemanticTag> unbounded = new ArrayList<>();
+    private Node root = new Node(true);
+
+    int size() {
+        return this.leafs.size() + this.unbounded.size();
+    }
+
+    void clear() {
+        this.leafs.clear();
+        this.unbounded.clear();
+        this.root = new Node(true);
+    }
+
+    /**
+     * @param box bounding box of tag geometry - null if tag has no geometry
+     */
+    void insert(SemanticTag tag, Envelope box) {
+        if(this.leafs.containsKey(tag) || this.unbounded.contains(tag)) return;
+
+        if(box == null) {
+            this.unbounded.add(tag);
+            return;
+        }
+
+        Node leaf = this.chooseLeaf(box);
+        leaf.add(box, tag);
+        this.leafs.put(tag, leaf);
+        this.adjust(leaf);
+    }
+
+    /**
+     * @return false if tag isn't in this tree
+     */
+    boolean remove(SemanticTag tag) {
+        Node leaf = this.leafs.remove(tag);
+        if(leaf == null) {
+            for(int i = 0; i < this.unbounded.size(); i++) {
+                if(this.unbounded.get(i) == tag) {
+                    this.unbounded.remove(i);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        leaf.remove(leaf.indexOf(tag));
+        this.condense(leaf);
+        return true;
+    }
+
+    /**
+     * Adds all tags whose bounding box intersects box.
+     */
+    void search(Envelope box, List<SemanticTag> result) {
+        if(this.root.size == 0) return;
+
+        List<Node> stack = new ArrayList<>();
+        stack.add(this.root);
+        while(!stack.isEmpty()) {
+            Node node = stack.remove(stack.size() - 1);
+            for(int i = 0; i < node.size; i++) {
+                if(!node.boxes[i].intersects(box)) continue;
+
+                if(node.leaf) {
+                    result.add((SemanticTag) node.entries[i]);
+                } else {
+                    stack.add((Node) node.entries[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds all tags without geometry.
+     */
+    void unbounded(List<SemanticTag> result) {
+        result.addAll(this.unbounded);
+    }
+
+    /**
+     * Replaces content of this tree. Boxes can contain null for tags
+     * without geometry.
+     */
+    void load(List<SemanticTag> tags, List<Envelope> boxes) {
+        this.clear();
+
+        List<Object> entries = new ArrayList<>();
+        List<Envelope> entryBoxes = new ArrayList<>();
+        for(int i = 0; i < tags.size(); i++) {
+            SemanticTag tag = tags.get(i);
+            Envelope box = boxes.get(i);
+            if(box == null) {
+                if(!this.unbounded.contains(tag)) this.unbounded.add(tag);
+            } else if(!this.leafs.containsKey(tag)) {
+                // mark as indexed - leaf is set while packing
+                this.leafs.put(tag, this.root);
+                entries.add(tag);
+                entryBoxes.add(box);
+            }
+        }
+
+        if(entries.isEmpty()) return;
+
+        boolean leaf = true;
+        while(true) {
+            List<Node> nodes = this.pack(entries, entryBoxes, leaf);
+            if(nodes.size() == 1) {
+                this.root = nodes.get(0);
+                this.root.parent = null;
+                return;
+            }
+
+            entries = new ArrayList<Object>(nodes);
+            entryBoxes = new ArrayList<>();
+            for(Node node : nodes) {
+                entryBoxes.add(node.box());
+            }
+            leaf = false;
+        }
+    }
+
+    /**
+     * sort tile recursive - entries are sorted into vertical slices by x,
+     * each slice is cut into nodes by y
+     */
+    private List<Node> pack(List<Object> entries, final List<Envelope> boxes, boolean leaf) {
+        int n = entries.size();
+        Integer[] order = new Integer[n];
+        for(int i = 0; i < n; i++) order[i] = i;
+
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Double.compare(boxes.get(a).getCenterX(), boxes.get(b).getCenterX());
+            }
+        });
+
+        int nodeNumber = (n + MAX_ENTRIES - 1) / MAX_ENTRIES;
+        int sliceNumber = (int) Math.ceil(Math.sqrt(nodeNumber));
+        int sliceSize = sliceNumber * MAX_ENTRIES;
+
+        List<Node> nodes = new ArrayList<>();
+        for(int start = 0; start < n; start += sliceSize) {
+            Integer[] slice = Arrays.copyOfRange(order, start, Math.min(n, start + sliceSize));
+            Arrays.sort(slice, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return Double.compare(boxes.get(a).getCenterY(), boxes.get(b).getCenterY());
+                }
+            });
+
+            for(int i = 0; i < slice.length; i += MAX_ENTRIES) {
+                Node node = new Node(leaf);
+                for(int j = i; j < slice.length && j < i + MAX_ENTRIES; j++) {
+                    Object entry = entries.get(slice[j]);
+                    node.add(boxes.get(slice[j]), entry);
+                    if(leaf) this.leafs.put((SemanticTag) entry, node);
+                }
+                nodes.add(node);
+            }
+        }
+
+        return nodes;
+    }
+
+    private Node chooseLeaf(Envelope box) {
+        Node node = this.root;
+        while(!node.leaf) {
+            int best = 0;
+            double bestEnlargement = Double.POSITIVE_INFINITY;
+            double bestArea = Double.POSITIVE_INFINITY;
+            for(int i = 0; i < node.size; i++) {
+                double enlargement = node.boxes[i].enlargement(box);
+                double area = node.boxes[i].area();
+                if(enlargement < bestEnlargement
+                        || (enlargement == bestEnlargement && area < bestArea)) {
+                    best = i;
+                    bestEnlargement = enlargement;
+                    bestArea = area;
+                }
+            }
+            node = (Node) node.entries[best];
+        }
+        return node;
+    }
+
+    /**
+     * splits overflowing nodes and refreshes boxes up to the root
+     */
+    private void adjust(Node node) {
+        while(node != null) {
+            Node sibling = node.size > MAX_ENTRIES ? this.split(node) : null;
+            Node parent = node.parent;
+
+            if(parent == null) {
+                if(sibling != null) {
+                    Node newRoot = new Node(false);
+                    newRoot.add(node.box(), node);
+                    newRoot.add(sibling.box(), sibling);
+                    this.root = newRoot;
+                }
+                return;
+            }
+
+            parent.boxes[parent.indexOf(node)] = node.box();
+            if(sibling != null) {
+                parent.add(sibling.box(), sibling);
+            }
+            node = parent;
+        }
+    }
+
+    /**
+     * quadratic split - node keeps one group, returned sibling the other
+     */
+    private Node split(Node node) {
+        int n = node.size;
+        Envelope[] boxes = Arrays.copyOf(node.boxes, n);
+        Object[] entries = Arrays.copyOf(node.entries, n);
+
+        // seeds waste most area if grouped together
+        int seedA = 0, seedB = 1;
+        double worst = Double.NEGATIVE_INFINITY;
+        for(int i = 0; i < n; i++) {
+            for(int j = i + 1; j < n; j++) {
+                double waste = boxes[i].union(boxes[j]).area()
+                        - boxes[i].area() - boxes[j].area();
+                if(waste > worst) {
+                    worst = waste;
+                    seedA = i;
+                    seedB = j;
+                }
+            }
+        }
+
+        Arrays.fill(node.boxes, null);
+        Arrays.fill(node.entries, null);
+        node.size = 0;
+        Node sibling = new Node(node.leaf);
+        sibling.parent = node.parent;
+
+        this.assign(node, boxes[seedA], entries[seedA]);
+        this.assign(sibling, boxes[seedB], entries[seedB]);
+        Envelope boxA = boxes[seedA], boxB = boxes[seedB];
+
+        boolean[] assigned = new boolean[n];
+        assigned[seedA] = assigned[seedB] = true;
+        int remaining = n - 2;
+
+        while(remaining > 0) {
+            if(node.size + remaining == MIN_ENTRIES || sibling.size + remaining == MIN_ENTRIES) {
+                Node target = node.size + remaining == MIN_ENTRIES ? node : sibling;
+                for(int i = 0; i < n; i++) {
+                    if(!assigned[i]) this.assign(target, boxes[i], entries[i]);
+                }
+                return sibling;
+            }
+
+            // entry with strongest preference for one group
+            int next = -1;
+            double maxDifference = -1;
+            for(int i = 0; i < n; i++) {
+                if(assigned[i]) continue;
+                double difference = Math.abs(boxA.enlargement(boxes[i]) - boxB.enlargement(boxes[i]));
+                if(difference > maxDifference) {
+                    maxDifference = difference;
+                    next = i;
+                }
+            }
+
+            double enlargementA = boxA.enlargement(boxes[next]);
+            double enlargementB = boxB.enlargement(boxes[next]);
+            boolean toA;
+            if(enlargementA != enlargementB) {
+                toA = enlargementA < enlargementB;
+            } else if(boxA.area() != boxB.area()) {
+                toA = boxA.area() < boxB.area();
+            } else {
+                toA = node.size <= sibling.size;
+            }
+
+            if(toA) {
+                this.assign(node, boxes[next], entries[next]);
+                boxA = boxA.union(boxes[next]);
+            } else {
+                this.assign(sibling, boxes[next], entries[next]);
+                boxB = boxB.union(boxes[next]);
+            }
+            assigned[next] = true;
+            remaining--;
+        }
+
+        return sibling;
+    }
+
+    private void assign(Node node, Envelope box, Object entry) {
+        node.add(box, entry);
+        if(node.leaf) {
+            this.leafs.put((SemanticTag) entry, node);
+        }
+    }
+
+    /**
+     * dissolves underflowing nodes on the path to the root and inserts
+     * their tags again
+     */
+    private void condense(Node node) {
+        List<SemanticTag> orphans = new ArrayList<>();
+
+        while(node.parent != null) {
+            Node parent = node.parent;
+            int i = parent.indexOf(node);
+            if(node.size < MIN_ENTRIES) {
+                parent.remove(i);
+                this.collect(node, orphans);
+            } else {
+                parent.boxes[i] = node.box();
+            }
+            node = parent;
+        }
+
+        // shrink tree
+        while(!this.root.leaf && this.root.size == 1) {
+            this.root = (Node) this.root.entries[0];
+            this.root.parent = null;
+        }
+        if(!this.root.leaf && this.root.size == 0) {
+            this.root = new Node(true);
+        }
+
+        for(SemanticTag orphan : orphans) {
+            Node leaf = this.leafs.remove(orphan);
+            Envelope box = leaf.boxes[leaf.indexOf(orphan)];
+            this.insert(orphan, box);
+        }
+    }
+
+    private void collect(Node node, List<SemanticTag> tags) {
+        for(int i = 0; i < node.size; i++) {
+            if(node.leaf) {
+                tags.add((SemanticTag) node.entries[i]);
+            } else {
+                this.collect((Node) node.entries[i], tags);
+            }
+        }
+    }
+
+    /**
+     * @return all tags - for tests
+     */
+    List<SemanticTag> tags() {
+        List<SemanticTag> tags = new ArrayList<>(this.leafs.keySet());
+        tags.addAll(this.unbounded);
+        return Collections.unmodifiableList(tags);
+    }
+}
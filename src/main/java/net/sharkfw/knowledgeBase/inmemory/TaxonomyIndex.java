@@ -0,0 +1,325 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import net.sharkfw.knowledgeBase.*;
+
+/**
+ * Reachability index of a taxonomy.
+ *
+ * Tags are numbered in pre order of a depth first walk along their super
+ * tags. Each tag keeps number and size of its sub tree. Tag A is an
+ * ancestor of tag B if pre(A) &lt; pre(B) &lt; pre(A) + size(A). Sub trees are
+ * ranges in pre order - fragments with sub tags are range scans.
+ *
+ * The index is built lazily in linear time and dropped with each change.
+ * Added or removed tags and changed super tags change the version of the
+ * tag storage. Tags inform the storage they were added to last. Snapshots
+ * share tags with their origin and are not indexed.
+ *
+ * @author thsc
+ */
+final class TaxonomyIndex {
+
+    /**
+     * Ancestor queries are answered by walking super tags until the
+     * index was asked that often without any change in between.
+     */
+    static final int MIN_QUERIES = 8;
+
+    /**
+     * Must be called whenever a super tag predicate of tag is set or removed.
+     */
+    static void hierarchyChanged(SemanticTag tag) {
+        if(tag instanceof InMemoSemanticTag) {
+            InMemoGenericTagStorage<?> storage = ((InMemoSemanticTag) tag).getStorage();
+            if(storage != null) {
+                storage.hierarchyChanged();
+            }
+        }
+    }
+
+    private final InMemoGenericTagStorage<?> storage;
+
+    private volatile Labels labels;
+
+    private int queryVersion = -1;
+    private int queries = 0;
+
+    TaxonomyIndex(InMemoGenericTagStorage<?> storage) {
+        this.storage = storage;
+    }
+
+    boolean isIndexOf(InMemoGenericTagStorage<?> storage) {
+        return this.storage == storage;
+    }
+
+    /**
+     * @return labels of current taxonomy - built if necessary
+     */
+    Labels labels() {
+        int version = this.storage.getVersion();
+
+        Labels l = this.labels;
+        if(l != null && l.version == version) {
+            return l;
+        }
+
+        synchronized(this) {
+            l = this.labels;
+            if(l == null || l.version != version) {
+                l = new Labels(this.storage, version);
+                this.labels = l;
+            }
+            return l;
+        }
+    }
+
+    /**
+     * @return labels if they exist or enough queries were made
+     * since last change, null otherwise
+     */
+    private synchronized Labels labelsForQuery() {
+        int version = this.storage.getVersion();
+
+        if(version != this.queryVersion) {
+            this.queryVersion = version;
+            this.queries = 0;
+        }
+
+        Labels l = this.labels;
+        if(l != null && l.version == version) {
+            return l;
+        }
+
+        if(++this.queries < MIN_QUERIES) return null;
+
+        return this.labels();
+    }
+
+    /**
+     * @param root
+     * @param tag
+     * @return whether tag is a (transitive) sub tag of root or null if the
+     * index cannot tell - super tags must be walked in that case.
+     */
+    Boolean isSubTag(TXSemanticTag root, TXSemanticTag tag) {
+        if(SharkCSAlgebra.isAny(root)) return null;
+
+        Labels l = this.labelsForQuery();
+        if(l == null) return null;
+
+        int t = l.pre(tag);
+        if(t < 0 || l.detached(t)) return null;
+
+        int r = l.pre(root);
+        if(r >= 0 && l.isAncestor(r, t)) return true;
+
+        // identical tags with other sis
+        String[] sis = root.getSI();
+        if(sis == null) return false;
+        for(String si : sis) {
+            try {
+                r = l.pre((SemanticTag) this.storage.getSemanticTag(si));
+            }
+            catch(SharkKBException e) {
+                r = -1;
+            }
+            if(r >= 0 && l.isAncestor(r, t)) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Pre order labels of a taxonomy. Immutable after construction.
+     */
+    static final class Labels {
+        final int version;
+
+        private final IdentityHashMap<SemanticTag, Integer> ids;
+
+        // pre order number by id
+        private final int[] pre;
+
+        // by pre order number
+        private final TXSemanticTag[] byPre;
+        private final int[] parent;
+        private final int[] size;
+        private final int[] level;
+        private final boolean[] detached;
+
+        private final List<TXSemanticTag> roots;
+
+        Labels(InMemoGenericTagStorage<?> storage, int version) {
+            this.version = version;
+
+            ArrayList<TXSemanticTag> tags = new ArrayList<>();
+            for(SemanticTag tag : storage.tagList()) {
+                if(tag instanceof TXSemanticTag) {
+                    tags.add((TXSemanticTag) tag);
+                }
+            }
+
+            int n = tags.size();
+            this.ids = new IdentityHashMap<>(n);
+            for(int i = 0; i < n; i++) {
+                this.ids.put(tags.get(i), i);
+            }
+
+            this.pre = new int[n];
+            this.byPre = new TXSemanticTag[n];
+            this.parent = new int[n];
+            this.size = new int[n];
+            this.level = new int[n];
+            this.detached = new boolean[n];
+            this.roots = new ArrayList<>();
+
+            // by id while walking
+            boolean[] detachedTag = new boolean[n];
+
+            boolean hide = storage.hidesTags();
+
+            // parents - only super tags of this storage count
+            int[] parent = new int[n];
+            int[] childNumber = new int[n + 1];
+            for(int i = 0; i < n; i++) {
+                TXSemanticTag tag = tags.get(i);
+                TXSemanticTag superTag = tag.getSuperTag();
+                parent[i] = -1;
+                if(superTag == null) {
+                    if(!hide || !tag.hidden()) {
+                        this.roots.add(tag);
+                    }
+                } else {
+                    Integer p = this.ids.get(superTag);
+                    if(p != null) {
+                        parent[i] = p;
+                        childNumber[p + 1]++;
+                    } else {
+                        // super tag is not part of this taxonomy
+                        detachedTag[i] = true;
+                    }
+                }
+            }
+
+            // children in csr arrays
+            for(int i = 0; i < n; i++) {
+                childNumber[i + 1] += childNumber[i];
+            }
+            int[] children = new int[childNumber[n]];
+            int[] fill = new int[n];
+            for(int i = 0; i < n; i++) {
+                if(parent[i] >= 0) {
+                    children[childNumber[parent[i]] + fill[parent[i]]++] = i;
+                }
+            }
+
+            // depth first walks - roots first, remaining tags are in cycles
+            boolean[] visited = new boolean[n];
+            int[] stack = new int[n];
+            int[] next = new int[n];
+            int counter = 0;
+            for(int pass = 0; pass < 2; pass++) {
+                for(int start = 0; start < n; start++) {
+                    if(visited[start]) continue;
+                    if(pass == 0 && (parent[start] >= 0 || detachedTag[start])) continue;
+
+                    boolean detach = detachedTag[start] || pass == 1;
+
+                    int top = 0;
+                    stack[top] = start;
+                    next[start] = childNumber[start];
+                    visited[start] = true;
+                    this.pre[start] = counter;
+                    this.byPre[counter] = tags.get(start);
+                    this.parent[counter] = -1;
+                    this.level[counter] = 0;
+                    this.detached[counter++] = detach;
+
+                    while(top >= 0) {
+                        int node = stack[top];
+                        if(next[node] < childNumber[node + 1]) {
+                            int child = children[next[node]++];
+                            if(visited[child]) continue;
+
+                            int nodePre = this.pre[node];
+                            visited[child] = true;
+                            this.pre[child] = counter;
+                            this.byPre[counter] = tags.get(child);
+                            this.parent[counter] = nodePre;
+                            this.level[counter] = this.level[nodePre] + 1;
+                            this.detached[counter++] = detach;
+
+                            next[child] = childNumber[child];
+                            stack[++top] = child;
+                        } else {
+                            this.size[this.pre[node]] = counter - this.pre[node];
+                            top--;
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return pre order number of tag or -1 if tag isn't part of
+         * the taxonomy
+         */
+        int pre(SemanticTag tag) {
+            if(tag == null) return -1;
+            Integer id = this.ids.get(tag);
+            return id == null ? -1 : this.pre[id];
+        }
+
+        /**
+         * @return true if tag with pre order number ancestor is a
+         * (transitive) super tag of tag with pre order number tag
+         */
+        boolean isAncestor(int ancestor, int tag) {
+            return ancestor < tag && tag < ancestor + this.size[ancestor];
+        }
+
+        /**
+         * @return tags without super tag - hidden tags excluded if
+         * storage hides them
+         */
+        List<TXSemanticTag> roots() {
+            return this.roots;
+        }
+
+        /**
+         * @return true if super tags of that tag leave the taxonomy or
+         * end in a cycle
+         */
+        boolean detached(int pre) {
+            return this.detached[pre];
+        }
+
+        TXSemanticTag tag(int pre) {
+            return this.byPre[pre];
+        }
+
+        /**
+         * @return pre order number of super tag or -1
+         */
+        int parent(int pre) {
+            return this.parent[pre];
+        }
+
+        /**
+         * @return number of tags in sub tree including tag itself
+         */
+        int size(int pre) {
+            return this.size[pre];
+        }
+
+        /**
+         * @return distance to root of its tree
+         */
+        int level(int pre) {
+            return this.level[pre];
+        }
+    }
+}
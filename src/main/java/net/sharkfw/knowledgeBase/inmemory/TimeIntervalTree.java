@@ -0,0 +1,194 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import net.sharkfw.knowledgeBase.TimeSemanticTag;
+
+/**
+ * Interval tree of time semantic tags.
+ *
+ * It is a treap ordered by start of period. Each node keeps the latest
+ * end within its sub tree. Sub trees ending before a period can be
+ * skipped - overlap queries take O(log n + k) on average.
+ *
+ * Not thread safe.
+ *
+ * @author thsc
+ */
+final class TimeIntervalTree {
+
+    private static final class Node {
+        final TimeSemanticTag tag;
+        final long from;
+        final long end;
+        final long number;
+        final int priority;
+
+        long maxEnd;
+        Node left, right;
+
+        Node(TimeSemanticTag tag, long number, int priority) {
+            this.tag = tag;
+            this.from = tag.getFrom();
+            this.end = TimeIntervalTree.end(tag);
+            this.number = number;
+            this.priority = priority;
+            this.maxEnd = this.end;
+        }
+
+        /**
+         * order by start - insertion order makes it unique
+         */
+        boolean before(Node other) {
+            if(this.from != other.from) return this.from < other.from;
+            return this.number < other.number;
+        }
+
+        void update() {
+            long max = this.end;
+            if(this.left != null && this.left.maxEnd > max) max = this.left.maxEnd;
+            if(this.right != null && this.right.maxEnd > max) max = this.right.maxEnd;
+            this.maxEnd = max;
+        }
+    }
+
+    private final IdentityHashMap<TimeSemanticTag, Node> nodes = new IdentityHashMap<>();
+    private final Random random = new Random();
+    private Node root = null;
+    private long number = 0;
+
+    /**
+     * @return end of period - from + duration
+     */
+    static long end(TimeSemanticTag tag) {
+        long end = tag.getFrom() + tag.getDuration();
+        // overflow
+        return end < tag.getFrom() ? Long.MAX_VALUE : end;
+    }
+
+    int size() {
+        return this.nodes.size();
+    }
+
+    void clear() {
+        this.nodes.clear();
+        this.root = null;
+    }
+
+    void insert(TimeSemanticTag tag) {
+        if(this.nodes.containsKey(tag)) return;
+
+        Node node = new Node(tag, this.number++, this.random.nextInt());
+        this.nodes.put(tag, node);
+        this.root = insert(this.root, node);
+    }
+
+    /**
+     * @return false if tag isn't in this tree
+     */
+    boolean remove(TimeSemanticTag tag) {
+        Node node = this.nodes.remove(tag);
+        if(node == null) return false;
+
+        this.root = remove(this.root, node);
+        return true;
+    }
+
+    /**
+     * Adds all tags whose period overlaps [from, end] - bounds included.
+     * Tags are added ordered by start of period.
+     */
+    void overlapping(long from, long end, List<TimeSemanticTag> result) {
+        overlapping(this.root, from, end, result);
+    }
+
+    private static void overlapping(Node node, long from, long end,
+            List<TimeSemanticTag> result) {
+
+        while(node != null && node.maxEnd >= from) {
+            overlapping(node.left, from, end, result);
+
+            // right sub tree starts even later
+            if(node.from > end) return;
+
+            if(node.end >= from) {
+                result.add(node.tag);
+            }
+
+            node = node.right;
+        }
+    }
+
+    private static Node insert(Node node, Node newNode) {
+        if(node == null) return newNode;
+
+        if(newNode.before(node)) {
+            node.left = insert(node.left, newNode);
+            if(node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, newNode);
+            if(node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+
+        node.update();
+        return node;
+    }
+
+    private static Node remove(Node node, Node toRemove) {
+        if(node == null) return null;
+
+        if(node == toRemove) {
+            return join(node.left, node.right);
+        }
+
+        if(toRemove.before(node)) {
+            node.left = remove(node.left, toRemove);
+        } else {
+            node.right = remove(node.right, toRemove);
+        }
+
+        node.update();
+        return node;
+    }
+
+    /**
+     * all nodes in a are before all nodes in b
+     */
+    private static Node join(Node a, Node b) {
+        if(a == null) return b;
+        if(b == null) return a;
+
+        if(a.priority > b.priority) {
+            a.right = join(a.right, b);
+            a.update();
+            return a;
+        } else {
+            b.left = join(a, b.left);
+            b.update();
+            return b;
+        }
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        node.update();
+        left.right = node;
+        left.update();
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        node.update();
+        right.left = node;
+        right.update();
+        return right;
+    }
+}
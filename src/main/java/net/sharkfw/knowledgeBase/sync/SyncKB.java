@@ -555,6 +555,17 @@ public class SyncKB implements SharkKB{
         return this.targetKB.getStandardFPSet();
     }
 
+    @Override
+    public SharkKB snapshot() throws SharkKBException {
+        return this.targetKB.snapshot();
+    }
+
+    @Override
+    public void mergeKnowledge(Knowledge knowledge) throws SharkKBException {
+        this.changed();
+        this.targetKB.mergeKnowledge(knowledge);
+    }
+
     @Override
     public ASIPInformationSpace mergeInformation(Iterator<ASIPInformation> information, ASIPSpace space) throws SharkKBException {
         this.changed();
@@ -1,6 +1,8 @@
 package net.sharkfw.knowledgeBase.sync;
 
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.Iterator;
 import net.sharkfw.knowledgeBase.FragmentationParameter;
 import net.sharkfw.knowledgeBase.SharkKBException;
 import net.sharkfw.knowledgeBase.SpatialSTSet;
@@ -72,6 +74,25 @@ class SyncSpatialSTSet extends SyncSTSet implements SpatialSTSet {
         return new Iterator2Enumeration(this.wrapSTEnum(this, spatialTags).iterator());
     }
     
+    private Iterator<SpatialSemanticTag> wrapNearest(Iterator<SpatialSemanticTag> tags) {
+        // keep order - nearest first
+        ArrayList<SpatialSemanticTag> wrapped = new ArrayList<>();
+        while(tags.hasNext()) {
+            wrapped.add(this.wrapSyncObject(tags.next()));
+        }
+        return wrapped.iterator();
+    }
+
+    @Override
+    public Iterator<SpatialSemanticTag> nearestTags(double latitude, double longitude, int k) throws SharkKBException {
+        return this.wrapNearest(this.target.nearestTags(latitude, longitude, k));
+    }
+
+    @Override
+    public Iterator<SpatialSemanticTag> nearestTags(SpatialSemanticTag anchor, int k) throws SharkKBException {
+        return this.wrapNearest(this.target.nearestTags(anchor, k));
+    }
+    
     @Override
     SpatialSTSet getChanges(Long since) throws SharkKBException {
         SpatialSTSet changes = InMemoSharkKB.createInMemoSpatialSTSet();
@@ -192,7 +192,7 @@ public class TimestampList {
             try {
                 timestamps.add(new PeerTimestamp(s));
             } catch (SharkKBException ex) {
-                L.d("Could not load timestamp for a peer: " + s + " message: " + ex.getMessage());
+                L.debug(null, "Could not load timestamp for a peer: {} message: {}", s, ex.getMessage());
             }
         }
     }
@@ -50,8 +50,6 @@ public class SyncComponent {
     }
 
     private void sendInvite(String[] addresses) throws SharkKBException {
-        ASIPOutMessage message = this.engine.createASIPOutMessage(addresses, this.owner, null, null, null, null, null, 10);
-
         // Create ASIPInterest
         STSet topicSTSet = InMemoSharkKB.createInMemoSTSet();
         STSet typeSTSet = InMemoSharkKB.createInMemoSTSet();
@@ -66,6 +64,9 @@ public class SyncComponent {
         }
         ASIPInterest interest = InMemoSharkKB.createInMemoASIPInterest(topicSTSet, typeSTSet, this.owner, approverSTSet, members, null, null, direction);
 
+        // create message last - it holds a pooled connection until sent
+        ASIPOutMessage message = this.engine.createASIPOutMessage(addresses, this.owner, null, null, null, null, null, 10);
+
         // TODO expose Thread???
         // TODO send Invitation again if not accepted?
         message.expose(interest);
@@ -37,7 +37,7 @@ public class SyncInviteKP extends KnowledgePort {
         SemanticTag inviteTag = interest.getTypes().getSemanticTag(SyncManager.SHARK_SYNC_INVITE_TYPE_SI);
         if(inviteTag==null) return;
 
-        L.d(this.se.getOwner().getName() + " received an Invite from " + interest.getSender().getName(), this);
+        L.debug(this, "{} received an Invite from {}", this.se.getOwner().getName(), interest.getSender().getName());
 
         // TODO is sender in whitelist?
         // is uniqueName accepted? check if I already know it!
@@ -40,7 +40,7 @@ public class SyncMergeKP extends ContentPort {
             return false;
 
 
-        L.d(this.se.getOwner().getName() + " received a Merge from " + message.getSender().getName(), this);
+        L.debug(this, "{} received a Merge from {}", this.se.getOwner().getName(), message.getSender().getName());
 
         SyncComponent component = syncManager.getComponentByName(message.getTopic());
 
@@ -52,7 +52,7 @@ public class SyncOfferKP extends KnowledgePort {
             
             if(st != null && peer != null) {
 
-                L.d(this.se.getOwner().getName() + " received an Offer from " + interest.getSender().getName(), this);
+                L.debug(this, "{} received an Offer from {}", this.se.getOwner().getName(), interest.getSender().getName());
 
                 SyncMergePropertyList mergePropertyList = this.syncManager.getMergePropertyList();
 
@@ -130,7 +130,7 @@ public class SyncOfferKP extends KnowledgePort {
                 buf.append(ASIPSerializer.serializeTag(peer));
                 buf.append("{" + Long.toString(lastseen) + "}");
             }
-            L.d("write buf: " + buf.toString());
+            L.debug(null, "write buf: {}", buf);
             this.propertyHolder.setProperty(LAST_SEEN_PROPERTY_NAME, buf.toString());
         } catch (Exception ex) {
             L.e("couldn't write last seen entries for sync - critical", this);
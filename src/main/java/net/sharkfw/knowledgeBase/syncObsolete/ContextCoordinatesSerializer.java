@@ -89,7 +89,7 @@ public class ContextCoordinatesSerializer {
                 cp.setVersion(extractVersion(substr));
                 deserialized.add(cp);
             } catch (IllegalArgumentException | SharkKBException e) {
-                L.e("Context coordinates deserialization error: " + e);
+                L.error(null, "Context coordinates deserialization error: {}", e);
                 continue;
             }
             // Add one to index so we don't find that exact same tag again
@@ -108,7 +108,7 @@ public class ContextCoordinatesSerializer {
      */
     protected static ContextCoordinates extractCC(String s) throws IllegalArgumentException, SharkKBException {
         if (!s.startsWith(startTag(ITEM_TAG)) || !s.endsWith(endTag(ITEM_TAG))) {
-            L.d("extractCC in ContextCoordinatesSerializer: parameter does not begin and end with item tag: \n" + s);
+            L.debug(null, "extractCC in ContextCoordinatesSerializer: parameter does not begin and end with item tag: \n{}", s);
             throw new IllegalArgumentException("extractCC in ContextCoordinatesSerializer: parameter does not begin and end with item tag: \n" + s);
         }
                 
@@ -131,7 +131,7 @@ public class ContextCoordinatesSerializer {
      */
     protected static String extractVersion(String s) throws IllegalArgumentException {
         if (!s.startsWith(startTag(ITEM_TAG)) || !s.endsWith(endTag(ITEM_TAG))) {
-            L.d("extractVersion in ContextCoordinatesSerializer: parameter does not begin and end with item tag: \n" + s);
+            L.debug(null, "extractVersion in ContextCoordinatesSerializer: parameter does not begin and end with item tag: \n{}", s);
             throw new IllegalArgumentException("extractVersion in ContextCoordinatesSerializer: parameter does not begin and end with item tag: \n" + s);
         }
         int start = s.indexOf(startTag(VERSION_TAG)) + startTag(VERSION_TAG).length();
@@ -158,6 +158,16 @@ public class SyncKB implements SharkKB {
         return _localKB.getStandardFPSet();
     }
 
+    @Override
+    public SharkKB snapshot() throws SharkKBException {
+        return _localKB.snapshot();
+    }
+
+    @Override
+    public void mergeKnowledge(Knowledge knowledge) throws SharkKBException {
+        _localKB.mergeKnowledge(knowledge);
+    }
+
     @Override
     public PeerSemanticTag getOwner() {
         return _localKB.getOwner();
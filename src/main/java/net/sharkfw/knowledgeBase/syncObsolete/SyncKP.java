@@ -210,7 +210,7 @@ public class SyncKP extends KnowledgePort implements KnowledgeBaseListener {
                     }
                     List<SyncContextPoint> possibleCCsForPeer = retrieve(_timestamps.getTimestamp(kepConnection.getSender()));
                     this.setStepOffer(possibleCCsForPeer);
-                    L.e(_kb.getOwner().getName() + " sent offer expose.");
+                    L.error(null, "{} sent offer expose.", _kb.getOwner().getName());
                     kepConnection.expose(this.getKEPInterest(), kepConnection.getSender().getAddresses());
                     this.notifyExposeSent(this, this.getKEPInterest());
                 }
@@ -233,7 +233,7 @@ public class SyncKP extends KnowledgePort implements KnowledgeBaseListener {
                         }
                     }
                     this.setStepRequest(remoteCCs);     
-                    L.e(_kb.getOwner().getName() + " sent request expose.");
+                    L.error(null, "{} sent request expose.", _kb.getOwner().getName());
 //                    kepConnection.expose(this.getKEPInterest(), kepConnection.getSender().getAddresses());
                     kepConnection.expose(this.getKEPInterest(), kepConnection.getSender().getAddresses());
                     this.notifyExposeSent(this, this.getKEPInterest());
@@ -266,14 +266,14 @@ public class SyncKP extends KnowledgePort implements KnowledgeBaseListener {
                     this.setStepDefault();
                     
                     _timestamps.resetTimestamp(kepConnection.getSender());
-                    L.e(_kb.getOwner().getName() + " sent insert.");
+                    L.error(null, "{} sent insert.", _kb.getOwner().getName());
                     kepConnection.insert(k, kepConnection.getSender().getAddresses());
 //                    kepConnection.insert(k, (String) null);
                     this.notifyInsertSent(this, k);
                 }
                 // Or something unexpected?
                 else {
-                    L.d("Error in SyncKP Synchronization Protocol: Received unknown property value for protocol state: " + state);
+                    L.debug(null, "Error in SyncKP Synchronization Protocol: Received unknown property value for protocol state: {}", state);
                 }
             }
         }
@@ -334,7 +334,7 @@ public class SyncKP extends KnowledgePort implements KnowledgeBaseListener {
                 kepConnection.expose(this.getKEPInterest());
             }
         } catch(SharkException e){
-            L.d("Error in WifiDirect handler: " + e.getMessage());
+            L.debug(null, "Error in WifiDirect handler: {}", e.getMessage());
         }
     }
    
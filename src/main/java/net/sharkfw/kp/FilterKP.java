@@ -46,6 +46,14 @@ public class FilterKP extends KnowledgePort {
         }
     }
 
+    /**
+     * Expose messages outside the filter are ignored anyway.
+     */
+    @Override
+    public ASIPInterest getRoutingInterest() {
+        return this.filter;
+    }
+
     @Override
     protected void handleInsert(ASIPInMessage message, ASIPConnection asipConnection, ASIPKnowledge asipKnowledge) {
         if(!this.notifiers.isEmpty()){
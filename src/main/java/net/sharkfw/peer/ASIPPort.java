@@ -1,8 +1,10 @@
 package net.sharkfw.peer;
 
+import net.sharkfw.asip.ASIPInterest;
 import net.sharkfw.asip.SharkStub;
 import net.sharkfw.asip.engine.ASIPConnection;
 import net.sharkfw.asip.engine.ASIPInMessage;
+import net.sharkfw.kep.AbstractSharkStub;
 import net.sharkfw.kp.KPListener;
 
 import java.util.List;
@@ -10,6 +12,12 @@ import net.sharkfw.system.L;
 
 /**
  * Created by j4rvis on 22.06.16.
+ * 
+ * Threading: Stubs don't serialize message handling over all ports any 
+ * longer. Messages of different connections are delivered in parallel.
+ * A single port is never entered by two threads at the same time
+ * (see ASIPPortDispatcher) - but different ports are. Ports sharing state
+ * with other ports or with application threads have to synchronize it.
  */
 public abstract class ASIPPort {
 
@@ -17,6 +25,9 @@ public abstract class ASIPPort {
     protected SharkStub sharkStub;
     protected boolean isStarted;
     protected SharkEngine se;
+    
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+    private volatile boolean concurrent = false;
 
     public ASIPPort(SharkEngine se) {
         this.se = se;
@@ -80,6 +91,71 @@ public abstract class ASIPPort {
         this.se.addKP(this);
     }
 
+    /**
+     * By default, ports are called by the thread that received a message. 
+     * Concurrent ports get messages queued and are called by a worker thread.
+     * Several concurrent ports can handle the same message in parallel. Messages
+     * for the same port are still handled one after another. The receiving
+     * thread waits until each port is done with the message - connections are
+     * never read and answered at the same time.
+     * 
+     * @param concurrent true if port shall be called by worker threads
+     * @see ASIPPortDispatcher
+     */
+    public void setConcurrent(boolean concurrent) {
+        this.concurrent = concurrent;
+    }
+    
+    public boolean isConcurrent() {
+        return this.concurrent;
+    }
+    
+    /**
+     * Concurrent ports only: Number of messages waiting to be handled by 
+     * this port. Receiving threads are blocked as long as the queue is full.
+     * Each session waits for its message to be handled - the capacity limits
+     * messages of different sessions. Override to change.
+     * @return queue capacity
+     */
+    public int getQueueCapacity() {
+        return DEFAULT_QUEUE_CAPACITY;
+    }
+
+    /**
+     * Routing hint: Stubs offer messages only to ports which handle that
+     * command. Override if a port ignores some commands.
+     * 
+     * @param command ASIP command, e.g. ASIPMessage.ASIP_EXPOSE
+     * @return true if messages with that command can be handled
+     * @see ASIPPortRoutingIndex
+     */
+    public boolean handlesCommand(int command) {
+        return true;
+    }
+    
+    /**
+     * Routing hint: Expose messages are only offered to this port if its
+     * routing interest can contain the received interest (topics and sender
+     * are checked). Ports must not react on other interests if they declare
+     * a routing interest. Call routingChanged() whenever it changes.
+     * 
+     * @return interest or null (default) if this port wants to see each 
+     * expose message.
+     * @see ASIPPortRoutingIndex
+     */
+    public ASIPInterest getRoutingInterest() {
+        return null;
+    }
+    
+    /**
+     * Tell stub to rebuild its routing index.
+     */
+    protected void routingChanged() {
+        if(this.sharkStub instanceof AbstractSharkStub) {
+            ((AbstractSharkStub) this.sharkStub).routingChanged();
+        }
+    }
+
     /**
      * Has this AbstractKP been started to handle requests?
      * @return <code>true</code> if active , <code>false</code> if stopped.
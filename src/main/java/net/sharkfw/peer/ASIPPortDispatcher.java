@@ -0,0 +1,320 @@
+package net.sharkfw.peer;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.sharkfw.asip.engine.ASIPInMessage;
+import net.sharkfw.system.L;
+
+/**
+ * Delivers incoming messages to ASIP ports.
+ * 
+ * Ports are called in the thread that delivers the message by default. 
+ * Each port is entered by only one thread at a time, but different ports
+ * can handle messages of different connections at the same time.
+ * 
+ * Ports can opt in to concurrent handling (see ASIPPort.setConcurrent()).
+ * Messages for those ports are put into a bounded queue per port and handled 
+ * by a worker pool. Each port still handles its messages one after another in 
+ * order of arrival. All concurrent ports of a message work on it in parallel.
+ * 
+ * The delivering thread always waits until each port has handled the message.
+ * Ports read and answer on the connection of the message - a session must 
+ * not read the next message from that connection before. That's also why
+ * dispatch() can report whether a port actually handled the message.
+ * 
+ * A single session has therefore at most one message in a port queue. The
+ * queue bound only applies across sessions: if many sessions deliver to the
+ * same port at once and its queue is full, further delivering threads wait
+ * until the port catches up (backpressure).
+ * 
+ * After shutdown() no worker threads are started again. Concurrent ports are
+ * called by the delivering thread then, like other ports.
+ * 
+ * @author thsc
+ */
+public class ASIPPortDispatcher {
+    public static final int DEFAULT_WORKERS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    
+    private static final long WORKER_KEEP_ALIVE_SECONDS = 30;
+    
+    private final int workers;
+    private final Map<ASIPPort, PortQueue> queues = new ConcurrentHashMap<>();
+    private ThreadPoolExecutor pool = null;
+    private boolean shutdown = false;
+    
+    public ASIPPortDispatcher() {
+        this(DEFAULT_WORKERS);
+    }
+    
+    /**
+     * @param workers maximum number of threads handling messages of 
+     * concurrent ports
+     */
+    public ASIPPortDispatcher(int workers) {
+        this.workers = workers > 0 ? workers : 1;
+    }
+    
+    /**
+     * Delivers message to each port.
+     * 
+     * @param msg
+     * @param ports ports to be called
+     * @return true if at least one port handled that message
+     */
+    public boolean dispatch(ASIPInMessage msg, Iterator<ASIPPort> ports) {
+        boolean handled = false;
+        List<Delivery> deliveries = null;
+        
+        while(ports.hasNext()) {
+            ASIPPort port = ports.next();
+            
+            if(port.isConcurrent()) {
+                Delivery delivery = this.enqueue(port, msg);
+                if(delivery != null) {
+                    if(deliveries == null) {
+                        deliveries = new ArrayList<>();
+                    }
+                    deliveries.add(delivery);
+                }
+            } else {
+                synchronized(port) {
+                    if(port.handleMessage(msg, msg.getConnection())) {
+                        handled = true;
+                    }
+                }
+            }
+        }
+        
+        if(deliveries != null) {
+            try {
+                for(Delivery delivery : deliveries) {
+                    if(delivery.await()) {
+                        handled = true;
+                    }
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                L.w("interrupted while waiting for concurrent ports", this);
+            }
+        }
+        
+        return handled;
+    }
+    
+    /**
+     * Drops queue of a port which was withdrawn. Messages still waiting in
+     * the queue are handled nevertheless.
+     * @param port 
+     */
+    public void remove(ASIPPort port) {
+        this.queues.remove(port);
+    }
+    
+    /**
+     * Stops worker threads. Messages not yet handled are dropped - threads
+     * waiting for them are released. Later messages are handled by the
+     * delivering thread.
+     */
+    public synchronized void shutdown() {
+        this.shutdown = true;
+        if(this.pool != null) {
+            this.pool.shutdownNow();
+            this.pool = null;
+        }
+        for(PortQueue queue : this.queues.values()) {
+            queue.cancel();
+        }
+        this.queues.clear();
+    }
+    
+    public synchronized boolean isShutdown() {
+        return this.shutdown;
+    }
+    
+    /**
+     * @return delivery to wait for or null if message couldn't be queued
+     */
+    private Delivery enqueue(ASIPPort port, ASIPInMessage msg) {
+        Delivery delivery = new Delivery(msg);
+        
+        PortQueue queue = this.queues.get(port);
+        if(queue == null) {
+            synchronized(this) {
+                if(this.shutdown) {
+                    queue = null;
+                } else {
+                    queue = this.queues.get(port);
+                    if(queue == null) {
+                        queue = new PortQueue(port);
+                        this.queues.put(port, queue);
+                    }
+                }
+            }
+            
+            // no workers any longer - handle it here
+            if(queue == null) {
+                synchronized(port) {
+                    delivery.handle(port);
+                }
+                return delivery;
+            }
+        }
+        
+        
+        // port dispatches a message while handling one - queue would wait for itself
+        if(queue.runner == Thread.currentThread()) {
+            delivery.handle(port);
+            return delivery;
+        }
+        
+        try {
+            queue.put(delivery);
+            return delivery;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            L.w("interrupted while waiting for port queue - message dropped", this);
+            return null;
+        }
+    }
+    
+    /**
+     * @throws RejectedExecutionException after shutdown
+     */
+    private synchronized ThreadPoolExecutor getPool() {
+        if(this.shutdown) {
+            throw new RejectedExecutionException("dispatcher was shut down");
+        }
+        
+        if(this.pool == null) {
+            this.pool = new ThreadPoolExecutor(this.workers, this.workers, 
+                    WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new WorkerThreadFactory());
+            
+            // don't keep idle threads
+            this.pool.allowCoreThreadTimeOut(true);
+        }
+        
+        return this.pool;
+    }
+    
+    /**
+     * A message queued for a port. Completed when the port returned.
+     */
+    private static class Delivery {
+        private final ASIPInMessage msg;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile boolean handled = false;
+        
+        Delivery(ASIPInMessage msg) {
+            this.msg = msg;
+        }
+        
+        void handle(ASIPPort port) {
+            try {
+                this.handled = port.handleMessage(this.msg, this.msg.getConnection());
+            }
+            catch(RuntimeException re) {
+                L.error(this, "port failed handling message: {}", re.getMessage());
+            }
+            finally {
+                this.done.countDown();
+            }
+        }
+        
+        /**
+         * Drops message - e.g. dispatcher was shut down.
+         */
+        void cancel() {
+            this.done.countDown();
+        }
+        
+        boolean await() throws InterruptedException {
+            this.done.await();
+            return this.handled;
+        }
+    }
+    
+    /**
+     * Bounded message queue of a single port. It is scheduled on the worker
+     * pool as long as there are messages - never more than once at a time.
+     */
+    private class PortQueue implements Runnable {
+        private final ASIPPort port;
+        private final BlockingQueue<Delivery> messages;
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+        private volatile Thread runner = null;
+        
+        PortQueue(ASIPPort port) {
+            this.port = port;
+            this.messages = new ArrayBlockingQueue<>(Math.max(1, port.getQueueCapacity()));
+        }
+        
+        void put(Delivery delivery) throws InterruptedException {
+            this.messages.put(delivery);
+            this.schedule();
+        }
+        
+        private void schedule() {
+            if(this.scheduled.compareAndSet(false, true)) {
+                try {
+                    getPool().execute(this);
+                } catch(RejectedExecutionException ree) {
+                    // shut down - nobody will handle those messages
+                    this.scheduled.set(false);
+                    this.cancel();
+                }
+            }
+        }
+        
+        void cancel() {
+            Delivery delivery;
+            while((delivery = this.messages.poll()) != null) {
+                delivery.cancel();
+            }
+        }
+
+        @Override
+        public void run() {
+            this.runner = Thread.currentThread();
+            try {
+                Delivery delivery;
+                while((delivery = this.messages.poll()) != null) {
+                    delivery.handle(this.port);
+                }
+            }
+            finally {
+                this.runner = null;
+                this.scheduled.set(false);
+                
+                // a message could have arrived after last poll
+                if(!this.messages.isEmpty()) {
+                    this.schedule();
+                }
+            }
+        }
+    }
+    
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger number = new AtomicInteger(0);
+        
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "ASIPPort-worker-" + this.number.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package net.sharkfw.peer;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import net.sharkfw.asip.ASIPInterest;
+import net.sharkfw.asip.engine.ASIPInMessage;
+import net.sharkfw.asip.engine.ASIPMessage;
+import net.sharkfw.knowledgeBase.PeerSemanticTag;
+import net.sharkfw.knowledgeBase.SITable;
+import net.sharkfw.knowledgeBase.STSet;
+import net.sharkfw.knowledgeBase.SemanticTag;
+import net.sharkfw.knowledgeBase.SharkCSAlgebra;
+import net.sharkfw.knowledgeBase.SharkKBException;
+import net.sharkfw.system.L;
+
+/**
+ * Pre filter that finds ports which could handle an incoming message
+ * without asking each port.
+ * 
+ * Ports are indexed by the commands they handle (ASIPPort.handlesCommand()).
+ * Ports with a routing interest (ASIPPort.getRoutingInterest()) are 
+ * additionally indexed by subject identifiers of topics and sender of 
+ * that interest. Knowledge ports route by their asip interest unless they
+ * switch it off, see KnowledgePort.setRouteByInterest(). An expose message
+ * is only offered to those ports whose routing interest can contain the
+ * received interest. Ports without routing interest get each message.
+ * 
+ * The index is immutable. Stubs create a new one whenever ports are added,
+ * withdrawn or change their routing interest. Ports are returned in the order
+ * of registration.
+ * 
+ * @author thsc
+ */
+public class ASIPPortRoutingIndex {
+    private static final int[] COMMANDS = new int[] {
+        ASIPMessage.ASIP_EXPOSE, ASIPMessage.ASIP_INSERT, ASIPMessage.ASIP_RAW};
+    
+    private final ASIPPort[] ports;
+    private final BitSet all = new BitSet();
+    private final Map<Integer, BitSet> byCommand = new HashMap<>();
+    
+    // ports without routing interest
+    private final BitSet unrouted = new BitSet();
+    private final BitSet routed = new BitSet();
+    
+    private final BitSet anyTopic = new BitSet();
+    private final Map<String, BitSet> topics = new HashMap<>();
+    
+    private final BitSet anySender = new BitSet();
+    private final Map<String, BitSet> senders = new HashMap<>();
+
+    /**
+     * @param ports registered ports - list isn't changed
+     */
+    public ASIPPortRoutingIndex(List<ASIPPort> ports) {
+        this.ports = ports.toArray(new ASIPPort[ports.size()]);
+        
+        for(int command : COMMANDS) {
+            this.byCommand.put(command, new BitSet());
+        }
+        
+        for(int i = 0; i < this.ports.length; i++) {
+            ASIPPort port = this.ports[i];
+            this.all.set(i);
+            
+            for(int command : COMMANDS) {
+                if(port.handlesCommand(command)) {
+                    this.byCommand.get(command).set(i);
+                }
+            }
+            
+            ASIPInterest interest = port.getRoutingInterest();
+            if(interest == null) {
+                this.unrouted.set(i);
+                continue;
+            }
+            
+            try {
+                this.index(i, interest);
+                this.routed.set(i);
+            }
+            catch(SharkKBException e) {
+                // cannot index that port - offer each message
+                L.warn(this, "cannot index routing interest: {}", e.getMessage());
+                this.unrouted.set(i);
+            }
+        }
+    }
+    
+    private void index(int i, ASIPInterest interest) throws SharkKBException {
+        STSet topicSet = interest.getTopics();
+        if(SharkCSAlgebra.isAny(topicSet)) {
+            this.anyTopic.set(i);
+        } else {
+            Iterator<SemanticTag> tagIter = topicSet.stTags();
+            while(tagIter.hasNext()) {
+                this.add(this.topics, tagIter.next(), i);
+            }
+        }
+        
+        PeerSemanticTag sender = interest.getSender();
+        if(SharkCSAlgebra.isAny(sender)) {
+            this.anySender.set(i);
+        } else {
+            this.add(this.senders, sender, i);
+        }
+    }
+    
+    private void add(Map<String, BitSet> index, SemanticTag tag, int i) {
+        String[] sis = tag.getSI();
+        if(sis == null) return;
+        
+        for(String si : sis) {
+            if(si == null) continue;
+            
+            // sis are compared case insensitive
+            String key = SITable.normalize(si);
+            BitSet bits = index.get(key);
+            if(bits == null) {
+                bits = new BitSet();
+                index.put(key, bits);
+            }
+            bits.set(i);
+        }
+    }
+    
+    private BitSet lookup(Map<String, BitSet> index, BitSet any, SemanticTag tag) {
+        BitSet result = (BitSet) any.clone();
+        String[] sis = tag.getSI();
+        if(sis == null) return result;
+        
+        for(String si : sis) {
+            if(si == null) continue;
+            BitSet bits = index.get(SITable.normalize(si));
+            if(bits != null) {
+                result.or(bits);
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * @return number of indexed ports
+     */
+    public int size() {
+        return this.ports.length;
+    }
+    
+    /**
+     * Returns ports which could handle that message. It's a pre filter: 
+     * Ports still have to check whether they actually handle it.
+     * 
+     * @param msg
+     * @return ports in order of registration
+     */
+    public Iterator<ASIPPort> candidates(ASIPInMessage msg) {
+        int command = msg.getCommand();
+        
+        BitSet handles = this.byCommand.get(command);
+        BitSet result = (BitSet) (handles != null ? handles : this.all).clone();
+        
+        if(command == ASIPMessage.ASIP_EXPOSE && !this.routed.isEmpty()) {
+            BitSet matching = (BitSet) this.routed.clone();
+            
+            try {
+                this.restrict(matching, msg.getInterest());
+            }
+            catch(SharkKBException e) {
+                // cannot decide - offer to each port
+                matching = this.routed;
+            }
+            
+            matching.or(this.unrouted);
+            result.and(matching);
+        }
+        
+        return new PortIterator(this.ports, result);
+    }
+    
+    /**
+     * Removes ports whose routing interest cannot contain that interest.
+     */
+    private void restrict(BitSet matching, ASIPInterest interest) throws SharkKBException {
+        if(interest == null) return;
+        
+        /* each topic of received interest must be in port interest - looking
+         * at one of them is sufficient for a pre filter.
+         */
+        STSet topicSet = interest.getTopics();
+        if(topicSet != null) {
+            Iterator<SemanticTag> tagIter = topicSet.stTags();
+            while(tagIter != null && tagIter.hasNext()) {
+                SemanticTag topic = tagIter.next();
+                if(!SharkCSAlgebra.isAny(topic)) {
+                    matching.and(this.lookup(this.topics, this.anyTopic, topic));
+                    break;
+                }
+            }
+        }
+        
+        PeerSemanticTag sender = interest.getSender();
+        if(!SharkCSAlgebra.isAny(sender)) {
+            matching.and(this.lookup(this.senders, this.anySender, sender));
+        }
+    }
+    
+    private static class PortIterator implements Iterator<ASIPPort> {
+        private final ASIPPort[] ports;
+        private final BitSet selected;
+        private int next;
+
+        PortIterator(ASIPPort[] ports, BitSet selected) {
+            this.ports = ports;
+            this.selected = selected;
+            this.next = selected.nextSetBit(0);
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return this.next >= 0;
+        }
+
+        @Override
+        public ASIPPort next() {
+            if(this.next < 0) {
+                throw new NoSuchElementException();
+            }
+            
+            ASIPPort port = this.ports[this.next];
+            this.next = this.selected.nextSetBit(this.next + 1);
+            return port;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("read only");
+        }
+    }
+}
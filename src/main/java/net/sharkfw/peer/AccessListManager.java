@@ -1,14 +1,15 @@
 package net.sharkfw.peer;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import net.sharkfw.knowledgeBase.PeerSemanticTag;
-import net.sharkfw.knowledgeBase.PropertyHolder;
-import net.sharkfw.knowledgeBase.SharkCSAlgebra;
 import net.sharkfw.knowledgeBase.SharkKBException;
 import net.sharkfw.knowledgeBase.SystemPropertyHolder;
-import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
 import net.sharkfw.system.L;
+import net.sharkfw.system.SharkTaskExecutor;
 import net.sharkfw.system.Util;
 
 /**
@@ -18,82 +19,95 @@ import net.sharkfw.system.Util;
 public class AccessListManager implements WhiteAndBlackListManager {
     private final SystemPropertyHolder ph;
     private final String uniqueName;
-    
+
     public AccessListManager(String uniqueName, SystemPropertyHolder propertyHolder) {
         this.ph = propertyHolder;
         this.uniqueName = uniqueName;
     }
 
-    private ArrayList<PeerSemanticTag> blackList = new ArrayList<>();
-    private ArrayList<PeerSemanticTag> whiteList = new ArrayList<>();
-    
+    private final PeerAccessList blackList = new PeerAccessList();
+    private final PeerAccessList whiteList = new PeerAccessList();
+
     public static final String WHITE_LIST = "SharkCore_whiteList";
     public static final String BLACK_LIST = "SharkCore_blackList";
+    public static final String WHITE_LIST_PREFIXES = "SharkCore_whiteListPrefixes";
+    public static final String BLACK_LIST_PREFIXES = "SharkCore_blackListPrefixes";
     public static final String USE_WHITE_LIST = "SharkCore_useWhiteList";
-    
+
+    /** changes are collected that long before they are persisted */
+    public static final long DEFAULT_PERSIST_DELAY = 1000;
+
+    private long persistDelay = DEFAULT_PERSIST_DELAY;
+    private boolean persistScheduled = false;
+
     /**
      * Add or remove peer to/from blacklist (filter.
-     * @param peer 
-     * @param accept true: peer invitations are accepted and result in a 
+     * @param peer
+     * @param accept true: peer invitations are accepted and result in a
      * invitation notification: false: Invitations are dropped without further
      * comments
      */
     @Override
     public void acceptPeer(PeerSemanticTag peer, boolean accept) {
+        this.put(peer, accept);
+        this.changed();
+    }
+
+    /**
+     * Same as {@link #acceptPeer(PeerSemanticTag, boolean)} for a number of
+     * peers - e.g. a list of known spam peers. Persisted once.
+     * @param peers
+     * @param accept
+     */
+    public void acceptPeers(Collection<PeerSemanticTag> peers, boolean accept) {
+        for(PeerSemanticTag peer : peers) {
+            this.put(peer, accept);
+        }
+        this.changed();
+    }
+
+    private void put(PeerSemanticTag peer, boolean accept) {
         if(accept) {
-            // add to white list
-            this.whiteList.add(InMemoSharkKB.createInMemoCopy(peer));
-            
-            // try to remove from backlist
-            Iterator<PeerSemanticTag> peerIter = this.blackList.iterator();
-            while(peerIter.hasNext()) {
-                PeerSemanticTag blackPeer = peerIter.next();
-                
-                if(SharkCSAlgebra.identical(blackPeer, peer)) {
-                    this.blackList.remove(blackPeer);
-                    return;
-                }
-            }
+            this.whiteList.add(peer);
+            this.blackList.remove(peer);
         } else {
-            // make a copy and add to black list
-            this.blackList.add(InMemoSharkKB.createInMemoCopy(peer));
-            
-            // try to remove from whitelist
-            Iterator<PeerSemanticTag> peerIter = this.whiteList.iterator();
-            while(peerIter.hasNext()) {
-                PeerSemanticTag blackPeer = peerIter.next();
-                
-                if(SharkCSAlgebra.identical(blackPeer, peer)) {
-                    this.whiteList.remove(blackPeer);
-                    return;
-                }
-            }
+            this.blackList.add(peer);
+            this.whiteList.remove(peer);
         }
+    }
 
-        // remember those settings
-        try {
-            this.persist();
-        }
-        catch(SharkKBException skbe) {
-            L.e("cannot save shark net engine status", this);
+    /**
+     * Accept or refuse all peers with an address starting with prefix,
+     * e.g. "tcp://10.0.0."
+     * @param prefix
+     * @param accept
+     */
+    public void acceptAddressPrefix(String prefix, boolean accept) {
+        if(accept) {
+            this.whiteList.addAddressPrefix(prefix);
+            this.blackList.removeAddressPrefix(prefix);
+        } else {
+            this.blackList.addAddressPrefix(prefix);
+            this.whiteList.removeAddressPrefix(prefix);
         }
+        this.changed();
     }
 
     private boolean useWhiteList = false;
-    
+
     /**
      * Trigger what policy is used. This guard manages a white and
      * a black list.
-     * 
+     *
      * Using a white list is more restrictive that using a black list:
-     * 
+     *
      * <ul>
      * <li>Using a whitelist means: Only invitation are excepted which
      * are send from peer who a explicitely allowed to invite this peer.
      * <li>Using a black list means that peer can be set on a black list. Those
      * peers are not allowed to invite.
      * </ul>
-     * 
+     *
      * The difference is for unknown peers: Invitation of unknown peers are
      * accepted with a black list but not with a whitelist
      * @param whiteYes
@@ -102,31 +116,16 @@ public class AccessListManager implements WhiteAndBlackListManager {
     public void useWhiteList(boolean whiteYes) {
         this.useWhiteList = whiteYes;
     }
-    
+
     @Override
     public void useBlackWhiteList(boolean on) {
         this.useWhiteList(!on);
     }
-    
-    private boolean isIn(Iterator<PeerSemanticTag> peerIter, PeerSemanticTag peer) {
-        if(peerIter == null) {
-            return false;
-        }
-        
-        while(peerIter.hasNext()) {
-            PeerSemanticTag pst = peerIter.next();
-            if(SharkCSAlgebra.identical(pst, peer)) {
-                return true;
-            }
-        }
-        
-        return false;
-    }
 
     /**
      * Move to core.SharkEngine soon.
      * @param sender
-     * @return 
+     * @return
      */
     @Override
     public boolean isAccepted(PeerSemanticTag sender) {
@@ -134,69 +133,142 @@ public class AccessListManager implements WhiteAndBlackListManager {
             if(sender == null) {
                 return false;
             }
-            
-            return this.isIn(this.whiteList.iterator(), sender);
+
+            return this.whiteList.contains(sender);
         } else {
             if(sender == null) {
                 return true;
             }
-            return !this.isIn(this.blackList.iterator(), sender);
+            return !this.blackList.contains(sender);
         }
-    }    
-    
+    }
+
     public Iterator<PeerSemanticTag> getWhiteList() {
-        return this.whiteList.iterator();
+        return this.whiteList.getPeers().iterator();
+    }
+
+    public Iterator<PeerSemanticTag> getBlackList() {
+        return this.blackList.getPeers().iterator();
+    }
+
+    /**
+     * Changes are persisted after that delay. Further changes within
+     * that time are persisted with them.
+     * @param millis 0 persists each change immediately
+     */
+    public void setPersistDelay(long millis) {
+        this.persistDelay = millis;
+    }
+
+    private void changed() {
+        if(this.ph == null) return;
+
+        if(this.persistDelay <= 0) {
+            this.persistNow();
+            return;
+        }
+
+        synchronized(this) {
+            if(this.persistScheduled) return;
+            this.persistScheduled = true;
+        }
+
+        try {
+            SharkTaskExecutor.getInstance().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    AccessListManager.this.flush();
+                }
+            }, this.persistDelay, TimeUnit.MILLISECONDS);
+        }
+        catch(RejectedExecutionException ree) {
+            // executor is shut down - nobody would persist later
+            this.flush();
+        }
+    }
+
+    /**
+     * Persists pending changes now. Engines call it when they stop.
+     */
+    public void flush() {
+        synchronized(this) {
+            if(!this.persistScheduled) return;
+            this.persistScheduled = false;
+        }
+
+        this.persistNow();
+    }
+
+    private void persistNow() {
+        // remember those settings
+        try {
+            this.persist();
+        }
+        catch(SharkKBException skbe) {
+            L.e("cannot save shark net engine status", this);
+        }
     }
-    
+
     public void persist() throws SharkKBException {
         if(this.ph != null) {
             // black / white list manager - move to SharkEngine
-            String serializedList = Util.PSTArrayList2String(whiteList);
-            this.ph.setProperty(WHITE_LIST, serializedList);
+            String serializedList = Util.PSTArrayList2String(this.whiteList.getPeers());
+            this.ph.setSystemProperty(WHITE_LIST, serializedList);
 
-            serializedList = Util.PSTArrayList2String(blackList);
+            serializedList = Util.PSTArrayList2String(this.blackList.getPeers());
             this.ph.setSystemProperty(BLACK_LIST, serializedList);
 
+            this.ph.setSystemProperty(WHITE_LIST_PREFIXES,
+                    AccessListManager.joinPrefixes(this.whiteList.getAddressPrefixes()));
+            this.ph.setSystemProperty(BLACK_LIST_PREFIXES,
+                    AccessListManager.joinPrefixes(this.blackList.getAddressPrefixes()));
+
             this.ph.setSystemProperty(USE_WHITE_LIST, Boolean.toString(this.useWhiteList));
-            
+
             // others - move to J2SEAndroidSharkEngine
-            
-            
+
+
         }
     }
-    
+
     public final void refreshStatus() throws SharkKBException {
         if(this.ph != null) {
             // restore white and black list and set guardKP
-            // white list
-            String serializedList = this.ph.getSystemProperty(WHITE_LIST);
-            if(serializedList != null) {
-                try {
-                    this.whiteList = Util.String2PSTArrayList(serializedList);
-                } catch (SharkKBException ex) {
-                    // TODO
-                }
-            }
+            this.restore(this.whiteList, WHITE_LIST, WHITE_LIST_PREFIXES);
+            this.restore(this.blackList, BLACK_LIST, BLACK_LIST_PREFIXES);
 
-            // black list
-            serializedList = this.ph.getSystemProperty(BLACK_LIST);
-            if(serializedList != null) {
-                try {
-                    this.blackList = Util.String2PSTArrayList(serializedList);
-                } catch (SharkKBException ex) {
-                    // TODO
-                }
-            }
+            this.useWhiteList = Boolean.parseBoolean(this.ph.getSystemProperty(USE_WHITE_LIST));
+        }
+    }
+
+    private void restore(PeerAccessList list, String listName, String prefixesName) {
+        list.clear();
 
-            if(this. whiteList == null) {
-                this.whiteList = new ArrayList<PeerSemanticTag>();
+        String serializedList = this.ph.getSystemProperty(listName);
+        if(serializedList != null) {
+            try {
+                for(PeerSemanticTag peer : Util.String2PSTArrayList(serializedList)) {
+                    list.add(peer);
+                }
+            } catch (SharkKBException ex) {
+                // TODO
             }
+        }
 
-            if(this.blackList == null) {
-                this.blackList = new ArrayList<PeerSemanticTag>();
+        String prefixes = this.ph.getSystemProperty(prefixesName);
+        if(prefixes != null && !prefixes.isEmpty()) {
+            for(String prefix : prefixes.split("\n")) {
+                list.addAddressPrefix(prefix);
             }
+        }
+    }
 
-            this.useWhiteList = Boolean.parseBoolean(this.ph.getSystemProperty(USE_WHITE_LIST));
+    private static String joinPrefixes(ArrayList<String> prefixes) {
+        StringBuilder buf = new StringBuilder();
+        for(String prefix : prefixes) {
+            if(buf.length() > 0) buf.append('\n');
+            buf.append(prefix);
         }
+        return buf.toString();
     }
 }
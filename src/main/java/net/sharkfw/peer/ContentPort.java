@@ -25,5 +25,12 @@ public abstract class ContentPort extends ASIPPort {
         return false;
     }
 
+    @Override
+    public boolean handlesCommand(int command) {
+        return command == ASIPMessage.ASIP_EXPOSE ||
+                command == ASIPMessage.ASIP_INSERT ||
+                command == ASIPMessage.ASIP_RAW;
+    }
+
     protected abstract boolean handleRaw(ASIPInMessage message, ASIPConnection connection, InputStream inputStream);
 }
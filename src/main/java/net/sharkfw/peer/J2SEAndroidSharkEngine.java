@@ -413,7 +413,7 @@ public class J2SEAndroidSharkEngine extends SharkEngine {
             try {
                 this.startMail();
             } catch (IOException ex) {
-                L.e("cannot restart e-mail: " + ex.getMessage(), this);
+                L.error(this, "cannot restart e-mail: {}", ex.getMessage());
             }
         }
         
@@ -2,6 +2,7 @@ package net.sharkfw.peer;
 
 import net.sharkfw.asip.SharkStub;
 import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.DigestInputStream;
@@ -249,7 +250,7 @@ public class KEPInMessage extends KEPMessage implements KEPConnection {
         // Read version
 //        L.d("Parsing version", this);
         this.version = is.readUTF8();
-        L.d("parse version: " + this.version, this);
+        L.debug(this, "parse version: {}", this.version);
 
         // Read replyAddress
 //        this.replyAddress = is.readUTF8();
@@ -262,7 +263,7 @@ public class KEPInMessage extends KEPMessage implements KEPConnection {
             exit = true;
 //        	throw new IOException("KEPRequest.parseHeader: no more data to read");
         }
-        L.d("cmd: " + this.cmd, this);
+        L.debug(this, "cmd: {}", this.cmd);
 
         // Read format
         String formatString = is.readUTF8();
@@ -271,7 +272,7 @@ public class KEPInMessage extends KEPMessage implements KEPConnection {
         	exit = true;
             throw new IOException("KEPRequest.parseHeader: no more data to read");
         }
-        L.d("kepFormat: " + this.kFormat, this);
+        L.debug(this, "kepFormat: {}", this.kFormat);
 
       } catch (NumberFormatException nfe) {
         // Can't translate String to number - String broken -> Stream at an end?
@@ -285,7 +286,12 @@ public class KEPInMessage extends KEPMessage implements KEPConnection {
       String siString = this.is.readUTF8(); 
       if(!siString.equalsIgnoreCase("n")) {
           this.remotePeerSI = Utils.deserialize(siString);
-          L.d("remote peer si parsed: " + this.remotePeerSI[0], this);
+          L.debug(this, "remote peer si parsed: {}", this.remotePeerSI[0]);
+
+          // remote peer understands cached session keys in replies
+          if(KEPMessage.speaksThisVersion(this.version)) {
+              this.getSessionKeyCache().setUpgraded(this.remotePeerSI);
+          }
       } // else - no remote peer si.
       
       // signed?
@@ -298,22 +304,38 @@ public class KEPInMessage extends KEPMessage implements KEPConnection {
       
       // encryption?
       String sessionKeyLenString = this.is.readUTF8();
-      L.d("\n session key len: " + sessionKeyLenString, this);
+      L.debug(this, "\n session key len: {}", sessionKeyLenString);
       
       int sessionKeyLen = Integer.parseInt(sessionKeyLenString);
       if(sessionKeyLen > 0) {
           
-        try {
-            // we have an encryption key - convert
-            byte[] sessionKeyBytes = new byte[sessionKeyLen];
-            this.is.getInputStream().read(sessionKeyBytes);
+        // we have an encryption key - convert
+        byte[] sessionKeyBytes = new byte[sessionKeyLen];
+        new DataInputStream(this.is.getInputStream()).readFully(sessionKeyBytes);
+
+        L.printByte(sessionKeyBytes, "session key bytes (received)");
 
-            L.printByte(sessionKeyBytes, "session key bytes (received)");
+        // since KEP 1.1: nonce of the message follows session key
+        this.legacyEncryption = KEPMessage.isVersion1_0(this.version);
+        if(!this.legacyEncryption) {
+            String nonceString = this.is.readUTF8();
+            try {
+                this.nonce = Long.parseLong(nonceString);
+            } catch (NumberFormatException nfe) {
+                throw new IOException("invalid nonce: " + nonceString);
+            }
+        }
 
-            // encrypt
-            Cipher cipher = Cipher.getInstance("RSA");
-            cipher.init(Cipher.UNWRAP_MODE, this.privateKey);
-            this.sessionKey = (SecretKey) cipher.unwrap(sessionKeyBytes, "AES", Cipher.SECRET_KEY);
+        try {
+            if(this.legacyEncryption) {
+                // one session key per message
+                Cipher cipher = Cipher.getInstance("RSA");
+                cipher.init(Cipher.UNWRAP_MODE, this.privateKey);
+                this.sessionKey = (SecretKey) cipher.unwrap(sessionKeyBytes, "AES", Cipher.SECRET_KEY);
+            } else {
+                // decrypt - known session keys are taken from cache
+                this.sessionKey = this.getSessionKeyCache().unwrap(this.privateKey, sessionKeyBytes);
+            }
             this.encrypted = true;
             
 //            System.out.println(">>>>>>>>>>>>>>>> session key encrypted <<<<<<<<<<<<<<<<");
@@ -331,6 +353,8 @@ public class KEPInMessage extends KEPMessage implements KEPConnection {
 }
 
     private SecretKey sessionKey;
+    private boolean legacyEncryption = false;
+    private long nonce;
     private DigestInputStream digestStream = null;
     private VerifyingInputStream sin = null;
     
@@ -338,10 +362,11 @@ public class KEPInMessage extends KEPMessage implements KEPConnection {
         if (this.encryptionLevel != SharkEngine.SecurityLevel.NO
                 && this.sessionKey != null) {
             
-            InputStream decryptingIS = new DecryptingInputStream(
-                    this.is.getInputStream(), this.sessionKey);
-            
-            this.is.set(decryptingIS);
+            try {
+                this.is.set(this.decryptingStream());
+            } catch (IOException ex) {
+                throw new SharkSecurityException(ex.getMessage());
+            }
         }
 
         // we need a valid underSign... later. Keep this.
@@ -373,6 +398,21 @@ public class KEPInMessage extends KEPMessage implements KEPConnection {
         }
     }
     
+    private SessionKeyCache getSessionKeyCache() {
+        return this.se != null ? this.se.getSessionKeyCache() : SessionKeyCache.getDefault();
+    }
+
+    /**
+     * @return stream decrypting the message body - as required by the
+     * version of the message
+     */
+    private InputStream decryptingStream() throws IOException {
+        if(this.legacyEncryption) {
+            return new DecryptingInputStream(this.is.getInputStream(), this.sessionKey);
+        }
+        return new GCMDecryptingInputStream(this.is.getInputStream(), this.sessionKey, this.nonce);
+    }
+
     /**
      * 
      * @return true if signature could be verified or no signature was transmitted
@@ -402,10 +442,7 @@ public class KEPInMessage extends KEPMessage implements KEPConnection {
                     throw new SharkSecurityException("message is encrypted but encrypted messages are not excepted");
                 }
                 
-                InputStream decryptingIS = new DecryptingInputStream(
-                        this.is.getInputStream(), this.sessionKey);
-
-                this.is.set(decryptingIS);
+                this.is.set(this.decryptingStream());
             } else {
                 if(this.encryptionLevel == SecurityLevel.MUST) {
                     // is encrypted but must not be
@@ -452,7 +489,7 @@ public class KEPInMessage extends KEPMessage implements KEPConnection {
             }
         } catch(SharkSecurityException sse) {
               // log 
-              L.d("security exception while reading message:" + sse.getMessage(), this);
+              L.debug(this, "security exception while reading message:{}", sse.getMessage());
               // and finish in case of exception
               throw sse;
         }
@@ -53,6 +53,7 @@ public abstract class KnowledgePort extends ContentPort {
 //    private boolean isStarted = false;
 //    protected ArrayList<KPListener> listeners = new ArrayList();
     private String id = null;
+    private boolean routeByInterest = true;
 //    protected SharkEngine se;
     private PrivateKey privateKey;
     private AccessListManager accessList;
@@ -181,6 +182,48 @@ public abstract class KnowledgePort extends ContentPort {
         } catch (SharkKBException e) {
             this.asipInterest = asipInterest;
         }
+        
+        if(this.routeByInterest) {
+            this.routingChanged();
+        }
+    }
+    
+    /**
+     * Knowledge ports with an asip interest that defines topics or a sender
+     * only see expose messages within that interest. Ports without such an
+     * interest see each expose message. Ports that react on other interests
+     * as well have to switch routing off.
+     * 
+     * @param routeByInterest false if this port shall see each expose message
+     * regardless of its asip interest
+     * @see ASIPPort#getRoutingInterest() 
+     */
+    protected void setRouteByInterest(boolean routeByInterest) {
+        this.routeByInterest = routeByInterest;
+        this.routingChanged();
+    }
+
+    @Override
+    public ASIPInterest getRoutingInterest() {
+        ASIPInterest interest = this.getAsipInterest();
+        if(!this.routeByInterest || interest == null) {
+            return null;
+        }
+        
+        // an interest that restricts nothing would only cost an index entry
+        if(SharkCSAlgebra.isAny(interest.getTopics()) 
+                && SharkCSAlgebra.isAny(interest.getSender())) {
+            return null;
+        }
+        
+        return interest;
+    }
+
+    @Override
+    public boolean handlesCommand(int command) {
+        // see handleRaw()
+        return command == ASIPMessage.ASIP_EXPOSE || 
+                command == ASIPMessage.ASIP_INSERT;
     }
 
 //    /**
@@ -342,14 +385,14 @@ public abstract class KnowledgePort extends ContentPort {
                 try {
                     this.handleInsert(msg, con, msg.getKnowledge());
                 } catch (Exception ex) {
-                    L.e("Error while handling insert request:\n" + ex.getMessage(), this);
+                    L.error(this, "Error while handling insert request:\n{}", ex.getMessage());
                 }
                 break;
             case ASIPMessage.ASIP_EXPOSE:
                 try {
                     this.handleExpose(msg, con, msg.getInterest());
                 } catch (Exception ex) {
-                    L.e("Error while handling expose request:\n" + ex.getMessage(), this);
+                    L.error(this, "Error while handling expose request:\n{}", ex.getMessage());
                 }
                 break;
         }
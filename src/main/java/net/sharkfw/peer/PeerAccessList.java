@@ -0,0 +1,203 @@
+package net.sharkfw.peer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.TreeSet;
+import net.sharkfw.knowledgeBase.PeerSemanticTag;
+import net.sharkfw.knowledgeBase.SITable;
+import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
+
+/**
+ * Set of peers indexed by their normalized subject identifiers. A peer is
+ * in this list if one of its sis is - checking that costs a hash lookup
+ * per si regardless of the list size.
+ *
+ * Address prefixes can be added as well, e.g. "tcp://10.0.0." A peer is
+ * in this list if one of its addresses starts with such a prefix.
+ *
+ * @author thsc
+ */
+public class PeerAccessList {
+
+    // normalized si -> peer
+    private final HashMap<String, PeerSemanticTag> bySI = new HashMap<>();
+    private final Set<PeerSemanticTag> peers =
+            Collections.newSetFromMap(new IdentityHashMap<PeerSemanticTag, Boolean>());
+
+    private final HashSet<String> addressPrefixes = new HashSet<>();
+    // lengths of all prefixes - an address is checked once per length
+    private final TreeSet<Integer> prefixLengths = new TreeSet<>();
+
+    // peers with any si match each peer
+    private int anyPeers = 0;
+
+    /**
+     * Adds a copy of that peer. Entries identical to peer are replaced.
+     * @param peer
+     */
+    public synchronized void add(PeerSemanticTag peer) {
+        if(peer == null) return;
+
+        this.remove(peer);
+
+        PeerSemanticTag copy = InMemoSharkKB.createInMemoCopy(peer);
+        this.peers.add(copy);
+        if(copy.isAny()) {
+            this.anyPeers++;
+        }
+
+        String[] sis = copy.getSI();
+        if(sis != null) {
+            for(String si : sis) {
+                if(si != null) {
+                    this.bySI.put(SITable.normalize(si), copy);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all entries identical to peer.
+     * @param peer
+     * @return true if an entry was removed
+     */
+    public synchronized boolean remove(PeerSemanticTag peer) {
+        if(peer == null) return false;
+
+        boolean removed = false;
+        if(peer.isAny() && this.anyPeers > 0) {
+            // any peers can have no si to look them up by
+            Iterator<PeerSemanticTag> peerIter = this.peers.iterator();
+            while(peerIter.hasNext()) {
+                PeerSemanticTag entry = peerIter.next();
+                if(entry.isAny()) {
+                    this.removeSIs(entry);
+                    peerIter.remove();
+                    this.anyPeers--;
+                    removed = true;
+                }
+            }
+        }
+
+        String[] sis = peer.getSI();
+        if(sis == null) return removed;
+
+        for(String si : sis) {
+            if(si == null) continue;
+
+            PeerSemanticTag entry = this.bySI.get(SITable.normalize(si));
+            if(entry == null) continue;
+
+            this.removeSIs(entry);
+            this.peers.remove(entry);
+            if(entry.isAny()) {
+                this.anyPeers--;
+            }
+            removed = true;
+        }
+
+        return removed;
+    }
+
+    private void removeSIs(PeerSemanticTag entry) {
+        String[] sis = entry.getSI();
+        if(sis == null) return;
+
+        for(String si : sis) {
+            if(si != null) {
+                this.bySI.remove(SITable.normalize(si));
+            }
+        }
+    }
+
+    public synchronized void addAddressPrefix(String prefix) {
+        if(prefix == null || prefix.isEmpty()) return;
+
+        if(this.addressPrefixes.add(prefix)) {
+            this.prefixLengths.add(prefix.length());
+        }
+    }
+
+    public synchronized boolean removeAddressPrefix(String prefix) {
+        if(!this.addressPrefixes.remove(prefix)) return false;
+
+        // keep that length only if another prefix has it
+        for(String other : this.addressPrefixes) {
+            if(other.length() == prefix.length()) return true;
+        }
+        this.prefixLengths.remove(prefix.length());
+
+        return true;
+    }
+
+    /**
+     * @param peer
+     * @return true if peer is identical to an entry or one of its
+     * addresses starts with one of the prefixes
+     */
+    public synchronized boolean contains(PeerSemanticTag peer) {
+        if(peer == null) return false;
+
+        // any matches everything - same as SharkCSAlgebra.identical()
+        if(this.anyPeers > 0 || peer.isAny()) {
+            return !this.peers.isEmpty();
+        }
+
+        String[] sis = peer.getSI();
+        if(sis != null) {
+            for(String si : sis) {
+                if(si != null && this.bySI.containsKey(SITable.normalize(si))) {
+                    return true;
+                }
+            }
+        }
+
+        String[] addresses = peer.getAddresses();
+        if(addresses != null && !this.prefixLengths.isEmpty()) {
+            for(String address : addresses) {
+                if(address == null) continue;
+
+                for(int length : this.prefixLengths) {
+                    if(length > address.length()) break;
+
+                    if(this.addressPrefixes.contains(address.substring(0, length))) {
+                        return true;
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    public synchronized int size() {
+        return this.peers.size();
+    }
+
+    /**
+     * @return copy of all peers
+     */
+    public synchronized ArrayList<PeerSemanticTag> getPeers() {
+        return new ArrayList<>(this.peers);
+    }
+
+    /**
+     * @return copy of all address prefixes
+     */
+    public synchronized ArrayList<String> getAddressPrefixes() {
+        return new ArrayList<>(this.addressPrefixes);
+    }
+
+    public synchronized void clear() {
+        this.bySI.clear();
+        this.peers.clear();
+        this.addressPrefixes.clear();
+        this.prefixLengths.clear();
+        this.anyPeers = 0;
+    }
+}
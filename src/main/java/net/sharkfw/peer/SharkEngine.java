@@ -29,6 +29,7 @@ import net.sharkfw.kep.KEPMessage;
 import net.sharkfw.kep.KEPOutMessage;
 import net.sharkfw.kep.KEPStub;
 import net.sharkfw.kep.KnowledgeSerializer;
+import net.sharkfw.kep.SessionKeyCache;
 import net.sharkfw.kep.SharkProtocolNotSupportedException;
 import net.sharkfw.kep.format.XMLSerializer;
 import net.sharkfw.knowledgeBase.*;
@@ -788,6 +789,48 @@ abstract public class SharkEngine implements WhiteAndBlackListManager {
         this.sessionTimeOut = millis;
     }
 
+    private StreamConnectionPool connectionPool = null;
+
+    /**
+     * Keep outgoing stream connections open and reuse them for further
+     * messages to the same address. Receivers split messages on a stream by
+     * the end of their JSON object (see ASIPInMessage.parse()). Switched off
+     * by default: receivers of older versions split by pauses on the stream
+     * and could mix up messages sent in quick succession.
+     *
+     * @param maxPerPeer maximum number of pooled connections per address
+     * @param idleTimeout milliseconds after which unused connections are closed
+     * @see StreamConnectionPool
+     */
+    public void setConnectionPooling(int maxPerPeer, long idleTimeout) {
+        this.disableConnectionPooling();
+        this.connectionPool = new StreamConnectionPool(maxPerPeer, idleTimeout);
+    }
+
+    /**
+     * Close idle pooled connections and create a new connection for each 
+     * message again.
+     */
+    public void disableConnectionPooling() {
+        if (this.connectionPool != null) {
+            this.connectionPool.closeAll();
+            this.connectionPool = null;
+        }
+    }
+
+    /**
+     * Called after a message was sent over that connection. Pooled 
+     * connections can be used for the next message.
+     *
+     * @param connection
+     */
+    public void releaseConnection(StreamConnection connection) {
+        StreamConnectionPool pool = this.connectionPool;
+        if (pool != null) {
+            pool.release(connection);
+        }
+    }
+
     /**
      * Return whether or not the SharkEngine has any open communication stubs.
      *
@@ -884,17 +927,18 @@ abstract public class SharkEngine implements WhiteAndBlackListManager {
             return;
         }
 
-        ASIPOutMessage response = this.createASIPOutMessage(addresses, recipient);
-
-        if (response != null) {
-            if (interest != null) {
-                response.expose(interest);
-            }
-            if (knowledge != null) {
-                response.insert(knowledge);
-            }
-            if (is != null) {
-                response.raw(is);
+        // pooled connection is given back even if nothing was sent
+        try (ASIPOutMessage response = this.createASIPOutMessage(addresses, recipient)) {
+            if (response != null) {
+                if (interest != null) {
+                    response.expose(interest);
+                }
+                if (knowledge != null) {
+                    response.insert(knowledge);
+                }
+                if (is != null) {
+                    response.raw(is);
+                }
             }
         }
 
@@ -1071,7 +1115,8 @@ abstract public class SharkEngine implements WhiteAndBlackListManager {
         while (addrEnum.hasMoreElements()) {
             String address = (String) addrEnum.nextElement();
 
-            //boolean fromPool = false;
+            boolean fromPool = false;
+            sConn = null;
             try {
                 /*
                  * Check if stub is available
@@ -1085,22 +1130,34 @@ abstract public class SharkEngine implements WhiteAndBlackListManager {
                  */
                 if (protocolStub instanceof StreamStub) {
                     sStub = (StreamStub) protocolStub;
-                    //        sConn = this.kepStub.getConnectionByAddress(address);
-                    //      if(sConn == null) {
+                    StreamConnectionPool pool = this.connectionPool;
+                    if (pool != null) {
+                        sConn = pool.lease(address);
+                        fromPool = sConn != null;
+                    }
+                    if (sConn == null) {
+                        try {
+                            sConn = sStub.createStreamConnection(address);
+                            if(this.connectionListener!=null){
+                                sConn.addConnectionListener(this.connectionListener);
+                            }
+                            if (pool != null) {
+                                pool.add(address, sConn);
+                            }
+                        } catch (RuntimeException re) {
+                            throw new SharkException(re.getMessage(), re.getCause());
+                        } catch (IOException ioe){
+                            ioe.printStackTrace();
+                        }
+                    }
                     try {
-                        sConn = sStub.createStreamConnection(address);
-                        if(this.connectionListener!=null){
-                            sConn.addConnectionListener(this.connectionListener);
+                        message = new ASIPOutMessage(this, sConn, ttl, sender, receiverPeer, receiverSpatial, receiverTime, topic, type);
+                    } finally {
+                        // no message - nobody else gives the connection back
+                        if (message == null && sConn != null) {
+                            this.releaseConnection(sConn);
                         }
-                    } catch (RuntimeException re) {
-                        throw new SharkException(re.getMessage(), re.getCause());
-                    } catch (IOException ioe){
-                        ioe.printStackTrace();
                     }
-                    //    } else {
-                    //  fromPool = true;
-                    //  }
-                    message = new ASIPOutMessage(this, sConn, ttl, sender, receiverPeer, receiverSpatial, receiverTime, topic, type);
                 } else {
                     // TODO MessageStub necessary?
                     mStub = (MessageStub) protocolStub;
@@ -1119,11 +1176,12 @@ abstract public class SharkEngine implements WhiteAndBlackListManager {
 //                spn.printStackTrace();
                 continue;
             } catch (SharkException sse) {
-                L.w("cannot create KEP message: " + sse.getMessage(), this);
+                L.warn(this, "cannot create KEP message: {}", sse.getMessage());
                 continue;
             }
 
-            if (sConn != null /*&& !fromPool*/) {
+            // pooled connections are already read by a session
+            if (sConn != null && !fromPool) {
                 this.asipStub.handleStream(sConn);
             }
 
@@ -1160,7 +1218,7 @@ abstract public class SharkEngine implements WhiteAndBlackListManager {
         Enumeration addrEnum = Util.array2Enum(addresses);
         while (addrEnum.hasMoreElements()) {
             String address = (String) addrEnum.nextElement();
-            L.d("sendKEPInterest: try address:" + address, this);
+            L.debug(this, "sendKEPInterest: try address:{}", address);
             //boolean fromPool = false;
             try {
                 /*
@@ -1203,7 +1261,7 @@ abstract public class SharkEngine implements WhiteAndBlackListManager {
 //                spn.printStackTrace();
                 continue;
             } catch (SharkException sse) {
-                L.w("cannot create KEP message: " + sse.getMessage(), this);
+                L.warn(this, "cannot create KEP message: {}", sse.getMessage());
                 continue;
             }
 
@@ -1357,7 +1415,7 @@ abstract public class SharkEngine implements WhiteAndBlackListManager {
             }
         }
 
-        response.initSecurity(useThisPrivateKey, useThisPublicKey, useThisSI, sign);
+        response.initSecurity(useThisPrivateKey, useThisPublicKey, useThisSI, remotePeerSI, sign);
 
         return response;
     }
@@ -1378,7 +1436,7 @@ abstract public class SharkEngine implements WhiteAndBlackListManager {
             recipientSI = recipientSIs[0];
         }
 
-        L.d("Init security. 1st recipient si is: " + recipientSI, this);
+        L.debug(this, "Init security. 1st recipient si is: {}", recipientSI);
 
         PublicKey publicKey = null;
         String[] sendingPeerSIString = null;
@@ -1425,7 +1483,7 @@ abstract public class SharkEngine implements WhiteAndBlackListManager {
         }
 
         // init request with both key which can be null if level is IF_POSSIBLE
-        msg.initSecurity(useThisPrivateKey, publicKey, sendingPeerSIString, sign);
+        msg.initSecurity(useThisPrivateKey, publicKey, sendingPeerSIString, recipientSIs, sign);
     }
 
     /**
@@ -1508,6 +1566,21 @@ abstract public class SharkEngine implements WhiteAndBlackListManager {
                 L.d("protocol not supported: ", i);
             }
         }
+
+        if (this.connectionPool != null) {
+            this.connectionPool.closeAll();
+        }
+
+        // changes of access lists can still be pending
+        this.accessList.flush();
+
+        // worker threads of concurrent ports
+        if (this.asipStub != null) {
+            this.asipStub.stop();
+        }
+        if (this.kepStub != null) {
+            this.kepStub.stop();
+        }
     }
 
     /**
@@ -1678,7 +1751,7 @@ abstract public class SharkEngine implements WhiteAndBlackListManager {
                 if(mementoString != null) {
                     mementoByte = mementoString.getBytes(STRING_ENCODING);
                 } else {
-                    L.w("memento string was empty for " + portNameString, this);
+                    L.warn(this, "memento string was empty for {}", portNameString);
                 }
                 
                 // create memento
@@ -1705,7 +1778,7 @@ abstract public class SharkEngine implements WhiteAndBlackListManager {
                 | InstantiationException | IllegalAccessException 
                 | IllegalArgumentException | InvocationTargetException 
                 | UnsupportedEncodingException ex) {
-            L.e("could not refresh persisted port: \n" + ex.getClass().getName() + "\n" + ex.getLocalizedMessage(), this);
+            L.error(this, "could not refresh persisted port: \n{}\n{}", ex.getClass().getName(), ex.getLocalizedMessage());
         }
     }
     
@@ -1872,6 +1945,16 @@ abstract public class SharkEngine implements WhiteAndBlackListManager {
         return this.sharkPkiStorage;
     }
 
+    private final SessionKeyCache sessionKeyCache = new SessionKeyCache();
+
+    /**
+     * @return session keys of encrypted messages sent or received by this
+     * engine - reused over all connections
+     */
+    public SessionKeyCache getSessionKeyCache() {
+        return this.sessionKeyCache;
+    }
+
     ////////////////////////////////////////////////////////////////////////
     //                    don't sent information again                    //
     ////////////////////////////////////////////////////////////////////////
@@ -568,7 +568,7 @@ public class StandardKP extends KnowledgePort implements KnowledgeBaseListener {
         try {
             this.refreshDynamicInterest();
         } catch (SharkKBException ex) {
-            L.d("couldn't refresh kepInterest: " + ex.getMessage(), this);
+            L.debug(this, "couldn't refresh kepInterest: {}", ex.getMessage());
         }
     }
   }
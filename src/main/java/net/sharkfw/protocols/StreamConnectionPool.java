@@ -0,0 +1,238 @@
+package net.sharkfw.protocols;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import net.sharkfw.protocols.tcp.TCPConnection;
+import net.sharkfw.system.L;
+
+/**
+ * Keeps outgoing stream connections open for further messages to the same
+ * peer address. A connection is leased by one message at a time and released
+ * after that message was sent. Several messages are sent one after another
+ * over the same connection - no new connection must be established for each
+ * of them.
+ * 
+ * Connections are removed from the pool when they are closed (e.g. by the 
+ * session reading from it), when they fail the health check or when they 
+ * were idle for too long.
+ * 
+ * Several messages on one connection are told apart by the receiver: each
+ * ASIP message is a single JSON object and ASIPInMessage.readMessage() reads
+ * up to the brace closing it. The rest stays on the stream for the next
+ * message. Messages are not multiplexed - a connection carries one message
+ * after another, never two at the same time.
+ * 
+ * Pooling is still switched off by default, see
+ * SharkEngine.setConnectionPooling(). Peers running a version from before
+ * that framing split messages by pauses on the stream and can mix up
+ * messages sent in quick succession over a pooled connection.
+ * 
+ * A leased connection is held by its ASIPOutMessage until the message is
+ * sent or closed. Connections of messages which are never sent nor closed
+ * come back when the message is garbage collected.
+ * 
+ * @author thsc
+ */
+public class StreamConnectionPool {
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_PEER = 2;
+    public static final long DEFAULT_IDLE_TIMEOUT = 30000; // 30s
+    
+    private final int maxPerPeer;
+    private final long idleTimeout;
+    private final Map<String, List<PooledConnection>> pool = new HashMap<>();
+    
+    public StreamConnectionPool() {
+        this(DEFAULT_MAX_CONNECTIONS_PER_PEER, DEFAULT_IDLE_TIMEOUT);
+    }
+    
+    /**
+     * @param maxPerPeer maximum number of pooled connections to a single peer
+     * address. Further connections are used but not pooled.
+     * @param idleTimeout milliseconds after which an unused connection is closed
+     */
+    public StreamConnectionPool(int maxPerPeer, long idleTimeout) {
+        this.maxPerPeer = maxPerPeer > 0 ? maxPerPeer : 1;
+        this.idleTimeout = idleTimeout;
+    }
+    
+    /**
+     * Takes an idle connection to that address out of the pool. It must be
+     * given back with release().
+     * 
+     * @param address
+     * @return open connection or null if there is none
+     */
+    public synchronized StreamConnection lease(String address) {
+        this.evictIdle(System.currentTimeMillis());
+        
+        List<PooledConnection> connections = this.pool.get(address);
+        if(connections == null) return null;
+        
+        Iterator<PooledConnection> conIter = connections.iterator();
+        while(conIter.hasNext()) {
+            PooledConnection pc = conIter.next();
+            if(pc.leased) continue;
+            
+            if(!StreamConnectionPool.isHealthy(pc.connection)) {
+                conIter.remove();
+                pc.close();
+                continue;
+            }
+            
+            pc.leased = true;
+            return pc.connection;
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Adds a newly created connection to the pool. It is regarded as leased
+     * by the caller.
+     * 
+     * @param address
+     * @param connection
+     * @return false if there are already enough connections to that peer - 
+     * connection isn't pooled in that case.
+     */
+    public synchronized boolean add(String address, StreamConnection connection) {
+        List<PooledConnection> connections = this.pool.get(address);
+        if(connections == null) {
+            connections = new ArrayList<>();
+            this.pool.put(address, connections);
+        }
+        
+        if(connections.size() >= this.maxPerPeer) return false;
+        
+        PooledConnection pc = new PooledConnection(address, connection);
+        connections.add(pc);
+        connection.addConnectionListener(pc);
+        
+        return true;
+    }
+    
+    /**
+     * Gives a leased connection back. Connections unknown to this pool
+     * are ignored.
+     * 
+     * @param connection 
+     */
+    public synchronized void release(StreamConnection connection) {
+        PooledConnection pc = this.find(connection);
+        if(pc != null) {
+            pc.leased = false;
+            pc.lastUsed = System.currentTimeMillis();
+        }
+    }
+    
+    /**
+     * @param address
+     * @return number of pooled connections to that address
+     */
+    public synchronized int size(String address) {
+        List<PooledConnection> connections = this.pool.get(address);
+        return connections == null ? 0 : connections.size();
+    }
+    
+    /**
+     * Closes each idle connection and forgets leased ones.
+     */
+    public synchronized void closeAll() {
+        for(List<PooledConnection> connections : this.pool.values()) {
+            for(PooledConnection pc : connections) {
+                if(!pc.leased) {
+                    pc.close();
+                }
+            }
+        }
+        this.pool.clear();
+    }
+    
+    /**
+     * Connections can be closed by others at any time, e.g. by sessions
+     * reading from it. Only tcp connections can be asked whether they are
+     * still alive. Other connections are assumed to be healthy until they
+     * are closed.
+     * 
+     * @param connection
+     * @return 
+     */
+    public static boolean isHealthy(StreamConnection connection) {
+        if(connection instanceof TCPConnection) {
+            return ((TCPConnection) connection).isAlive();
+        }
+        
+        return true;
+    }
+    
+    private void evictIdle(long now) {
+        Iterator<List<PooledConnection>> listIter = this.pool.values().iterator();
+        while(listIter.hasNext()) {
+            List<PooledConnection> connections = listIter.next();
+            
+            Iterator<PooledConnection> conIter = connections.iterator();
+            while(conIter.hasNext()) {
+                PooledConnection pc = conIter.next();
+                if(!pc.leased && now - pc.lastUsed > this.idleTimeout) {
+                    conIter.remove();
+                    pc.close();
+                }
+            }
+            
+            if(connections.isEmpty()) {
+                listIter.remove();
+            }
+        }
+    }
+    
+    private PooledConnection find(StreamConnection connection) {
+        for(List<PooledConnection> connections : this.pool.values()) {
+            for(PooledConnection pc : connections) {
+                if(pc.connection == connection) {
+                    return pc;
+                }
+            }
+        }
+        
+        return null;
+    }
+    
+    private synchronized void remove(PooledConnection pc) {
+        List<PooledConnection> connections = this.pool.get(pc.address);
+        if(connections != null) {
+            connections.remove(pc);
+            if(connections.isEmpty()) {
+                this.pool.remove(pc.address);
+            }
+        }
+    }
+    
+    /**
+     * Pool entry - listens to its connection to be removed when closed.
+     */
+    private class PooledConnection implements ConnectionStatusListener {
+        final String address;
+        final StreamConnection connection;
+        boolean leased = true;
+        long lastUsed = System.currentTimeMillis();
+        
+        PooledConnection(String address, StreamConnection connection) {
+            this.address = address;
+            this.connection = connection;
+        }
+        
+        void close() {
+            this.connection.removeConnectionListener(this);
+            this.connection.close();
+        }
+
+        @Override
+        public void connectionClosed() {
+            L.debug(this, "pooled connection closed: {}", this.address);
+            remove(this);
+        }
+    }
+}
@@ -42,7 +42,7 @@ public class WebServer implements SharkServer {
             server = new ServerSocket(port);
         }
 
-        L.d("HTTP Server is bound to port " + this.port, this);
+        L.debug(this, "HTTP Server is bound to port {}", this.port);
     }
 
     /**
@@ -95,7 +95,7 @@ public class M2SConnection extends ConnectionListenerManager implements StreamCo
             
             this.os = new StreamToMessageOutputStream(this, newID, maxSize, this.receiverAddress, storage);
 
-            L.d("Creating new wrapped stream connection to address string: " + this.receiverAddress, this);
+            L.debug(this, "Creating new wrapped stream connection to address string: {}", this.receiverAddress);
             this.sos = new UTF8SharkOutputStream(this.os); // new MessageStubOutputStream(this, this.id, this.maxSize);
         }
         
@@ -137,11 +137,11 @@ public class M2SStub implements StreamStub, RequestHandler {
             // read ID
             String id = dis.readUTF();
             
-            L.d("found message with id: " + id, this);
+            L.debug(this, "found message with id: {}", id);
             
             // read command
             int m2sCmd = dis.readInt();
-            L.d("m2s command: " + m2sCmd, this);
+            L.debug(this, "m2s command: {}", m2sCmd);
             
             // end parsing header
             if(m2sCmd == M2SStub.M2S_INSERT) {
@@ -155,8 +155,8 @@ public class M2SStub implements StreamStub, RequestHandler {
                 // write finished
                 boolean isLast = dis.readBoolean();
                 
-                L.d("package number: " + packageNumber, this);
-                L.d("is last package: " + isLast, this);
+                L.debug(this, "package number: {}", packageNumber);
+                L.debug(this, "is last package: {}", isLast);
                 
                 /*
                  * Usually, a KEP message will fit into a single message
@@ -201,7 +201,7 @@ public class M2SStub implements StreamStub, RequestHandler {
                         }
                     }
                     catch(SharkException e) {
-                        L.d("couldn't save message part: " + e.getMessage(), this);
+                        L.debug(this, "couldn't save message part: {}", e.getMessage());
                     }
                 }
             } else {
@@ -218,7 +218,7 @@ public class M2SStub implements StreamStub, RequestHandler {
                     
                     // we have got the package: stream next part into next message
                     int remainingBytes = this.storage.remainingNumberOfBytes(id, nextPackageNumber);
-                    L.d("recipient / packageSize / remaining Bytes: " + recipientAddress + " / " + packageSize + " / " + remainingBytes, this);
+                    L.debug(this, "recipient / packageSize / remaining Bytes: {} / {} / {}", recipientAddress, packageSize, remainingBytes);
                     
                     boolean isLastPackage;    
                     int size;
@@ -233,7 +233,7 @@ public class M2SStub implements StreamStub, RequestHandler {
                         isLastPackage = false;
                         size = remainingBytes - headerLen;
                     }
-                    L.d("isLastPackage / size: " + isLastPackage + " / " + size, this);
+                    L.debug(this, "isLastPackage / size: {} / {}", isLastPackage, size);
                     
                     // create header
                     ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -254,12 +254,12 @@ public class M2SStub implements StreamStub, RequestHandler {
             if(this.storage instanceof SharkKBMessageStorage) {
                 SharkKBMessageStorage kbStorage = (SharkKBMessageStorage)this.storage;
                 
-                L.d("storage after entering M2SSub.handleMessage: " + 
-                        L.kb2String(kbStorage.getKB()), this);
+                L.debug(this, "storage after entering M2SSub.handleMessage: {}", 
+                        L.lazyKB(kbStorage.getKB()));
             }
 
         } catch (IOException ex) {
-          L.d("IOException while handling message: " + ex.getMessage(), this);
+          L.debug(this, "IOException while handling message: {}", ex.getMessage());
         }
     }
 
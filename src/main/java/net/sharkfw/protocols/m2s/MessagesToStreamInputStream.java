@@ -70,7 +70,7 @@ public class MessagesToStreamInputStream extends InputStream {
         // try to read
         int b = this.currentStream.read();
         if(b == -1) {
-            L.d("try switching input stream after bytes: " + this.size, this);
+            L.debug(this, "try switching input stream after bytes: {}", this.size);
             this.currentStream = null;
             return this.read();
         }
@@ -299,7 +299,7 @@ public class SharkKBMessageStorage implements MessageStorage {
             
             offset += size;
 
-            L.d("streamed message part: new offset / size:" + offset + " / " + i.getContentLength(), this);
+            L.debug(this, "streamed message part: new offset / size:{} / {}", offset, i.getContentLength());
             if(offset >= i.getContentLength()) { 
 				// TODO: is it really >= ??
                 L.d("offset exceeds size - remove local storage", this);
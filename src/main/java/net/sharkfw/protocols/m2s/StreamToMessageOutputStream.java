@@ -72,7 +72,7 @@ public class StreamToMessageOutputStream extends OutputStream {
         count++;
         
         if(count == this.maxSize) {
-            L.d("must split mail into chunks, count: " + count, this);
+            L.debug(this, "must split mail into chunks, count: {}", count);
 //        if(this.buf.toByteArray().length == this.maxSize) {
             this.send(false);
         }
@@ -189,7 +189,7 @@ public class StreamToMessageOutputStream extends OutputStream {
 
             // Send the package 'baos'
             this.mssc.sendMessage(baos.toByteArray());
-            L.d("send bytes number: " + baos.size(), this);
+            L.debug(this, "send bytes number: {}", baos.size());
             
             // remember - first message has been sent a few milliseconds ago
             this.sentSomething = true;
@@ -197,7 +197,7 @@ public class StreamToMessageOutputStream extends OutputStream {
             // we expect further bytes
             if(!finished) {
                 L.d("switched to local storage for later sending", this);
-                L.d("id / recipient / maxSize " + id + "/" + this.recipientAddress + "/" + maxSize, this);
+                L.debug(this, "id / recipient / maxSize {}/{}/{}", id, this.recipientAddress, maxSize);
                 // reroute subsequent write ca, id)
                 // reroute subsequent write calls to local buffer
                 try {
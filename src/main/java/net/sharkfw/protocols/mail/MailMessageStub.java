@@ -211,10 +211,10 @@ public final class MailMessageStub implements MessageStub, Runnable {
     @Override
     public void sendMessage(byte[] msgBytes, String recAddress) throws IOException {
         recAddress = this.makePlainMailAddress(recAddress);
-        L.d("Sending mail to: " + recAddress, this);
+        L.debug(this, "Sending mail to: {}", recAddress);
         
         if(recAddress.equals(this.pop3UserName)) {
-          L.e("Messageloop! From " + this.pop3UserName + " to: " + recAddress, this);
+          L.error(this, "Messageloop! From {} to: {}", this.pop3UserName, recAddress);
         }
         
         msgBytes = Base64.encodeBytesToBytes(msgBytes);
@@ -243,7 +243,7 @@ public final class MailMessageStub implements MessageStub, Runnable {
 
                 smtpTransport.close();
             } catch (MessagingException ex) {
-                L.e("couldn't send message: " + ex.getMessage(), this);
+                L.error(this, "couldn't send message: {}", ex.getMessage());
                 throw new IOException(ex.getMessage());
             }
         } else {
@@ -278,7 +278,7 @@ public final class MailMessageStub implements MessageStub, Runnable {
                 Transport.send(msg);
             }
             catch (Exception mex) {
-                L.d("couldn't send message: " + mex.getMessage(), this);
+                L.debug(this, "couldn't send message: {}", mex.getMessage());
                 throw new IOException(mex.getMessage());
             }
         }
@@ -301,7 +301,7 @@ public final class MailMessageStub implements MessageStub, Runnable {
          * it's better safe resource on mail server side?
          */
         do {
-        	L.d((this.dequeue?"Dequeue":"Check")+"ing mails for: " + this.pop3UserName, this);
+        	L.debug(this, "{}ing mails for: {}", (this.dequeue?"Dequeue":"Check"), this.pop3UserName);
             Store store = null;
             Folder folder = null;
             Session session = null;
@@ -336,7 +336,7 @@ public final class MailMessageStub implements MessageStub, Runnable {
 
                 Message messages[] = folder.getMessages();
 
-                L.d( this.pop3UserName + " having " + messages.length + " messages waiting.", this);
+                L.debug(this, "{} having {} messages waiting.", this.pop3UserName, messages.length);
                 for ( int i = 0; i < messages.length; i++ )
                 {
                   Message m = messages[i];
@@ -364,16 +364,16 @@ public final class MailMessageStub implements MessageStub, Runnable {
                       
                       // Pass message on as byte[] to the upper protocol levels.
                       //this.handleMessage(partNumber, maxParts, channelID, from, decoded);
-                      L.d("Passing on message " + (i+1) + " of " + messages.length + " on " + this.pop3UserName, this);
+                      L.debug(this, "Passing on message {} of {} on {}", (i+1), messages.length, this.pop3UserName);
                       this.handler.handleMessage(decoded, this);
                       
                       } else {
-                    	  L.d("dequeueing message " + (i+1) + " of " + messages.length + " on " + this.pop3UserName, this);
+                    	  L.debug(this, "dequeueing message {} of {} on {}", (i+1), messages.length, this.pop3UserName);
                       }
                   }
                 }
             } catch (Exception ex) {
-                L.l("exception during "+(sslPOP3?"ssl":"")+"mail access for "+pop3UserName+"("+pop3pwd+") was handled:", this);
+                L.log(this, "exception during {}mail access for {}({}) was handled:", (sslPOP3?"ssl":""), pop3UserName, pop3pwd);
                 L.d(ex.getMessage(), ex);
             } finally {
                 try {
@@ -1,5 +1,6 @@
 package net.sharkfw.protocols.tcp;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -62,8 +63,9 @@ public class TCPConnection extends ConnectionListenerManager implements StreamCo
 
         s.setSoTimeout(this.socketTimeout);
         this.out = s.getOutputStream();
-        this.in = s.getInputStream();
-        L.d("Creating TCPConnection w/ local address of:" + s.getLocalAddress() + ":" + s.getLocalPort(), this);
+        // buffered - ASIP messages are split by reading them byte by byte
+        this.in = new BufferedInputStream(s.getInputStream());
+        L.debug(this, "Creating TCPConnection w/ local address of:{}:{}", s.getLocalAddress(), s.getLocalPort());
 
         this.localAddress = replyAddressString;
         this.replyAddressString = replyAddressString;
@@ -77,7 +79,7 @@ public class TCPConnection extends ConnectionListenerManager implements StreamCo
      * @throws IOException
      */
     public TCPConnection(Socket s, String replyAddressString) throws IOException {
-        L.d("Using existing socket: '" + s.getInetAddress().getHostAddress() + ":" + this.portNo + "'", this);
+        L.debug(this, "Using existing socket: '{}:{}'", s.getInetAddress().getHostAddress(), this.portNo);
         this.s = s;
         s.setSoTimeout(this.socketTimeout);
         this.replyAddressString = replyAddressString;
@@ -87,7 +89,7 @@ public class TCPConnection extends ConnectionListenerManager implements StreamCo
         this.portNo = this.s.getPort();
 
         this.out = this.s.getOutputStream();
-        this.in = this.s.getInputStream();
+        this.in = new BufferedInputStream(this.s.getInputStream());
     }
 
     public String getReplyAddressString() {
@@ -101,7 +103,7 @@ public class TCPConnection extends ConnectionListenerManager implements StreamCo
      * @throws IOException
      */
     public void sendMessage(byte[] msg) throws IOException {
-        L.d("TCPConnection: sendMessage: " + msg, this);
+        L.debug(this, "TCPConnection: sendMessage: {}", msg);
         //byte[] byteMsg = msg.getBytes();
         this.out.write(msg);
     }
@@ -144,9 +146,9 @@ public class TCPConnection extends ConnectionListenerManager implements StreamCo
      */
     public void close() {
 
-        L.d("Closing TCP-Connection from: " + this.getReplyAddressString() + " to: " + this.recAddress, this);
+        L.debug(this, "Closing TCP-Connection from: {} to: {}", this.getReplyAddressString(), this.recAddress);
         try {
-            final InputStream inputStream = s.getInputStream();
+            final InputStream inputStream = this.in;
             if (inputStream.available() > 0) {
                 System.err.println("Closing TCPConnection although there is more data on the stream: ");
                 Streamer.stream(inputStream, System.err, 5);
@@ -158,6 +160,15 @@ public class TCPConnection extends ConnectionListenerManager implements StreamCo
         }
     }
 
+    /**
+     * @return true if socket is still connected and can be used for
+     * sending and receiving
+     */
+    public boolean isAlive() {
+        return this.s != null && this.s.isConnected() && !this.s.isClosed()
+                && !this.s.isInputShutdown() && !this.s.isOutputShutdown();
+    }
+
     public String getReceiverAddressString() {
         return "tcp://" + this.recAddress + ":" + Integer.toString(this.portNo);
     }
@@ -56,7 +56,7 @@ class TCPServer implements SharkServer {
         this.knowledge = knowledge;
         this.listener = listener;
 
-        L.l("TCP Server is bound to port " + this.port, this);
+        L.log(this, "TCP Server is bound to port {}", this.port);
     }
 
 
@@ -76,7 +76,7 @@ class TCPServer implements SharkServer {
      * @return the IP address of the current device
      */
     protected String getLocalAddress() {
-        L.d("Listensocket has: " + this.listen_socket.getLocalSocketAddress().toString(), this);
+        L.debug(this, "Listensocket has: {}", this.listen_socket.getLocalSocketAddress().toString());
         return this.stub.getLocalAddress();
     }
 
@@ -90,7 +90,7 @@ class TCPServer implements SharkServer {
         try {
             this.listen_socket.close();
         } catch (IOException ex) {
-            L.e("TCP Server hold failed: " + ex.getMessage(), this);
+            L.error(this, "TCP Server hold failed: {}", ex.getMessage());
         }
     }
 
@@ -104,7 +104,7 @@ class TCPServer implements SharkServer {
         try {
             //while (this.active && !isInterrupted()) {
             while (this.active) {
-                L.d("TCP Server accepts connection requests on: " + this.port, this);
+                L.debug(this, "TCP Server accepts connection requests on: {}", this.port);
 
                 Socket client_socket = this.listen_socket.accept();
                 client_socket.setSoTimeout(this.socketTimeout);
@@ -113,7 +113,7 @@ class TCPServer implements SharkServer {
                     con.addConnectionListener(this.listener);
                 }
 
-                L.d("Calling handler for stream on: " + this.port, this);
+                L.debug(this, "Calling handler for stream on: {}", this.port);
                 handler.handleStream(con, this.knowledge);
             }
             //L.d("Closing socket", this);
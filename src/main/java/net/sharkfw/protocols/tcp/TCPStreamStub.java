@@ -158,7 +158,7 @@ public class TCPStreamStub implements StreamStub {
         } else {
 			addr += J2SEAndroidSharkEngine.defaultTCPPort;
         }
-        L.d("Local address is: "+addr, this);
+        L.debug(this, "Local address is: {}", addr);
         return addr;
     }
     
@@ -185,7 +185,7 @@ public class TCPStreamStub implements StreamStub {
                     portno = Integer.parseInt(port);
 
                 } catch (NumberFormatException nfe) {
-                    L.e("Unable to extract Port from URL: " + addrStr, this);
+                    L.error(this, "Unable to extract Port from URL: {}", addrStr);
                 }
             }
 
@@ -6,8 +6,10 @@ import net.sharkfw.security.key.SharkKeyPairAlgorithm;
 import net.sharkfw.security.pki.Certificate;
 import net.sharkfw.security.pki.SharkCertificate;
 import net.sharkfw.system.L;
+import net.sharkfw.system.Util;
 
 import java.security.KeyFactory;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
@@ -15,6 +17,7 @@ import java.security.spec.InvalidKeySpecException;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.X509EncodedKeySpec;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static net.sharkfw.security.utility.SharkCertificateHelper.*;
 
@@ -43,6 +46,39 @@ public class SharkPkiStorage implements PkiStorage {
     private SharkKB sharkPkiStorageKB;
     private PeerSemanticTag sharkPkiStorageOwner;
 
+    /**
+     * Maximum number of decoded certificates and public keys kept in memory.
+     */
+    public final static int MAX_CACHED_CERTIFICATES = 256;
+
+    // built from the knowledge base on demand - null if stale
+    private CertificateIndex certificateIndex = null;
+
+    // one change counter per knowledge base - shared by all storages on it
+    private static final Map<SharkKB, ChangeCounter> CHANGE_COUNTERS = new WeakHashMap<>();
+
+    // changes of the knowledge base - index and caches are dropped if it changed since
+    private ChangeCounter kbChanges;
+    private int indexedChanges;
+
+    // context point -> decoded certificate, least recently used first
+    private final Map<ContextPoint, SharkCertificate> decodedCertificates =
+            new LinkedHashMap<ContextPoint, SharkCertificate>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ContextPoint, SharkCertificate> eldest) {
+                    return this.size() > MAX_CACHED_CERTIFICATES;
+                }
+            };
+
+    // key fingerprint -> decoded public key, least recently used first
+    private final Map<String, PublicKey> decodedKeys =
+            new LinkedHashMap<String, PublicKey>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PublicKey> eldest) {
+                    return this.size() > MAX_CACHED_CERTIFICATES;
+                }
+            };
+
     /**
      * Initializes the {@link SharkPkiStorage} with the given parameters.
      * @param sharkKB {@link SharkKB}
@@ -78,6 +114,10 @@ public class SharkPkiStorage implements PkiStorage {
         sharkPkiStorageKB = sharkKB;
         sharkPkiStorageOwner = owner;
 
+        // kb can be changed directly - see getSharkPkiStorageKB()
+        kbChanges = ChangeCounter.of(sharkPkiStorageKB);
+        indexedChanges = kbChanges.get();
+
         contextCoordinatesFilter = InMemoSharkKB.createInMemoContextCoordinates(
                 PKI_CONTEXT_COORDINATE,
                 sharkPkiStorageOwner,
@@ -150,34 +190,59 @@ public class SharkPkiStorage implements PkiStorage {
      * @throws SharkKBException
      */
     @Override
-    public boolean addSharkCertificate(SharkCertificate sharkCertificate) throws SharkKBException {
-        TimeSemanticTag time = InMemoSharkKB.createInMemoTimeSemanticTag(TimeSemanticTag.FIRST_MILLISECOND_EVER, sharkCertificate.getValidity().getTime());
+    public synchronized boolean addSharkCertificate(SharkCertificate sharkCertificate) throws SharkKBException {
+        return addSharkCertificate(
+                sharkCertificate.getSubject(),
+                sharkCertificate.getIssuer(),
+                sharkCertificate.getTransmitterList(),
+                sharkCertificate.getTrustLevel(),
+                sharkCertificate.getSubjectPublicKey().getEncoded(),
+                sharkCertificate.getValidity());
+    }
+
+    /**
+     * Adds a certificate with an encoded public key. The key is decoded when the certificate
+     * is looked up the first time - loading certificates doesn't need to decode any key.
+     * @param subject {@link PeerSemanticTag}
+     * @param issuer {@link PeerSemanticTag}
+     * @param transmitterList {@link LinkedList} of {@link PeerSemanticTag}
+     * @param trustLevel {@link Certificate.TrustLevel}
+     * @param encodedPublicKey X.509 encoded {@link PublicKey}
+     * @param validity {@link Date}
+     * @return True or false - false if a certificate with that key is already stored
+     * @throws SharkKBException
+     */
+    public synchronized boolean addSharkCertificate(PeerSemanticTag subject, PeerSemanticTag issuer,
+            LinkedList<PeerSemanticTag> transmitterList, Certificate.TrustLevel trustLevel,
+            byte[] encodedPublicKey, Date validity) throws SharkKBException {
+        TimeSemanticTag time = InMemoSharkKB.createInMemoTimeSemanticTag(TimeSemanticTag.FIRST_MILLISECOND_EVER, validity.getTime());
 
-        if(isCertificateInKb(sharkCertificate)) {
+        if(isCertificateInKb(encodedPublicKey)) {
             return false;
         }
 
         ContextCoordinates contextCoordinates = sharkPkiStorageKB.createContextCoordinates(
                 PKI_CONTEXT_COORDINATE,             //Topic
                 sharkPkiStorageOwner,               //Originator
-                sharkCertificate.getSubject(),      //Peer
-                sharkCertificate.getIssuer(),       //Remote peer -> if null any
+                subject,                            //Peer
+                issuer,                             //Remote peer -> if null any
                 time,                               //Time -> if null any
                 null,                               //Location -> if null any
                 SharkCS.DIRECTION_INOUT);           //Direction
         ContextPoint contextPoint = sharkPkiStorageKB.createContextPoint(contextCoordinates);
+        invalidateCertificateIndex();
 
         Information publicKey = contextPoint.addInformation();
         publicKey.setName(PKI_INFORMATION_PUBLIC_KEY_NAME);
-        publicKey.setContent(sharkCertificate.getSubjectPublicKey().getEncoded());
+        publicKey.setContent(encodedPublicKey);
 
-        Information transmitterList = contextPoint.addInformation();
-        transmitterList.setName(PKI_INFORMATION_TRANSMITTER_LIST_NAME);
-        transmitterList.setContent(getByteArrayFromLinkedList(sharkCertificate.getTransmitterList()));
+        Information transmitters = contextPoint.addInformation();
+        transmitters.setName(PKI_INFORMATION_TRANSMITTER_LIST_NAME);
+        transmitters.setContent(getByteArrayFromLinkedList(transmitterList));
 
-        Information trustLevel = contextPoint.addInformation();
-        trustLevel.setName(PKI_INFORMATION_TRUST_LEVEL);
-        trustLevel.setContent(sharkCertificate.getTrustLevel().name());
+        Information trust = contextPoint.addInformation();
+        trust.setName(PKI_INFORMATION_TRUST_LEVEL);
+        trust.setContent(trustLevel.name());
 
         return true;
     }
@@ -189,7 +254,7 @@ public class SharkPkiStorage implements PkiStorage {
      * @throws SharkKBException
      */
     @Override
-    public boolean addSharkCertificate(ContextPoint sharkCertificate) throws SharkKBException {
+    public synchronized boolean addSharkCertificate(ContextPoint sharkCertificate) throws SharkKBException {
         //SharkCS (2nd parameter) can't be null -> exception
         //SharkCSAlgebra.merge(sharkPkiStorageKB, null, sharkCertificate, false);
 
@@ -207,6 +272,7 @@ public class SharkPkiStorage implements PkiStorage {
                 null,                                                     //Location -> if null any
                 SharkCS.DIRECTION_INOUT);                                 //Direction
         ContextPoint contextPoint = sharkPkiStorageKB.createContextPoint(contextCoordinates);
+        invalidateCertificateIndex();
 
         try {
             Information publicKey = contextPoint.addInformation();
@@ -233,7 +299,7 @@ public class SharkPkiStorage implements PkiStorage {
      * @throws SharkKBException
      */
     @Override
-    public boolean addSharkCertificate(HashSet<SharkCertificate> sharkCertificateHashSet) throws SharkKBException {
+    public synchronized boolean addSharkCertificate(HashSet<SharkCertificate> sharkCertificateHashSet) throws SharkKBException {
         for (SharkCertificate sharkCertificate : sharkCertificateHashSet) {
             addSharkCertificate(sharkCertificate);
         }
@@ -241,58 +307,27 @@ public class SharkPkiStorage implements PkiStorage {
     }
 
     @Override
-    public SharkCertificate getSharkCertificate(PeerSemanticTag subject) throws SharkKBException {
-        Knowledge knowledge = SharkCSAlgebra.extract(sharkPkiStorageKB, contextCoordinatesFilter);
-        for (ContextPoint cp : Collections.list(knowledge.contextPoints())) {
+    public synchronized SharkCertificate getSharkCertificate(PeerSemanticTag subject) throws SharkKBException {
+        for (ContextPoint cp : getCertificateIndex().bySubject(subject)) {
             if(SharkCSAlgebra.identical(subject, cp.getContextCoordinates().getPeer())) {
-
-                Information transmitterList = extractInformation(cp, PKI_INFORMATION_TRANSMITTER_LIST_NAME);
-                Information trustLevel = extractInformation(cp, PKI_INFORMATION_TRUST_LEVEL);
-                Information publicKey = extractInformation(cp, PKI_INFORMATION_PUBLIC_KEY_NAME);
-
-                try {
-                    return new SharkCertificate(
-                            cp.getContextCoordinates().getPeer(),
-                            cp.getContextCoordinates().getRemotePeer(),
-                            getLinkedListFromByteArray(transmitterList.getContentAsByte()),
-                            Certificate.TrustLevel.valueOf(trustLevel.getContentAsString()),
-                            keyFactory.generatePublic(new X509EncodedKeySpec(publicKey.getContentAsByte())),
-                            new Date(cp.getContextCoordinates().getTime().getDuration()));
-                } catch (InvalidKeySpecException e) {
-                    throw new SharkKBException(e.getMessage());
-                }
+                return decode(cp);
             }
         }
-        L.d("Certificate with the subject " + subject.getName() + " not found.");
+        L.debug(null, "Certificate with the subject {} not found.", subject.getName());
         return null;
     }
 
-    public SharkCertificate getSharkCertificate(String[] subjectIdentifier) throws SharkKBException {
-        Knowledge knowledge = SharkCSAlgebra.extract(sharkPkiStorageKB, contextCoordinatesFilter);
+    public synchronized SharkCertificate getSharkCertificate(String[] subjectIdentifier) throws SharkKBException {
         try {
-            for (ContextPoint cp : Collections.list(knowledge.contextPoints())) {
+            for (ContextPoint cp : getCertificateIndex().bySubject(subjectIdentifier)) {
                 if(SharkCSAlgebra.identical(cp.getContextCoordinates().getPeer().getSI(), subjectIdentifier)) {
-                    Information transmitterList = extractInformation(cp, PKI_INFORMATION_TRANSMITTER_LIST_NAME);
-                    Information trustLevel = extractInformation(cp, PKI_INFORMATION_TRUST_LEVEL);
-                    Information publicKey = extractInformation(cp, PKI_INFORMATION_PUBLIC_KEY_NAME);
-
-                    try {
-                        return new SharkCertificate(
-                                cp.getContextCoordinates().getPeer(),
-                                cp.getContextCoordinates().getRemotePeer(),
-                                getLinkedListFromByteArray(transmitterList.getContentAsByte()),
-                                Certificate.TrustLevel.valueOf(trustLevel.getContentAsString()),
-                                keyFactory.generatePublic(new X509EncodedKeySpec(publicKey.getContentAsByte())),
-                                new Date(cp.getContextCoordinates().getTime().getDuration()));
-                    } catch (InvalidKeySpecException e) {
-                        throw new SharkKBException(e.getMessage());
-                    }
+                    return decode(cp);
                 }
             }
         } catch (NullPointerException e) {
             throw new SharkKBException(e.getMessage());
         }
-        L.d("Certificate with the subjectIdentifier " + subjectIdentifier.toString() + " not found.");
+        L.debug(null, "Certificate with the subjectIdentifier {} not found.", subjectIdentifier.toString());
         return null;
     }
 
@@ -304,26 +339,17 @@ public class SharkPkiStorage implements PkiStorage {
      * @throws SharkKBException
      */
     @Override
-    public SharkCertificate getSharkCertificate(PeerSemanticTag subject, PublicKey publicKey) throws SharkKBException {
-        Knowledge knowledge = SharkCSAlgebra.extract(sharkPkiStorageKB, contextCoordinatesFilter);
-        for (ContextPoint cp : Collections.list(knowledge.contextPoints())) {
+    public synchronized SharkCertificate getSharkCertificate(PeerSemanticTag subject, PublicKey publicKey) throws SharkKBException {
+        byte[] encodedKey = publicKey.getEncoded();
+        for (ContextPoint cp : getCertificateIndex().byKey(encodedKey)) {
             if (SharkCSAlgebra.identical(subject, cp.getContextCoordinates().getPeer())
-                    && Arrays.equals(cp.getInformation(PKI_INFORMATION_PUBLIC_KEY_NAME).next().getContentAsByte(), publicKey.getEncoded())) {
-
-                Information transmitterList = extractInformation(cp, PKI_INFORMATION_TRANSMITTER_LIST_NAME);
-                Information trustLevel = extractInformation(cp, PKI_INFORMATION_TRUST_LEVEL);
-
-                return new SharkCertificate(
-                        cp.getContextCoordinates().getPeer(),
-                        cp.getContextCoordinates().getRemotePeer(),
-                        getLinkedListFromByteArray(transmitterList.getContentAsByte()),
-                        Certificate.TrustLevel.valueOf(trustLevel.getContentAsString()),
-                        publicKey,
-                        new Date(cp.getContextCoordinates().getTime().getDuration()));
+                    && Arrays.equals(extractInformation(cp, PKI_INFORMATION_PUBLIC_KEY_NAME).getContentAsByte(), encodedKey)) {
+
+                return decode(cp);
             }
         }
 
-        L.d("Certificate with the subject " + subject.getName() + "and public key: " + publicKey.toString() + " not found.");
+        L.debug(null, "Certificate with the subject {}and public key: {} not found.", subject.getName(), publicKey.toString());
         return null;
     }
 
@@ -335,26 +361,12 @@ public class SharkPkiStorage implements PkiStorage {
      * @throws SharkKBException
      */
     @Override
-    public SharkCertificate getSharkCertificate(PeerSemanticTag issuer, PeerSemanticTag subject) throws SharkKBException {
-        Knowledge knowledge = SharkCSAlgebra.extract(sharkPkiStorageKB, contextCoordinatesFilter);
+    public synchronized SharkCertificate getSharkCertificate(PeerSemanticTag issuer, PeerSemanticTag subject) throws SharkKBException {
         SharkCertificate sharkCertificate = null;
-        for (ContextPoint cp : Collections.list(knowledge.contextPoints())) {
+        for (ContextPoint cp : getCertificateIndex().bySubject(subject)) {
             if (SharkCSAlgebra.identical(issuer, cp.getContextCoordinates().getRemotePeer()) && SharkCSAlgebra.identical(subject, cp.getContextCoordinates().getPeer())) {
                 if(sharkCertificate == null) {
-                    Information transmitterList = extractInformation(cp, PKI_INFORMATION_TRANSMITTER_LIST_NAME);
-                    Information trustLevel = extractInformation(cp, PKI_INFORMATION_TRUST_LEVEL);
-                    Information publicKey = extractInformation(cp, PKI_INFORMATION_PUBLIC_KEY_NAME);
-                    try {
-                        sharkCertificate = new SharkCertificate(
-                                cp.getContextCoordinates().getPeer(),
-                                cp.getContextCoordinates().getRemotePeer(),
-                                getLinkedListFromByteArray(transmitterList.getContentAsByte()),
-                                Certificate.TrustLevel.valueOf(trustLevel.getContentAsString()),
-                                keyFactory.generatePublic(new X509EncodedKeySpec(publicKey.getContentAsByte())),
-                                new Date(cp.getContextCoordinates().getTime().getDuration()));
-                    } catch (InvalidKeySpecException e) {
-                        throw new SharkKBException(e.getMessage());
-                    }
+                    sharkCertificate = decode(cp);
                 } else {
                     throw new SharkKBException("More than one certificate found, aborting. (KB valid?)");
                 }
@@ -364,7 +376,7 @@ public class SharkPkiStorage implements PkiStorage {
         if(sharkCertificate != null) {
             return sharkCertificate;
         } else {
-            L.d("Certificate with the subject: " + subject.getName() + " and issuer : " + issuer.getName() + " not found.");
+            L.debug(null, "Certificate with the subject: {} and issuer : {} not found.", subject.getName(), issuer.getName());
             return null;
         }
     }
@@ -375,29 +387,10 @@ public class SharkPkiStorage implements PkiStorage {
      * @throws SharkKBException
      */
     @Override
-    public HashSet<SharkCertificate> getSharkCertificateList() throws SharkKBException {
-        Knowledge knowledge = SharkCSAlgebra.extract(sharkPkiStorageKB, contextCoordinatesFilter);
+    public synchronized HashSet<SharkCertificate> getSharkCertificateList() throws SharkKBException {
         HashSet<SharkCertificate> sharkCertificateList = new HashSet<>();
-        if(knowledge != null) {
-            for (ContextPoint cp : Collections.list(knowledge.contextPoints())) {
-
-                Information publicKey = extractInformation(cp, PKI_INFORMATION_PUBLIC_KEY_NAME);
-                Information trustLevel = extractInformation(cp, PKI_INFORMATION_TRUST_LEVEL);
-                Information transmitterList = extractInformation(cp, PKI_INFORMATION_TRANSMITTER_LIST_NAME);
-
-                try {
-                    sharkCertificateList.add(new SharkCertificate(
-                            cp.getContextCoordinates().getPeer(),
-                            cp.getContextCoordinates().getRemotePeer(),
-                            getLinkedListFromByteArray(transmitterList.getContentAsByte()),
-                            Certificate.TrustLevel.valueOf(trustLevel.getContentAsString()),
-                            keyFactory.generatePublic(new X509EncodedKeySpec(publicKey.getContentAsByte())),
-                            new Date(cp.getContextCoordinates().getTime().getDuration())
-                    ));
-                } catch (InvalidKeySpecException e) {
-                    throw new SharkKBException(e.getMessage());
-                }
-            }
+        for (ContextPoint cp : getCertificateIndex().all()) {
+            sharkCertificateList.add(decode(cp));
         }
 
         if(sharkCertificateList.size() > 0) {
@@ -416,7 +409,7 @@ public class SharkPkiStorage implements PkiStorage {
      * @throws SharkKBException
      */
     @Override
-    public boolean updateSharkCertificateTrustLevel(SharkCertificate sharkCertificate, Certificate.TrustLevel trustLevel) throws SharkKBException{
+    public synchronized boolean updateSharkCertificateTrustLevel(SharkCertificate sharkCertificate, Certificate.TrustLevel trustLevel) throws SharkKBException{
         if(getSharkCertificate(sharkCertificate.getSubject(), sharkCertificate.getSubjectPublicKey()) != null) {
             deleteSharkCertificate(sharkCertificate);
             sharkCertificate.setTrustLevel(trustLevel);
@@ -431,7 +424,7 @@ public class SharkPkiStorage implements PkiStorage {
      * @return True or false
      * @throws SharkKBException
      */
-    @Override public boolean deleteSharkCertificate(SharkCertificate sharkCertificate) throws SharkKBException {
+    @Override public synchronized boolean deleteSharkCertificate(SharkCertificate sharkCertificate) throws SharkKBException {
         if(getSharkCertificate(sharkCertificate.getSubject(), sharkCertificate.getSubjectPublicKey()) != null) {
             this.sharkPkiStorageKB.removeContextPoint(
                     new InMemoSharkKB().createContextCoordinates(
@@ -443,13 +436,15 @@ public class SharkPkiStorage implements PkiStorage {
                         null,                                                     //Location -> if null any
                         SharkCS.DIRECTION_INOUT)                                  //Direction
             );
+            invalidateCertificateIndex();
             return true;
         }
         return false;
     }
 
     /**
-     * Returns the used {@link SharkKB} reflecting the {@link PkiStorage}
+     * Returns the used {@link SharkKB} reflecting the {@link PkiStorage}. Context points
+     * added, changed or removed directly in that knowledge base are noticed by this storage.
      * @return {@link SharkKB}
      */
     @Override
@@ -458,30 +453,276 @@ public class SharkPkiStorage implements PkiStorage {
     }
 
     /**
-     * Checks the existence of a {@link SharkCertificate} within the {@link SharkPkiStorage}.
-     * @param sharkCertificate {@link SharkCertificate}
+     * Checks the existence of a {@link SharkCertificate} with that public key within the {@link SharkPkiStorage}.
+     * @param encodedKey X.509 encoded {@link PublicKey}
      * @return True (is in) or false (did not exists)
      * @throws SharkKBException
      */
-    private boolean isCertificateInKb(SharkCertificate sharkCertificate) throws SharkKBException {
-        Knowledge knowledge = SharkCSAlgebra.extract(sharkPkiStorageKB, contextCoordinatesFilter);
-        if(knowledge != null) {
-            for (ContextPoint cp : Collections.list(knowledge.contextPoints())) {
-                Information publicKey = extractInformation(cp, PKI_INFORMATION_PUBLIC_KEY_NAME);
-                try {
-                    if(sharkCertificate.getSubjectPublicKey().equals(keyFactory.generatePublic(new X509EncodedKeySpec(publicKey.getContentAsByte())))) {
-                        return true;
-                    }
-                } catch (InvalidKeySpecException e) {
-                    throw new SharkKBException(e.getMessage());
-                }
+    private boolean isCertificateInKb(byte[] encodedKey) throws SharkKBException {
+        for (ContextPoint cp : getCertificateIndex().byKey(encodedKey)) {
+            Information publicKey = extractInformation(cp, PKI_INFORMATION_PUBLIC_KEY_NAME);
+            if(Arrays.equals(publicKey.getContentAsByte(), encodedKey)) {
+                return true;
             }
-        } else {
-            return false;
         }
         return false;
     }
 
+    /**
+     * Certificate context points of the knowledge base in storage order -
+     * indexed by subject identifier and public key fingerprint.
+     */
+    private static class CertificateIndex {
+        private final List<ContextPoint> all = new ArrayList<>();
+        private final Map<ContextPoint, Integer> order = new IdentityHashMap<>();
+        // normalized subject si -> context points
+        private final Map<String, List<ContextPoint>> subjects = new HashMap<>();
+        // subjects without si match any subject
+        private final List<ContextPoint> anySubject = new ArrayList<>();
+        // fingerprint of encoded key -> context points
+        private final Map<String, List<ContextPoint>> keys = new HashMap<>();
+
+        void add(ContextPoint cp, String keyFingerprint) {
+            this.order.put(cp, this.all.size());
+            this.all.add(cp);
+
+            PeerSemanticTag subject = cp.getContextCoordinates().getPeer();
+            String[] sis = subject == null ? null : subject.getSI();
+            if(sis == null || sis.length == 0) {
+                this.anySubject.add(cp);
+            } else {
+                for(String si : sis) {
+                    put(this.subjects, SITable.normalize(si), cp);
+                }
+            }
+
+            if(keyFingerprint != null) {
+                put(this.keys, keyFingerprint, cp);
+            }
+        }
+
+        private static void put(Map<String, List<ContextPoint>> map, String key, ContextPoint cp) {
+            List<ContextPoint> cps = map.get(key);
+            if(cps == null) {
+                cps = new ArrayList<>(1);
+                map.put(key, cps);
+            }
+            if(!cps.contains(cp)) {
+                cps.add(cp);
+            }
+        }
+
+        List<ContextPoint> all() {
+            return this.all;
+        }
+
+        /**
+         * @return candidates in storage order - all if subject is any
+         */
+        List<ContextPoint> bySubject(PeerSemanticTag subject) {
+            if(subject == null || SharkCSAlgebra.isAny(subject)) {
+                return this.all;
+            }
+            return this.bySubject(subject.getSI());
+        }
+
+        List<ContextPoint> bySubject(String[] sis) {
+            if(sis == null) {
+                return this.all;
+            }
+
+            Set<ContextPoint> candidates = Collections.newSetFromMap(new IdentityHashMap<ContextPoint, Boolean>());
+            candidates.addAll(this.anySubject);
+            for(String si : sis) {
+                List<ContextPoint> cps = si == null ? null : this.subjects.get(SITable.normalize(si));
+                if(cps != null) {
+                    candidates.addAll(cps);
+                }
+            }
+            return this.inOrder(candidates);
+        }
+
+        List<ContextPoint> byKey(byte[] encodedKey) {
+            List<ContextPoint> cps = this.keys.get(keyFingerprint(encodedKey));
+            return cps == null ? Collections.<ContextPoint>emptyList() : cps;
+        }
+
+        private List<ContextPoint> inOrder(Collection<ContextPoint> cps) {
+            List<ContextPoint> sorted = new ArrayList<>(cps);
+            Collections.sort(sorted, new Comparator<ContextPoint>() {
+                @Override
+                public int compare(ContextPoint a, ContextPoint b) {
+                    return order.get(a).compareTo(order.get(b));
+                }
+            });
+            return sorted;
+        }
+    }
+
+    /**
+     * Counts changes of the knowledge base. It doesn't refer to the storage - the
+     * knowledge base doesn't keep storages alive. Each knowledge base gets a single
+     * counter, storages created on the same knowledge base reuse it.
+     */
+    private static class ChangeCounter implements KnowledgeBaseListener {
+        private final AtomicInteger changes = new AtomicInteger();
+
+        static ChangeCounter of(SharkKB kb) {
+            synchronized (CHANGE_COUNTERS) {
+                ChangeCounter counter = CHANGE_COUNTERS.get(kb);
+                if (counter == null) {
+                    counter = new ChangeCounter();
+                    kb.addListener(counter);
+                    CHANGE_COUNTERS.put(kb, counter);
+                }
+                return counter;
+            }
+        }
+
+        int get() {
+            return this.changes.get();
+        }
+
+        @Override
+        public void contextPointAdded(ContextPoint cp) {
+            this.changes.incrementAndGet();
+        }
+
+        @Override
+        public void cpChanged(ContextPoint cp) {
+            this.changes.incrementAndGet();
+        }
+
+        @Override
+        public void contextPointRemoved(ContextPoint cp) {
+            this.changes.incrementAndGet();
+        }
+
+        @Override
+        public void peerRemoved(PeerSemanticTag tag) {
+            this.changes.incrementAndGet();
+        }
+
+        @Override
+        public void tagChanged(SemanticTag tag) {
+            // subject sis can change
+            this.changes.incrementAndGet();
+        }
+
+        @Override public void topicAdded(SemanticTag tag) {}
+        @Override public void peerAdded(PeerSemanticTag tag) {}
+        @Override public void locationAdded(SpatialSemanticTag location) {}
+        @Override public void timespanAdded(TimeSemanticTag time) {}
+        @Override public void topicRemoved(SemanticTag tag) {}
+        @Override public void locationRemoved(SpatialSemanticTag tag) {}
+        @Override public void timespanRemoved(TimeSemanticTag tag) {}
+        @Override public void predicateCreated(SNSemanticTag subject, String type, SNSemanticTag object) {}
+        @Override public void predicateRemoved(SNSemanticTag subject, String type, SNSemanticTag object) {}
+    }
+
+    /**
+     * Returns the SHA-256 fingerprint of an encoded key.
+     * @param encodedKey encoded {@link PublicKey}
+     * @return fingerprint as hex string
+     */
+    private static String keyFingerprint(byte[] encodedKey) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(encodedKey);
+            return Util.toHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            // each java platform must support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the index of all certificates. It is built from the {@link SharkKB} if stale.
+     * @return {@link CertificateIndex}
+     * @throws SharkKBException
+     */
+    private CertificateIndex getCertificateIndex() throws SharkKBException {
+        int changes = kbChanges.get();
+        if(changes != indexedChanges) {
+            invalidateCertificateIndex();
+            indexedChanges = changes;
+        }
+
+        if(certificateIndex == null) {
+            CertificateIndex index = new CertificateIndex();
+            Knowledge knowledge = SharkCSAlgebra.extract(sharkPkiStorageKB, contextCoordinatesFilter);
+            if(knowledge != null) {
+                for (ContextPoint cp : Collections.list(knowledge.contextPoints())) {
+                    Information publicKey = extractInformation(cp, PKI_INFORMATION_PUBLIC_KEY_NAME);
+                    index.add(cp, publicKey == null ? null : keyFingerprint(publicKey.getContentAsByte()));
+                }
+            }
+            certificateIndex = index;
+        }
+        return certificateIndex;
+    }
+
+    /**
+     * Drops index and decoded certificates after certificates were added or removed.
+     */
+    private void invalidateCertificateIndex() {
+        certificateIndex = null;
+        decodedCertificates.clear();
+        decodedKeys.clear();
+    }
+
+    /**
+     * Creates a {@link SharkCertificate} from its {@link ContextPoint}. Decoded certificates
+     * and keys are cached. Callers get a copy they may change.
+     * @param cp {@link ContextPoint}
+     * @return {@link SharkCertificate}
+     * @throws SharkKBException
+     */
+    private SharkCertificate decode(ContextPoint cp) throws SharkKBException {
+        SharkCertificate sharkCertificate = decodedCertificates.get(cp);
+        if(sharkCertificate == null) {
+            Information transmitterList = extractInformation(cp, PKI_INFORMATION_TRANSMITTER_LIST_NAME);
+            Information trustLevel = extractInformation(cp, PKI_INFORMATION_TRUST_LEVEL);
+            Information publicKey = extractInformation(cp, PKI_INFORMATION_PUBLIC_KEY_NAME);
+
+            sharkCertificate = new SharkCertificate(
+                    cp.getContextCoordinates().getPeer(),
+                    cp.getContextCoordinates().getRemotePeer(),
+                    getLinkedListFromByteArray(transmitterList.getContentAsByte()),
+                    Certificate.TrustLevel.valueOf(trustLevel.getContentAsString()),
+                    decodePublicKey(publicKey.getContentAsByte()),
+                    new Date(cp.getContextCoordinates().getTime().getDuration()));
+            decodedCertificates.put(cp, sharkCertificate);
+        }
+
+        return new SharkCertificate(
+                sharkCertificate.getSubject(),
+                sharkCertificate.getIssuer(),
+                new LinkedList<>(sharkCertificate.getTransmitterList()),
+                sharkCertificate.getTrustLevel(),
+                sharkCertificate.getSubjectPublicKey(),
+                sharkCertificate.getValidity());
+    }
+
+    /**
+     * Returns the {@link PublicKey} of an encoded key - decoded keys are cached.
+     * @param encodedKey X.509 encoded key
+     * @return {@link PublicKey}
+     * @throws SharkKBException
+     */
+    private PublicKey decodePublicKey(byte[] encodedKey) throws SharkKBException {
+        String fingerprint = keyFingerprint(encodedKey);
+        PublicKey publicKey = decodedKeys.get(fingerprint);
+        if(publicKey == null) {
+            try {
+                publicKey = keyFactory.generatePublic(new X509EncodedKeySpec(encodedKey));
+            } catch (InvalidKeySpecException e) {
+                throw new SharkKBException(e.getMessage());
+            }
+            decodedKeys.put(fingerprint, publicKey);
+        }
+        return publicKey;
+    }
+
     /**
      * Returns an {@link Information} via the {@link ContextPoint} and string identifier.
      * @param cp {@link ContextPoint}
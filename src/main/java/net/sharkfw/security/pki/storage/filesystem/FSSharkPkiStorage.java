@@ -1,18 +1,53 @@
 package net.sharkfw.security.pki.storage.filesystem;
 
+import net.sharkfw.knowledgeBase.PeerSemanticTag;
 import net.sharkfw.knowledgeBase.SharkKBException;
+import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
+import net.sharkfw.security.pki.Certificate;
+import net.sharkfw.security.pki.SharkCertificate;
 import net.sharkfw.security.pki.storage.SharkPkiStorage;
+import net.sharkfw.system.L;
+import net.sharkfw.system.Util;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.*;
 
 /**
- * Handling the serialization and deserialization of the SharkPkiStorage. This Methods should be only used if
- * there is no need to use the default behaviour of storing data.
+ * Stores certificates in an append-only file. Each change appends one length-prefixed record:
+ * a certificate or the removal of a certificate, both tagged with the SHA-256 fingerprint of the
+ * public key. Opening the file only reads record headers and remembers the offset of the latest
+ * record of each key. Certificates are decoded when they are asked for.
+ * <p>
+ * Removed and replaced certificates remain in the file until {@link #compact()} or
+ * {@link #save(SharkPkiStorage)} rewrites it.
+ * <p>
+ * Files of the former format - a serialized object graph - are converted when they are
+ * opened the first time. The old file is kept with the suffix {@code .old}.
  * @author ac
  */
 public class FSSharkPkiStorage {
 
+    private final static int MAGIC = 0x534b5043; // SKPC
+    private final static byte VERSION = 1;
+    private final static int FILE_HEADER_LENGTH = 5;
+
+    private final static byte CERTIFICATE_RECORD = 1;
+    private final static byte REMOVE_RECORD = 2;
+    private final static int FINGERPRINT_LENGTH = 32;
+
     private final String filePath;
+    private RandomAccessFile file = null;
+
+    // key fingerprint -> offset of latest certificate record, in order of appearance
+    private LinkedHashMap<String, Long> offsets = null;
 
     /**
      * Constructor to get access to the provided methods.
@@ -23,42 +58,476 @@ public class FSSharkPkiStorage {
     }
 
     /**
-     * Serialize the given object and saved it to the path from the initialization.
+     * Appends a certificate. A stored certificate with the same public key is replaced.
+     * @param sharkCertificate {@link SharkCertificate}
+     * @throws SharkKBException
+     */
+    public synchronized void append(SharkCertificate sharkCertificate) throws SharkKBException {
+        byte[] fingerprint = fingerprint(sharkCertificate.getSubjectPublicKey());
+        try {
+            long offset = appendRecord(CERTIFICATE_RECORD, fingerprint, encode(sharkCertificate));
+            offsets.put(hex(fingerprint), offset);
+        } catch (IOException e) {
+            throw new SharkKBException(e.getMessage());
+        }
+    }
+
+    /**
+     * Removes the certificate of that public key.
+     * @param publicKey {@link PublicKey}
+     * @return True if a certificate was removed
+     * @throws SharkKBException
+     */
+    public synchronized boolean remove(PublicKey publicKey) throws SharkKBException {
+        byte[] fingerprint = fingerprint(publicKey);
+        try {
+            open();
+            String key = hex(fingerprint);
+            if(!offsets.containsKey(key)) {
+                return false;
+            }
+            // index follows the file - it keeps the certificate if writing fails
+            appendRecord(REMOVE_RECORD, fingerprint, new byte[0]);
+            offsets.remove(key);
+            return true;
+        } catch (IOException e) {
+            throw new SharkKBException(e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the certificate of that public key - only this one is decoded.
+     * @param publicKey {@link PublicKey}
+     * @return {@link SharkCertificate} or null
+     * @throws SharkKBException
+     */
+    public synchronized SharkCertificate getSharkCertificate(PublicKey publicKey) throws SharkKBException {
+        try {
+            open();
+            Long offset = offsets.get(hex(fingerprint(publicKey)));
+            return offset == null ? null : readCertificate(offset);
+        } catch (IOException e) {
+            throw new SharkKBException(e.getMessage());
+        }
+    }
+
+    /**
+     * Returns all stored certificates - each one is decoded.
+     * @return {@link SharkCertificate}'s in the order they were stored first
+     * @throws SharkKBException
+     */
+    public synchronized List<SharkCertificate> getSharkCertificates() throws SharkKBException {
+        try {
+            open();
+            List<SharkCertificate> sharkCertificates = new ArrayList<>(offsets.size());
+            for (long offset : offsets.values()) {
+                sharkCertificates.add(readCertificate(offset));
+            }
+            return sharkCertificates;
+        } catch (IOException e) {
+            throw new SharkKBException(e.getMessage());
+        }
+    }
+
+    /**
+     * @return number of stored certificates
+     * @throws SharkKBException
+     */
+    public synchronized int size() throws SharkKBException {
+        try {
+            open();
+            return offsets.size();
+        } catch (IOException e) {
+            throw new SharkKBException(e.getMessage());
+        }
+    }
+
+    /**
+     * Replaces the file with the certificates of the given storage.
      * @param sharkPkiStorage {@link SharkPkiStorage}
      * @return true or false as indicator for success or failure in case of saving the object.
      */
-    public boolean save(SharkPkiStorage sharkPkiStorage) {
+    public synchronized boolean save(SharkPkiStorage sharkPkiStorage) {
         try {
-            FileOutputStream fileOutputStream =  new FileOutputStream(filePath);
-            ObjectOutputStream objectOutputStream = new ObjectOutputStream(fileOutputStream);
-            objectOutputStream.writeObject(sharkPkiStorage);
-            objectOutputStream.close();
-            fileOutputStream.close();
-        } catch (FileNotFoundException e) {
+            HashSet<SharkCertificate> sharkCertificates = sharkPkiStorage.getSharkCertificateList();
+            List<byte[][]> records = new ArrayList<>();
+            if(sharkCertificates != null) {
+                for (SharkCertificate sharkCertificate : sharkCertificates) {
+                    records.add(new byte[][] {
+                            fingerprint(sharkCertificate.getSubjectPublicKey()),
+                            encode(sharkCertificate)});
+                }
+            }
+            rewrite(records);
+        } catch (SharkKBException | IOException e) {
             return false;
+        }
+        return true;
+    }
+
+    /**
+     * Adds all stored certificates to the given storage. Public keys are handed over encoded -
+     * the storage decodes a key when its certificate is looked up the first time.
+     * @param sharkPkiStorage {@link SharkPkiStorage}
+     * @return number of certificates read
+     * @throws SharkKBException
+     */
+    public synchronized int load(SharkPkiStorage sharkPkiStorage) throws SharkKBException {
+        try {
+            open();
+            for (long offset : offsets.values()) {
+                StoredCertificate stored = StoredCertificate.read(readRecord(offset)[1]);
+                sharkPkiStorage.addSharkCertificate(stored.subject, stored.issuer, stored.transmitterList,
+                        stored.trustLevel, stored.encodedKey, stored.validity);
+            }
+            return offsets.size();
+        } catch (IOException e) {
+            throw new SharkKBException(e.getMessage());
+        }
+    }
+
+    /**
+     * Rewrites the file without removed and replaced certificates.
+     * @throws SharkKBException
+     */
+    public synchronized void compact() throws SharkKBException {
+        try {
+            open();
+            List<byte[][]> records = new ArrayList<>(offsets.size());
+            for (long offset : offsets.values()) {
+                records.add(readRecord(offset));
+            }
+            rewrite(records);
         } catch (IOException e) {
+            throw new SharkKBException(e.getMessage());
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        if(file != null) {
+            file.close();
+            file = null;
+            offsets = null;
+        }
+    }
+
+    /**
+     * Opens the file and reads the record headers. An incomplete record at the end
+     * of the file - e.g. after a crash while appending - is cut off.
+     */
+    private void open() throws IOException {
+        if(file != null) {
+            return;
+        }
+
+        convertLegacyFile();
+
+        RandomAccessFile f = new RandomAccessFile(filePath, "rw");
+        LinkedHashMap<String, Long> index = new LinkedHashMap<>();
+        try {
+            if(f.length() < FILE_HEADER_LENGTH) {
+                f.setLength(0);
+                f.writeInt(MAGIC);
+                f.writeByte(VERSION);
+            } else if(f.readInt() != MAGIC || f.readByte() != VERSION) {
+                throw new IOException("not a certificate file: " + filePath);
+            }
+
+            long offset = FILE_HEADER_LENGTH;
+            long length = f.length();
+            byte[] fingerprint = new byte[FINGERPRINT_LENGTH];
+            while(offset + 4 <= length) {
+                f.seek(offset);
+                int recordLength = f.readInt();
+                if(recordLength < 1 + FINGERPRINT_LENGTH || offset + 4 + recordLength > length) {
+                    break;
+                }
+                byte type = f.readByte();
+                f.readFully(fingerprint);
+
+                String key = hex(fingerprint);
+                if(type == CERTIFICATE_RECORD) {
+                    index.remove(key);
+                    index.put(key, offset);
+                } else {
+                    index.remove(key);
+                }
+                offset += 4 + recordLength;
+            }
+
+            if(offset < length) {
+                f.setLength(offset);
+            }
+        } catch (IOException e) {
+            f.close();
+            throw e;
+        }
+
+        file = f;
+        offsets = index;
+    }
+
+    /**
+     * @return offset of the new record
+     */
+    private long appendRecord(byte type, byte[] fingerprint, byte[] payload) throws IOException {
+        open();
+        long offset = file.length();
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(5 + FINGERPRINT_LENGTH + payload.length);
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeInt(1 + FINGERPRINT_LENGTH + payload.length);
+        out.writeByte(type);
+        out.write(fingerprint);
+        out.write(payload);
+
+        // one write - a crash leaves at most one incomplete record
+        file.seek(offset);
+        file.write(buffer.toByteArray());
+        return offset;
+    }
+
+    /**
+     * @return fingerprint and payload of the record at offset
+     */
+    private byte[][] readRecord(long offset) throws IOException {
+        file.seek(offset);
+        int recordLength = file.readInt();
+        file.readByte();
+        byte[] fingerprint = new byte[FINGERPRINT_LENGTH];
+        file.readFully(fingerprint);
+        byte[] payload = new byte[recordLength - 1 - FINGERPRINT_LENGTH];
+        file.readFully(payload);
+        return new byte[][] {fingerprint, payload};
+    }
+
+    private SharkCertificate readCertificate(long offset) throws IOException {
+        return StoredCertificate.read(readRecord(offset)[1]).decode();
+    }
+
+    /**
+     * Files written by the former save() are serialized object graphs. Each {@link SharkCertificate}
+     * of the graph is written into a new file of the current format. A graph which was only partly
+     * written - e.g. because an object wasn't serializable - is converted as far as it was written.
+     */
+    private void convertLegacyFile() throws IOException {
+        File legacy = new File(filePath);
+        if(!isLegacyFile(legacy)) {
+            return;
+        }
+
+        LegacyInputStream in = new LegacyInputStream(new BufferedInputStream(new FileInputStream(legacy)));
+        try {
+            while(true) {
+                in.readObject();
+            }
+        } catch (EOFException | WriteAbortedException e) {
+            // end of graph
+        } catch (ClassNotFoundException | ObjectStreamException e) {
+            throw new IOException("cannot convert certificate file " + filePath + ": " + e.getMessage());
+        } finally {
+            in.close();
+        }
+
+        List<byte[][]> records = new ArrayList<>(in.certificates.size());
+        HashSet<String> fingerprints = new HashSet<>();
+        for (SharkCertificate sharkCertificate : in.certificates) {
+            byte[] fingerprint;
+            try {
+                fingerprint = fingerprint(sharkCertificate.getSubjectPublicKey());
+            } catch (SharkKBException e) {
+                throw new IOException(e.getMessage());
+            }
+            if(fingerprints.add(hex(fingerprint))) {
+                records.add(new byte[][] {fingerprint, encode(sharkCertificate)});
+            }
+        }
+
+        Files.copy(legacy.toPath(), new File(filePath + ".old").toPath(), StandardCopyOption.REPLACE_EXISTING);
+        rewrite(records);
+        L.log(this, "converted certificate file {} - {} certificates", filePath, records.size());
+    }
+
+    private static boolean isLegacyFile(File f) throws IOException {
+        if(f.length() < 2) {
             return false;
         }
-        return true;
+        DataInputStream in = new DataInputStream(new FileInputStream(f));
+        try {
+            return in.readShort() == ObjectStreamConstants.STREAM_MAGIC;
+        } finally {
+            in.close();
+        }
     }
 
     /**
-     * Deserialize the object from the given filepath.
-     * @return SharkPkiStorage
+     * Collects the certificates of a serialized object graph while it is read.
      */
-    public SharkPkiStorage load() throws SharkKBException {
+    private static class LegacyInputStream extends ObjectInputStream {
+        private final List<SharkCertificate> certificates = new ArrayList<>();
 
-        SharkPkiStorage sharkPkiStorage;
+        LegacyInputStream(InputStream in) throws IOException {
+            super(in);
+            enableResolveObject(true);
+        }
 
+        @Override
+        protected Object resolveObject(Object obj) {
+            if(obj instanceof SharkCertificate) {
+                certificates.add((SharkCertificate) obj);
+            }
+            return obj;
+        }
+    }
+
+    /**
+     * Writes a new file next to the old one and replaces it atomically.
+     * @param records fingerprint and payload of each certificate
+     */
+    private void rewrite(List<byte[][]> records) throws IOException {
+        close();
+
+        File target = new File(filePath);
+        File tmp = new File(filePath + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
         try {
-            FileInputStream fileInputStream = new FileInputStream(filePath);
-            ObjectInputStream objectInputStream = new ObjectInputStream(fileInputStream);
-            sharkPkiStorage = (SharkPkiStorage) objectInputStream.readObject();
-            objectInputStream.close();
-            fileInputStream.close();
-            return sharkPkiStorage;
-        } catch (IOException | ClassNotFoundException e) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            for (byte[][] record : records) {
+                out.writeInt(1 + FINGERPRINT_LENGTH + record[1].length);
+                out.writeByte(CERTIFICATE_RECORD);
+                out.write(record[0]);
+                out.write(record[1]);
+            }
+        } finally {
+            out.close();
+        }
+
+        // old file stays complete until it is replaced
+        Files.move(tmp.toPath(), target.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static byte[] encode(SharkCertificate sharkCertificate) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+
+        writePeer(out, sharkCertificate.getSubject());
+        writePeer(out, sharkCertificate.getIssuer());
+
+        LinkedList<PeerSemanticTag> transmitterList = sharkCertificate.getTransmitterList();
+        out.writeInt(transmitterList == null ? 0 : transmitterList.size());
+        if(transmitterList != null) {
+            for (PeerSemanticTag transmitter : transmitterList) {
+                writePeer(out, transmitter);
+            }
+        }
+
+        out.writeUTF(sharkCertificate.getTrustLevel().name());
+        out.writeLong(sharkCertificate.getValidity().getTime());
+
+        PublicKey publicKey = sharkCertificate.getSubjectPublicKey();
+        out.writeUTF(publicKey.getAlgorithm());
+        byte[] encodedKey = publicKey.getEncoded();
+        out.writeInt(encodedKey.length);
+        out.write(encodedKey);
+
+        out.flush();
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Fields of a certificate record - the public key is still encoded.
+     */
+    private static class StoredCertificate {
+        PeerSemanticTag subject;
+        PeerSemanticTag issuer;
+        LinkedList<PeerSemanticTag> transmitterList = new LinkedList<>();
+        Certificate.TrustLevel trustLevel;
+        Date validity;
+        String algorithm;
+        byte[] encodedKey;
+
+        static StoredCertificate read(byte[] payload) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            StoredCertificate stored = new StoredCertificate();
+
+            stored.subject = readPeer(in);
+            stored.issuer = readPeer(in);
+
+            int transmitters = in.readInt();
+            for (int i = 0; i < transmitters; i++) {
+                stored.transmitterList.add(readPeer(in));
+            }
+
+            stored.trustLevel = Certificate.TrustLevel.valueOf(in.readUTF());
+            stored.validity = new Date(in.readLong());
+
+            stored.algorithm = in.readUTF();
+            stored.encodedKey = new byte[in.readInt()];
+            in.readFully(stored.encodedKey);
+
+            return stored;
+        }
+
+        SharkCertificate decode() throws IOException {
+            PublicKey publicKey;
+            try {
+                publicKey = KeyFactory.getInstance(algorithm).generatePublic(new X509EncodedKeySpec(encodedKey));
+            } catch (GeneralSecurityException e) {
+                throw new IOException(e.getMessage());
+            }
+
+            return new SharkCertificate(subject, issuer, transmitterList, trustLevel, publicKey, validity);
+        }
+    }
+
+    private static void writePeer(DataOutputStream out, PeerSemanticTag peer) throws IOException {
+        out.writeBoolean(peer != null);
+        if(peer == null) {
+            return;
+        }
+        out.writeUTF(peer.getName() == null ? "" : peer.getName());
+        writeStrings(out, peer.getSI());
+        writeStrings(out, peer.getAddresses());
+    }
+
+    private static PeerSemanticTag readPeer(DataInputStream in) throws IOException {
+        if(!in.readBoolean()) {
+            return null;
+        }
+        String name = in.readUTF();
+        String[] sis = readStrings(in);
+        String[] addresses = readStrings(in);
+        return InMemoSharkKB.createInMemoPeerSemanticTag(name, sis, addresses);
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] strings) throws IOException {
+        out.writeInt(strings == null ? 0 : strings.length);
+        if(strings != null) {
+            for (String s : strings) {
+                out.writeUTF(s);
+            }
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException {
+        String[] strings = new String[in.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = in.readUTF();
+        }
+        return strings;
+    }
+
+    private static byte[] fingerprint(PublicKey publicKey) throws SharkKBException {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(publicKey.getEncoded());
+        } catch (NoSuchAlgorithmException e) {
             throw new SharkKBException(e.getMessage());
         }
     }
+
+    private static String hex(byte[] bytes) {
+        return Util.toHex(bytes);
+    }
 }
@@ -6,6 +6,10 @@ import java.io.FileOutputStream;
 import java.io.PrintStream;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.sharkfw.asip.ASIPInformation;
 import net.sharkfw.asip.ASIPInformationSpace;
@@ -68,14 +72,37 @@ public class L {
             className = o.getClass().getName();
         }
         
-        String logString = getTimestamp() + " ["+ className +"] " + loglevelString + ": " + msg;
+        PrintStream stream = loglevel == LOGLEVEL_ERROR ? L.err : L.out;
         
-        if(loglevel == LOGLEVEL_ERROR) {
-            L.err.println(logString);
-            L.err.flush();
-        } else {
-            L.out.println(logString);
-            L.out.flush();
+        LogRecord record = new LogRecord(System.currentTimeMillis(), 
+                className, loglevelString, msg, stream);
+        
+        LogWriter w = L.writer;
+        if(w == null || !w.offer(record)) {
+            // synchronous or queue full - write it in this thread
+            record.write(new SimpleDateFormat(TIMESTAMP_FORMAT));
+        }
+    }
+    
+    /**
+     * @param level one of the LOGLEVEL constants
+     * @return true if messages of that level are written. Use it to avoid
+     * building expensive log messages which are dropped anyway.
+     */
+    public static boolean isEnabled(int level) {
+        switch(level) {
+            case LOGLEVEL_ALL: 
+                return loglevel == LOGLEVEL_ALL;
+            case LOGLEVEL_DEBUG: 
+                return loglevel == LOGLEVEL_ALL || loglevel == LOGLEVEL_DEBUG;
+            case LOGLEVEL_WARNING:
+            case LOGLEVEL_ERROR:
+                return loglevel == LOGLEVEL_ALL 
+                    || loglevel == LOGLEVEL_DEBUG
+                    || loglevel == LOGLEVEL_WARNING
+                    || loglevel == LOGLEVEL_ERROR;
+            default: 
+                return false;
         }
     }
 
@@ -86,7 +113,7 @@ public class L {
      * @param o
      */
     public static void l(String msg, Object o) {
-        if(loglevel == LOGLEVEL_ALL) {
+        if(L.isEnabled(LOGLEVEL_ALL)) {
             L.doLog(o, msg, LOGLEVEL_ALL);
         }
     }
@@ -98,10 +125,7 @@ public class L {
      * @param o
      */
     public static void d(String msg, Object o) {
-
-        if(loglevel == LOGLEVEL_ALL 
-                || loglevel == LOGLEVEL_DEBUG
-                ) {
+        if(L.isEnabled(LOGLEVEL_DEBUG)) {
             L.doLog(o, msg, LOGLEVEL_DEBUG);
         }
     }
@@ -118,12 +142,7 @@ public class L {
      * @param o
      */
     public static void e(String msg, Object o) {
-
-        if(loglevel == LOGLEVEL_ALL 
-                || loglevel == LOGLEVEL_DEBUG
-                || loglevel == LOGLEVEL_WARNING
-                || loglevel == LOGLEVEL_ERROR
-                ) {
+        if(L.isEnabled(LOGLEVEL_ERROR)) {
             L.doLog(o, msg, LOGLEVEL_ERROR);
         }
     }
@@ -136,21 +155,281 @@ public class L {
      * @param o
      */
     public static void w(String msg, Object o) {
-    
-        if(loglevel == LOGLEVEL_ALL 
-                || loglevel == LOGLEVEL_DEBUG
-                || loglevel == LOGLEVEL_WARNING
-                || loglevel == LOGLEVEL_ERROR
-                ) {
+        if(L.isEnabled(LOGLEVEL_WARNING)) {
             L.doLog(o, msg, LOGLEVEL_WARNING);
         }
     }
+    
+    ////////////////////////////////////////////////////////////////////////
+    //                      parameterized messages                        //
+    ////////////////////////////////////////////////////////////////////////
+    
+    /*
+     * Pattern and arguments are only put together if the log level is 
+     * enabled. Each {} in pattern is replaced by the next argument.
+     * Use lazy arguments (e.g. L.lazyKB()) for expensive string 
+     * representations:
+     * 
+     * L.debug(this, "storage: {}", L.lazyKB(kb));
+     */
+    
+    /**
+     * Parameterized Log-Message, see l()
+     */
+    public static void log(Object o, String pattern, Object... args) {
+        if(L.isEnabled(LOGLEVEL_ALL)) {
+            L.doLog(o, L.format(pattern, args), LOGLEVEL_ALL);
+        }
+    }
+    
+    /**
+     * Parameterized Debug-Message, see d()
+     */
+    public static void debug(Object o, String pattern, Object... args) {
+        if(L.isEnabled(LOGLEVEL_DEBUG)) {
+            L.doLog(o, L.format(pattern, args), LOGLEVEL_DEBUG);
+        }
+    }
+    
+    /**
+     * Parameterized Warning-Message, see w()
+     */
+    public static void warn(Object o, String pattern, Object... args) {
+        if(L.isEnabled(LOGLEVEL_WARNING)) {
+            L.doLog(o, L.format(pattern, args), LOGLEVEL_WARNING);
+        }
+    }
+    
+    /**
+     * Parameterized Error-Message, see e()
+     */
+    public static void error(Object o, String pattern, Object... args) {
+        if(L.isEnabled(LOGLEVEL_ERROR)) {
+            L.doLog(o, L.format(pattern, args), LOGLEVEL_ERROR);
+        }
+    }
+    
+    /**
+     * Replaces each {} by next argument.
+     * 
+     * @param pattern
+     * @param args
+     * @return 
+     */
+    static String format(String pattern, Object... args) {
+        if(pattern == null) return null;
+        if(args == null || args.length == 0) return pattern;
+        
+        StringBuilder buf = new StringBuilder(pattern.length() + 32 * args.length);
+        int argIndex = 0;
+        int start = 0;
+        int pos;
+        while(argIndex < args.length && (pos = pattern.indexOf("{}", start)) >= 0) {
+            buf.append(pattern, start, pos);
+            buf.append(String.valueOf(args[argIndex++]));
+            start = pos + 2;
+        }
+        buf.append(pattern, start, pattern.length());
+        
+        return buf.toString();
+    }
+    
+    /**
+     * @return argument that produces kb2String(kb) only if it is logged
+     */
+    public static Object lazyKB(final SharkKB kb) {
+        return new LazyString() {
+            @Override
+            protected String build() { return L.kb2String(kb); }
+        };
+    }
+    
+    /**
+     * @return argument that produces contextSpace2String(cs) only if it is logged
+     */
+    public static Object lazyCS(final SharkCS cs) {
+        return new LazyString() {
+            @Override
+            protected String build() { return L.contextSpace2String(cs); }
+        };
+    }
+    
+    /**
+     * @return argument that produces knowledge2String(k.contextPoints()) only
+     * if it is logged
+     */
+    public static Object lazyKnowledge(final Knowledge k) {
+        return new LazyString() {
+            @Override
+            protected String build() { return L.knowledge2String(k.contextPoints()); }
+        };
+    }
+    
+    /**
+     * @return argument that produces Arrays.toString(b) only if it is logged
+     */
+    public static Object lazyBytes(final byte[] b) {
+        return new LazyString() {
+            @Override
+            protected String build() { return Arrays.toString(b); }
+        };
+    }
+    
+    ////////////////////////////////////////////////////////////////////////
+    //                         asynchronous output                        //
+    ////////////////////////////////////////////////////////////////////////
+    
+    public static final int DEFAULT_QUEUE_SIZE = 1024;
+    private static final String TIMESTAMP_FORMAT = "yyyy-MM-dd'T'HH:mm:ss.SSS";
+    
+    private static volatile LogWriter writer = null;
+    
+    private static boolean shutdownHookAdded = false;
+    
+    /**
+     * Log messages are written by the logging thread by default. In async
+     * mode a background thread writes them - logging threads are not held 
+     * up by slow output streams. Messages are written synchronously if the
+     * queue is full. Call flush() before reading the log output.
+     * 
+     * @param async true: messages are queued and written by a background thread
+     */
+    public static synchronized void setAsync(boolean async) {
+        if(async && L.writer == null) {
+            L.writer = new LogWriter(DEFAULT_QUEUE_SIZE);
+            L.writer.start();
+            
+            if(!L.shutdownHookAdded) {
+                // don't loose messages on exit
+                Runtime.getRuntime().addShutdownHook(new Thread() {
+                    @Override
+                    public void run() {
+                        L.flush();
+                    }
+                });
+                L.shutdownHookAdded = true;
+            }
+        } 
+        else if(!async && L.writer != null) {
+            LogWriter w = L.writer;
+            L.writer = null;
+            w.shutdown();
+        }
+    }
+    
+    /**
+     * Wait until all queued messages are written.
+     */
+    public static void flush() {
+        LogWriter w = L.writer;
+        if(w != null) {
+            w.flush();
+        }
+    }
+    
+    private static class LogRecord {
+        final long time;
+        final String className;
+        final String level;
+        final String msg;
+        final PrintStream stream;
+
+        LogRecord(long time, String className, String level, String msg, PrintStream stream) {
+            this.time = time;
+            this.className = className;
+            this.level = level;
+            this.msg = msg;
+            this.stream = stream;
+        }
+        
+        void write(SimpleDateFormat sdf) {
+            String logString = sdf.format(new Date(this.time)) + " ["+ this.className +"] " 
+                    + this.level + ": " + this.msg;
+            
+            this.stream.println(logString);
+            this.stream.flush();
+        }
+    }
+    
+    private static class LogWriter extends Thread {
+        private final BlockingQueue<LogRecord> queue;
+        private final SimpleDateFormat sdf = new SimpleDateFormat(TIMESTAMP_FORMAT);
+        private volatile boolean running = true;
+        // queued or being written
+        private final AtomicInteger pending = new AtomicInteger(0);
+        
+        LogWriter(int queueSize) {
+            super("SharkLogWriter");
+            this.setDaemon(true);
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+        }
+        
+        boolean offer(LogRecord record) {
+            if(!this.running) return false;
+            
+            this.pending.incrementAndGet();
+            if(this.queue.offer(record)) return true;
+            
+            this.pending.decrementAndGet();
+            return false;
+        }
+        
+        @Override
+        public void run() {
+            while(this.running || !this.queue.isEmpty()) {
+                try {
+                    LogRecord record = this.queue.poll(100, TimeUnit.MILLISECONDS);
+                    if(record != null) {
+                        this.write(record);
+                    }
+                } catch (InterruptedException ex) {
+                    // shutdown - write what's left
+                    this.running = false;
+                }
+            }
+        }
+        
+        private void write(LogRecord record) {
+            synchronized(this) {
+                try {
+                    record.write(this.sdf);
+                }
+                finally {
+                    if(this.pending.decrementAndGet() <= 0) {
+                        this.notifyAll();
+                    }
+                }
+            }
+        }
+        
+        /**
+         * Writes remaining messages in calling thread.
+         */
+        void flush() {
+            synchronized(this) {
+                for(;;) {
+                    LogRecord record;
+                    while((record = this.queue.poll()) != null) {
+                        this.write(record);
+                    }
+
+                    if(this.pending.get() <= 0) return;
 
-    private static String getTimestamp() {
-      long currentTime = System.currentTimeMillis();
-      SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS");
-      
-      return sdf.format(new Date(currentTime));
+                    // wait for message being written by writer thread
+                    try {
+                        this.wait(100);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+        
+        void shutdown() {
+            this.running = false;
+            this.flush();
+        }
     }
     
     public static String kb2String(SharkKB kb) {
@@ -0,0 +1,25 @@
+package net.sharkfw.system;
+
+/**
+ * Log argument whose string representation is built only if the message 
+ * is actually written, see L.debug() and others. The string is built once.
+ *
+ * @author thsc
+ */
+public abstract class LazyString {
+    private String value = null;
+    
+    /**
+     * @return string representation - called at most once
+     */
+    protected abstract String build();
+    
+    @Override
+    public String toString() {
+        if(this.value == null) {
+            this.value = this.build();
+        }
+        
+        return this.value;
+    }
+}
@@ -27,6 +27,10 @@ public class SharkTaskExecutor {
         executorService.scheduleAtFixedRate(task, 0, period, unit);
     }
 
+    public ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit){
+        return executorService.schedule(task, delay, unit);
+    }
+
     public void shutdown(){
         executorService.shutdownNow();
     }
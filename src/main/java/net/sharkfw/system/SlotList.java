@@ -0,0 +1,228 @@
+package net.sharkfw.system;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Insertion ordered collection with constant time add and remove.
+ *
+ * Elements are kept in a slot array. Each element knows its slot. Removing
+ * leaves a tombstone (null) behind. The array is compacted when tombstones
+ * make up half of it. Compaction and growth always create a new array.
+ *
+ * Iterators work on the array as it was when they were created. They never
+ * throw a ConcurrentModificationException and don't see elements added after
+ * their creation. Elements removed later may or may not be returned.
+ *
+ * Elements are compared by identity - like IdentityHashMap. Null is not
+ * allowed. Not thread safe - writers have to be serialized.
+ *
+ * @author thsc
+ * @param <E>
+ */
+public class SlotList<E> extends AbstractCollection<E> {
+    private static final int MIN_CAPACITY = 16;
+
+    private Object[] slots = new Object[MIN_CAPACITY];
+    // first free slot
+    private int end = 0;
+    private final IdentityHashMap<Object, Integer> positions = new IdentityHashMap<>();
+
+    public SlotList() {
+    }
+
+    public SlotList(Collection<? extends E> elements) {
+        this.addAll(elements);
+    }
+
+    @Override
+    public int size() {
+        return this.positions.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return this.positions.containsKey(o);
+    }
+
+    @Override
+    public boolean add(E e) {
+        if(e == null) {
+            throw new NullPointerException("slot list cannot hold null");
+        }
+        if(this.positions.containsKey(e)) return false;
+
+        if(this.end == this.slots.length) {
+            this.resize(this.size() + 1);
+        }
+
+        this.positions.put(e, this.end);
+        this.slots[this.end++] = e;
+        return true;
+    }
+
+    /**
+     * Adds all elements with at most one new array.
+     */
+    @Override
+    public boolean addAll(Collection<? extends E> elements) {
+        if(this.end + elements.size() > this.slots.length) {
+            this.resize(this.size() + elements.size());
+        }
+
+        boolean changed = false;
+        for(E e : elements) {
+            changed |= this.add(e);
+        }
+        return changed;
+    }
+
+    /**
+     * Removes that very object.
+     */
+    @Override
+    public boolean remove(Object o) {
+        if(!this.kill(o)) return false;
+
+        this.compact();
+        return true;
+    }
+
+    /**
+     * Removes those very objects and compacts at most once.
+     */
+    @Override
+    public boolean removeAll(Collection<?> elements) {
+        boolean changed = false;
+        for(Object o : elements) {
+            changed |= this.kill(o);
+        }
+
+        if(changed) this.compact();
+        return changed;
+    }
+
+    @Override
+    public void clear() {
+        this.slots = new Object[MIN_CAPACITY];
+        this.end = 0;
+        this.positions.clear();
+    }
+
+    /**
+     * Leaves a tombstone in the slot of o.
+     */
+    private boolean kill(Object o) {
+        Integer position = this.positions.remove(o);
+        if(position == null) return false;
+
+        this.slots[position] = null;
+        return true;
+    }
+
+    /**
+     * Compacts if at least half of the used slots are tombstones.
+     */
+    private void compact() {
+        int tombstones = this.end - this.size();
+        if(tombstones >= MIN_CAPACITY && tombstones * 2 >= this.end) {
+            this.resize(this.size());
+        }
+    }
+
+    /**
+     * Copies live elements in a new array with room for at least capacity
+     * elements. Iterators keep the old one.
+     */
+    private void resize(int capacity) {
+        Object[] newSlots = new Object[Math.max(MIN_CAPACITY, capacity + (capacity >> 1))];
+
+        int n = 0;
+        for(int i = 0; i < this.end; i++) {
+            Object e = this.slots[i];
+            if(e != null) {
+                newSlots[n] = e;
+                this.positions.put(e, n);
+                n++;
+            }
+        }
+
+        this.slots = newSlots;
+        this.end = n;
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] result = new Object[this.size()];
+        int n = 0;
+        for(int i = 0; i < this.end; i++) {
+            if(this.slots[i] != null) result[n++] = this.slots[i];
+        }
+        return result;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        Object[] elements = this.toArray();
+        if(a.length < elements.length) {
+            return (T[]) Arrays.copyOf(elements, elements.length, a.getClass());
+        }
+
+        System.arraycopy(elements, 0, a, 0, elements.length);
+        if(a.length > elements.length) a[elements.length] = null;
+        return a;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new SlotIterator(this.slots, this.end);
+    }
+
+    private class SlotIterator implements Iterator<E> {
+        private final Object[] slots;
+        private final int end;
+        private int index = 0;
+        private Object next = null;
+        private Object last = null;
+
+        SlotIterator(Object[] slots, int end) {
+            this.slots = slots;
+            this.end = end;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while(this.next == null && this.index < this.end) {
+                this.next = this.slots[this.index++];
+            }
+            return this.next != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if(!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            this.last = this.next;
+            this.next = null;
+            return (E) this.last;
+        }
+
+        @Override
+        public void remove() {
+            if(this.last == null) {
+                throw new IllegalStateException();
+            }
+
+            SlotList.this.remove(this.last);
+            this.last = null;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package net.sharkfw.system;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Copy on write list that can hand out point in time snapshots for free.
+ *
+ * Each change creates a new internal array. The array itself is never changed
+ * after publishing. Thus, a snapshot is nothing else than a read only view on
+ * the current array. Iterators work on snapshots as well: They never
+ * throw a ConcurrentModificationException and don't see later changes.
+ *
+ * Writers are serialized, readers are never blocked. Use it for lists which
+ * are read much more often than changed.
+ *
+ * Several lists can share one lock. Snapshots of all of them taken while
+ * holding that lock show the lists at the same point in time.
+ *
+ * @author thsc
+ * @param <E>
+ */
+public class SnapshotList<E> extends AbstractList<E> implements RandomAccess {
+    private static final Object[] EMPTY = new Object[0];
+
+    private volatile Object[] elements = EMPTY;
+
+    // writers synchronize on it - the list itself by default
+    private final Object lock;
+
+    public SnapshotList() {
+        this.lock = this;
+    }
+
+    /**
+     * @param lock writers of this list synchronize on lock
+     */
+    public SnapshotList(Object lock) {
+        this.lock = lock;
+    }
+
+    /**
+     * @return object writers synchronize on
+     */
+    public Object getLock() {
+        return this.lock;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        return (E) this.elements[index];
+    }
+
+    @Override
+    public int size() {
+        return this.elements.length;
+    }
+
+    @Override
+    public boolean add(E e) {
+        synchronized(this.lock) {
+            Object[] current = this.elements;
+            Object[] newElements = Arrays.copyOf(current, current.length + 1);
+            newElements[current.length] = e;
+            this.elements = newElements;
+            return true;
+        }
+    }
+
+    @Override
+    public E remove(int index) {
+        synchronized(this.lock) {
+            Object[] current = this.elements;
+            E old = this.get(index);
+
+            Object[] newElements = new Object[current.length - 1];
+            System.arraycopy(current, 0, newElements, 0, index);
+            System.arraycopy(current, index + 1, newElements, index, current.length - index - 1);
+            this.elements = newElements;
+
+            return old;
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        synchronized(this.lock) {
+            int index = this.indexOf(o);
+            if(index < 0) return false;
+
+            this.remove(index);
+            return true;
+        }
+    }
+
+    /**
+     * Appends all elements with a single copy.
+     */
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        synchronized(this.lock) {
+            if(c.isEmpty()) return false;
+
+            Object[] current = this.elements;
+            Object[] added = c.toArray();
+            Object[] newElements = Arrays.copyOf(current, current.length + added.length);
+            System.arraycopy(added, 0, newElements, current.length, added.length);
+            this.elements = newElements;
+            return true;
+        }
+    }
+
+    /**
+     * Removes those very objects - equals isn't used - with a single copy.
+     *
+     * @return true if something was removed
+     */
+    public boolean removeIdentical(Collection<?> c) {
+        synchronized(this.lock) {
+            if(c.isEmpty()) return false;
+
+            Map<Object, Boolean> remove = new IdentityHashMap<>();
+            for(Object o : c) {
+                remove.put(o, Boolean.TRUE);
+            }
+
+            Object[] current = this.elements;
+            Object[] newElements = new Object[current.length];
+            int n = 0;
+            for(Object e : current) {
+                if(!remove.containsKey(e)) newElements[n++] = e;
+            }
+            if(n == current.length) return false;
+
+            this.elements = Arrays.copyOf(newElements, n);
+            return true;
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized(this.lock) {
+            this.elements = EMPTY;
+        }
+    }
+
+    /**
+     * @return read only view of this list as it is right now. Later changes
+     * of this list have no effect on the snapshot.
+     */
+    @SuppressWarnings("unchecked")
+    public List<E> snapshot() {
+        return (List<E>) Collections.unmodifiableList(Arrays.asList(this.elements));
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new SnapshotIterator<>(this.elements);
+    }
+
+    private static class SnapshotIterator<E> implements Iterator<E> {
+        private final Object[] snapshot;
+        private int index = 0;
+
+        SnapshotIterator(Object[] snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.index < this.snapshot.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if(!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return (E) this.snapshot[this.index++];
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("snapshot iterator is read only");
+        }
+    }
+}
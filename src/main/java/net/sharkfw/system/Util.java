@@ -1035,7 +1035,7 @@ public class Util {
             info.streamContent(os);
             // Also copy all props from the original information to the newly created information
             Util.copyPropertiesFromPropertyHolderToPropertyHolder(info, localInfo);
-            L.d("Creating Information with name:" + info, Util.class);
+            L.debug(Util.class, "Creating Information with name:{}", info);
 
         }
     }
@@ -1253,6 +1253,24 @@ public class Util {
         return retval;
     }
 
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Hex representation of bytes - two lower case digits per byte. Used
+     * for fingerprints on lookup paths, so no formatter is involved.
+     *
+     * @param bytes
+     * @return hex string, empty if bytes is empty
+     */
+    public static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0x0f];
+            hex[2 * i + 1] = HEX_DIGITS[bytes[i] & 0x0f];
+        }
+        return new String(hex);
+    }
+
     /**
      * Return whether or not a key is marked as serializable.
      * @param key The key string to check
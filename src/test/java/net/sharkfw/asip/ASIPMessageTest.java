@@ -7,6 +7,8 @@ import net.sharkfw.knowledgeBase.SharkKB;
 import net.sharkfw.knowledgeBase.inmemory.InMemoASIPKnowledge;
 import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
 
+import net.sharkfw.peer.J2SEAndroidSharkEngine;
+import net.sharkfw.protocols.StreamConnection;
 import net.sharkfw.system.TestUtils;
 import org.junit.After;
 import org.junit.Assert;
@@ -17,6 +19,7 @@ import java.io.ByteArrayInputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
 import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
@@ -199,4 +202,54 @@ public class ASIPMessageTest extends ASIPBaseTest{
         Assert.assertTrue(rawInput.equals(receivedContent));
 
     }
+
+    @Test
+    public void ASIPMessage_TwoMessagesOnOneStream_splitByMessage() throws Exception {
+
+        String first = "Hello {ASIP\\\".";
+        String second = "Hello again.";
+
+        ASIPOutMessage outMessage = new ASIPOutMessage(this.engine, this.connection, 10, sender, receiverPeer, null, null, null, null);
+        outMessage.raw(first.getBytes(StandardCharsets.UTF_8));
+        outMessage = new ASIPOutMessage(this.engine, this.connection, 10, sender, receiverPeer, null, null, null, null);
+        outMessage.raw(second.getBytes(StandardCharsets.UTF_8));
+        this.connection.createInputStream();
+
+        ASIPInMessage inMessage = new ASIPInMessage(this.engine, this.connection);
+        inMessage.parse();
+        try (Scanner scanner = new Scanner(inMessage.getRaw(), StandardCharsets.UTF_8.name())) {
+            Assert.assertEquals(first, scanner.useDelimiter("\\A").next());
+        }
+
+        inMessage = new ASIPInMessage(this.engine, this.connection);
+        inMessage.parse();
+        try (Scanner scanner = new Scanner(inMessage.getRaw(), StandardCharsets.UTF_8.name())) {
+            Assert.assertEquals(second, scanner.useDelimiter("\\A").next());
+        }
+
+        Assert.assertEquals(0, this.connection.getInputStream().available());
+    }
+
+    @Test
+    public void ASIPMessage_closedWithoutSending_releasesConnection() throws Exception {
+
+        final AtomicInteger released = new AtomicInteger();
+        J2SEAndroidSharkEngine countingEngine = new J2SEAndroidSharkEngine() {
+            @Override
+            public void releaseConnection(StreamConnection connection) {
+                released.incrementAndGet();
+            }
+        };
+
+        try (ASIPOutMessage outMessage = new ASIPOutMessage(countingEngine, this.connection, 10, sender, receiverPeer, null, null, null, null)) {
+            Assert.assertEquals(0, released.get());
+        }
+        Assert.assertEquals(1, released.get());
+
+        // sent message - closing again does nothing
+        ASIPOutMessage outMessage = new ASIPOutMessage(countingEngine, this.connection, 10, sender, receiverPeer, null, null, null, null);
+        outMessage.raw("Hello ASIP.".getBytes(StandardCharsets.UTF_8));
+        outMessage.close();
+        Assert.assertEquals(2, released.get());
+    }
 }
@@ -0,0 +1,198 @@
+package net.sharkfw.kep;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Arrays;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import net.sharkfw.asip.ASIPSpace;
+import net.sharkfw.knowledgeBase.Knowledge;
+import net.sharkfw.knowledgeBase.SharkCS;
+import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
+import net.sharkfw.peer.J2SEAndroidSharkEngine;
+import net.sharkfw.peer.SharkEngine;
+import net.sharkfw.protocols.MessageStub;
+import net.sharkfw.protocols.RequestHandler;
+import net.sharkfw.protocols.StandardSharkInputStream;
+import net.sharkfw.system.Utils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author thsc
+ */
+public class KEPOutMessageTest {
+
+    private static final String[] ALICE = {"http://www.sharksystem.net/alice.html"};
+    private static final String[] BOB = {"http://www.sharksystem.net/bob.html"};
+
+    /**
+     * Keeps the last message instead of sending it.
+     */
+    private static class RecordingStub implements MessageStub {
+        private byte[] message;
+
+        @Override
+        public void sendMessage(byte[] msg, String recAddress) {
+            this.message = msg;
+        }
+
+        @Override
+        public void setReplyAddressString(String addr) {}
+
+        @Override
+        public String getReplyAddressString() { return "tcp://localhost:7070"; }
+
+        @Override
+        public void setHandler(RequestHandler handler) {}
+
+        @Override
+        public void stop() {}
+
+        @Override
+        public void start() {}
+
+        @Override
+        public boolean started() { return true; }
+
+        @Override
+        public void offer(ASIPSpace interest) {}
+
+        @Override
+        public void offer(Knowledge knowledge) {}
+    }
+
+    private SharkEngine se;
+    private RecordingStub stub;
+    private KeyPair alice;
+    private KeyPair bob;
+    private SharkCS interest;
+
+    @Before
+    public void setUp() throws GeneralSecurityException {
+        this.se = new J2SEAndroidSharkEngine() {
+            {
+                this.setKEPStub(new SimpleKEPStub(this));
+            }
+        };
+        this.stub = new RecordingStub();
+
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        this.alice = generator.generateKeyPair();
+        this.bob = generator.generateKeyPair();
+
+        this.interest = InMemoSharkKB.createInMemoInterest();
+    }
+
+    /**
+     * @return message from alice to bob - encrypted if bobs key is given
+     */
+    private byte[] expose(KeyPair recipient) throws Exception {
+        KEPOutMessage msg = new KEPOutMessage(this.se, this.stub,
+                KEPMessage.getKnowledgeSerializer(KEPMessage.XML), "tcp://localhost:7071");
+        msg.initSecurity(this.alice.getPrivate(),
+                recipient != null ? recipient.getPublic() : null, ALICE, BOB, false);
+        msg.expose(this.interest);
+        return this.stub.message;
+    }
+
+    /**
+     * @return message body - read as peers did before KEP 1.1
+     */
+    private byte[] readAsKEP10Peer(byte[] message, int bodyLength) throws Exception {
+        StandardSharkInputStream is = new StandardSharkInputStream(new ByteArrayInputStream(message));
+        is.readUTF8(); // version - never checked
+        is.readUTF8(); // cmd
+        is.readUTF8(); // format
+        Assert.assertArrayEquals(ALICE, Utils.deserialize(is.readUTF8()));
+        is.readUTF8(); // signed
+
+        byte[] wrappedKey = new byte[Integer.parseInt(is.readUTF8())];
+        new DataInputStream(is.getInputStream()).readFully(wrappedKey);
+        Cipher cipher = Cipher.getInstance("RSA");
+        cipher.init(Cipher.UNWRAP_MODE, this.bob.getPrivate());
+        SecretKey sessionKey = (SecretKey) cipher.unwrap(wrappedKey, "AES", Cipher.SECRET_KEY);
+
+        InputStream dis = new DecryptingInputStream(is.getInputStream(), sessionKey);
+        byte[] body = new byte[bodyLength];
+        for(int i = 0; i < bodyLength; i++) {
+            body[i] = (byte) dis.read();
+        }
+        return body;
+    }
+
+    private int bodyLength() throws Exception {
+        // header of plain message: version, cmd, format, si, signed, key length
+        byte[] plain = this.expose(null);
+        StandardSharkInputStream is = new StandardSharkInputStream(new ByteArrayInputStream(plain));
+        for(int i = 0; i < 6; i++) {
+            is.readUTF8();
+        }
+        return is.available();
+    }
+
+    private byte[] plainBody() throws Exception {
+        byte[] plain = this.expose(null);
+        int length = this.bodyLength();
+        return Arrays.copyOfRange(plain, plain.length - length, plain.length);
+    }
+
+    @Test
+    public void unknownPeer_getsKEP10Messages() throws Exception {
+        byte[] body = this.plainBody();
+
+        for(int i = 0; i < 3; i++) {
+            byte[] message = this.expose(this.bob);
+
+            StandardSharkInputStream is = new StandardSharkInputStream(new ByteArrayInputStream(message));
+            Assert.assertEquals(KEPMessage.VERSION_1_0_UPGRADE, is.readUTF8());
+
+            Assert.assertArrayEquals(body, this.readAsKEP10Peer(message, body.length));
+        }
+    }
+
+    @Test
+    public void upgradedPeer_getsCachedSessionKeys() throws Exception {
+        byte[] body = this.plainBody();
+
+        // bob was seen speaking KEP 1.1
+        this.se.getSessionKeyCache().setUpgraded(BOB);
+
+        for(long nonce = 0; nonce < 3; nonce++) {
+            StandardSharkInputStream is = new StandardSharkInputStream(new ByteArrayInputStream(this.expose(this.bob)));
+            Assert.assertEquals(KEPMessage.THISVERSION, is.readUTF8());
+            for(int i = 0; i < 4; i++) {
+                is.readUTF8(); // cmd, format, si, signed
+            }
+
+            byte[] wrappedKey = new byte[Integer.parseInt(is.readUTF8())];
+            new DataInputStream(is.getInputStream()).readFully(wrappedKey);
+            Assert.assertEquals(nonce, Long.parseLong(is.readUTF8()));
+
+            SecretKey sessionKey = new SessionKeyCache().unwrap(this.bob.getPrivate(), wrappedKey);
+            GCMDecryptingInputStream dis = new GCMDecryptingInputStream(is.getInputStream(), sessionKey, nonce);
+            byte[] received = new byte[body.length];
+            new DataInputStream(dis).readFully(received);
+            Assert.assertArrayEquals(body, received);
+            Assert.assertEquals(-1, dis.read());
+        }
+    }
+
+    @Test
+    public void versions_tellFormatAndUpgrade() {
+        Assert.assertTrue(KEPMessage.isVersion1_0(KEPMessage.VERSION_1_0));
+        Assert.assertTrue(KEPMessage.isVersion1_0(KEPMessage.VERSION_1_0_UPGRADE));
+        Assert.assertFalse(KEPMessage.isVersion1_0(KEPMessage.THISVERSION));
+
+        Assert.assertFalse(KEPMessage.speaksThisVersion(KEPMessage.VERSION_1_0));
+        Assert.assertTrue(KEPMessage.speaksThisVersion(KEPMessage.VERSION_1_0_UPGRADE));
+        Assert.assertTrue(KEPMessage.speaksThisVersion(KEPMessage.THISVERSION));
+    }
+}
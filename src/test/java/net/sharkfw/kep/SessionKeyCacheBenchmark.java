@@ -0,0 +1,92 @@
+package net.sharkfw.kep;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Encrypted messages per second between two peers: one message is a
+ * session key, 1 KB encrypted by the sender and decrypted by the
+ * receiver. Compares a fresh RSA wrapped session key per message with
+ * session keys from SessionKeyCache. Both encrypt with AES/GCM.
+ *
+ * Run e.g. with
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args=SessionKeyCacheBenchmark
+ *
+ * @author thsc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionKeyCacheBenchmark {
+
+    @Param({"1024", "2048"})
+    public int rsaKeySize;
+
+    private KeyPair recipient;
+    private byte[] payload;
+    private SessionKeyCache sender;
+    private SessionKeyCache receiver;
+
+    @Setup(Level.Trial)
+    public void setUp() throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(this.rsaKeySize);
+        this.recipient = generator.generateKeyPair();
+
+        this.payload = new byte[1024];
+        for(int i = 0; i < this.payload.length; i++) {
+            this.payload[i] = (byte) ('a' + i % 26);
+        }
+
+        this.sender = new SessionKeyCache();
+        this.receiver = new SessionKeyCache();
+    }
+
+    private int transfer(SecretKey sendKey, SecretKey receiveKey, long nonce) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(this.payload.length + 64);
+        GCMEncryptingOutputStream eos = new GCMEncryptingOutputStream(baos, sendKey, nonce);
+        eos.write(this.payload);
+        eos.doFinal();
+
+        GCMDecryptingInputStream dis = new GCMDecryptingInputStream(new ByteArrayInputStream(baos.toByteArray()), receiveKey, nonce);
+        int sum = 0;
+        for(int i = 0; i < this.payload.length; i++) {
+            sum += dis.read();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int freshSessionKey() throws GeneralSecurityException, IOException {
+        SecretKey key = KeyGenerator.getInstance("AES").generateKey();
+        Cipher cipher = Cipher.getInstance("RSA");
+        cipher.init(Cipher.WRAP_MODE, this.recipient.getPublic());
+        byte[] wrapped = cipher.wrap(key);
+
+        cipher = Cipher.getInstance("RSA");
+        cipher.init(Cipher.UNWRAP_MODE, this.recipient.getPrivate());
+        SecretKey unwrapped = (SecretKey) cipher.unwrap(wrapped, "AES", Cipher.SECRET_KEY);
+
+        return this.transfer(key, unwrapped, 0);
+    }
+
+    @Benchmark
+    public int cachedSessionKey() throws GeneralSecurityException, IOException {
+        SessionKeyCache.SessionKey sessionKey = this.sender.sessionKey("alice", this.recipient.getPublic());
+        SecretKey unwrapped = this.receiver.unwrap(this.recipient.getPrivate(), sessionKey.getWrappedKey());
+
+        return this.transfer(sessionKey.getKey(), unwrapped, sessionKey.getNonce());
+    }
+}
@@ -0,0 +1,198 @@
+package net.sharkfw.kep;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Arrays;
+import javax.crypto.SecretKey;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author thsc
+ */
+public class SessionKeyCacheTest {
+
+    private KeyPairGenerator generator;
+    private KeyPair recipient;
+
+    @Before
+    public void setUp() throws GeneralSecurityException {
+        this.generator = KeyPairGenerator.getInstance("RSA");
+        this.generator.initialize(1024);
+        this.recipient = this.generator.generateKeyPair();
+    }
+
+    private static byte[] encrypt(SecretKey key, long nonce, byte[] message) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        GCMEncryptingOutputStream eos = new GCMEncryptingOutputStream(baos, key, nonce);
+        eos.write(message);
+        eos.doFinal();
+        return baos.toByteArray();
+    }
+
+    private static byte[] decrypt(SecretKey key, long nonce, InputStream encrypted) throws IOException {
+        GCMDecryptingInputStream dis = new GCMDecryptingInputStream(encrypted, key, nonce);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1000];
+        int n;
+        while((n = dis.read(buffer)) != -1) {
+            baos.write(buffer, 0, n);
+        }
+        return baos.toByteArray();
+    }
+
+    private static byte[] message(int length) {
+        byte[] message = new byte[length];
+        for(int i = 0; i < length; i++) {
+            message[i] = (byte) i;
+        }
+        return message;
+    }
+
+    @Test
+    public void sessionKey_isReusedAndRenewed() throws GeneralSecurityException {
+        SessionKeyCache cache = new SessionKeyCache();
+        cache.setMaxAge(1000);
+        cache.setMaxUses(3);
+
+        SessionKeyCache.SessionKey first = cache.sessionKey("alice", this.recipient.getPublic(), 0);
+        SessionKeyCache.SessionKey next = cache.sessionKey("alice", this.recipient.getPublic(), 10);
+        Assert.assertSame(first.getKey(), next.getKey());
+        Assert.assertSame(first.getKey(), cache.sessionKey("alice", this.recipient.getPublic(), 20).getKey());
+
+        // each message gets its own nonce
+        Assert.assertEquals(0, first.getNonce());
+        Assert.assertEquals(1, next.getNonce());
+
+        // used too often
+        SessionKeyCache.SessionKey second = cache.sessionKey("alice", this.recipient.getPublic(), 30);
+        Assert.assertNotSame(first.getKey(), second.getKey());
+        Assert.assertEquals(0, second.getNonce());
+
+        // too old
+        Assert.assertNotSame(second.getKey(), cache.sessionKey("alice", this.recipient.getPublic(), 1100).getKey());
+
+        // other pair of peers
+        Assert.assertNotSame(second.getKey(), cache.sessionKey("bob", this.recipient.getPublic(), 40).getKey());
+        Assert.assertNotSame(second.getKey(), cache.sessionKey("alice", this.generator.generateKeyPair().getPublic(), 40).getKey());
+    }
+
+    @Test
+    public void upgradedPeers_areKnownByAnySI() {
+        SessionKeyCache cache = new SessionKeyCache();
+        Assert.assertFalse(cache.isUpgraded(new String[] {"http://alice.de"}));
+        Assert.assertFalse(cache.isUpgraded(null));
+
+        cache.setUpgraded(new String[] {"http://alice.de", "mailto:alice@alice.de"});
+        Assert.assertTrue(cache.isUpgraded(new String[] {"http://ALICE.de"}));
+        Assert.assertTrue(cache.isUpgraded(new String[] {"http://bob.de", "mailto:alice@alice.de"}));
+        Assert.assertFalse(cache.isUpgraded(new String[] {"http://bob.de"}));
+    }
+
+    @Test
+    public void unwrap_isCached() throws GeneralSecurityException {
+        SessionKeyCache sender = new SessionKeyCache();
+        SessionKeyCache receiver = new SessionKeyCache();
+        receiver.setMaxAge(1000);
+
+        SessionKeyCache.SessionKey sessionKey = sender.sessionKey("alice", this.recipient.getPublic());
+        SecretKey unwrapped = receiver.unwrap(this.recipient.getPrivate(), sessionKey.getWrappedKey(), 0);
+        Assert.assertEquals(sessionKey.getKey(), unwrapped);
+        Assert.assertSame(unwrapped, receiver.unwrap(this.recipient.getPrivate(), sessionKey.getWrappedKey(), 500));
+
+        // expired - unwrapped again
+        SecretKey again = receiver.unwrap(this.recipient.getPrivate(), sessionKey.getWrappedKey(), 2000);
+        Assert.assertNotSame(unwrapped, again);
+        Assert.assertEquals(unwrapped, again);
+
+        // a cached key is only handed out for the private key which unwrapped it
+        try {
+            SecretKey wrong = receiver.unwrap(this.generator.generateKeyPair().getPrivate(), sessionKey.getWrappedKey(), 2000);
+            Assert.assertNotEquals(unwrapped, wrong);
+        } catch(GeneralSecurityException e) {
+            // padding doesn't fit - usual case
+        }
+    }
+
+    @Test
+    public void cachedKey_decryptsMessages() throws GeneralSecurityException, IOException {
+        SessionKeyCache sender = new SessionKeyCache();
+        SessionKeyCache receiver = new SessionKeyCache();
+
+        // empty, short and several chunks
+        int[] lengths = {0, 35, 3 * GCMEncryptingOutputStream.CHUNK_SIZE + 7};
+        for(int length : lengths) {
+            SessionKeyCache.SessionKey sessionKey = sender.sessionKey("alice", this.recipient.getPublic());
+            byte[] encrypted = encrypt(sessionKey.getKey(), sessionKey.getNonce(), message(length));
+
+            SecretKey key = receiver.unwrap(this.recipient.getPrivate(), sessionKey.getWrappedKey());
+            byte[] decrypted = decrypt(key, sessionKey.getNonce(), new ByteArrayInputStream(encrypted));
+            Assert.assertArrayEquals(message(length), decrypted);
+        }
+    }
+
+    @Test
+    public void equalMessages_areEncryptedDifferently() throws GeneralSecurityException, IOException {
+        SessionKeyCache sender = new SessionKeyCache();
+        SessionKeyCache.SessionKey first = sender.sessionKey("alice", this.recipient.getPublic());
+        SessionKeyCache.SessionKey second = sender.sessionKey("alice", this.recipient.getPublic());
+        Assert.assertSame(first.getKey(), second.getKey());
+
+        byte[] message = new byte[64]; // equal blocks
+        Assert.assertFalse(Arrays.equals(
+                encrypt(first.getKey(), first.getNonce(), message),
+                encrypt(second.getKey(), second.getNonce(), message)));
+    }
+
+    @Test
+    public void changedMessages_areRejected() throws GeneralSecurityException, IOException {
+        SessionKeyCache.SessionKey sessionKey = new SessionKeyCache().sessionKey("alice", this.recipient.getPublic());
+        SecretKey key = sessionKey.getKey();
+        byte[] message = message(2 * GCMEncryptingOutputStream.CHUNK_SIZE);
+        byte[] encrypted = encrypt(key, 5, message);
+
+        byte[] changed = encrypted.clone();
+        changed[changed.length / 2] ^= 1;
+        byte[] cutOff = Arrays.copyOf(encrypted, encrypted.length - 1);
+        // message is sent in two full chunks
+        byte[] withoutFinalChunk = Arrays.copyOf(encrypted, 5 + GCMEncryptingOutputStream.CHUNK_SIZE + 16);
+
+        byte[][] broken = {changed, cutOff, withoutFinalChunk};
+        for(byte[] b : broken) {
+            try {
+                decrypt(key, 5, new ByteArrayInputStream(b));
+                Assert.fail("changed message was decrypted");
+            } catch(IOException e) {
+                // expected
+            }
+        }
+
+        // replayed with another nonce
+        try {
+            decrypt(key, 6, new ByteArrayInputStream(encrypted));
+            Assert.fail("message was decrypted with wrong nonce");
+        } catch(IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void decryption_endsWithMessage() throws GeneralSecurityException, IOException {
+        SessionKeyCache.SessionKey sessionKey = new SessionKeyCache().sessionKey("alice", this.recipient.getPublic());
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.write(encrypt(sessionKey.getKey(), 0, message(100)));
+        stream.write(42);
+
+        ByteArrayInputStream in = new ByteArrayInputStream(stream.toByteArray());
+        Assert.assertArrayEquals(message(100), decrypt(sessionKey.getKey(), 0, in));
+        // next message on that stream is untouched
+        Assert.assertEquals(42, in.read());
+    }
+}
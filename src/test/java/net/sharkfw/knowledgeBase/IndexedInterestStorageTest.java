@@ -0,0 +1,133 @@
+package net.sharkfw.knowledgeBase;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import net.sharkfw.kep.format.XMLSerializer;
+import net.sharkfw.knowledgeBase.inmemory.InMemoPropertyHolder;
+import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author thsc
+ */
+public class IndexedInterestStorageTest {
+
+    private static Interest interest(String topic, String peer, int direction)
+            throws SharkKBException {
+
+        STSet topics = InMemoSharkKB.createInMemoSTSet();
+        topics.createSemanticTag(topic, "http://topic/" + topic);
+        PeerSTSet peers = null;
+        if(peer != null) {
+            peers = InMemoSharkKB.createInMemoPeerSTSet();
+            peers.createPeerSemanticTag(peer, "http://peer/" + peer, "tcp://" + peer);
+        }
+        return InMemoSharkKB.createInMemoInterest(topics, null, peers, null, null, null, direction);
+    }
+
+    private static List<SharkCS> list(Iterator<SharkCS> interests) {
+        List<SharkCS> result = new ArrayList<>();
+        while(interests.hasNext()) result.add(interests.next());
+        return result;
+    }
+
+    @Test
+    public void addRemove_withoutDuplicates() throws SharkKBException {
+        InMemoPropertyHolder holder = new InMemoPropertyHolder();
+        IndexedInterestStorage storage = new IndexedInterestStorage(holder);
+
+        for(int i = 0; i < 50; i++) {
+            storage.addInterest(interest("t" + i, i % 2 == 0 ? "p" : null, SharkCS.DIRECTION_INOUT));
+        }
+        // identical ones - also with upper case sis
+        storage.addInterest(interest("t3", null, SharkCS.DIRECTION_INOUT));
+        Interest upper = interest("x", null, SharkCS.DIRECTION_INOUT);
+        upper.getTopics().removeSemanticTag(upper.getTopics().tags().nextElement());
+        upper.getTopics().createSemanticTag("T5", "HTTP://TOPIC/T5");
+        storage.addInterest(upper);
+        Assert.assertEquals(50, storage.size());
+
+        // other direction isn't identical
+        storage.addInterest(interest("t3", null, SharkCS.DIRECTION_IN));
+        Assert.assertEquals(51, storage.size());
+
+        storage.removeInterest(interest("t3", null, SharkCS.DIRECTION_INOUT));
+        storage.removeInterest(interest("t4", "p", SharkCS.DIRECTION_INOUT));
+        Assert.assertEquals(49, storage.size());
+
+        // records are read again in insertion order
+        IndexedInterestStorage reloaded = new IndexedInterestStorage(holder);
+        List<SharkCS> interests = list(reloaded.interests());
+        Assert.assertEquals(49, interests.size());
+        Assert.assertEquals("http://topic/t0",
+                interests.get(0).getTopics().tags().nextElement().getSI()[0]);
+        Assert.assertEquals(SharkCS.DIRECTION_IN, interests.get(48).getDirection());
+
+        reloaded.addInterest(interest("t5", null, SharkCS.DIRECTION_INOUT));
+        Assert.assertEquals(49, reloaded.size());
+    }
+
+    @Test
+    public void severalSIs_areComparedWithAll() throws SharkKBException {
+        IndexedInterestStorage storage = new IndexedInterestStorage(new InMemoPropertyHolder());
+        storage.addInterest(interest("t1", null, SharkCS.DIRECTION_OUT));
+
+        Interest twoSIs = interest("t1", null, SharkCS.DIRECTION_OUT);
+        twoSIs.getTopics().tags().nextElement().addSI("http://other");
+        storage.addInterest(twoSIs);
+        Assert.assertEquals(1, storage.size());
+
+        storage.removeInterest(twoSIs);
+        Assert.assertEquals(0, storage.size());
+    }
+
+    @Test
+    public void iteratorRemove_removesRecord() throws SharkKBException {
+        InMemoPropertyHolder holder = new InMemoPropertyHolder();
+        IndexedInterestStorage storage = new IndexedInterestStorage(holder);
+        for(int i = 0; i < 4; i++) {
+            storage.addInterest(interest("t" + i, null, SharkCS.DIRECTION_INOUT));
+        }
+
+        Iterator<SharkCS> interests = storage.interests();
+        while(interests.hasNext()) {
+            SharkCS interest = interests.next();
+            if(interest.getTopics().tags().nextElement().getName().equals("t2")) {
+                interests.remove();
+            }
+        }
+
+        Assert.assertEquals(3, storage.size());
+        Assert.assertEquals(3, list(new IndexedInterestStorage(holder).interests()).size());
+    }
+
+    @Test
+    public void interests_overlapping() throws SharkKBException {
+        IndexedInterestStorage storage = new IndexedInterestStorage(new InMemoPropertyHolder());
+        for(int i = 0; i < 10; i++) {
+            storage.addInterest(interest("t" + i, null, SharkCS.DIRECTION_INOUT));
+        }
+
+        List<SharkCS> found = list(storage.interests(interest("t7", null, SharkCS.DIRECTION_INOUT)));
+        Assert.assertEquals(1, found.size());
+        Assert.assertEquals("http://topic/t7", found.get(0).getTopics().tags().nextElement().getSI()[0]);
+    }
+
+    @Test
+    public void sharkKB_movesFormerProperty() throws SharkKBException {
+        InMemoSharkKB kb = new InMemoSharkKB();
+        XMLSerializer s = new XMLSerializer();
+        kb.setProperty(AbstractSharkKB.INTEREST_PROPERTY_NAME,
+                s.serializeSharkCS(interest("t1", null, SharkCS.DIRECTION_IN)) + "||"
+                + s.serializeSharkCS(interest("t2", null, SharkCS.DIRECTION_IN)) + "||", false);
+
+        kb.addInterest(interest("t2", null, SharkCS.DIRECTION_IN));
+        kb.addInterest(interest("t3", null, SharkCS.DIRECTION_IN));
+
+        Assert.assertEquals(3, list(kb.interests()).size());
+        Assert.assertNull(kb.getProperty(AbstractSharkKB.INTEREST_PROPERTY_NAME));
+    }
+}
@@ -0,0 +1,141 @@
+package net.sharkfw.knowledgeBase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author thsc
+ */
+public class KBEventBusTest {
+
+    /**
+     * Keeps tasks until they are run by the test.
+     */
+    private static class ManualExecutor implements Executor {
+        final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            this.tasks.add(command);
+        }
+
+        void runAll() {
+            while(!this.tasks.isEmpty()) this.tasks.remove(0).run();
+        }
+    }
+
+    private static class Recorder implements KBEventListener {
+        final List<List<KBEvent>> batches = new ArrayList<>();
+        long dropped = 0;
+
+        @Override
+        public void eventsOccurred(List<KBEvent> events, long dropped) {
+            this.batches.add(events);
+            this.dropped += dropped;
+        }
+    }
+
+    @Test
+    public void kbChanges_areDeliveredInOneBatch() throws SharkKBException {
+        InMemoSharkKB kb = new InMemoSharkKB();
+        ManualExecutor executor = new ManualExecutor();
+        Recorder recorder = new Recorder();
+        kb.getEventBus().subscribe(recorder, executor, 1000, 1000, KBEventBus.BLOCK);
+
+        for(int i = 0; i < 100; i++) {
+            kb.getTopicSTSet().createSemanticTag("t" + i, "http://topic/" + i);
+        }
+        // nothing delivered on this thread
+        Assert.assertTrue(recorder.batches.isEmpty());
+        Assert.assertEquals(1, executor.tasks.size());
+
+        executor.runAll();
+        Assert.assertEquals(1, recorder.batches.size());
+        List<KBEvent> events = recorder.batches.get(0);
+        Assert.assertEquals(100, events.size());
+        Assert.assertEquals(KBEvent.TOPIC_ADDED, events.get(0).getType());
+        Assert.assertEquals("t0", ((SemanticTag) events.get(0).getSubject()).getName());
+        Assert.assertEquals("t99", ((SemanticTag) events.get(99).getSubject()).getName());
+    }
+
+    @Test
+    public void fullBuffer_drops() {
+        KBEventBus bus = new KBEventBus();
+        ManualExecutor executor = new ManualExecutor();
+        Recorder recorder = new Recorder();
+        bus.subscribe(recorder, executor, 10, 4, KBEventBus.DROP);
+
+        for(int i = 0; i < 25; i++) {
+            bus.publish(new KBEvent(KBEvent.CP_ADDED, i));
+        }
+        executor.runAll();
+
+        Assert.assertEquals(3, recorder.batches.size());
+        Assert.assertEquals(4, recorder.batches.get(0).size());
+        Assert.assertEquals(2, recorder.batches.get(2).size());
+        Assert.assertEquals(15, recorder.dropped);
+        Assert.assertEquals(9, recorder.batches.get(2).get(1).getSubject());
+    }
+
+    @Test
+    public void fullBuffer_blocks() throws InterruptedException {
+        KBEventBus bus = new KBEventBus();
+        final List<Object> received = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1000);
+        bus.subscribe(new KBEventListener() {
+            @Override
+            public void eventsOccurred(List<KBEvent> events, long dropped) {
+                Assert.assertEquals(0, dropped);
+                for(KBEvent event : events) {
+                    received.add(event.getSubject());
+                    done.countDown();
+                }
+            }
+        }, null, 8, 3, KBEventBus.BLOCK);
+
+        List<KBEvent> events = new ArrayList<>();
+        for(int i = 0; i < 500; i++) {
+            bus.publish(new KBEvent(KBEvent.CP_ADDED, i));
+            events.add(new KBEvent(KBEvent.CP_REMOVED, 500 + i));
+        }
+        bus.publish(events);
+
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        for(int i = 0; i < 1000; i++) {
+            Assert.assertEquals(i, received.get(i));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void listenerPublishing_doesNotBlockItself() {
+        final KBEventBus bus = new KBEventBus();
+        ManualExecutor executor = new ManualExecutor();
+        final Recorder recorder = new Recorder();
+        bus.subscribe(new KBEventListener() {
+            @Override
+            public void eventsOccurred(List<KBEvent> events, long dropped) {
+                recorder.eventsOccurred(events, dropped);
+                if(recorder.batches.size() == 1) {
+                    // listener changes knowledge base on delivery thread
+                    for(int i = 0; i < 20; i++) {
+                        bus.publish(new KBEvent(KBEvent.CP_ADDED, i));
+                    }
+                }
+            }
+        }, executor, 8, 8, KBEventBus.BLOCK);
+
+        bus.publish(new KBEvent(KBEvent.CP_REMOVED, -1));
+        executor.runAll();
+
+        Assert.assertEquals(12, recorder.dropped);
+        Assert.assertEquals(2, recorder.batches.size());
+        Assert.assertEquals(8, recorder.batches.get(1).size());
+    }
+}
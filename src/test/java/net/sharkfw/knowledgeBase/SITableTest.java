@@ -0,0 +1,88 @@
+package net.sharkfw.knowledgeBase;
+
+import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author thsc
+ */
+public class SITableTest {
+
+    @Test
+    public void normalize_fitsToEqualsIgnoreCase() {
+        String si = "http://www.sharksystem.net/psi/shark";
+        Assert.assertSame(si, SITable.normalize(si));
+        Assert.assertEquals(si, SITable.normalize("HTTP://www.SharkSystem.net/psi/Shark"));
+        Assert.assertNull(SITable.normalize(null));
+    }
+
+    @Test
+    public void symbol_sameIdIgnoringCase() {
+        SITable.Symbol a = SITable.symbol("http://example.org/SITableTest/Topic");
+        SITable.Symbol b = SITable.symbol("http://EXAMPLE.org/sitabletest/topic");
+        SITable.Symbol c = SITable.symbol("http://example.org/SITableTest/other");
+
+        Assert.assertSame(a, b);
+        Assert.assertEquals(a.id(), b.id());
+        Assert.assertNotEquals(a.id(), c.id());
+        Assert.assertEquals("http://example.org/sitabletest/topic", a.si());
+    }
+
+    @Test
+    public void intern_sharesNormalizedSIs() {
+        String si1 = new String("http://example.org/sitabletest/intern");
+        String si2 = new String("http://example.org/sitabletest/intern");
+        Assert.assertSame(SITable.intern(si1), SITable.intern(si2));
+
+        // not normalized sis are kept
+        String upper = "http://example.org/SITableTest/Intern";
+        Assert.assertSame(upper, SITable.intern(upper));
+    }
+
+    @Test
+    public void intern_sharesFirstSpelling() {
+        String si1 = new String("http://example.org/SITableTest/Spelling");
+        String si2 = new String("http://example.org/SITableTest/Spelling");
+        String shared = SITable.intern(si1);
+        SITable.Symbol keep = SITable.symbol(si1);
+        Assert.assertSame(shared, SITable.intern(si2));
+        Assert.assertEquals("http://example.org/SITableTest/Spelling", shared);
+        Assert.assertEquals(keep.si(), SITable.normalize(shared));
+    }
+
+    @Test
+    public void tagLookup_ignoresCase() throws SharkKBException {
+        SharkKB kb = new InMemoSharkKB();
+        STSet topics = kb.getTopicSTSet();
+        SemanticTag shark = topics.createSemanticTag("Shark", "http://www.sharksystem.net/Shark");
+
+        Assert.assertSame(shark, topics.getSemanticTag("http://www.sharksystem.net/shark"));
+        Assert.assertSame(shark, topics.getSemanticTag("HTTP://WWW.SHARKSYSTEM.NET/SHARK"));
+
+        shark.addSI("http://example.org/SITableTest/Fish");
+        Assert.assertSame(shark, topics.getSemanticTag("http://example.org/sitabletest/fish"));
+
+        shark.removeSI("http://EXAMPLE.org/SITableTest/Fish");
+        Assert.assertNull(topics.getSemanticTag("http://example.org/SITableTest/Fish"));
+    }
+
+    @Test
+    public void identical_usesSymbols() throws SharkKBException {
+        SemanticTag a = InMemoSharkKB.createInMemoSemanticTag("a",
+                new String[] {"http://example.org/SITableTest/a", "http://example.org/SITableTest/b"});
+        SemanticTag b = InMemoSharkKB.createInMemoSemanticTag("b",
+                new String[] {"http://EXAMPLE.org/SITableTest/B"});
+        SemanticTag c = InMemoSharkKB.createInMemoSemanticTag("c",
+                new String[] {"http://example.org/SITableTest/c"});
+        SemanticTag any = InMemoSharkKB.createInMemoSemanticTag("any",
+                new String[] {SharkCS.ANYURL.toUpperCase()});
+
+        Assert.assertTrue(SharkCSAlgebra.identical(a, b));
+        Assert.assertFalse(SharkCSAlgebra.identical(a, c));
+        Assert.assertTrue(any.isAny());
+        Assert.assertFalse(c.isAny());
+        Assert.assertTrue(SharkCSAlgebra.identical(any, c));
+    }
+}
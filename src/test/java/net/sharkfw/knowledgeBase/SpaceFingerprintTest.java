@@ -0,0 +1,99 @@
+package net.sharkfw.knowledgeBase;
+
+import net.sharkfw.asip.ASIPSpace;
+import net.sharkfw.kep.SilenceTable;
+import net.sharkfw.knowledgeBase.geom.inmemory.InMemoSharkGeometry;
+import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author thsc
+ */
+public class SpaceFingerprintTest {
+
+    private static Interest interest(int direction, String... topicSIs) throws SharkKBException {
+        STSet topics = InMemoSharkKB.createInMemoSTSet();
+        for(String si : topicSIs) {
+            topics.createSemanticTag(si, si);
+        }
+        return InMemoSharkKB.createInMemoInterest(topics, null, null, null, null, null, direction);
+    }
+
+    @Test
+    public void fingerprint_isCanonical() throws SharkKBException {
+        SpaceFingerprint ab = SpaceFingerprint.of(interest(SharkCS.DIRECTION_INOUT, "http://a", "http://b"));
+        SpaceFingerprint ba = SpaceFingerprint.of(interest(SharkCS.DIRECTION_INOUT, "http://b", "HTTP://A"));
+        Assert.assertEquals(ab, ba);
+        Assert.assertEquals(ab.hashCode(), ba.hashCode());
+        Assert.assertEquals(32, ab.toString().length());
+
+        Assert.assertNotEquals(ab, SpaceFingerprint.of(interest(SharkCS.DIRECTION_IN, "http://a", "http://b")));
+        Assert.assertNotEquals(ab, SpaceFingerprint.of(interest(SharkCS.DIRECTION_INOUT, "http://a")));
+        Assert.assertNotEquals(ab, SpaceFingerprint.of(interest(SharkCS.DIRECTION_INOUT, "http://a", "http://b", "http://c")));
+
+        // a peer makes a difference
+        Interest withPeer = interest(SharkCS.DIRECTION_INOUT, "http://a", "http://b");
+        withPeer.setOriginator(InMemoSharkKB.createInMemoPeerSemanticTag("alice", "http://alice", "tcp://alice"));
+        Assert.assertNotEquals(ab, SpaceFingerprint.of(withPeer));
+    }
+
+    @Test
+    public void key_locationsWithoutSIsByGeometry() throws SharkKBException {
+        SpatialSemanticTag berlin = InMemoSharkKB.createInMemoSpatialSemanticTag("place", null,
+                InMemoSharkGeometry.createGeomByWKT("POINT (13.4 52.5)"));
+        SpatialSemanticTag paris = InMemoSharkKB.createInMemoSpatialSemanticTag("place", null,
+                InMemoSharkGeometry.createGeomByWKT("POINT (2.35 48.85)"));
+        SpatialSemanticTag berlinAgain = InMemoSharkKB.createInMemoSpatialSemanticTag("place", null,
+                InMemoSharkGeometry.createGeomByWKT("POINT (13.4 52.5)"));
+
+        Assert.assertNotEquals(SpaceFingerprint.key(berlin), SpaceFingerprint.key(paris));
+        Assert.assertEquals(SpaceFingerprint.key(berlin), SpaceFingerprint.key(berlinAgain));
+    }
+
+    @Test
+    public void asipFingerprint_ignoresOrder() throws SharkKBException {
+        InMemoSharkKB kb1 = new InMemoSharkKB();
+        kb1.getTopicSTSet().createSemanticTag("a", "http://a");
+        kb1.getTopicSTSet().createSemanticTag("b", "http://b");
+        InMemoSharkKB kb2 = new InMemoSharkKB();
+        kb2.getTopicSTSet().createSemanticTag("b", "http://b");
+        kb2.getTopicSTSet().createSemanticTag("a", "http://a");
+
+        ASIPSpace s1 = kb1.asASIPSpace();
+        ASIPSpace s2 = kb2.asASIPSpace();
+        Assert.assertEquals(SpaceFingerprint.of(s1), SpaceFingerprint.of(s2));
+
+        kb2.getTopicSTSet().createSemanticTag("c", "http://c");
+        Assert.assertNotEquals(SpaceFingerprint.of(s1), SpaceFingerprint.of(kb2.asASIPSpace()));
+    }
+
+    @Test
+    public void silenceTable_evicts() throws SharkKBException {
+        SilenceTable table = new SilenceTable(1000, 3);
+        SpaceFingerprint a = SpaceFingerprint.of(interest(SharkCS.DIRECTION_INOUT, "http://a"));
+
+        Assert.assertTrue(table.allowed(a, 0));
+        table.sent(a, 0);
+        Assert.assertFalse(table.allowed(a, 500));
+        Assert.assertFalse(table.allowed(a, 1000));
+        Assert.assertTrue(table.allowed(a, 1001));
+        Assert.assertEquals(0, table.size());
+
+        // bounded - oldest entries go first
+        for(int i = 0; i < 10; i++) {
+            table.sent(SpaceFingerprint.of(interest(SharkCS.DIRECTION_INOUT, "http://t" + i)), 2000 + i);
+        }
+        Assert.assertEquals(3, table.size());
+        Assert.assertTrue(table.allowed(SpaceFingerprint.of(interest(SharkCS.DIRECTION_INOUT, "http://t6")), 2010));
+        Assert.assertFalse(table.allowed(SpaceFingerprint.of(interest(SharkCS.DIRECTION_INOUT, "http://t7")), 2010));
+
+        // sending again renews an entry
+        SpaceFingerprint t7 = SpaceFingerprint.of(interest(SharkCS.DIRECTION_INOUT, "http://t7"));
+        table.sent(t7, 2500);
+        Assert.assertTrue(table.allowed(SpaceFingerprint.of(interest(SharkCS.DIRECTION_INOUT, "http://t9")), 3100));
+        Assert.assertFalse(table.allowed(t7, 3100));
+        Assert.assertEquals(1, table.size());
+    }
+}
@@ -0,0 +1,80 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import java.util.Enumeration;
+import java.util.concurrent.TimeUnit;
+import net.sharkfw.knowledgeBase.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Imports a vocabulary of one million topics - every tenth topic refers to
+ * its successor - into an empty knowledge base. Compares merging tag by
+ * tag with mergeKnowledge.
+ *
+ * Run e.g. with
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args=BulkImportBenchmark
+ *
+ * @author thsc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class BulkImportBenchmark {
+
+    private static final int TAGS = 1000000;
+
+    private Knowledge knowledge;
+    private SharkKB target;
+
+    private static String si(int i) {
+        return "http://sharksystem.net/topic/" + i;
+    }
+
+    @Setup(Level.Trial)
+    public void createVocabulary() throws SharkKBException {
+        InMemoSharkKB source = new InMemoSharkKB();
+        SemanticNet topics = source.getTopicsAsSemanticNet();
+        for(int i = 0; i < TAGS; i++) {
+            topics.createSemanticTag("topic" + i, si(i));
+        }
+        for(int i = 0; i < TAGS - 1; i += 10) {
+            topics.getSemanticTag(si(i)).setPredicate("next", topics.getSemanticTag(si(i + 1)));
+        }
+        this.knowledge = InMemoSharkKB.createInMemoKnowledge(source);
+    }
+
+    @Setup(Level.Invocation)
+    public void createTarget() {
+        this.target = new InMemoSharkKB();
+    }
+
+    @Benchmark
+    public SharkKB tagByTag() throws SharkKBException {
+        STSet targetTopics = this.target.getTopicSTSet();
+        SemanticNet targetNet = this.target.getTopicsAsSemanticNet();
+        Enumeration<SemanticTag> tagEnum = this.knowledge.getVocabulary().getTopicSTSet().tags();
+        while(tagEnum.hasMoreElements()) {
+            targetTopics.merge(tagEnum.nextElement());
+        }
+
+        // predicates need both tags
+        tagEnum = this.knowledge.getVocabulary().getTopicSTSet().tags();
+        while(tagEnum.hasMoreElements()) {
+            SNSemanticTag source = (SNSemanticTag) tagEnum.nextElement();
+            Enumeration<SNSemanticTag> next = source.targetTags("next");
+            if(next != null && next.hasMoreElements()) {
+                targetNet.getSemanticTag(source.getSI()).setPredicate("next",
+                        targetNet.getSemanticTag(next.nextElement().getSI()));
+            }
+        }
+        return this.target;
+    }
+
+    @Benchmark
+    public SharkKB bulk() throws SharkKBException {
+        this.target.mergeKnowledge(this.knowledge);
+        return this.target;
+    }
+}
@@ -0,0 +1,181 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.Executor;
+import net.sharkfw.knowledgeBase.*;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author thsc
+ */
+public class BulkMergeTest {
+
+    private static class ManualExecutor implements Executor {
+        final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            this.tasks.add(command);
+        }
+    }
+
+    private static String si(int i) {
+        return "http://topic/" + i;
+    }
+
+    private static int count(List<KBEvent> events, int type) {
+        int n = 0;
+        for(KBEvent event : events) {
+            if(event.getType() == type) n++;
+        }
+        return n;
+    }
+
+    private static int count(List<String> calls, String name) {
+        int n = 0;
+        for(String call : calls) {
+            if(call.equals(name)) n++;
+        }
+        return n;
+    }
+
+    private static int size(STSet set) throws SharkKBException {
+        int n = 0;
+        Enumeration<SemanticTag> tagEnum = set.tags();
+        while(tagEnum != null && tagEnum.hasMoreElements()) {
+            tagEnum.nextElement();
+            n++;
+        }
+        return n;
+    }
+
+    private static int cpCount(SharkKB kb) throws SharkKBException {
+        int n = 0;
+        Enumeration<ContextPoint> cpEnum = kb.getAllContextPoints();
+        while(cpEnum != null && cpEnum.hasMoreElements()) {
+            cpEnum.nextElement();
+            n++;
+        }
+        return n;
+    }
+
+    @Test
+    public void mergeSemanticTags_dedupesBySI() throws SharkKBException {
+        InMemoSTSet set = (InMemoSTSet) InMemoSharkKB.createInMemoSTSet();
+        SemanticTag known = set.createSemanticTag("known", si(0));
+
+        List<SemanticTag> sources = new ArrayList<>();
+        for(int i = 0; i < 10; i++) {
+            sources.add(InMemoSharkKB.createInMemoSemanticTag("t" + i, si(i)));
+        }
+        // same si twice in one call
+        sources.add(InMemoSharkKB.createInMemoSemanticTag("again", new String[] {"http://other", si(5)}));
+
+        List<SemanticTag> created = new ArrayList<>();
+        List<SemanticTag> merged = set.mergeSemanticTags(sources, created);
+
+        Assert.assertEquals(11, merged.size());
+        Assert.assertEquals(9, created.size());
+        Assert.assertEquals(10, size(set));
+        Assert.assertSame(known, merged.get(0));
+        Assert.assertSame(merged.get(5), merged.get(10));
+        Assert.assertTrue(Arrays.asList(merged.get(5).getSI()).contains("http://other"));
+    }
+
+    @Test
+    public void mergeKnowledge_oneBatchListenersCalledAfter() throws SharkKBException {
+        // source: topics, a predicate, a peer and a context point
+        InMemoSharkKB source = new InMemoSharkKB();
+        SemanticNet sourceTopics = source.getTopicsAsSemanticNet();
+        for(int i = 0; i < 10; i++) {
+            sourceTopics.createSemanticTag("t" + i, si(i));
+        }
+        sourceTopics.getSemanticTag(si(3)).setPredicate("related", sourceTopics.getSemanticTag(si(4)));
+        PeerSemanticTag alice = source.getPeerSTSet().createPeerSemanticTag("alice",
+                "http://alice", "tcp://alice:7070");
+
+        Knowledge k = InMemoSharkKB.createInMemoKnowledge(source);
+        ContextPoint cp = InMemoSharkKB.createInMemoContextPoint(
+                InMemoSharkKB.createInMemoContextCoordinates(sourceTopics.getSemanticTag(si(3)),
+                        alice, null, null, null, null, SharkCS.DIRECTION_INOUT));
+        cp.addInformation("hello");
+        k.addContextPoint(cp);
+
+        // target knows one topic already
+        final InMemoSharkKB target = new InMemoSharkKB();
+        target.getTopicSTSet().createSemanticTag("zero", si(0));
+
+        // listeners see the merged kb
+        final List<String> listenerCalls = new ArrayList<>();
+        final int[] cpsSeen = {-1};
+        target.addListener((KnowledgeBaseListener) Proxy.newProxyInstance(
+                KnowledgeBaseListener.class.getClassLoader(),
+                new Class<?>[] {KnowledgeBaseListener.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args)
+                            throws SharkKBException {
+                        if(listenerCalls.isEmpty()) cpsSeen[0] = cpCount(target);
+                        listenerCalls.add(method.getName());
+                        return null;
+                    }
+                }));
+
+        ManualExecutor executor = new ManualExecutor();
+        final List<List<KBEvent>> batches = new ArrayList<>();
+        target.getEventBus().subscribe(new KBEventListener() {
+            @Override
+            public void eventsOccurred(List<KBEvent> events, long dropped) {
+                batches.add(events);
+            }
+        }, executor, 1000, 1000, KBEventBus.BLOCK);
+
+        target.mergeKnowledge(k);
+
+        // vocabulary
+        Assert.assertEquals(10, size(target.getTopicSTSet()));
+        Assert.assertEquals("zero", target.getTopicSTSet().getSemanticTag(si(0)).getName());
+        SNSemanticTag t3 = target.getTopicsAsSemanticNet().getSemanticTag(si(3));
+        Enumeration<SNSemanticTag> related = t3.targetTags("related");
+        Assert.assertNotNull(related);
+        Assert.assertSame(target.getTopicSTSet().getSemanticTag(si(4)), related.nextElement());
+        PeerSemanticTag mergedAlice = target.getPeerSTSet().getSemanticTag("http://alice");
+        Assert.assertEquals("tcp://alice:7070", mergedAlice.getAddresses()[0]);
+
+        // context point refers to tags of target
+        Assert.assertEquals(1, cpCount(target));
+        ContextPoint mergedCP = target.getContextPoint(
+                target.createContextCoordinates(t3, mergedAlice, null, null, null, null,
+                        SharkCS.DIRECTION_INOUT));
+        Assert.assertNotNull(mergedCP);
+        Assert.assertEquals(1, mergedCP.getNumberInformation());
+
+        // listeners are called after the merge, the bus delivers one batch
+        Assert.assertEquals(1, cpsSeen[0]);
+        Assert.assertEquals(9, count(listenerCalls, "topicAdded"));
+        Assert.assertEquals(1, count(listenerCalls, "peerAdded"));
+        Assert.assertEquals(1, count(listenerCalls, "predicateCreated"));
+        Assert.assertEquals(1, count(listenerCalls, "contextPointAdded"));
+        Assert.assertEquals(1, executor.tasks.size());
+        executor.tasks.remove(0).run();
+        Assert.assertEquals(1, batches.size());
+        List<KBEvent> events = batches.get(0);
+        Assert.assertEquals(9, count(events, KBEvent.TOPIC_ADDED));
+        Assert.assertEquals(1, count(events, KBEvent.PEER_ADDED));
+        Assert.assertEquals(1, count(events, KBEvent.PREDICATE_CREATED));
+        Assert.assertEquals(1, count(events, KBEvent.CP_ADDED));
+
+        // merging again changes nothing
+        target.mergeKnowledge(k);
+        Assert.assertEquals(10, size(target.getTopicSTSet()));
+        Assert.assertEquals(1, cpCount(target));
+    }
+}
@@ -0,0 +1,223 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import net.sharkfw.asip.ASIPInformationSpace;
+import net.sharkfw.asip.ASIPSpace;
+import net.sharkfw.knowledgeBase.*;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author thsc
+ */
+public class ConcurrentInMemoSharkKBTest {
+
+    private static final int THREADS = 4;
+    private static final int TAGS_PER_THREAD = 500;
+
+    @Test
+    public void mergeAndEnumerateConcurrently_noConcurrentModification() throws Exception {
+        final SharkKB kb = new ConcurrentInMemoSharkKB();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS * 2);
+
+        List<Future<Integer>> results = new ArrayList<>();
+        for(int t = 0; t < THREADS; t++) {
+            final int threadNumber = t;
+            // writer
+            results.add(executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    STSet topics = kb.getTopicSTSet();
+                    for(int i = 0; i < TAGS_PER_THREAD; i++) {
+                        String si = "http://sharksystem.net/topic/" + threadNumber + "/" + i;
+                        SemanticTag tag = InMemoSharkKB.createInMemoSemanticTag("topic" + i, si);
+                        topics.merge(tag);
+                        ASIPSpace space = kb.createASIPSpace(tag, null, null, null, null, null, null, ASIPSpace.DIRECTION_INOUT);
+                        kb.addInformation("info" + i, space);
+                    }
+                    return TAGS_PER_THREAD;
+                }
+            }));
+
+            // reader
+            results.add(executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    int seen = 0;
+                    for(int i = 0; i < TAGS_PER_THREAD / 10; i++) {
+                        Enumeration<SemanticTag> tagEnum = kb.getTopicSTSet().tags();
+                        while(tagEnum.hasMoreElements()) {
+                            tagEnum.nextElement();
+                            seen++;
+                        }
+                        Iterator<ASIPInformationSpace> spaceIter = kb.informationSpaces();
+                        while(spaceIter.hasNext()) {
+                            spaceIter.next();
+                        }
+                    }
+                    return seen;
+                }
+            }));
+        }
+
+        for(Future<Integer> result : results) {
+            // rethrows any exception thrown in worker threads
+            result.get();
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        Assert.assertEquals(THREADS * TAGS_PER_THREAD, kb.getTopicSTSet().size());
+        Assert.assertEquals(THREADS * TAGS_PER_THREAD, kb.getNumberInformation());
+    }
+
+    @Test
+    public void concurrentMergeOfSameTag_storedOnce() throws Exception {
+        final SharkKB kb = new ConcurrentInMemoSharkKB();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        List<Future<SemanticTag>> results = new ArrayList<>();
+        for(int t = 0; t < THREADS; t++) {
+            results.add(executor.submit(new Callable<SemanticTag>() {
+                @Override
+                public SemanticTag call() throws Exception {
+                    SemanticTag tag = InMemoSharkKB.createInMemoSemanticTag("Shark", "http://sharksystem.net/");
+                    return kb.getTopicSTSet().merge(tag);
+                }
+            }));
+        }
+
+        SemanticTag first = results.get(0).get();
+        for(Future<SemanticTag> result : results) {
+            Assert.assertSame(first, result.get());
+        }
+        executor.shutdown();
+
+        Assert.assertEquals(1, kb.getTopicSTSet().size());
+    }
+
+    @Test
+    public void snapshot_doesNotSeeLaterChanges() throws Exception {
+        SharkKB kb = new ConcurrentInMemoSharkKB();
+        SemanticTag shark = kb.getTopicSTSet().createSemanticTag("Shark", "http://sharksystem.net/");
+        ASIPSpace space = kb.createASIPSpace(shark, null, null, null, null, null, null, ASIPSpace.DIRECTION_INOUT);
+        kb.addInformation("info", space);
+
+        SharkKB snapshot = kb.snapshot();
+
+        kb.getTopicSTSet().createSemanticTag("Java", "http://java.com/");
+        kb.addInformation("another info", kb.createASIPSpace(
+                kb.getTopicSTSet().getSemanticTag("http://java.com/"), 
+                null, null, null, null, null, null, ASIPSpace.DIRECTION_INOUT));
+
+        Assert.assertEquals(1, snapshot.getTopicSTSet().size());
+        Assert.assertNull(snapshot.getTopicSTSet().getSemanticTag("http://java.com/"));
+        Assert.assertSame(shark, snapshot.getTopicSTSet().getSemanticTag("http://sharksystem.net/"));
+        Assert.assertEquals(1, snapshot.getNumberInformation());
+
+        Assert.assertEquals(2, kb.getTopicSTSet().size());
+        Assert.assertEquals(2, kb.getNumberInformation());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void extractAndContextualize_useSnapshot() throws Exception {
+        SharkKB kb = new ConcurrentInMemoSharkKB();
+        SemanticTag shark = kb.getTopicSTSet().createSemanticTag("Shark", "http://sharksystem.net/");
+        kb.getTopicSTSet().createSemanticTag("Java", "http://java.com/");
+        ContextPoint cp = kb.createContextPoint(kb.createContextCoordinates(
+                shark, null, null, null, null, null, SharkCS.DIRECTION_INOUT));
+        cp.addInformation("info");
+
+        STSet topics = InMemoSharkKB.createInMemoSTSet();
+        topics.merge(shark);
+        Interest context = InMemoSharkKB.createInMemoInterest(
+                topics, null, null, null, null, null, SharkCS.DIRECTION_INOUT);
+
+        Knowledge k = SharkCSAlgebra.extract(kb, context);
+        Assert.assertEquals(1, k.getNumberOfContextPoints());
+
+        Interest mutual = kb.contextualize(context);
+        Assert.assertNotNull(mutual.getTopics().getSemanticTag("http://sharksystem.net/"));
+        Assert.assertNull(mutual.getTopics().getSemanticTag("http://java.com/"));
+
+        // source unchanged and still writable
+        Assert.assertEquals(2, kb.getTopicSTSet().size());
+        kb.getTopicSTSet().createSemanticTag("Berlin", "http://berlin.de/");
+    }
+
+    @Test(expected = SharkKBException.class)
+    public void snapshot_isReadOnly() throws Exception {
+        SharkKB kb = new InMemoSharkKB();
+        kb.snapshot().getTopicSTSet().createSemanticTag("Shark", "http://sharksystem.net/");
+    }
+
+    @Test
+    public void snapshot_isOneCut() throws Exception {
+        final SharkKB kb = new ConcurrentInMemoSharkKB();
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        Future<?> writing = writer.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                for(int i = 0; i < 2000; i++) {
+                    SemanticTag topic = kb.getTopicSTSet().createSemanticTag("t" + i, "http://t/" + i);
+                    kb.createContextPoint(kb.createContextCoordinates(
+                            topic, null, null, null, null, null, SharkCS.DIRECTION_INOUT));
+                }
+                return null;
+            }
+        });
+
+        while(!writing.isDone()) {
+            SharkKB snapshot = kb.snapshot();
+            Enumeration<ContextPoint> cpEnum = snapshot.getAllContextPoints();
+            while(cpEnum != null && cpEnum.hasMoreElements()) {
+                SemanticTag topic = cpEnum.nextElement().getContextCoordinates().getTopic();
+                Assert.assertNotNull(snapshot.getTopicSTSet().getSemanticTag(topic.getSI()));
+            }
+        }
+        writing.get();
+        writer.shutdown();
+    }
+
+    @Test
+    public void copiedSnapshot_keepsContextPointsAndIsReadOnly() throws Exception {
+        // derived class - snapshot is a copy
+        SharkKB kb = new InMemoSharkKB() {};
+        SemanticTag shark = kb.getTopicSTSet().createSemanticTag("Shark", "http://sharksystem.net/");
+        ContextPoint cp = kb.createContextPoint(kb.createContextCoordinates(
+                shark, null, null, null, null, null, SharkCS.DIRECTION_INOUT));
+        Information info = cp.addInformation();
+        info.setContent("content");
+        info.setName("name");
+        info.setContentType("text/plain");
+        info.setProperty("p", "v");
+
+        SharkKB snapshot = kb.snapshot();
+        Assert.assertTrue(snapshot instanceof InMemoSharkKBSnapshot);
+
+        ContextPoint cpCopy = snapshot.getAllContextPoints().nextElement();
+        Assert.assertNotSame(cp, cpCopy);
+        Information infoCopy = cpCopy.enumInformation().nextElement();
+        Assert.assertEquals("content", infoCopy.getContentAsString());
+        Assert.assertEquals("name", infoCopy.getName());
+        Assert.assertEquals("text/plain", infoCopy.getContentType());
+        Assert.assertEquals("v", infoCopy.getProperty("p"));
+
+        try {
+            snapshot.getTopicSTSet().createSemanticTag("Java", "http://java.com/");
+            Assert.fail("snapshot is read only");
+        } catch(SharkKBException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import java.util.Enumeration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.sharkfw.knowledgeBase.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Mixed read / merge load on a shared knowledge base. Readers look up tags
+ * by si and enumerate the topic dimension, writers merge new tags.
+ *
+ * Run e.g. with
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args=ConcurrentSharkKBBenchmark
+ *
+ * @author thsc
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentSharkKBBenchmark {
+
+    private static final int INITIAL_TAGS = 10000;
+
+    private SharkKB kb;
+    private final AtomicInteger nextSI = new AtomicInteger(INITIAL_TAGS);
+
+    @Setup(Level.Iteration)
+    public void setUp() throws SharkKBException {
+        this.kb = new ConcurrentInMemoSharkKB();
+        STSet topics = this.kb.getTopicSTSet();
+        for(int i = 0; i < INITIAL_TAGS; i++) {
+            topics.createSemanticTag("topic" + i, si(i));
+        }
+        this.nextSI.set(INITIAL_TAGS);
+    }
+
+    private static String si(int i) {
+        return "http://sharksystem.net/topic/" + i;
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(6)
+    public SemanticTag lookup() throws SharkKBException {
+        int i = (int) (Thread.currentThread().getId() * 31 + System.nanoTime()) & 0x7fffffff;
+        return this.kb.getTopicSTSet().getSemanticTag(si(i % INITIAL_TAGS));
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void enumerate(Blackhole bh) throws SharkKBException {
+        Enumeration<SemanticTag> tagEnum = this.kb.getTopicSTSet().tags();
+        while(tagEnum.hasMoreElements()) {
+            bh.consume(tagEnum.nextElement());
+        }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public SemanticTag merge() throws SharkKBException {
+        int i = this.nextSI.getAndIncrement();
+        return this.kb.getTopicSTSet().merge(
+                InMemoSharkKB.createInMemoSemanticTag("topic" + i, si(i)));
+    }
+}
@@ -0,0 +1,297 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+import net.sharkfw.knowledgeBase.*;
+import net.sharkfw.knowledgeBase.geom.inmemory.InMemoSharkGeometry;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author thsc
+ */
+public class ContextPointIndexTest {
+
+    private static final int[] DIRECTIONS = {SharkCS.DIRECTION_IN, SharkCS.DIRECTION_OUT,
+        SharkCS.DIRECTION_INOUT, SharkCS.DIRECTION_NOTHING};
+
+    private static SemanticTag topic(int i) {
+        return InMemoSharkKB.createInMemoSemanticTag("t" + i, "http://topic/" + i);
+    }
+
+    private static PeerSemanticTag peer(int i) {
+        return InMemoSharkKB.createInMemoPeerSemanticTag("p" + i, "http://peer/" + i, "tcp://peer" + i);
+    }
+
+    private static TimeSemanticTag time(int i) {
+        return InMemoSharkKB.createInMemoTimeSemanticTag(i * 1000, 500);
+    }
+
+    private static SpatialSemanticTag location(int i) throws SharkKBException {
+        return InMemoSharkKB.createInMemoSpatialSemanticTag("l" + i, new String[] {"http://location/" + i},
+                InMemoSharkGeometry.createGeomByWKT("POINT (" + i + " " + i + ")"));
+    }
+
+    private static <T> T maybe(Random random, T tag) {
+        return random.nextInt(10) < 3 ? null : tag;
+    }
+
+    private static Set<ContextPoint> identitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<ContextPoint, Boolean>());
+    }
+
+    private static Set<ContextPoint> set(Iterator<ContextPoint> cps) {
+        Set<ContextPoint> result = identitySet();
+        while(cps != null && cps.hasNext()) result.add(cps.next());
+        return result;
+    }
+
+    /**
+     * @return context points found by the coordinate combination
+     */
+    private static Set<ContextPoint> expected(InMemoSharkKB kb, SharkCS cs, boolean matchAny)
+            throws SharkKBException {
+
+        Set<ContextPoint> result = identitySet();
+        @SuppressWarnings("unchecked")
+        HashSet<ContextCoordinates> coordinates = kb.possibleCoordinates(cs);
+        Enumeration<ContextPoint> cps = kb.getKnowledge().contextPoints();
+        while(cps.hasMoreElements()) {
+            ContextPoint cp = cps.nextElement();
+            for(ContextCoordinates co : coordinates) {
+                boolean match = matchAny
+                        ? SharkCSAlgebra.identical(cp.getContextCoordinates(), co)
+                        : InMemoSharkKB.exactMatch(cp.getContextCoordinates(), co);
+                if(match) result.add(cp);
+            }
+        }
+        return result;
+    }
+
+    private static STSet topics(Random random) throws SharkKBException {
+        if(random.nextInt(10) < 4) return null;
+        STSet set = InMemoSharkKB.createInMemoSTSet();
+        for(int i = random.nextInt(3); i >= 0; i--) set.merge(topic(random.nextInt(6)));
+        return set;
+    }
+
+    private static PeerSTSet peers(Random random) throws SharkKBException {
+        if(random.nextInt(10) < 4) return null;
+        PeerSTSet set = InMemoSharkKB.createInMemoPeerSTSet();
+        for(int i = random.nextInt(3); i >= 0; i--) set.merge(peer(random.nextInt(4)));
+        return set;
+    }
+
+    @Test
+    public void contextPoints_sameAsCoordinateCombination() throws SharkKBException {
+        Random random = new Random(41);
+        InMemoSharkKB kb = new InMemoSharkKB();
+        for(int i = 0; i < 400; i++) {
+            ContextCoordinates cc = kb.createContextCoordinates(
+                    maybe(random, topic(random.nextInt(6))),
+                    maybe(random, peer(random.nextInt(4))),
+                    maybe(random, peer(random.nextInt(4))),
+                    maybe(random, peer(random.nextInt(4))),
+                    maybe(random, time(random.nextInt(3))),
+                    random.nextInt(10) < 8 ? null : location(random.nextInt(2)),
+                    DIRECTIONS[random.nextInt(DIRECTIONS.length)]);
+            kb.createContextPoint(cc);
+        }
+
+        int found = 0;
+        for(int i = 0; i < 150; i++) {
+            TimeSTSet times = null;
+            if(random.nextBoolean()) {
+                times = InMemoSharkKB.createInMemoTimeSTSet();
+                times.merge(time(random.nextInt(3)));
+            }
+            SpatialSTSet locations = null;
+            if(random.nextInt(10) < 2) {
+                locations = InMemoSharkKB.createInMemoSpatialSTSet();
+                locations.merge(location(random.nextInt(2)));
+            }
+            Interest cs = InMemoSharkKB.createInMemoInterest(topics(random),
+                    maybe(random, peer(random.nextInt(4))), peers(random), peers(random),
+                    times, locations, DIRECTIONS[random.nextInt(DIRECTIONS.length)]);
+
+            for(boolean matchAny : new boolean[] {true, false}) {
+                Set<ContextPoint> result = set(kb.contextPoints(cs, matchAny));
+                Assert.assertEquals(expected(kb, cs, matchAny), result);
+                found += result.size();
+            }
+        }
+        Assert.assertTrue(found > 1000);
+    }
+
+    @Test
+    public void index_followsChanges() throws SharkKBException {
+        InMemoSharkKB kb = new InMemoSharkKB();
+        SemanticTag topic = topic(1);
+        ContextPoint cp1 = kb.createContextPoint(kb.createContextCoordinates(topic, null, null,
+                null, null, null, SharkCS.DIRECTION_INOUT));
+
+        STSet topics = InMemoSharkKB.createInMemoSTSet();
+        topics.createSemanticTag("other", "http://other");
+        Interest cs = InMemoSharkKB.createInMemoInterest(topics, null, null, null,
+                null, null, SharkCS.DIRECTION_INOUT);
+        Assert.assertNull(kb.contextPoints(cs, false));
+
+        // tag gets the si of the query
+        topic.addSI("http://other");
+        Assert.assertEquals(Collections.singleton(cp1), set(kb.contextPoints(cs, false)));
+
+        ContextPoint cp2 = kb.createContextPoint(kb.createContextCoordinates(
+                topics.getSemanticTag("http://other"), peer(1), null, null, null, null,
+                SharkCS.DIRECTION_IN));
+        Assert.assertEquals(2, set(kb.contextPoints(cs, true)).size());
+
+        kb.removeContextPoint(cp1.getContextCoordinates());
+        Assert.assertEquals(Collections.singleton(cp2), set(kb.contextPoints(cs, true)));
+        Assert.assertNull(kb.contextPoints(cs, false));
+    }
+
+    /**
+     * @return first context point in list order - like the scan did
+     */
+    private static ContextPoint scan(InMemoSharkKB kb, ContextCoordinates cc) {
+        Enumeration<ContextPoint> cps = kb.getKnowledge().contextPoints();
+        while(cps.hasMoreElements()) {
+            ContextPoint cp = cps.nextElement();
+            if(InMemoSharkKB.exactMatch(cp.getContextCoordinates(), cc)) return cp;
+        }
+        return null;
+    }
+
+    private static ContextCoordinates coordinates(InMemoSharkKB kb, Random random)
+            throws SharkKBException {
+
+        return kb.createContextCoordinates(
+                maybe(random, topic(random.nextInt(2))),
+                maybe(random, peer(random.nextInt(2))),
+                maybe(random, peer(random.nextInt(2))),
+                maybe(random, peer(random.nextInt(2))),
+                maybe(random, time(0)),
+                random.nextInt(10) < 8 ? null : location(random.nextInt(2)),
+                DIRECTIONS[random.nextInt(DIRECTIONS.length)]);
+    }
+
+    @Test
+    public void getContextPoint_sameAsScan() throws SharkKBException {
+        Random random = new Random(42);
+        InMemoSharkKB kb = new InMemoSharkKB();
+        for(int i = 0; i < 300; i++) {
+            // bypass duplicate check - several points with same coordinates
+            kb.getKnowledge().addContextPoint(new InMemoContextPoint(coordinates(kb, random)));
+        }
+
+        int found = 0;
+        for(int round = 0; round < 3; round++) {
+            for(int i = 0; i < 300; i++) {
+                ContextCoordinates cc = coordinates(kb, random);
+                ContextPoint expected = scan(kb, cc);
+                Assert.assertSame(expected, kb.getContextPoint(cc));
+                if(expected != null) found++;
+            }
+
+            // move and remove some
+            for(int i = 0; i < 40; i++) {
+                ContextPoint cp = kb.getKnowledge().getCP(random.nextInt(
+                        kb.getKnowledge().getNumberOfContextPoints()));
+                if(random.nextBoolean()) {
+                    cp.setContextCoordinates(coordinates(kb, random));
+                } else {
+                    kb.getKnowledge().removeContextPoint(cp);
+                }
+            }
+        }
+        Assert.assertTrue(found > 300);
+    }
+
+    @Test
+    public void removeContextPoint_removesObject() throws SharkKBException {
+        InMemoSharkKB kb = new InMemoSharkKB();
+        SemanticTag topic = topic(1);
+        ContextPoint cp1 = new InMemoContextPoint(kb.createContextCoordinates(topic, null,
+                null, null, null, null, SharkCS.DIRECTION_INOUT));
+        ContextPoint cp2 = new InMemoContextPoint(kb.createContextCoordinates(topic, null,
+                null, null, null, null, SharkCS.DIRECTION_INOUT));
+        kb.getKnowledge().addContextPoint(cp1);
+        kb.getKnowledge().addContextPoint(cp2);
+        Assert.assertSame(cp1, kb.getContextPoint(cp2.getContextCoordinates()));
+
+        // equal points - second one goes
+        kb.getKnowledge().removeContextPoint(cp2);
+        Assert.assertSame(cp1, kb.getKnowledge().getCP(0));
+        Assert.assertSame(cp1, kb.getContextPoint(cp2.getContextCoordinates()));
+
+        kb.removeContextPoint(cp1.getContextCoordinates());
+        Assert.assertNull(kb.getContextPoint(cp1.getContextCoordinates()));
+        Assert.assertEquals(0, kb.getKnowledge().getNumberOfContextPoints());
+    }
+
+    @Test
+    public void siChanges_onlyInvalidateIndexesOfThatStorage() throws SharkKBException {
+        InMemoSharkKB kb = new InMemoSharkKB();
+        SemanticTag topic = kb.getTopicSTSet().createSemanticTag("t", "http://topic/t");
+        ContextPoint cp = kb.createContextPoint(kb.createContextCoordinates(topic, null,
+                null, null, null, null, SharkCS.DIRECTION_INOUT));
+
+        java.util.List<ContextPoint> cps = new java.util.ArrayList<>();
+        cps.add(cp);
+        ContextPointIndex index = new ContextPointIndex(cps);
+        Assert.assertSame(cp, index.find(cp.getContextCoordinates()));
+        Assert.assertTrue(index.isValid());
+
+        // other knowledge base and tags outside any storage
+        new InMemoSharkKB().getTopicSTSet().createSemanticTag("o", "http://other/o").addSI("http://other/o2");
+        topic(1).addSI("http://other/t1");
+        Assert.assertTrue(index.isValid());
+
+        // tag of an indexed context point
+        topic.addSI("http://topic/t2");
+        Assert.assertFalse(index.isValid());
+
+        STSet topics = InMemoSharkKB.createInMemoSTSet();
+        topics.createSemanticTag("t2", "http://topic/t2");
+        Interest cs = InMemoSharkKB.createInMemoInterest(topics, null, null, null,
+                null, null, SharkCS.DIRECTION_INOUT);
+        Assert.assertEquals(Collections.singleton(cp), set(index.query(cs, false)));
+    }
+
+    @Test
+    public void move_reindexesOnlyThatContextPoint() throws SharkKBException {
+        InMemoSharkKB kb = new InMemoSharkKB();
+        ContextCoordinates first = kb.createContextCoordinates(topic(1), null, null,
+                null, null, null, SharkCS.DIRECTION_INOUT);
+        ContextCoordinates second = kb.createContextCoordinates(topic(2), null, null,
+                null, null, null, SharkCS.DIRECTION_INOUT);
+        ContextPoint cp1 = kb.createContextPoint(first);
+        ContextPoint cp2 = kb.createContextPoint(second);
+
+        java.util.List<ContextPoint> cps = new java.util.ArrayList<>();
+        cps.add(cp1);
+        cps.add(cp2);
+        ContextPointIndex index = new ContextPointIndex(cps);
+        Assert.assertSame(cp1, index.find(first));
+
+        // moves elsewhere don't touch this index
+        InMemoSharkKB other = new InMemoSharkKB();
+        other.createContextPoint(first).setContextCoordinates(second);
+        Assert.assertTrue(index.isValid());
+
+        // cp1 keeps its place in insertion order
+        cp1.setContextCoordinates(second);
+        Assert.assertTrue(index.isValid());
+        Assert.assertNull(index.find(first));
+        Assert.assertSame(cp1, index.find(second));
+
+        cp2.setContextCoordinates(first);
+        Assert.assertSame(cp2, index.find(first));
+    }
+}
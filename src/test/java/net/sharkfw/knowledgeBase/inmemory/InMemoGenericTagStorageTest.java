@@ -0,0 +1,52 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import java.util.Arrays;
+import net.sharkfw.knowledgeBase.SemanticTag;
+import net.sharkfw.knowledgeBase.SharkKBException;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author thsc
+ */
+public class InMemoGenericTagStorageTest {
+
+    private static SemanticTag tag(int i) {
+        return InMemoSharkKB.createInMemoSemanticTag("tag" + i, "http://www.sharksystem.net/tag" + i);
+    }
+
+    private static void remove(boolean concurrent) throws SharkKBException {
+        InMemoGenericTagStorage<SemanticTag> storage = new InMemoGenericTagStorage<>(concurrent);
+        SemanticTag a = tag(1);
+        storage.add(a);
+        storage.add(tag(2));
+        Assert.assertEquals(2, storage.number());
+
+        // absent tags change nothing
+        int version = storage.getVersion();
+        storage.removeSemanticTag(tag(3));
+        storage.removeAll(Arrays.asList(tag(4), tag(5)));
+        Assert.assertEquals(2, storage.number());
+        Assert.assertEquals(version, storage.getVersion());
+
+        // another object with same si
+        storage.removeSemanticTag(tag(1));
+        Assert.assertEquals(1, storage.number());
+        Assert.assertNull(storage.getSemanticTag(a.getSI()));
+
+        storage.removeAll(Arrays.asList(tag(2)));
+        Assert.assertEquals(0, storage.number());
+        Assert.assertFalse(storage.tags().hasMoreElements());
+    }
+
+    @Test
+    public void remove_findsTagsBySI() throws SharkKBException {
+        remove(false);
+    }
+
+    @Test
+    public void remove_findsTagsBySI_concurrent() throws SharkKBException {
+        remove(true);
+    }
+}
@@ -0,0 +1,187 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import net.sharkfw.knowledgeBase.*;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author thsc
+ */
+public class InMemoIndexedSemanticNetTest {
+
+    private static final String P = "p";
+    private static final String Q = "q";
+
+    private static String si(int i) {
+        return "http://sharksystem.net/indexed/" + i;
+    }
+
+    /**
+     * chain 0 -p-> 1 -p-> 2 -p-> 3, shortcut 0 -q-> 3, branch 1 -p-> 4
+     */
+    private static void fill(SemanticNet net) throws SharkKBException {
+        SNSemanticTag[] tags = new SNSemanticTag[5];
+        for(int i = 0; i < tags.length; i++) {
+            tags[i] = net.createSemanticTag("t" + i, si(i));
+        }
+        net.setPredicate(tags[0], tags[1], P);
+        net.setPredicate(tags[1], tags[2], P);
+        net.setPredicate(tags[2], tags[3], P);
+        net.setPredicate(tags[0], tags[3], Q);
+        net.setPredicate(tags[1], tags[4], P);
+    }
+
+    private static int count(Enumeration e) {
+        int n = 0;
+        while(e != null && e.hasMoreElements()) {
+            e.nextElement();
+            n++;
+        }
+        return n;
+    }
+
+    private static int edges(SemanticNet net, String predicate) throws SharkKBException {
+        int n = 0;
+        Enumeration<SemanticTag> tags = net.tags();
+        while(tags.hasMoreElements()) {
+            n += count(((SNSemanticTag) tags.nextElement()).targetTags(predicate));
+        }
+        return n;
+    }
+
+    @Test
+    public void predicates_visibleOnTags() throws SharkKBException {
+        InMemoIndexedSemanticNet net = new InMemoIndexedSemanticNet();
+        fill(net);
+
+        SNSemanticTag t1 = net.getSemanticTag(si(1));
+        Assert.assertEquals(2, count(t1.targetTags(P)));
+        Assert.assertEquals(1, count(t1.sourceTags(P)));
+        Assert.assertNull(t1.targetTags(Q));
+
+        t1.removePredicate(P, net.getSemanticTag(si(4)));
+        Assert.assertEquals(1, count(t1.targetTags(P)));
+        Assert.assertNull(net.getSemanticTag(si(4)).sourceTags(P));
+
+        net.removeSemanticTag(net.getSemanticTag(si(2)));
+        Assert.assertNull(net.getSemanticTag(si(2)));
+        Assert.assertNull(t1.targetTags(P));
+        Assert.assertNull(net.getSemanticTag(si(3)).sourceTags(P));
+    }
+
+    @Test
+    public void fragment_sameAsInMemoSemanticNet() throws SharkKBException {
+        SemanticNet plain = new InMemoSemanticNet();
+        InMemoIndexedSemanticNet indexed = new InMemoIndexedSemanticNet();
+        fill(plain);
+        fill(indexed);
+
+        for(int depth = 0; depth < 4; depth++) {
+            FragmentationParameter fp = new FragmentationParameter(depth);
+            SemanticTag anchor = InMemoSharkKB.createInMemoSemanticTag("a", si(0));
+
+            SemanticNet expected = plain.fragment(anchor, fp);
+            SemanticNet actual = indexed.fragment(anchor, fp);
+
+            Assert.assertEquals(expected.size(), actual.size());
+            Assert.assertEquals(edges(expected, P), edges(actual, P));
+            Assert.assertEquals(edges(expected, Q), edges(actual, Q));
+        }
+    }
+
+    @Test
+    public void shortestPath_bfs() throws SharkKBException {
+        InMemoIndexedSemanticNet net = new InMemoIndexedSemanticNet();
+        fill(net);
+
+        STSet goal = InMemoSharkKB.createInMemoSTSet();
+        goal.createSemanticTag("t3", si(3));
+
+        List<String> predicates = new ArrayList<>();
+        List<SNSemanticTag> path = net.shortestPath(net.getSemanticTag(si(0)), goal, predicates);
+
+        // shortcut
+        Assert.assertEquals(2, path.size());
+        Assert.assertEquals(1, predicates.size());
+        Assert.assertEquals(Q, predicates.get(0));
+
+        Assert.assertNull(net.shortestPath(net.getSemanticTag(si(3)), goal, null));
+    }
+
+    @Test
+    public void makeTransitive_closure() throws SharkKBException {
+        InMemoIndexedSemanticNet net = new InMemoIndexedSemanticNet();
+        fill(net);
+
+        Assert.assertFalse(SharkCSAlgebra.isTransitive(net, P));
+        SharkCSAlgebra.makeTransitive(net, P);
+        Assert.assertTrue(SharkCSAlgebra.isTransitive(net, P));
+
+        // 0 reaches 1,2,3,4 - 1 reaches 2,3,4 - 2 reaches 3
+        Assert.assertEquals(8, edges(net, P));
+    }
+
+    @Test
+    public void manyChanges_overlayCompacted() throws SharkKBException {
+        InMemoIndexedSemanticNet net = new InMemoIndexedSemanticNet();
+        int n = SNGraph.MIN_COMPACTION * 4;
+        SNSemanticTag root = net.createSemanticTag("root", si(-1));
+        for(int i = 0; i < n; i++) {
+            net.setPredicate(root, net.createSemanticTag("t" + i, si(i)), P);
+        }
+        for(int i = 0; i < n; i += 2) {
+            net.removePredicate(root, net.getSemanticTag(si(i)), P);
+        }
+
+        Assert.assertEquals(n / 2, count(root.targetTags(P)));
+        Assert.assertEquals(n / 2 + 1,
+                net.fragment(root, new FragmentationParameter(1)).size());
+    }
+
+    @Test
+    public void removeSemanticTags_dropsPredicates() throws SharkKBException {
+        SemanticNet plain = new InMemoSemanticNet();
+        InMemoIndexedSemanticNet indexed = new InMemoIndexedSemanticNet();
+        fill(plain);
+        fill(indexed);
+
+        for(SemanticNet net : new SemanticNet[] {plain, indexed}) {
+            List<SemanticTag> remove = new ArrayList<>();
+            remove.add(net.getSemanticTag(si(1)));
+            remove.add(net.getSemanticTag(si(3)));
+            remove.add(net.getSemanticTag(si(3)));
+            ((InMemoSTSet) net).removeSemanticTags(remove);
+
+            Assert.assertEquals(3, net.size());
+            Assert.assertNull(net.getSemanticTag(si(1)));
+            Assert.assertEquals(0, edges(net, P));
+            Assert.assertEquals(0, edges(net, Q));
+            Assert.assertNull(net.getSemanticTag(si(0)).targetTags(P));
+        }
+    }
+
+    @Test
+    public void removedTags_idsReused() throws SharkKBException {
+        InMemoIndexedSemanticNet net = new InMemoIndexedSemanticNet();
+        SNSemanticTag root = net.createSemanticTag("root", si(-1));
+        for(int i = 0; i < SNGraph.MIN_COMPACTION * 4; i++) {
+            SNSemanticTag tag = net.createSemanticTag("t" + i, si(i));
+            net.setPredicate(root, tag, P);
+            net.setPredicate(tag, root, Q);
+            net.removeSemanticTag(tag);
+        }
+
+        Assert.assertEquals(2, net.getGraph().nodeCount());
+        Assert.assertNull(root.targetTags(P));
+        Assert.assertNull(root.sourceTags(Q));
+
+        // new tag on a reused id has no edges of the removed ones
+        SNSemanticTag fresh = net.createSemanticTag("fresh", si(0));
+        Assert.assertNull(fresh.sourceTags(P));
+        Assert.assertNull(fresh.targetTags(Q));
+    }
+}
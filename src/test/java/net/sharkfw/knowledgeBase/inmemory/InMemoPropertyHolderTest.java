@@ -0,0 +1,100 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import net.sharkfw.knowledgeBase.SemanticTag;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author thsc
+ */
+public class InMemoPropertyHolderTest {
+
+    private static Set<Object> names(Enumeration e) {
+        Set<Object> names = new HashSet<>();
+        while(e.hasMoreElements()) {
+            names.add(e.nextElement());
+        }
+        return names;
+    }
+
+    @Test
+    public void setGetRemove_flatAndMap() {
+        InMemoPropertyHolder holder = new InMemoPropertyHolder();
+        Assert.assertNull(holder.getProperty("p0"));
+        Assert.assertFalse(holder.propertyNames().hasMoreElements());
+
+        int number = InMemoPropertyHolder.MAX_FLAT_PROPERTIES * 2;
+        for(int i = 0; i < number; i++) {
+            holder.setProperty("p" + i, "v" + i);
+        }
+        holder.setProperty("hidden", "h", false);
+        holder.setProperty("p1", "changed");
+
+        Assert.assertEquals("v0", holder.getProperty("p0"));
+        Assert.assertEquals("changed", holder.getProperty("p1"));
+        Assert.assertEquals("h", holder.getProperty("hidden"));
+        Assert.assertEquals(number, names(holder.propertyNames(false)).size());
+        Assert.assertEquals(number + 1, names(holder.propertyNames(true)).size());
+
+        holder.removeProperty("p0");
+        holder.setProperty("hidden", null, false);
+        Assert.assertNull(holder.getProperty("p0"));
+        Assert.assertNull(holder.getProperty("hidden"));
+        Assert.assertEquals(number - 1, names(holder.propertyNames(true)).size());
+    }
+
+    @Test
+    public void handedOutMap_changesHolder() {
+        InMemoPropertyHolder holder = new InMemoPropertyHolder();
+        holder.setProperty("a", "1");
+
+        holder.getUnhiddenProperties().put("b", "2");
+        Assert.assertEquals("1", holder.getProperty("a"));
+        Assert.assertEquals("2", holder.getProperty("b"));
+
+        holder.setProperty("c", "3");
+        Assert.assertEquals("3", holder.getUnhiddenProperties().get("c"));
+    }
+
+    @Test
+    public void concurrentFirstProperties_noneLost() throws Exception {
+        int threads = 8;
+        int perThread = InMemoPropertyHolder.MAX_FLAT_PROPERTIES;
+
+        for(int run = 0; run < 50; run++) {
+            final SemanticTag tag = InMemoSharkKB.createInMemoSemanticTag("tag", "http://tag.de");
+            final CountDownLatch start = new CountDownLatch(1);
+            Thread[] setters = new Thread[threads];
+            for(int t = 0; t < threads; t++) {
+                final String prefix = "t" + t + "_";
+                final int number = perThread;
+                setters[t] = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            for(int i = 0; i < number; i++) {
+                                tag.setProperty(prefix + i, "v");
+                                names(tag.propertyNames());
+                            }
+                        } catch (Exception ex) {
+                            throw new RuntimeException(ex);
+                        }
+                    }
+                };
+                setters[t].start();
+            }
+            start.countDown();
+            for(Thread setter : setters) {
+                setter.join();
+            }
+
+            Assert.assertEquals(threads * perThread, names(tag.propertyNames()).size());
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import net.sharkfw.knowledgeBase.*;
+import net.sharkfw.knowledgeBase.geom.Envelope;
+import net.sharkfw.knowledgeBase.geom.SharkGeometry;
+import net.sharkfw.knowledgeBase.geom.SpatialAlgebra;
+import net.sharkfw.knowledgeBase.geom.inmemory.GeoDistance;
+import net.sharkfw.knowledgeBase.geom.inmemory.InMemoSharkGeometry;
+import net.sharkfw.knowledgeBase.geom.inmemory.ParsedGeometry;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author thsc
+ */
+public class InMemoSpatialSTSetTest {
+
+    private static final String SQUARE = "POLYGON((0 0, 10 0, 10 10, 0 10, 0 0))";
+
+    private static ParsedGeometry parse(String wkt) throws SharkKBException {
+        return ParsedGeometry.parse(wkt);
+    }
+
+    private static String box(double x, double y, double size) {
+        return "POLYGON((" + x + " " + y + ", " + (x + size) + " " + y + ", "
+                + (x + size) + " " + (y + size) + ", " + x + " " + (y + size) + ", "
+                + x + " " + y + "))";
+    }
+
+    @Test
+    public void parsedGeometry_predicates() throws SharkKBException {
+        ParsedGeometry square = parse(SQUARE);
+        ParsedGeometry withHole = parse("POLYGON((0 0, 10 0, 10 10, 0 10, 0 0), (4 4, 6 4, 6 6, 4 6, 4 4))");
+
+        Assert.assertTrue(square.covers(parse("POINT(5 5)")));
+        Assert.assertTrue(square.covers(parse("POINT(10 5)"))); // boundary
+        Assert.assertFalse(square.covers(parse("POINT(11 5)")));
+        Assert.assertFalse(withHole.covers(parse("POINT(5 5)")));
+        Assert.assertTrue(withHole.covers(parse("POINT(4 5)")));
+
+        Assert.assertTrue(square.covers(withHole));
+        Assert.assertFalse(withHole.covers(square));
+        Assert.assertFalse(withHole.covers(parse("LINESTRING(1 5, 9 5)")));
+        Assert.assertTrue(withHole.covers(parse("LINESTRING(1 1, 9 1, 9 9)")));
+
+        // concave shell - line leaves and reenters
+        ParsedGeometry u = parse("POLYGON((0 0, 10 0, 10 10, 7 10, 7 3, 3 3, 3 10, 0 10, 0 0))");
+        Assert.assertFalse(u.covers(parse("LINESTRING(1 8, 9 8)")));
+        Assert.assertTrue(u.intersects(parse("LINESTRING(1 8, 9 8)")));
+        Assert.assertFalse(u.intersects(parse("POINT(5 8)")));
+
+        Assert.assertTrue(square.intersects(parse("POLYGON((9 9, 20 9, 20 20, 9 20, 9 9))")));
+        Assert.assertTrue(square.intersects(parse("POLYGON((2 2, 3 2, 3 3, 2 2))"))); // inside
+        Assert.assertFalse(square.intersects(parse("POLYGON((11 11, 20 11, 20 20, 11 11))")));
+        Assert.assertFalse(withHole.intersects(parse("POINT(5 5)")));
+
+        // union of two halves
+        ParsedGeometry halves = parse("MULTIPOLYGON(((0 0, 5 0, 5 10, 0 10, 0 0)), ((5 0, 10 0, 10 10, 5 10, 5 0)))");
+        Assert.assertTrue(halves.equalsTopologically(square));
+        Assert.assertTrue(parse("GEOMETRYCOLLECTION(POINT(1 1), LINESTRING(0 0, 1 1))")
+                .covers(parse("MULTIPOINT((0 0), (1 1))")));
+
+        // legacy notation latitude, longitude, radius
+        ParsedGeometry legacy = parse("52.5, 13.4, 10");
+        Assert.assertEquals(13.4, legacy.getEnvelope().getMinX(), 0);
+        Assert.assertEquals(52.5, legacy.getEnvelope().getMinY(), 0);
+        Assert.assertEquals(10, legacy.getRadius(), 0);
+        Assert.assertTrue(parse("POINT z (13.4 52.5 30)").equalsTopologically(legacy));
+
+        for(String malformed : new String[] {"POINT(1)", "POLYGON((0 0, 1 1))",
+                "LINESTRING(0 0, 1 1", "CIRCLE(1 1)", "52.5"}) {
+            try {
+                parse(malformed);
+                Assert.fail(malformed);
+            }
+            catch(SharkKBException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void rTree_sameAsScan() {
+        Random random = new Random(3);
+        SpatialRTree tree = new SpatialRTree();
+        List<SemanticTag> tags = new ArrayList<>();
+        List<Envelope> boxes = new ArrayList<>();
+        for(int i = 0; i < 1000; i++) {
+            double x = random.nextInt(1000), y = random.nextInt(1000);
+            tags.add(new InMemoSemanticTag("t" + i, new String[] {"http://t/" + i}));
+            boxes.add(new Envelope(x, y, x + random.nextInt(30), y + random.nextInt(30)));
+        }
+
+        // half bulk loaded, half inserted
+        tree.load(tags.subList(0, 500), boxes.subList(0, 500));
+        for(int i = 500; i < 1000; i++) {
+            tree.insert(tags.get(i), boxes.get(i));
+        }
+        for(int i = 0; i < 400; i++) {
+            int r = random.nextInt(tags.size());
+            Assert.assertTrue(tree.remove(tags.remove(r)));
+            boxes.remove(r);
+        }
+        Assert.assertEquals(tags.size(), tree.size());
+
+        for(int q = 0; q < 200; q++) {
+            double x = random.nextInt(1000), y = random.nextInt(1000);
+            Envelope query = new Envelope(x, y, x + random.nextInt(100), y + random.nextInt(100));
+
+            List<SemanticTag> result = new ArrayList<>();
+            tree.search(query, result);
+
+            int expected = 0;
+            for(int i = 0; i < tags.size(); i++) {
+                if(boxes.get(i).intersects(query)) {
+                    expected++;
+                    Assert.assertTrue(result.contains(tags.get(i)));
+                }
+            }
+            Assert.assertEquals(expected, result.size());
+        }
+    }
+
+    @Test
+    public void fragmentAndContextualize_geometric() throws SharkKBException {
+        SpatialSTSet set = InMemoSharkKB.createInMemoSpatialSTSet();
+        List<SpatialSemanticTag> tags = new ArrayList<>();
+        for(int x = 0; x < 20; x++) {
+            for(int y = 0; y < 20; y++) {
+                SharkGeometry geom = InMemoSharkGeometry.createGeomByWKT(box(x * 10, y * 10, 5));
+                tags.add(set.createSpatialSemanticTag("b" + x + "_" + y,
+                        new String[] {"http://box/" + x + "/" + y}, geom));
+            }
+        }
+        set.createSemanticTag("no geometry", "http://nogeom/");
+        set.removeSemanticTag(tags.get(0));
+
+        // meets boxes 1_1, 1_2, 2_1, 2_2
+        SpatialSemanticTag anchor = new InMemoSpatialSemanticTag(
+                InMemoSharkGeometry.createGeomByWKT(box(12, 12, 10)));
+        STSet fragment = set.fragment(anchor);
+        Assert.assertEquals(4, fragment.size());
+        Assert.assertNotNull(fragment.getSemanticTag("http://box/2/2"));
+
+        Assert.assertNull(set.fragment(new InMemoSpatialSemanticTag(
+                InMemoSharkGeometry.createGeomByWKT("POINT(7 7)"))));
+        Assert.assertNotNull(set.fragment(new InMemoSemanticTag("x", new String[] {"http://nogeom/"})));
+
+        SpatialSTSet context = InMemoSharkKB.createInMemoSpatialSTSet();
+        context.merge(anchor);
+        context.createSpatialSemanticTag("line", new String[] {"http://line/"},
+                InMemoSharkGeometry.createGeomByWKT("LINESTRING(0 195, 200 195)"));
+        SpatialSTSet result = set.contextualize(context, null);
+        Assert.assertEquals(4 + 20, result.size());
+
+        // algebra
+        SpatialAlgebra algebra = SharkCSAlgebra.getSpatialAlgebra();
+        Assert.assertTrue(algebra.isIn(set, tags.get(5)));
+        Assert.assertFalse(algebra.isIn(tags.get(5), anchor));
+        Assert.assertTrue(algebra.identical(tags.get(5), tags.get(5)));
+        Assert.assertFalse(algebra.identical(tags.get(5), tags.get(6)));
+        Assert.assertFalse(algebra.isIn(set, anchor));
+        Assert.assertEquals(4, algebra.fragment(null, set, anchor).size());
+
+        Enumeration<SemanticTag> all = set.tags();
+        int n = 0;
+        while(all.hasMoreElements()) {
+            all.nextElement();
+            n++;
+        }
+        Assert.assertEquals(400, n);
+    }
+
+    @Test
+    public void distanceKernels() throws SharkKBException {
+        // Berlin - Hamburg about 255 km
+        double d = GeoDistance.haversine(52.5200, 13.4050, 53.5511, 9.9937);
+        Assert.assertEquals(255000, d, 2000);
+        Assert.assertEquals(d, GeoDistance.equirectangular(52.5200, 13.4050, 53.5511, 9.9937), 1000);
+
+        Random random = new Random(4);
+        double[] xy = new double[2000];
+        for(int i = 0; i < xy.length; i += 2) {
+            xy[i] = 13 + random.nextDouble();
+            xy[i + 1] = 52 + random.nextDouble();
+        }
+        double[] distances = new double[1000];
+        boolean[] inRange = new boolean[1000];
+        GeoDistance.haversine(52.5, 13.5, xy, distances);
+        int number = GeoDistance.inRange(52.5, 13.5, 30000, xy, inRange);
+
+        int expected = 0;
+        for(int i = 0; i < 1000; i++) {
+            double scalar = GeoDistance.haversine(52.5, 13.5, xy[2 * i + 1], xy[2 * i]);
+            Assert.assertEquals(scalar, distances[i], 1e-6);
+            Assert.assertEquals(scalar <= 30000, inRange[i]);
+            if(inRange[i]) expected++;
+
+            // box covers range
+            if(scalar <= 30000) {
+                Assert.assertTrue(GeoDistance.box(52.5, 13.5, 30000).contains(xy[2 * i], xy[2 * i + 1]));
+            }
+        }
+        Assert.assertEquals(expected, number);
+
+        // geometry distances
+        ParsedGeometry square = parse("POLYGON((13 52, 14 52, 14 53, 13 53, 13 52))");
+        Assert.assertEquals(0, square.distance(52.5, 13.5), 0);
+        Assert.assertEquals(GeoDistance.haversine(52.5, 14, 52.5, 14.1), square.distance(52.5, 14.1), 5);
+        Assert.assertEquals(0, square.distance(parse("LINESTRING(13.5 52.5, 20 52.5)")), 0);
+        Assert.assertEquals(GeoDistance.haversine(53, 14, 53.1, 14), 
+                square.distance(parse("POINT(14 53.1)")), 5);
+        // legacy radius in meters
+        Assert.assertEquals(d - 1000, parse("52.5200, 13.4050, 1000").distance(parse("POINT(9.9937 53.5511)")), 1e-6);
+    }
+
+    @Test
+    public void nearestAndRange_sameAsScan() throws SharkKBException {
+        Random random = new Random(5);
+        SpatialSTSet set = InMemoSharkKB.createInMemoSpatialSTSet();
+        List<SpatialSemanticTag> tags = new ArrayList<>();
+        for(int i = 0; i < 2000; i++) {
+            String wkt = i % 10 == 0
+                    ? box(13 + random.nextDouble(), 52 + random.nextDouble(), 0.01)
+                    : "POINT(" + (13 + random.nextDouble()) + " " + (52 + random.nextDouble()) + ")";
+            tags.add(set.createSpatialSemanticTag("t" + i, new String[] {"http://t/" + i},
+                    InMemoSharkGeometry.createGeomByWKT(wkt)));
+        }
+
+        for(int q = 0; q < 20; q++) {
+            final double latitude = 52 + random.nextDouble();
+            final double longitude = 13 + random.nextDouble();
+            final SpatialSemanticTag position = new InMemoSpatialSemanticTag(
+                    InMemoSharkGeometry.createGeomByWKT("POINT(" + longitude + " " + latitude + ")"));
+
+            double[] all = new double[tags.size()];
+            for(int i = 0; i < all.length; i++) {
+                all[i] = set.getDistance(position, tags.get(i));
+            }
+            double[] sorted = all.clone();
+            Arrays.sort(sorted);
+
+            Iterator<SpatialSemanticTag> nearest = set.nearestTags(latitude, longitude, 10);
+            int n = 0;
+            while(nearest.hasNext()) {
+                Assert.assertEquals(sorted[n], set.getDistance(position, nearest.next()), 1e-6);
+                n++;
+            }
+            Assert.assertEquals(10, n);
+
+            // radius query
+            List<String> anchors = new ArrayList<>();
+            anchors.add("POINT(" + longitude + " " + latitude + ")");
+            SpatialSTSet inRange = InMemoSpatialSTSet.fragmentSpatialSTSet(
+                    java.util.Collections.enumeration(anchors), set, 5000);
+            int expected = 0;
+            for(int i = 0; i < all.length; i++) {
+                if(all[i] <= 5000) {
+                    expected++;
+                    Assert.assertTrue(set.isInRange(position, tags.get(i), 5000));
+                    Assert.assertNotNull(inRange.getSemanticTag("http://t/" + i));
+                }
+            }
+            Assert.assertEquals(expected, inRange.size());
+        }
+
+        // anchor by si
+        SpatialSTSet bySI = InMemoSpatialSTSet.fragmentSpatialSTSet(
+                java.util.Collections.enumeration(Arrays.asList("http://t/1")), set, 0);
+        Assert.assertNotNull(bySI.getSemanticTag("http://t/1"));
+    }
+}
@@ -0,0 +1,172 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import net.sharkfw.knowledgeBase.*;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author thsc
+ */
+public class InMemoTimeSTSetTest {
+
+    /**
+     * @return periods of set - from mapped to end
+     */
+    private static TreeMap<Long, Long> periods(TimeSTSet set) throws SharkKBException {
+        TreeMap<Long, Long> periods = new TreeMap<>();
+        Enumeration<TimeSemanticTag> tags = set.timeTags();
+        while(tags.hasMoreElements()) {
+            TimeSemanticTag tag = tags.nextElement();
+            Assert.assertNull(periods.put(tag.getFrom(), tag.getFrom() + tag.getDuration()));
+        }
+        return periods;
+    }
+
+    /**
+     * @return true if periods don't overlap
+     */
+    private static boolean disjoint(TreeMap<Long, Long> periods) {
+        long lastEnd = Long.MIN_VALUE;
+        for(Long from : periods.keySet()) {
+            if(from <= lastEnd) return false;
+            lastEnd = periods.get(from);
+        }
+        return true;
+    }
+
+    private static boolean covered(TreeMap<Long, Long> periods, long time) {
+        java.util.Map.Entry<Long, Long> e = periods.floorEntry(time);
+        return e != null && e.getValue() >= time;
+    }
+
+    @Test
+    public void intervalTree_sameAsScan() {
+        Random random = new Random(1);
+        TimeIntervalTree tree = new TimeIntervalTree();
+        List<TimeSemanticTag> tags = new ArrayList<>();
+        for(int i = 0; i < 500; i++) {
+            TimeSemanticTag tag = new InMemoTimeSemanticTag(random.nextInt(10000), random.nextInt(300));
+            tags.add(tag);
+            tree.insert(tag);
+        }
+        for(int i = 0; i < 200; i++) {
+            Assert.assertTrue(tree.remove(tags.remove(random.nextInt(tags.size()))));
+        }
+        Assert.assertEquals(tags.size(), tree.size());
+
+        for(int q = 0; q < 200; q++) {
+            long from = random.nextInt(10000);
+            long end = from + random.nextInt(500);
+
+            List<TimeSemanticTag> result = new ArrayList<>();
+            tree.overlapping(from, end, result);
+
+            int expected = 0;
+            for(TimeSemanticTag tag : tags) {
+                if(tag.getFrom() <= end && tag.getFrom() + tag.getDuration() >= from) {
+                    expected++;
+                    Assert.assertTrue(result.contains(tag));
+                }
+            }
+            Assert.assertEquals(expected, result.size());
+        }
+    }
+
+    @Test
+    public void add_coalescesOverlappingTags() throws SharkKBException {
+        TimeSTSet set = InMemoSharkKB.createInMemoTimeSTSet();
+        set.createTimeSemanticTag(100, 100); // 100 - 200
+        set.createTimeSemanticTag(300, 100); // 300 - 400
+        set.createTimeSemanticTag(120, 10);  // inside
+        Assert.assertEquals(2, set.size());
+
+        set.createTimeSemanticTag(150, 200); // 150 - 350 joins both
+        TreeMap<Long, Long> periods = periods(set);
+        Assert.assertEquals(1, periods.size());
+        Assert.assertEquals(Long.valueOf(400), periods.get(100L));
+
+        set.createTimeSemanticTag(50, 500); // contains all
+        periods = periods(set);
+        Assert.assertEquals(1, periods.size());
+        Assert.assertEquals(Long.valueOf(550), periods.get(50L));
+    }
+
+    @Test
+    public void mergeAndFragment_sameAsPointwise() throws SharkKBException {
+        Random random = new Random(2);
+        TimeSTSet source = InMemoSharkKB.createInMemoTimeSTSet();
+        for(int i = 0; i < 300; i++) {
+            source.createTimeSemanticTag(random.nextInt(100000), random.nextInt(400));
+        }
+
+        TimeSTSet set = InMemoSharkKB.createInMemoTimeSTSet();
+        set.createTimeSemanticTag(5000, 20000);
+        set.merge(source);
+
+        TreeMap<Long, Long> sourcePeriods = periods(source);
+        TreeMap<Long, Long> periods = periods(set);
+        Assert.assertTrue(disjoint(sourcePeriods));
+        Assert.assertTrue(disjoint(periods));
+
+        for(long time = 0; time < 101000; time += 7) {
+            boolean expected = covered(sourcePeriods, time)
+                    || (time >= 5000 && time <= 25000);
+            Assert.assertEquals(expected, covered(periods, time));
+        }
+
+        // fragment contains parts of set within anchor
+        TimeSemanticTag anchor = InMemoSharkKB.createInMemoTimeSemanticTag(40000, 30000);
+        TreeMap<Long, Long> fragment = periods(source.fragment(anchor));
+        for(Long from : fragment.keySet()) {
+            Assert.assertTrue(from >= 40000 || fragment.get(from) <= 70000);
+            Assert.assertTrue(covered(sourcePeriods, from));
+            Assert.assertTrue(covered(sourcePeriods, fragment.get(from)));
+        }
+    }
+
+    @Test
+    public void addSemanticTags_coalescedWithoutNotification() throws SharkKBException {
+        Random random = new Random(3);
+        List<TimeSemanticTag> tags = new ArrayList<>();
+        for(int i = 0; i < 300; i++) {
+            tags.add(InMemoSharkKB.createInMemoTimeSemanticTag(random.nextInt(100000), random.nextInt(400)));
+        }
+
+        TimeSTSet pointwise = InMemoSharkKB.createInMemoTimeSTSet();
+        for(TimeSemanticTag tag : tags) {
+            pointwise.merge(tag);
+        }
+
+        InMemoTimeSTSet set = (InMemoTimeSTSet) InMemoSharkKB.createInMemoTimeSTSet();
+        final int[] created = {0};
+        set.addListener(new STSetListener() {
+            @Override
+            public void semanticTagCreated(SemanticTag tag, STSet stset) { created[0]++; }
+            @Override
+            public void semanticTagRemoved(SemanticTag tag, STSet stset) {}
+            @Override
+            public void semanticTagChanged(SemanticTag tag, STSet stset) {}
+        });
+        set.addSemanticTags(tags);
+
+        TreeMap<Long, Long> periods = periods(set);
+        Assert.assertTrue(disjoint(periods));
+        Assert.assertEquals(periods(pointwise), periods);
+
+        // only unions created while fitting in are reported
+        Assert.assertTrue(created[0] < tags.size());
+
+        List<SemanticTag> all = new ArrayList<>();
+        Enumeration<SemanticTag> e = set.tags();
+        while(e.hasMoreElements()) all.add(e.nextElement());
+        set.removeSemanticTags(all.subList(0, all.size() / 2));
+        Assert.assertEquals(all.size() - all.size() / 2, set.size());
+        Assert.assertEquals(set.size(), periods(set).size());
+    }
+}
@@ -0,0 +1,75 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Enumeration;
+import net.sharkfw.system.Base64;
+import net.sharkfw.knowledgeBase.SNSemanticTag;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author thsc
+ */
+public class InMemo_SN_TX_SemanticTagTest {
+
+    // tag with predicate "knows", serialized before predicate tables were introduced
+    private static final String OLD_FORM =
+              "rO0ABXNyADtuZXQuc2hhcmtmdy5rbm93bGVkZ2VCYXNlLmlubWVtb3J5LkluTWVt"
+            + "b19TTl9UWF9TZW1hbnRpY1RhZzmxHsKlYKPDAgAEWgAJcmVmcmVzaGVkTAAHc291"
+            + "cmNlc3QAE0xqYXZhL3V0aWwvSGFzaE1hcDtMAAdzdG9yYWdldAA8TG5ldC9zaGFy"
+            + "a2Z3L2tub3dsZWRnZUJhc2UvaW5tZW1vcnkvSW5NZW1vR2VuZXJpY1RhZ1N0b3Jh"
+            + "Z2U7TAAHdGFyZ2V0c3EAfgABeHIANG5ldC5zaGFya2Z3Lmtub3dsZWRnZUJhc2Uu"
+            + "aW5tZW1vcnkuSW5NZW1vU2VtYW50aWNUYWd+XNQXEzH7JAIAA0wABG5hbWV0ABJM"
+            + "amF2YS9sYW5nL1N0cmluZztbAAJzaXQAE1tMamF2YS9sYW5nL1N0cmluZztMAAdz"
+            + "dG9yYWdlcQB+AAJ4cHQAAXN1cgATW0xqYXZhLmxhbmcuU3RyaW5nO63SVufpHXtH"
+            + "AgAAeHAAAAABdAAIaHR0cDovL3NwAXBwc3IAEWphdmEudXRpbC5IYXNoTWFwBQfa"
+            + "wcMWYNEDAAJGAApsb2FkRmFjdG9ySQAJdGhyZXNob2xkeHA/QAAAAAAADHcIAAAA"
+            + "EAAAAAF0AAVrbm93c3NyABFqYXZhLnV0aWwuSGFzaFNldLpEhZWWuLc0AwAAeHB3"
+            + "DAAAABA/QAAAAAAAAXNxAH4AAHQAAXR1cQB+AAgAAAABdAAIaHR0cDovL3RwAXNx"
+            + "AH4ACz9AAAAAAAAMdwgAAAAQAAAAAXEAfgANc3EAfgAOdwwAAAAQP0AAAAAAAAFx"
+            + "AH4ABnh4cHB4eA==";
+
+    private static Object read(byte[] bytes) throws IOException, ClassNotFoundException {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        return in.readObject();
+    }
+
+    private static void assertKnows(SNSemanticTag source) {
+        Enumeration<String> names = source.predicateNames();
+        Assert.assertNotNull(names);
+        Assert.assertEquals("knows", names.nextElement());
+        Assert.assertFalse(names.hasMoreElements());
+
+        Enumeration<SNSemanticTag> targets = source.targetTags("knows");
+        SNSemanticTag target = targets.nextElement();
+        Assert.assertFalse(targets.hasMoreElements());
+        Assert.assertEquals("t", target.getName());
+
+        // reverse reference survives as well
+        Assert.assertSame(source, target.sourceTags("knows").nextElement());
+    }
+
+    @Test
+    public void serialization_keepsPredicates() throws Exception {
+        InMemo_SN_TX_SemanticTag s = new InMemo_SN_TX_SemanticTag("s", new String[]{"http://s"});
+        InMemo_SN_TX_SemanticTag t = new InMemo_SN_TX_SemanticTag("t", new String[]{"http://t"});
+        s.setPredicate("knows", t);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(baos);
+        out.writeObject(s);
+        out.close();
+
+        assertKnows((SNSemanticTag) read(baos.toByteArray()));
+    }
+
+    @Test
+    public void serialization_readsOldForm() throws Exception {
+        assertKnows((SNSemanticTag) read(Base64.decode(OLD_FORM)));
+    }
+}
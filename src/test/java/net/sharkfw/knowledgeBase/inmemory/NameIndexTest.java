@@ -0,0 +1,102 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+import net.sharkfw.knowledgeBase.*;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author thsc
+ */
+public class NameIndexTest {
+
+    private static final String[] WORDS = {"Shark", "shark", "HTW", "Berlin",
+        "Hamburg", "straße", "Köln", "net", "work", "a.b", "x+y", "[tag]"};
+
+    private static List<SemanticTag> scan(STSet set, String pattern) throws SharkKBException {
+        List<SemanticTag> result = new ArrayList<>();
+        Pattern p = Pattern.compile(pattern);
+        Enumeration<SemanticTag> tags = set.tags();
+        while(tags.hasMoreElements()) {
+            SemanticTag tag = tags.nextElement();
+            if(tag.getName() != null && p.matcher(tag.getName()).matches()) {
+                result.add(tag);
+            }
+        }
+        return result;
+    }
+
+    private static List<SemanticTag> list(Iterator<SemanticTag> tags) {
+        List<SemanticTag> result = new ArrayList<>();
+        while(tags.hasNext()) result.add(tags.next());
+        return result;
+    }
+
+    @Test
+    public void query_literals() {
+        NameIndex.Query q = NameIndex.Query.analyze("Shark");
+        Assert.assertEquals("Shark", q.exact);
+
+        q = NameIndex.Query.analyze("(?i)Sha\\.rk.*");
+        Assert.assertEquals("Sha.rk", q.prefix);
+
+        q = NameIndex.Query.analyze(".*Berlin[0-9]+ab?c(xyz)?def");
+        Assert.assertNull(q.exact);
+        Assert.assertNull(q.prefix);
+        Assert.assertEquals("[Berlin, a, c, def]", q.literals.toString());
+
+        Assert.assertNull(NameIndex.Query.analyze("Berlin|Hamburg"));
+        Assert.assertNull(NameIndex.Query.analyze("(?=Berlin).*"));
+    }
+
+    @Test
+    public void getSemanticTagByName_sameAsScan() throws SharkKBException {
+        Random random = new Random(6);
+        STSet set = InMemoSharkKB.createInMemoSTSet();
+        for(int i = 0; i < 3000; i++) {
+            String name = WORDS[random.nextInt(WORDS.length)] + " "
+                    + WORDS[random.nextInt(WORDS.length)] + i;
+            set.createSemanticTag(name, "http://tag/" + i);
+        }
+        set.createSemanticTag(null, "http://tag/noname");
+
+        String[] patterns = {"Shark.*", "(?i)shark.*", "Shark Berlin1", ".*Berlin.*",
+            ".*(?i)KÖLN.*", "(?i).*STRASSE.*", ".*straße.*", ".*a\\.b.*", ".*x\\+y.*",
+            ".*\\[tag\\].*", "Ham.*work[0-9]+", ".*(HTW)+ .*", ".*(Berlin)? net.*",
+            ".*ar?k.*", "Berlin|Hamburg.*", ".*", "nothing", ".*\\Qa.b\\E 12.*",
+            "[Ss]hark .*", ".*B.r.in.*", ".*net{2}.*"};
+
+        for(int round = 0; round < 2; round++) {
+            for(String pattern : patterns) {
+                Assert.assertEquals(pattern, scan(set, pattern),
+                        list(set.getSemanticTagByName(pattern)));
+            }
+
+            // rename, remove, hide
+            for(int i = 0; i < 300; i++) {
+                SemanticTag tag = set.getSemanticTag("http://tag/" + random.nextInt(3000));
+                if(tag == null) continue;
+                switch(i % 3) {
+                    case 0: tag.setName("renamed Berlin " + i); break;
+                    case 1: set.removeSemanticTag(tag); break;
+                    default: tag.setHidden(true);
+                }
+            }
+            ((InMemoSTSet) set).setEnumerateHiddenTags(true);
+        }
+
+        try {
+            set.getSemanticTagByName("(unclosed");
+            Assert.fail();
+        }
+        catch(SharkKBException e) {
+            // expected
+        }
+    }
+}
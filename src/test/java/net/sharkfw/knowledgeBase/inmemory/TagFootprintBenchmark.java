@@ -0,0 +1,59 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import java.util.ArrayList;
+import java.util.List;
+import net.sharkfw.knowledgeBase.*;
+import org.openjdk.jol.info.GraphLayout;
+
+/**
+ * Memory footprint of in memory semantic net tags. Retained size per tag
+ * is printed for plain tags, tags with one property and pairs of tags
+ * connected by a super tag predicate. Tags are not added to a knowledge base -
+ * tag storages are not counted.
+ *
+ * Run e.g. with
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=net.sharkfw.knowledgeBase.inmemory.TagFootprintBenchmark
+ *
+ * @author thsc
+ */
+public class TagFootprintBenchmark {
+
+    private static final int TAGS = 100000;
+
+    private static InMemo_SN_TX_SemanticTag createTag(int i) {
+        return new InMemo_SN_TX_SemanticTag("topic" + i,
+                new String[] {"http://sharksystem.net/topic/" + i});
+    }
+
+    private static void print(String label, List<SemanticTag> tags) {
+        long bytes = GraphLayout.parseInstance(tags.toArray()).totalSize();
+        System.out.println(String.format("%-16s %6d bytes per tag", label, bytes / tags.size()));
+    }
+
+    public static void main(String[] args) throws SharkKBException {
+        List<SemanticTag> plain = new ArrayList<>();
+        List<SemanticTag> withProperty = new ArrayList<>();
+        List<SemanticTag> withPredicate = new ArrayList<>();
+
+        for(int i = 0; i < TAGS; i++) {
+            plain.add(createTag(i));
+
+            InMemo_SN_TX_SemanticTag tag = createTag(i);
+            tag.setProperty("p", "v");
+            withProperty.add(tag);
+        }
+
+        for(int i = 0; i < TAGS; i += 2) {
+            InMemo_SN_TX_SemanticTag sub = createTag(i);
+            InMemo_SN_TX_SemanticTag sup = createTag(i + 1);
+            sub.move(sup);
+            withPredicate.add(sub);
+            withPredicate.add(sup);
+        }
+
+        System.out.println(System.getProperty("java.vm.name") + " " + System.getProperty("java.version"));
+        print("plain", plain);
+        print("one property", withProperty);
+        print("super tag pairs", withPredicate);
+    }
+}
@@ -0,0 +1,161 @@
+package net.sharkfw.knowledgeBase.inmemory;
+
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import net.sharkfw.knowledgeBase.*;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author thsc
+ */
+public class TaxonomyIndexTest {
+
+    private static String si(int i) {
+        return "http://sharksystem.net/taxonomy/" + i;
+    }
+
+    /**
+     * random tree - tag i has a super tag with smaller number
+     */
+    private static TXSemanticTag[] fill(Taxonomy tx, int number, long seed)
+            throws SharkKBException {
+
+        Random random = new Random(seed);
+        TXSemanticTag[] tags = new TXSemanticTag[number];
+        for(int i = 0; i < number; i++) {
+            tags[i] = tx.createTXSemanticTag("t" + i, si(i));
+            // some more roots
+            if(i > 0 && random.nextInt(10) > 0) {
+                tx.move(tags[random.nextInt(i)], tags[i]);
+            }
+        }
+        return tags;
+    }
+
+    private static boolean walk(TXSemanticTag root, TXSemanticTag tag) {
+        for(TXSemanticTag s = tag.getSuperTag(); s != null; s = s.getSuperTag()) {
+            if(s == root) return true;
+        }
+        return false;
+    }
+
+    private static Set<String> sis(STSet set) throws SharkKBException {
+        Set<String> sis = new HashSet<>();
+        Enumeration<SemanticTag> e = set.tags();
+        while(e != null && e.hasMoreElements()) {
+            sis.add(e.nextElement().getSI()[0]);
+        }
+        return sis;
+    }
+
+    private static Set<String> edges(SemanticNet sn, String predicate)
+            throws SharkKBException {
+
+        Set<String> edges = new HashSet<>();
+        Enumeration<SemanticTag> e = sn.tags();
+        while(e.hasMoreElements()) {
+            SNSemanticTag tag = (SNSemanticTag) e.nextElement();
+            Enumeration<SNSemanticTag> targets = tag.targetTags(predicate);
+            while(targets != null && targets.hasMoreElements()) {
+                edges.add(tag.getSI()[0] + " " + targets.nextElement().getSI()[0]);
+            }
+        }
+        return edges;
+    }
+
+    @Test
+    public void isSubTag_sameAsWalk() throws SharkKBException {
+        InMemoTaxonomy tx = new InMemoTaxonomy();
+        TXSemanticTag[] tags = fill(tx, 60, 1);
+
+        for(int round = 0; round < 2; round++) {
+            for(TXSemanticTag root : tags) {
+                for(TXSemanticTag tag : tags) {
+                    Assert.assertEquals(walk(root, tag), tx.isSubTag(root, tag));
+                }
+            }
+            Assert.assertNotNull(tx.getIndex().labels());
+
+            // change hierarchy - index must follow
+            tx.move(tags[0], tags[59]);
+            tags[7].move(null);
+        }
+
+        // copies with same si are identical
+        TXSemanticTag copy = InMemoSharkKB.createInMemoCopy(tags[0]);
+        for(TXSemanticTag tag : tags) {
+            Assert.assertEquals(walk(tags[0], tag), tx.isSubTag(copy, tag));
+        }
+    }
+
+    @Test
+    public void rootTags_followChanges() throws SharkKBException {
+        InMemoTaxonomy tx = new InMemoTaxonomy();
+        TXSemanticTag a = tx.createTXSemanticTag("a", si(0));
+        TXSemanticTag b = tx.createTXSemanticTag("b", si(1));
+        TXSemanticTag c = tx.createTXSemanticTag("c", si(2));
+
+        Assert.assertEquals(3, count(tx.rootTags()));
+
+        tx.move(a, b);
+        tx.move(b, c);
+        Assert.assertEquals(1, count(tx.rootTags()));
+        Assert.assertTrue(tx.isSubTag(a, c));
+
+        // sub tags of b get a as super tag
+        tx.removeSemanticTag(b);
+        Assert.assertEquals(1, count(tx.rootTags()));
+        Assert.assertSame(a, c.getSuperTag());
+
+        tx.createTXSemanticTag("d", si(3));
+        Assert.assertEquals(2, count(tx.rootTags()));
+
+        FragmentationParameter fp = new FragmentationParameter(false, true, 2);
+        Taxonomy fragment = tx.fragment(a, fp);
+        Assert.assertEquals(2, fragment.size());
+    }
+
+    private static int count(Enumeration e) {
+        int n = 0;
+        while(e != null && e.hasMoreElements()) {
+            e.nextElement();
+            n++;
+        }
+        return n;
+    }
+
+    @Test
+    public void fragment_sameAsSemanticNet() throws SharkKBException {
+        InMemoSemanticNet sn = new InMemoSemanticNet();
+        InMemoTaxonomy tx = new InMemoTaxonomy(sn);
+        TXSemanticTag[] tags = fill(tx, 80, 2);
+
+        boolean[][] directions = {{false, true}, {true, false}, {true, true}};
+        for(boolean[] direction : directions) {
+            for(int depth = 0; depth < 5; depth++) {
+                FragmentationParameter fp =
+                        new FragmentationParameter(direction[0], direction[1], depth);
+
+                for(int i = 0; i < tags.length; i += 7) {
+                    SemanticNet expected = sn.fragment(tags[i], fp);
+                    SemanticNet actual = new InMemoSemanticNet();
+                    Assert.assertTrue(tx.fragmentHierarchy(actual, tags[i], fp));
+
+                    Assert.assertEquals(sis(expected), sis(actual));
+                    Assert.assertEquals(edges(expected, SemanticNet.SUBTAG),
+                            edges(actual, SemanticNet.SUBTAG));
+                    Assert.assertEquals(edges(expected, SemanticNet.SUPERTAG),
+                            edges(actual, SemanticNet.SUPERTAG));
+                }
+            }
+        }
+
+        // other predicates - no index
+        Assert.assertFalse(tx.fragmentHierarchy(new InMemoSemanticNet(), tags[0],
+                new FragmentationParameter(2)));
+    }
+}
@@ -0,0 +1,160 @@
+package net.sharkfw.peer;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.sharkfw.asip.engine.ASIPConnection;
+import net.sharkfw.asip.engine.ASIPInMessage;
+import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author thsc
+ */
+public class ASIPPortDispatcherTest {
+
+    private static class CountingPort extends ASIPPort {
+        final AtomicInteger handled = new AtomicInteger(0);
+        final CountDownLatch block;
+        volatile Thread handlerThread;
+
+        CountingPort(boolean concurrent, CountDownLatch block) {
+            super(null);
+            this.setConcurrent(concurrent);
+            this.block = block;
+        }
+
+        @Override
+        public boolean handleMessage(ASIPInMessage message, ASIPConnection connection) {
+            this.handlerThread = Thread.currentThread();
+            try {
+                if(this.block != null) {
+                    this.block.await(10, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            this.handled.incrementAndGet();
+            return true;
+        }
+    }
+
+    private ASIPInMessage createMessage() {
+        return new ASIPInMessage(null, InMemoSharkKB.createInMemoASIPInterest(), null);
+    }
+
+    @Test
+    public void synchronousPort_calledByDeliveringThread() {
+        ASIPPortDispatcher dispatcher = new ASIPPortDispatcher();
+        CountingPort port = new CountingPort(false, null);
+
+        boolean handled = dispatcher.dispatch(this.createMessage(), 
+                Arrays.<ASIPPort>asList(port).iterator());
+
+        Assert.assertTrue(handled);
+        Assert.assertEquals(1, port.handled.get());
+        Assert.assertSame(Thread.currentThread(), port.handlerThread);
+    }
+
+    @Test
+    public void concurrentPorts_handleMessageInParallel() throws Exception {
+        final ASIPPortDispatcher dispatcher = new ASIPPortDispatcher(2);
+        CountDownLatch release = new CountDownLatch(1);
+        final CountingPort slow = new CountingPort(true, release);
+        final CountingPort fast = new CountingPort(true, null);
+        final AtomicBoolean handled = new AtomicBoolean(false);
+
+        Thread delivering = new Thread() {
+            @Override
+            public void run() {
+                handled.set(dispatcher.dispatch(createMessage(), 
+                        Arrays.<ASIPPort>asList(slow, fast).iterator()));
+            }
+        };
+        delivering.start();
+
+        // fast port handles message while slow one is still blocked
+        long deadline = System.currentTimeMillis() + 5000;
+        while(fast.handled.get() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(1, fast.handled.get());
+        Assert.assertEquals(0, slow.handled.get());
+
+        // delivering thread waits for slow port
+        delivering.join(100);
+        Assert.assertTrue(delivering.isAlive());
+
+        release.countDown();
+        delivering.join(5000);
+        Assert.assertFalse(delivering.isAlive());
+        Assert.assertTrue(handled.get());
+        Assert.assertEquals(1, slow.handled.get());
+        Assert.assertNotSame(delivering, slow.handlerThread);
+
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void shutdown_noWorkersStartedAgain() {
+        ASIPPortDispatcher dispatcher = new ASIPPortDispatcher();
+        CountingPort port = new CountingPort(true, null);
+
+        Assert.assertTrue(dispatcher.dispatch(this.createMessage(), 
+                Arrays.<ASIPPort>asList(port).iterator()));
+        Assert.assertNotSame(Thread.currentThread(), port.handlerThread);
+
+        dispatcher.shutdown();
+        Assert.assertTrue(dispatcher.isShutdown());
+
+        // still delivered - but by this thread
+        Assert.assertTrue(dispatcher.dispatch(this.createMessage(), 
+                Arrays.<ASIPPort>asList(port).iterator()));
+        Assert.assertEquals(2, port.handled.get());
+        Assert.assertSame(Thread.currentThread(), port.handlerThread);
+    }
+
+    @Test
+    public void concurrentPort_reportsNotHandled() {
+        ASIPPortDispatcher dispatcher = new ASIPPortDispatcher();
+        ASIPPort port = new ASIPPort(null) {
+            @Override
+            public boolean handleMessage(ASIPInMessage message, ASIPConnection connection) {
+                return false;
+            }
+        };
+        port.setConcurrent(true);
+
+        Assert.assertFalse(dispatcher.dispatch(this.createMessage(), 
+                Arrays.<ASIPPort>asList(port).iterator()));
+
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void concurrentPort_canDispatchToItself() {
+        final ASIPPortDispatcher dispatcher = new ASIPPortDispatcher(1);
+        final AtomicInteger calls = new AtomicInteger(0);
+        ASIPPort port = new ASIPPort(null) {
+            @Override
+            public boolean handleMessage(ASIPInMessage message, ASIPConnection connection) {
+                if(calls.incrementAndGet() == 1) {
+                    // e.g. an internal message - must not wait for own queue
+                    return dispatcher.dispatch(message, Arrays.<ASIPPort>asList(this).iterator());
+                }
+                return true;
+            }
+        };
+        port.setConcurrent(true);
+
+        Assert.assertTrue(dispatcher.dispatch(this.createMessage(), 
+                Arrays.<ASIPPort>asList(port).iterator()));
+        Assert.assertEquals(2, calls.get());
+
+        dispatcher.shutdown();
+    }
+}
@@ -0,0 +1,144 @@
+package net.sharkfw.peer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import net.sharkfw.asip.ASIPInterest;
+import net.sharkfw.asip.ASIPKnowledge;
+import net.sharkfw.asip.ASIPSpace;
+import net.sharkfw.asip.engine.ASIPConnection;
+import net.sharkfw.asip.engine.ASIPInMessage;
+import net.sharkfw.asip.engine.ASIPMessage;
+import net.sharkfw.knowledgeBase.PeerSemanticTag;
+import net.sharkfw.knowledgeBase.STSet;
+import net.sharkfw.knowledgeBase.SharkKBException;
+import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author thsc
+ */
+public class ASIPPortRoutingIndexTest {
+
+    private static class RoutedPort extends ASIPPort {
+        private final ASIPInterest routingInterest;
+
+        RoutedPort(ASIPInterest routingInterest) {
+            super(null);
+            this.routingInterest = routingInterest;
+        }
+
+        @Override
+        public ASIPInterest getRoutingInterest() {
+            return this.routingInterest;
+        }
+
+        @Override
+        public boolean handleMessage(ASIPInMessage message, ASIPConnection connection) {
+            return true;
+        }
+    }
+
+    private static class InterestKP extends KnowledgePort {
+        InterestKP(ASIPInterest interest) {
+            super(null);
+            this.setAsipInterest(interest);
+        }
+
+        void switchRoutingOff() {
+            this.setRouteByInterest(false);
+        }
+
+        @Override
+        protected void handleInsert(ASIPInMessage message, ASIPConnection asipConnection, ASIPKnowledge asipKnowledge) {}
+
+        @Override
+        protected void handleExpose(ASIPInMessage message, ASIPConnection asipConnection, ASIPInterest interest) {}
+    }
+
+    private ASIPInterest createInterest(String topicSI, PeerSemanticTag sender) throws SharkKBException {
+        STSet topics = InMemoSharkKB.createInMemoSTSet();
+        if(topicSI != null) {
+            topics.createSemanticTag(topicSI, topicSI);
+        }
+        return InMemoSharkKB.createInMemoASIPInterest(topics, null, sender, 
+                null, null, null, null, ASIPSpace.DIRECTION_INOUT);
+    }
+
+    private List<ASIPPort> candidates(ASIPPortRoutingIndex index, ASIPInMessage msg) {
+        List<ASIPPort> result = new ArrayList<>();
+        Iterator<ASIPPort> portIter = index.candidates(msg);
+        while(portIter.hasNext()) {
+            result.add(portIter.next());
+        }
+        return result;
+    }
+
+    @Test
+    public void exposeOfferedToMatchingPortsOnly() throws SharkKBException {
+        ASIPPort java = new RoutedPort(this.createInterest("http://java.com/", null));
+        ASIPPort shark = new RoutedPort(this.createInterest("http://sharksystem.net/", null));
+        ASIPPort anyTopic = new RoutedPort(this.createInterest(null, null));
+        ASIPPort unrouted = new RoutedPort(null);
+
+        ASIPPortRoutingIndex index = new ASIPPortRoutingIndex(
+                Arrays.asList(java, shark, anyTopic, unrouted));
+
+        ASIPInMessage msg = new ASIPInMessage(null, 
+                this.createInterest("HTTP://SharkSystem.net/", null), null);
+
+        Assert.assertEquals(Arrays.asList(shark, anyTopic, unrouted), 
+                this.candidates(index, msg));
+    }
+
+    @Test
+    public void exposeFilteredBySender() throws SharkKBException {
+        PeerSemanticTag alice = InMemoSharkKB.createInMemoPeerSemanticTag("Alice", "http://alice.org", null);
+        PeerSemanticTag bob = InMemoSharkKB.createInMemoPeerSemanticTag("Bob", "http://bob.org", null);
+
+        ASIPPort fromAlice = new RoutedPort(this.createInterest(null, alice));
+        ASIPPort fromAnybody = new RoutedPort(this.createInterest(null, null));
+
+        ASIPPortRoutingIndex index = new ASIPPortRoutingIndex(
+                Arrays.asList(fromAlice, fromAnybody));
+
+        ASIPInMessage msg = new ASIPInMessage(null, this.createInterest(null, bob), null);
+
+        Assert.assertEquals(Arrays.asList(fromAnybody), this.candidates(index, msg));
+    }
+
+    @Test
+    public void nonExposeMessagesIgnoreRoutingInterest() throws SharkKBException {
+        ASIPPort java = new RoutedPort(this.createInterest("http://java.com/", null));
+        ASIPPortRoutingIndex index = new ASIPPortRoutingIndex(Arrays.asList(java));
+
+        ASIPInMessage msg = new ASIPInMessage(null, 
+                this.createInterest("http://sharksystem.net/", null), null);
+        msg.setCommand(ASIPMessage.ASIP_INSERT);
+
+        Assert.assertEquals(Arrays.asList(java), this.candidates(index, msg));
+    }
+
+    @Test
+    public void knowledgePortsRouteByAsipInterest() throws SharkKBException {
+        InterestKP java = new InterestKP(this.createInterest("http://java.com/", null));
+        InterestKP anything = new InterestKP(this.createInterest(null, null));
+        InterestKP all = new InterestKP(this.createInterest("http://java.com/", null));
+        all.switchRoutingOff();
+
+        Assert.assertNotNull(java.getRoutingInterest());
+        Assert.assertNull(anything.getRoutingInterest());
+        Assert.assertNull(all.getRoutingInterest());
+
+        ASIPPortRoutingIndex index = new ASIPPortRoutingIndex(
+                Arrays.<ASIPPort>asList(java, anything, all));
+
+        ASIPInMessage msg = new ASIPInMessage(null, 
+                this.createInterest("http://sharksystem.net/", null), null);
+
+        Assert.assertEquals(Arrays.<ASIPPort>asList(anything, all), this.candidates(index, msg));
+    }
+}
@@ -0,0 +1,105 @@
+package net.sharkfw.peer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import net.sharkfw.knowledgeBase.PeerSemanticTag;
+import net.sharkfw.knowledgeBase.SharkKBException;
+import net.sharkfw.knowledgeBase.inmemory.InMemoPropertyHolder;
+import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author thsc
+ */
+public class AccessListManagerTest {
+
+    // in memory holders don't keep system properties
+    private static class Properties extends InMemoPropertyHolder {
+        private final HashMap<String, String> system = new HashMap<>();
+
+        @Override
+        public void setSystemProperty(String name, String value) {
+            this.system.put(name, value);
+        }
+
+        @Override
+        public String getSystemProperty(String name) {
+            return this.system.get(name);
+        }
+    }
+
+    private static PeerSemanticTag peer(String name) {
+        return InMemoSharkKB.createInMemoPeerSemanticTag(name, "http://" + name, "tcp://" + name);
+    }
+
+    @Test
+    public void blackList_refusesPeersAndPrefixes() {
+        AccessListManager manager = new AccessListManager("test", null);
+
+        ArrayList<PeerSemanticTag> spam = new ArrayList<>();
+        for(int i = 0; i < 20000; i++) {
+            spam.add(peer("spam" + i));
+        }
+        manager.acceptPeers(spam, false);
+        manager.acceptAddressPrefix("tcp://10.0.0.", false);
+
+        Assert.assertFalse(manager.isAccepted(peer("spam12345")));
+        Assert.assertFalse(manager.isAccepted(
+                InMemoSharkKB.createInMemoPeerSemanticTag("x", "HTTP://SPAM7", null)));
+        Assert.assertFalse(manager.isAccepted(
+                InMemoSharkKB.createInMemoPeerSemanticTag("y", "http://y", "tcp://10.0.0.7:7070")));
+        Assert.assertTrue(manager.isAccepted(peer("alice")));
+        Assert.assertTrue(manager.isAccepted(null));
+
+        // accepting moves a peer to the white list
+        manager.acceptPeer(peer("spam7"), true);
+        Assert.assertTrue(manager.isAccepted(peer("spam7")));
+
+        manager.useWhiteList(true);
+        Assert.assertTrue(manager.isAccepted(peer("spam7")));
+        Assert.assertFalse(manager.isAccepted(peer("alice")));
+        Assert.assertFalse(manager.isAccepted(null));
+    }
+
+    @Test
+    public void changes_arePersistedOnce() throws SharkKBException {
+        Properties ph = new Properties();
+        AccessListManager manager = new AccessListManager("test", ph);
+        manager.setPersistDelay(60000);
+
+        manager.acceptPeer(peer("alice"), true);
+        manager.acceptPeer(peer("mallory"), false);
+        manager.acceptAddressPrefix("tcp://10.0.0.", false);
+        manager.useWhiteList(true);
+        Assert.assertNull(ph.getSystemProperty(AccessListManager.BLACK_LIST));
+
+        manager.flush();
+        Assert.assertNotNull(ph.getSystemProperty(AccessListManager.BLACK_LIST));
+
+        AccessListManager restored = new AccessListManager("test", ph);
+        restored.refreshStatus();
+        Assert.assertTrue(restored.isAccepted(peer("alice")));
+        Assert.assertFalse(restored.isAccepted(peer("bob")));
+        restored.useWhiteList(false);
+        Assert.assertFalse(restored.isAccepted(peer("mallory")));
+        Assert.assertFalse(restored.isAccepted(
+                InMemoSharkKB.createInMemoPeerSemanticTag("y", "http://y", "tcp://10.0.0.7")));
+        Assert.assertTrue(restored.isAccepted(peer("bob")));
+    }
+
+    @Test
+    public void anyPeer_canBeRemoved() {
+        PeerAccessList list = new PeerAccessList();
+        PeerSemanticTag any = InMemoSharkKB.createInMemoPeerSemanticTag("any", (String[]) null, null);
+        list.add(any);
+        list.add(peer("alice"));
+        Assert.assertTrue(list.contains(peer("bob")));
+
+        Assert.assertTrue(list.remove(InMemoSharkKB.createInMemoPeerSemanticTag("any", (String[]) null, null)));
+        Assert.assertEquals(1, list.size());
+        Assert.assertFalse(list.contains(peer("bob")));
+        Assert.assertTrue(list.contains(peer("alice")));
+    }
+}
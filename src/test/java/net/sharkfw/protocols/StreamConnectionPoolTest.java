@@ -0,0 +1,122 @@
+package net.sharkfw.protocols;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author thsc
+ */
+public class StreamConnectionPoolTest {
+    
+    private static final String ADDRESS = "tcp://localhost:7070";
+
+    private static class DummyConnection extends ConnectionListenerManager implements StreamConnection {
+        private final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        boolean closed = false;
+
+        @Override
+        public SharkInputStream getSharkInputStream() {
+            return new StandardSharkInputStream(this.getInputStream());
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return this.os;
+        }
+
+        @Override
+        public SharkOutputStream getSharkOutputStream() {
+            return new UTF8SharkOutputStream(this.os);
+        }
+
+        @Override
+        public void sendMessage(byte[] msg) {
+            this.os.write(msg, 0, msg.length);
+        }
+
+        @Override
+        public String getReplyAddressString() {
+            return null;
+        }
+
+        @Override
+        public String getReceiverAddressString() {
+            return ADDRESS;
+        }
+
+        @Override
+        public String getLocalAddressString() {
+            return null;
+        }
+
+        @Override
+        public void setLocalAddressString(String localAddress) {
+        }
+
+        @Override
+        public void close() {
+            this.closed = true;
+            this.notifyConnectionClosed();
+        }
+    }
+
+    @Test
+    public void releasedConnection_isReused() {
+        StreamConnectionPool pool = new StreamConnectionPool(2, 10000);
+        DummyConnection con = new DummyConnection();
+
+        Assert.assertNull(pool.lease(ADDRESS));
+        Assert.assertTrue(pool.add(ADDRESS, con));
+
+        // still leased
+        Assert.assertNull(pool.lease(ADDRESS));
+
+        pool.release(con);
+        Assert.assertSame(con, pool.lease(ADDRESS));
+    }
+
+    @Test
+    public void maxConnectionsPerPeer() {
+        StreamConnectionPool pool = new StreamConnectionPool(1, 10000);
+
+        Assert.assertTrue(pool.add(ADDRESS, new DummyConnection()));
+        Assert.assertFalse(pool.add(ADDRESS, new DummyConnection()));
+        Assert.assertEquals(1, pool.size(ADDRESS));
+    }
+
+    @Test
+    public void closedConnection_isRemoved() {
+        StreamConnectionPool pool = new StreamConnectionPool(2, 10000);
+        DummyConnection con = new DummyConnection();
+        pool.add(ADDRESS, con);
+        pool.release(con);
+
+        con.close();
+
+        Assert.assertEquals(0, pool.size(ADDRESS));
+        Assert.assertNull(pool.lease(ADDRESS));
+    }
+
+    @Test
+    public void idleConnection_isClosed() throws InterruptedException {
+        StreamConnectionPool pool = new StreamConnectionPool(2, 0);
+        DummyConnection con = new DummyConnection();
+        pool.add(ADDRESS, con);
+        pool.release(con);
+
+        Thread.sleep(5);
+
+        Assert.assertNull(pool.lease(ADDRESS));
+        Assert.assertTrue(con.closed);
+    }
+}
@@ -0,0 +1,128 @@
+package net.sharkfw.security.pki.storage;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.sharkfw.knowledgeBase.KnowledgeBaseListener;
+import net.sharkfw.knowledgeBase.PeerSemanticTag;
+import net.sharkfw.knowledgeBase.SharkKBException;
+import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
+import net.sharkfw.security.pki.Certificate;
+import net.sharkfw.security.pki.SharkCertificate;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author thsc
+ */
+public class SharkPkiStorageTest {
+
+    private KeyPairGenerator generator;
+    private SharkPkiStorage storage;
+    private PeerSemanticTag issuer;
+    private PeerSemanticTag owner;
+
+    private static PeerSemanticTag peer(String name) {
+        return InMemoSharkKB.createInMemoPeerSemanticTag(name, "http://" + name, "tcp://" + name);
+    }
+
+    private SharkCertificate certificate(PeerSemanticTag subject, PublicKey key) {
+        return new SharkCertificate(subject, this.issuer, new LinkedList<PeerSemanticTag>(),
+                Certificate.TrustLevel.UNKNOWN, key, new Date(1000000));
+    }
+
+    @Before
+    public void setUp() throws NoSuchAlgorithmException, SharkKBException {
+        this.generator = KeyPairGenerator.getInstance("RSA");
+        this.generator.initialize(1024);
+        this.issuer = peer("issuer");
+        this.owner = peer("owner");
+        this.storage = new SharkPkiStorage(new InMemoSharkKB(), this.owner,
+                this.generator.generateKeyPair().getPrivate());
+    }
+
+    @Test
+    public void lookups_findCertificates() throws SharkKBException {
+        PeerSemanticTag[] subjects = {peer("alice"), peer("bob"), peer("carol")};
+        PublicKey[] keys = new PublicKey[subjects.length];
+        for(int i = 0; i < subjects.length; i++) {
+            keys[i] = this.generator.generateKeyPair().getPublic();
+            Assert.assertTrue(this.storage.addSharkCertificate(certificate(subjects[i], keys[i])));
+        }
+        // same key again
+        Assert.assertFalse(this.storage.addSharkCertificate(certificate(peer("dave"), keys[1])));
+
+        Assert.assertEquals(keys[1], this.storage.getSharkCertificate(subjects[1]).getSubjectPublicKey());
+        Assert.assertEquals("bob", this.storage.getSharkCertificate(new String[] {"HTTP://BOB"}).getSubject().getName());
+        Assert.assertEquals(keys[2], this.storage.getSharkCertificate(this.issuer, subjects[2]).getSubjectPublicKey());
+        Assert.assertNotNull(this.storage.getSharkCertificate(subjects[0], keys[0]));
+        Assert.assertNull(this.storage.getSharkCertificate(subjects[0], keys[1]));
+        Assert.assertNull(this.storage.getSharkCertificate(peer("eve")));
+        Assert.assertEquals(3, this.storage.getSharkCertificateList().size());
+
+        // returned certificates are copies
+        SharkCertificate alice = this.storage.getSharkCertificate(subjects[0]);
+        alice.addTransmitter(peer("mallory"));
+        Assert.assertTrue(this.storage.getSharkCertificate(subjects[0]).getTransmitterList().isEmpty());
+    }
+
+    @Test
+    public void changes_areVisible() throws SharkKBException {
+        PeerSemanticTag alice = peer("alice");
+        PublicKey key = this.generator.generateKeyPair().getPublic();
+        SharkCertificate certificate = certificate(alice, key);
+        this.storage.addSharkCertificate(certificate);
+        Assert.assertEquals(Certificate.TrustLevel.UNKNOWN, this.storage.getSharkCertificate(alice).getTrustLevel());
+
+        this.storage.updateSharkCertificateTrustLevel(this.storage.getSharkCertificate(alice), Certificate.TrustLevel.FULL);
+        Assert.assertEquals(Certificate.TrustLevel.FULL, this.storage.getSharkCertificate(alice).getTrustLevel());
+        Assert.assertEquals(1, this.storage.getSharkCertificateList().size());
+
+        Assert.assertTrue(this.storage.deleteSharkCertificate(certificate));
+        Assert.assertNull(this.storage.getSharkCertificate(alice));
+        Assert.assertNull(this.storage.getSharkCertificateList());
+    }
+
+    @Test
+    public void kbChanges_areVisible() throws SharkKBException, NoSuchAlgorithmException {
+        PeerSemanticTag bob = peer("bob");
+        Assert.assertNull(this.storage.getSharkCertificate(bob));
+
+        // another storage changes the same kb
+        SharkPkiStorage other = new SharkPkiStorage(this.storage.getSharkPkiStorageKB(), this.owner);
+        SharkCertificate certificate = certificate(bob, this.generator.generateKeyPair().getPublic());
+        other.addSharkCertificate(certificate);
+        Assert.assertNotNull(this.storage.getSharkCertificate(bob));
+
+        other.deleteSharkCertificate(certificate);
+        Assert.assertNull(this.storage.getSharkCertificate(bob));
+    }
+
+    @Test
+    public void storagesOnOneKB_shareOneListener() throws SharkKBException, NoSuchAlgorithmException {
+        final AtomicInteger listeners = new AtomicInteger();
+        InMemoSharkKB kb = new InMemoSharkKB() {
+            @Override
+            public void addListener(KnowledgeBaseListener kbl) {
+                listeners.incrementAndGet();
+                super.addListener(kbl);
+            }
+        };
+
+        SharkPkiStorage first = new SharkPkiStorage(kb, this.owner, this.generator.generateKeyPair().getPrivate());
+        for(int i = 0; i < 10; i++) {
+            new SharkPkiStorage(kb, this.owner);
+        }
+        Assert.assertEquals(1, listeners.get());
+
+        PeerSemanticTag bob = peer("bob");
+        new SharkPkiStorage(kb, this.owner).addSharkCertificate(certificate(bob, this.generator.generateKeyPair().getPublic()));
+        Assert.assertNotNull(first.getSharkCertificate(bob));
+    }
+}
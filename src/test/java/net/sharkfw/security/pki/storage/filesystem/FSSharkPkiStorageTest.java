@@ -0,0 +1,186 @@
+package net.sharkfw.security.pki.storage.filesystem;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedList;
+import net.sharkfw.knowledgeBase.PeerSemanticTag;
+import net.sharkfw.knowledgeBase.SharkKBException;
+import net.sharkfw.knowledgeBase.inmemory.InMemoSharkKB;
+import net.sharkfw.security.pki.Certificate;
+import net.sharkfw.security.pki.SharkCertificate;
+import net.sharkfw.security.pki.storage.SharkPkiStorage;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author thsc
+ */
+public class FSSharkPkiStorageTest {
+
+    private KeyPairGenerator generator;
+    private File file;
+
+    private static PeerSemanticTag peer(String name) {
+        return InMemoSharkKB.createInMemoPeerSemanticTag(name, "http://" + name, "tcp://" + name);
+    }
+
+    private static SharkCertificate certificate(String subject, PublicKey key) {
+        LinkedList<PeerSemanticTag> transmitters = new LinkedList<>();
+        transmitters.add(peer("transmitter"));
+        return new SharkCertificate(peer(subject), peer("issuer"), transmitters,
+                Certificate.TrustLevel.MARGINAL, key, new Date(1000000));
+    }
+
+    @Before
+    public void setUp() throws NoSuchAlgorithmException, IOException {
+        this.generator = KeyPairGenerator.getInstance("RSA");
+        this.generator.initialize(1024);
+        this.file = File.createTempFile("certificates", ".skpc");
+        this.file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        this.file.delete();
+        new File(this.file.getPath() + ".old").delete();
+    }
+
+    private int magic() throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(this.file));
+        try {
+            return in.readInt();
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void appendAndRemove_survivesReopen() throws SharkKBException, IOException {
+        FSSharkPkiStorage storage = new FSSharkPkiStorage(this.file.getPath());
+        PublicKey[] keys = new PublicKey[3];
+        for(int i = 0; i < keys.length; i++) {
+            keys[i] = this.generator.generateKeyPair().getPublic();
+            storage.append(certificate("peer" + i, keys[i]));
+        }
+        // replaces peer1
+        storage.append(certificate("bob", keys[1]));
+        Assert.assertTrue(storage.remove(keys[2]));
+        Assert.assertFalse(storage.remove(keys[2]));
+        storage.close();
+
+        storage = new FSSharkPkiStorage(this.file.getPath());
+        Assert.assertEquals(2, storage.size());
+        SharkCertificate bob = storage.getSharkCertificate(keys[1]);
+        Assert.assertEquals("bob", bob.getSubject().getName());
+        Assert.assertEquals("tcp://bob", bob.getSubject().getAddresses()[0]);
+        Assert.assertEquals("issuer", bob.getIssuer().getName());
+        Assert.assertEquals("transmitter", bob.getTransmitterList().getFirst().getName());
+        Assert.assertEquals(Certificate.TrustLevel.MARGINAL, bob.getTrustLevel());
+        Assert.assertEquals(new Date(1000000), bob.getValidity());
+        Assert.assertEquals(keys[1], bob.getSubjectPublicKey());
+        Assert.assertNull(storage.getSharkCertificate(keys[2]));
+
+        long length = this.file.length();
+        storage.compact();
+        Assert.assertTrue(this.file.length() < length);
+        Assert.assertEquals(2, storage.size());
+        Assert.assertEquals(keys[0], storage.getSharkCertificates().get(0).getSubjectPublicKey());
+        storage.close();
+    }
+
+    @Test
+    public void incompleteRecord_isCutOff() throws SharkKBException, IOException {
+        FSSharkPkiStorage storage = new FSSharkPkiStorage(this.file.getPath());
+        PublicKey key = this.generator.generateKeyPair().getPublic();
+        storage.append(certificate("alice", key));
+        storage.append(certificate("bob", this.generator.generateKeyPair().getPublic()));
+        storage.close();
+
+        RandomAccessFile raf = new RandomAccessFile(this.file, "rw");
+        raf.setLength(raf.length() - 10);
+        raf.close();
+
+        storage = new FSSharkPkiStorage(this.file.getPath());
+        Assert.assertEquals(1, storage.size());
+        Assert.assertEquals("alice", storage.getSharkCertificate(key).getSubject().getName());
+
+        // appending after the cut works
+        storage.append(certificate("carol", this.generator.generateKeyPair().getPublic()));
+        storage.close();
+        Assert.assertEquals(2, new FSSharkPkiStorage(this.file.getPath()).size());
+    }
+
+    @Test
+    public void saveAndLoad_copyCertificates() throws SharkKBException, NoSuchAlgorithmException, IOException {
+        SharkPkiStorage source = new SharkPkiStorage(new InMemoSharkKB(), peer("owner"),
+                this.generator.generateKeyPair().getPrivate());
+        source.addSharkCertificate(certificate("alice", this.generator.generateKeyPair().getPublic()));
+        source.addSharkCertificate(certificate("bob", this.generator.generateKeyPair().getPublic()));
+
+        FSSharkPkiStorage storage = new FSSharkPkiStorage(this.file.getPath());
+        Assert.assertTrue(storage.save(source));
+        Assert.assertEquals(2, storage.size());
+
+        SharkPkiStorage target = new SharkPkiStorage(new InMemoSharkKB(), peer("owner"),
+                this.generator.generateKeyPair().getPrivate());
+        Assert.assertEquals(2, storage.load(target));
+        Assert.assertNotNull(target.getSharkCertificate(peer("alice")));
+        Assert.assertNotNull(target.getSharkCertificate(peer("bob")));
+        storage.close();
+    }
+
+    @Test
+    public void legacyFile_isConvertedOnce() throws SharkKBException, IOException {
+        PublicKey[] keys = {this.generator.generateKeyPair().getPublic(), this.generator.generateKeyPair().getPublic()};
+        HashSet<SharkCertificate> certificates = new HashSet<>();
+        certificates.add(certificate("alice", keys[0]));
+        certificates.add(certificate("bob", keys[1]));
+        ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(this.file));
+        out.writeObject(certificates);
+        out.close();
+
+        FSSharkPkiStorage storage = new FSSharkPkiStorage(this.file.getPath());
+        Assert.assertEquals(2, storage.size());
+        Assert.assertEquals("bob", storage.getSharkCertificate(keys[1]).getSubject().getName());
+        storage.close();
+
+        Assert.assertEquals(0x534b5043, magic());
+        Assert.assertTrue(new File(this.file.getPath() + ".old").exists());
+        Assert.assertEquals(2, new FSSharkPkiStorage(this.file.getPath()).size());
+    }
+
+    @Test
+    public void legacyFileOfFailedSave_isConvertedEmpty() throws SharkKBException, NoSuchAlgorithmException, IOException {
+        // former save() serialized the storage - which isn't serializable
+        SharkPkiStorage source = new SharkPkiStorage(new InMemoSharkKB(), peer("owner"),
+                this.generator.generateKeyPair().getPrivate());
+        ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(this.file));
+        try {
+            out.writeObject(source);
+            Assert.fail("storage is expected not to be serializable");
+        } catch (NotSerializableException e) {
+            // that's what the former save() left behind
+        }
+        out.close();
+
+        FSSharkPkiStorage storage = new FSSharkPkiStorage(this.file.getPath());
+        Assert.assertEquals(0, storage.size());
+        storage.append(certificate("alice", this.generator.generateKeyPair().getPublic()));
+        storage.close();
+        Assert.assertEquals(1, new FSSharkPkiStorage(this.file.getPath()).size());
+    }
+}
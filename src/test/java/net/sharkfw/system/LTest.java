@@ -0,0 +1,85 @@
+package net.sharkfw.system;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author thsc
+ */
+public class LTest {
+
+    private static class CountingLazyString extends LazyString {
+        int built = 0;
+
+        @Override
+        protected String build() {
+            this.built++;
+            return "expensive";
+        }
+    }
+
+    @After
+    public void tearDown() {
+        L.setLogLevel(L.LOGLEVEL_SILENT);
+        L.setLogStreams(System.out, System.err);
+    }
+
+    @Test
+    public void format_replacesPlaceholders() {
+        Assert.assertEquals("a 1 b true c", L.format("a {} b {} c", 1, true));
+        Assert.assertEquals("no args {}", L.format("no args {}"));
+        Assert.assertEquals("missing null", L.format("missing {}", (Object) null));
+        Assert.assertEquals("x 1 y {}", L.format("x {} y {}", 1));
+    }
+
+    @Test
+    public void disabledLevel_doesNotBuildArguments() {
+        L.setLogLevel(L.LOGLEVEL_ERROR);
+        CountingLazyString arg = new CountingLazyString();
+
+        L.debug(this, "debug {}", arg);
+
+        Assert.assertEquals(0, arg.built);
+    }
+
+    @Test
+    public void enabledLevel_writesMessage() {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        PrintStream ps = new PrintStream(baos);
+        L.setLogStreams(ps, ps);
+        L.setLogLevel(L.LOGLEVEL_DEBUG);
+        CountingLazyString arg = new CountingLazyString();
+
+        L.debug(this, "debug {}", arg);
+        L.flush();
+
+        Assert.assertEquals(1, arg.built);
+        Assert.assertTrue(baos.toString().contains("DEBUG: debug expensive"));
+    }
+
+    @Test
+    public void synchronousByDefault_asyncAfterFlush() {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        PrintStream ps = new PrintStream(baos);
+        L.setLogStreams(ps, ps);
+        L.setLogLevel(L.LOGLEVEL_DEBUG);
+
+        // written by logging thread - no flush required
+        L.debug(this, "first {}", 1);
+        Assert.assertTrue(baos.toString().contains("DEBUG: first 1"));
+
+        L.setAsync(true);
+        try {
+            L.debug(this, "second {}", 2);
+            L.flush();
+            Assert.assertTrue(baos.toString().contains("DEBUG: second 2"));
+        }
+        finally {
+            L.setAsync(false);
+        }
+    }
+}
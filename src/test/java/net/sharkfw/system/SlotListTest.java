@@ -0,0 +1,86 @@
+package net.sharkfw.system;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author thsc
+ */
+public class SlotListTest {
+
+    private static List<String> list(Iterable<String> elements) {
+        List<String> result = new ArrayList<>();
+        for(String e : elements) result.add(e);
+        return result;
+    }
+
+    @Test
+    public void addRemove_keepsInsertionOrder() {
+        SlotList<String> slots = new SlotList<>();
+        List<String> expected = new ArrayList<>();
+        for(int i = 0; i < 1000; i++) {
+            String e = "e" + i;
+            slots.add(e);
+            expected.add(e);
+        }
+
+        // remove each odd one - compacts several times
+        for(int i = 1; i < 1000; i += 2) {
+            Assert.assertTrue(slots.remove(expected.get(i)));
+        }
+        for(int i = 999; i > 0; i -= 2) {
+            expected.remove(i);
+        }
+
+        Assert.assertEquals(500, slots.size());
+        Assert.assertEquals(expected, list(slots));
+        Assert.assertEquals(expected, Arrays.asList(slots.toArray(new String[0])));
+
+        slots.removeAll(expected.subList(0, 250));
+        Assert.assertEquals(expected.subList(250, 500), list(slots));
+    }
+
+    @Test
+    public void identity() {
+        SlotList<String> slots = new SlotList<>();
+        String a = new String("a");
+        String b = new String("a");
+
+        Assert.assertTrue(slots.add(a));
+        Assert.assertFalse(slots.add(a));
+        Assert.assertTrue(slots.add(b));
+        Assert.assertEquals(2, slots.size());
+
+        Assert.assertTrue(slots.remove(b));
+        Assert.assertFalse(slots.contains(b));
+        Assert.assertSame(a, slots.iterator().next());
+    }
+
+    @Test
+    public void iterator_failSafe() {
+        SlotList<String> slots = new SlotList<>();
+        for(int i = 0; i < 100; i++) slots.add("e" + i);
+
+        int n = 0;
+        Iterator<String> it = slots.iterator();
+        while(it.hasNext()) {
+            String e = it.next();
+            slots.remove(e);
+            slots.add(e + "x"); // not seen by this iterator
+            n++;
+        }
+        Assert.assertEquals(100, n);
+        Assert.assertEquals(100, slots.size());
+
+        it = slots.iterator();
+        while(it.hasNext()) {
+            if(it.next().startsWith("e1")) it.remove();
+        }
+        Assert.assertEquals(89, slots.size());
+    }
+}